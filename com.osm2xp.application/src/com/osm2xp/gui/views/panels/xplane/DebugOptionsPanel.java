@@ -43,6 +43,13 @@ public class DebugOptionsPanel extends Composite {
 		btnDeleteSrcFiles.setToolTipText("Delete generated .txt files after packing them. Switch this off for debug/");
 		bindingContext.bindValue(WidgetProperties.selection().observe(btnDeleteSrcFiles),		
 				PojoProperties.value("deleteSrc").observe(XPlaneOptionsProvider.getOptions()));
+		
+		Button btnUseDsfTool = new Button(this, SWT.CHECK);
+		btnUseDsfTool.setLayoutData(createLayoutData());
+		btnUseDsfTool.setText("Pack DSF files using DSFTool");
+		btnUseDsfTool.setToolTipText("Write DSF files in text format and pack them with DSFTool, instead of writing binary DSF directly. Useful for debug");
+		bindingContext.bindValue(WidgetProperties.selection().observe(btnUseDsfTool),		
+				PojoProperties.value("useDsfTool").observe(XPlaneOptionsProvider.getOptions()));
 
 		
 		Button btnGenerateComments = new Button(this, SWT.CHECK);
@@ -16,6 +16,7 @@ import com.osm2xp.datastore.IDataSink;
 import com.osm2xp.parsers.builders.ParserBuilder;
 import com.osm2xp.stats.StatsProvider;
 import com.osm2xp.translators.ITranslatorProvider;
+import com.osm2xp.utils.ProcessExecutor;
 import com.osm2xp.utils.helpers.GuiOptionsHelper;
 import com.osm2xp.utils.ui.StatusUtil;
 
@@ -48,18 +49,25 @@ public class GenerateTilesJob extends GenerateJob {
 			Osm2xpLogger.info("Starting  generation of " + msg + ", target folder " + folderPath);
 			long l1 = System.currentTimeMillis();
 			IDataSink dataSink = DataSinkFactory.getDataSink();
+			IVisitingParser preprocessParser = null;
+			try {
+				preprocessParser = ParserBuilder.getPreprocessParser(currentFile, translatorProvider, dataSink);
+			} catch (Exception e1) {
+				Osm2xpLogger.error("Error creating preprocessor for input file: ", e1);
+			}
+			IVisitingParser parser = selectedCoordinates != null ?
+					ParserBuilder.getSingleTileParser(currentFile, translatorProvider, dataSink, selectedCoordinates) :
+					ParserBuilder.getMultiTileParser(currentFile, translatorProvider, dataSink);
+			ParserBuilder.prescanRelations(currentFile, preprocessParser, parser);
 			try {
-				IVisitingParser preprocessParser = ParserBuilder.getPreprocessParser(currentFile, translatorProvider, dataSink);
 				if (preprocessParser != null) {
 					preprocessParser.process();
 				}
 			} catch (Exception e1) {
 				Osm2xpLogger.error("Error preprocessing input file: ", e1);
 			}
-			IVisitingParser parser = selectedCoordinates != null ?
-					ParserBuilder.getSingleTileParser(currentFile, translatorProvider, dataSink, selectedCoordinates) :
-					ParserBuilder.getMultiTileParser(currentFile, translatorProvider, dataSink);
 			parser.process();
+			ProcessExecutor.getExecutor().awaitCompletion();
 			Osm2xpLogger.info("Generated: " + StatsProvider.getCommonStats().getSummary());
 			Osm2xpLogger.info("Finished generation of " +  ((AbstractTileDataConverter) parser.getVisitor()).getTilesCount() + " tiles, target folder " + folderPath);
 			Osm2xpLogger.info(String.format(Locale.ROOT,"Generation took %.2f seconds",(System.currentTimeMillis() - l1) / 1000.0));
@@ -3,6 +3,7 @@ package com.osm2xp.console;
 import java.io.File;
 import java.io.IOException;
 import java.util.Date;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.cli.CommandLine;
@@ -18,11 +19,15 @@ import org.apache.commons.lang.StringUtils;
 import com.osm2xp.converters.impl.AbstractTileDataConverter;
 import com.osm2xp.converters.impl.MultiTileDataConverter;
 import com.osm2xp.core.exceptions.DataSinkException;
+import com.osm2xp.core.exceptions.Osm2xpBusinessException;
 import com.osm2xp.core.parsers.IOSMDataVisitor;
 import com.osm2xp.core.parsers.IParser;
 import com.osm2xp.core.parsers.IVisitingParser;
 import com.osm2xp.datastore.DataSinkFactory;
 import com.osm2xp.datastore.IDataSink;
+import com.osm2xp.generation.incremental.OsmChange;
+import com.osm2xp.generation.incremental.TileState;
+import com.osm2xp.generation.incremental.TileStateRecorder;
 import com.osm2xp.generation.options.GlobalOptionsProvider;
 import com.osm2xp.generation.options.XPlaneOptionsProvider;
 import com.osm2xp.generation.paths.PathsService;
@@ -35,6 +40,8 @@ import com.osm2xp.translators.ITranslatorProvider;
 import com.osm2xp.translators.TranslatorBuilder;
 import com.osm2xp.utils.ProcessExecutor;
 
+import math.geom2d.Point2D;
+
 
 /**
  * Main console app class
@@ -44,6 +51,18 @@ public class App
 {
     private static final String HELP = "help";
 	private static final String DBMODE = "dbmode";
+	private static final String PARSER_THREADS = "parser-threads";
+	private static final String PARALLEL_TILES = "parallel-tiles";
+	private static final String PRESCAN = "prescan";
+	private static final String RELATION_PRESCAN = "relation-prescan";
+	private static final String AREA_CACHE = "area-cache";
+	private static final String BLOCK_INDEX = "block-index";
+	private static final String NODE_SNAPSHOT = "node-snapshot";
+	private static final String NODE_STORE_FOLDER = "node-store-folder";
+	private static final String SEED = "seed";
+	private static final String TILE_STATE = "tile-state";
+	private static final String UPDATE = "update";
+	private static final String DSF_TOOL = "dsftool";
 	private static final String FACADE_SETS = "facade-sets";
 	private static final String CONFIG_FOLDER = "config-folder";
 	private static final String SCENERY_NAME = "scenery-name";
@@ -102,6 +121,46 @@ public class App
     		if (commandLine.hasOption(DBMODE) && !GlobalOptionsProvider.getOptions().isDatabaseMode()) {
     			GlobalOptionsProvider.getOptions().setDatabaseMode(true);
     		}
+    		String parserThreadsStr = commandLine.getOptionValue(PARSER_THREADS);
+    		if (parserThreadsStr != null) {
+    			try {
+    				GlobalOptionsProvider.getOptions().setParserThreads(Integer.parseInt(parserThreadsStr.trim()));
+    			} catch (NumberFormatException e) {
+    				System.out.println("Invalid parser threads count: " + parserThreadsStr + ", should be an integer number");
+    				return;
+    			}
+    		}
+    		if (commandLine.hasOption(PARALLEL_TILES)) {
+    			GlobalOptionsProvider.getOptions().setParallelTiles(true);
+    		}
+    		if (commandLine.hasOption(PRESCAN)) {
+    			GlobalOptionsProvider.getOptions().setTilePrescan(true);
+    		}
+    		if (commandLine.hasOption(RELATION_PRESCAN)) {
+    			GlobalOptionsProvider.getOptions().setRelationPrescan(true);
+    		}
+    		if (commandLine.hasOption(AREA_CACHE)) {
+    			GlobalOptionsProvider.getOptions().setAreaCache(true);
+    		}
+    		if (commandLine.hasOption(BLOCK_INDEX)) {
+    			GlobalOptionsProvider.getOptions().setBlockIndex(true);
+    		}
+    		if (commandLine.hasOption(NODE_SNAPSHOT)) {
+    			GlobalOptionsProvider.getOptions().setNodeStoreSnapshot(true);
+    		}
+    		String nodeStoreFolder = commandLine.getOptionValue(NODE_STORE_FOLDER);
+    		if (nodeStoreFolder != null) {
+    			GlobalOptionsProvider.getOptions().setNodeStoreFolder(nodeStoreFolder);
+    		}
+    		String seedStr = commandLine.getOptionValue(SEED);
+    		if (seedStr != null) {
+    			try {
+    				GlobalOptionsProvider.getOptions().setRandomSeed(Long.parseLong(seedStr.trim()));
+    			} catch (NumberFormatException e) {
+    				System.out.println("Invalid random seed: " + seedStr + ", should be an integer number");
+    				return;
+    			}
+    		}
     		GlobalOptionsProvider.getOptions().setCurrentFilePath(inputFile.getAbsolutePath());
     		
     		if (!TranslatorBuilder.isSupported(outputFormat)) {
@@ -109,8 +168,14 @@ public class App
 				return;
 			}
     		
+    		String changeFileName = commandLine.getOptionValue(UPDATE);
     		File targetFolder = new File(inputFile.getParent(), sceneryName);
-    		if (targetFolder.exists()) { //TODO ask for deletion or require special flag ?
+    		File stateFile = TileState.getStateFile(targetFolder);
+    		if (changeFileName != null && !stateFile.isFile()) {
+    			System.out.println("No tile state found in target folder " + sceneryName + ". Full generation with --" + TILE_STATE + " option should be done first");
+    			return;
+    		}
+    		if (targetFolder.exists() && changeFileName == null) { //TODO ask for deletion or require special flag ?
     			System.out.println("Target folder " + sceneryName + " exists and will be deleted.");
     			try {
     				FileUtils.deleteDirectory(targetFolder);
@@ -128,10 +193,40 @@ public class App
     			long t1 = System.currentTimeMillis();
     			System.out.println("Generation started at "  + new Date());
     			IParser parser = null;
+    			IVisitingParser preprocessParser = null;
+    			TileState tileState = null;
+    			OsmChange change = null;
+    			List<Point2D> dirtyTiles = null;
+    			TileStateRecorder stateRecorder = null;
+    			if (changeFileName != null) {
+    				tileState = TileState.load(stateFile);
+    				change = OsmChange.read(new File(changeFileName));
+    				dirtyTiles = tileState.getDirtyTiles(change);
+    				System.out.println("Change file contains " + change + ", " + dirtyTiles.size() + " tiles would be regenerated");
+    				if (dirtyTiles.isEmpty()) {
+    					tileState.apply(change);
+    					tileState.save(stateFile);
+    					return;
+    				}
+    			}
     			ITranslatorProvider translatorProvider = TranslatorBuilder.getTranslatorProvider(inputFile, targetFolder.getAbsolutePath(), outputFormat);
     			IDataSink dataSink = DataSinkFactory.getDataSink();
     			if (translatorProvider != null) {
-    				parser = ParserBuilder.getMultiTileParser(inputFile, translatorProvider, dataSink);
+    				preprocessParser = ParserBuilder.getPreprocessParser(inputFile, translatorProvider, dataSink);
+    				if (dirtyTiles != null) {
+    					for (Point2D tile : dirtyTiles) {
+    						translatorProvider.discardTileOutput(tile);
+    					}
+    					parser = ParserBuilder.getTilesParser(inputFile, translatorProvider, dataSink, dirtyTiles);
+    				} else if (commandLine.hasOption(TILE_STATE)) {
+    					stateRecorder = new TileStateRecorder();
+    					parser = ParserBuilder.getMultiTileParser(inputFile, translatorProvider, dataSink, stateRecorder);
+    				} else {
+    					parser = ParserBuilder.getMultiTileParser(inputFile, translatorProvider, dataSink);
+    				}
+    			} else if (dirtyTiles != null) {
+    				System.out.println("Incremental generation isn't supported for output format " + outputFormat);
+    				return;
     			}
     			if (parser == null) {
 					ITranslator translator = TranslatorBuilder.getTranslator(inputFile, null, targetFolder.getAbsolutePath(), outputFormat);
@@ -146,16 +241,32 @@ public class App
 					}
     			}
     			StatsProvider.reinit();
+    			if (parser instanceof IVisitingParser) {
+    				ParserBuilder.prescanRelations(inputFile, preprocessParser, (IVisitingParser) parser);
+    			}
+    			if (preprocessParser != null) {
+    				preprocessParser.process();
+    			}
     			
     			parser.process();
-    			if (parser instanceof IVisitingParser && ((IVisitingParser) parser).getVisitor() instanceof MultiTileDataConverter) {
-    				System.out.println("Finished generation of " +  ((AbstractTileDataConverter) ((IVisitingParser) parser).getVisitor()).getTilesCount() + " tiles, target folder " + sceneryName);
+    			if (tileState != null) {
+    				tileState.apply(change);
+    				tileState.save(stateFile);
+    			} else if (stateRecorder != null && stateRecorder.getState() != null) {
+    				stateRecorder.getState().save(stateFile);
+    			}
+    			AbstractTileDataConverter tileConverter = parser instanceof IVisitingParser ? ParserBuilder.getTileConverter((IVisitingParser) parser) : null;
+    			if (tileConverter instanceof MultiTileDataConverter) {
+    				System.out.println("Finished generation of " +  tileConverter.getTilesCount() + " tiles, target folder " + sceneryName);
     			} else {
     				System.out.println("Generation finished, target folder " + sceneryName);
     			}
+    			if (!ProcessExecutor.getExecutor().awaitCompletion()) {
+    				System.out.println("Some of external conversion tasks failed, please check the log for details");
+    			}
     			ProcessExecutor.getExecutor().shutdown();
     			System.out.println("Generation took " + formatTimeDelta(System.currentTimeMillis() - t1));
-    		} catch (DataSinkException e) {
+    		} catch (DataSinkException | Osm2xpBusinessException | IOException e) {
     			e.printStackTrace();
     		}
 		}
@@ -184,6 +295,9 @@ public class App
 				System.out.println("No facade sets configured, will use default: " + defaultFacadeSets);
 				XPlaneOptionsProvider.getOptions().setFacadeSets(defaultFacadeSets);
 			}
+			if (commandLine.hasOption(DSF_TOOL)) {
+				XPlaneOptionsProvider.getOptions().setUseDsfTool(true);
+			}
 		}
 		
 		return true;
@@ -200,6 +314,19 @@ public class App
 		options.addOption(facadeSetsOption);
 //		options.addOption( "o", "options", true, "Generation options file for given mode. Will use default if it's not specified");
 		options.addOption( "d", DBMODE, false, "Use database mode - will store some data during generation on disk, which allows to process larger input files");
+		options.addOption( "t", PARSER_THREADS, true, "Number of threads used for PBF input file decoding, 0 to use all available processors (default)");
+		options.addOption( "p", PARALLEL_TILES, false, "Translate each detected tile on it's own thread. Speeds up generation for multi-tile inputs");
+		options.addOption( "n", PRESCAN, false, "Do fast node-only pre-scan of PBF input to detect tiles in advance. Prints node count for each tile");
+		options.addOption( "r", RELATION_PRESCAN, false, "Do relation-only pre-scan of input to store node lists only for ways used by multipolygon relations. Reduces memory consumption");
+		options.addOption( "a", AREA_CACHE, false, "Cache landuse areas found by preprocessing next to the input file and reuse them on subsequent runs instead of preprocessing input again");
+		options.addOption( "b", BLOCK_INDEX, false, "Build block index for PBF input file and decode only blocks needed for tiles being regenerated with --" + UPDATE + " option");
+		options.addOption( "k", NODE_SNAPSHOT, false, "Save stored nodes and ways next to the input file and map them on subsequent runs on the same unchanged file instead of storing them again");
+		options.addOption( "o", NODE_STORE_FOLDER, true, "Folder for memory-mapped node store files used for large inputs. Input file folder is used by default");
+		options.addOption( "e", SEED, true, "Seed for random choices like facade or object selection, 0 by default. Same input and seed always give identical output");
+		options.addOption( "i", TILE_STATE, false, "Record tiles occupied by input elements into target folder, so it can be updated later with --" + UPDATE + " option");
+		options.addOption( "u", UPDATE, true, "OSM change file (.osc or .osc.gz) with changes made to input since previous run. Only tiles affected by these changes "
+				+ "would be regenerated in existing target folder. Previous run should be done with --" + TILE_STATE + " option. Input file should be the updated one");
+		options.addOption( "x", DSF_TOOL, false, "Write DSF files as text and pack them with external DSFTool instead of writing binary DSF directly");
 		options.addOption( "h", HELP, false, "Print this information message");
 		return options;
 	}
@@ -2,16 +2,29 @@ package com.osm2xp.console;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.ArrayUtils;
 import org.junit.Test;
 
 import com.google.common.io.Files;
+import com.osm2xp.generation.options.XPlaneOptionsProvider;
+import com.osm2xp.model.facades.FacadeSetManager;
 import com.osm2xp.stats.StatsProvider;
+import com.osm2xp.writers.impl.DsfReader;
+import com.osm2xp.writers.impl.DsfReader.DsfObject;
+import com.osm2xp.writers.impl.DsfReader.DsfPolygon;
 
 import junit.framework.TestCase;
 
@@ -19,8 +32,35 @@ public class ConsoleAppIntegrationTest extends TestCase {
 	
 	private static final String TESTSCENERY_NAME = "testscenery";
 
+	/**
+	 * Generation with DSFTool option - DSF is written as text. DSFTool itself isn't available in test environment, so text file is checked
+	 */
 	@Test
 	public void testGeneration() throws Exception {
+		File targetDir;
+		try {
+			targetDir = generate("-x");
+		} finally {
+			// Options are shared, so reset DSFTool usage for other generation tests
+			XPlaneOptionsProvider.getOptions().setUseDsfTool(false);
+		}
+		File dsfFile = new File(targetDir, "Earth nav data/+50+080/+52+080.dsf.txt");
+		checkDsf(dsfFile);
+		//TODO check result folder structure and file contents
+	}
+
+	/**
+	 * Generation with native binary DSF writer
+	 */
+	@Test
+	public void testBinaryGeneration() throws Exception {
+		File targetDir = generate();
+		File dsfFile = new File(targetDir, "Earth nav data/+50+080/+52+080.dsf");
+		checkDsfStructure(dsfFile);
+		checkBinaryDsf(dsfFile);
+	}
+
+	private File generate(String... extraArgs) throws Exception {
 		File basicFolder = new File(new File("").getAbsolutePath()); 
 		while (basicFolder != null && !isTestRootFolder(basicFolder)) {
 			basicFolder = basicFolder.getParentFile();
@@ -31,6 +71,7 @@ public class ConsoleAppIntegrationTest extends TestCase {
 		File targetDir = new File(basicFolder,TESTSCENERY_NAME);
 		FileUtils.deleteDirectory(targetDir);
 		StatsProvider.reinit();
+		FacadeSetManager.clearCache(); // Otherwise facades aren't copied into recreated target folder
 		List<String> argList = new ArrayList<String>();
 		argList.add(new File(basicFolder, "volchikha.osm.pbf").getAbsolutePath());
 		argList.add("-m");
@@ -39,6 +80,7 @@ public class ConsoleAppIntegrationTest extends TestCase {
 		argList.add(basicFolder.getAbsolutePath());
 		argList.add("-s");
 		argList.add(TESTSCENERY_NAME);
+		argList.addAll(Arrays.asList(extraArgs));
 		com.osm2xp.console.App.main(argList.toArray(new String[0]));
 		assertTrue(targetDir.isDirectory());
 		String[] subdirs = targetDir.list();
@@ -48,9 +90,7 @@ public class ConsoleAppIntegrationTest extends TestCase {
 		assertTrue(ArrayUtils.contains(subdirs, "specobjects"));
 		File aptFile = new File(targetDir, "Earth nav data/apt.dat");
 		checkApt(aptFile);
-		File dsfFile = new File(targetDir, "Earth nav data/+50+080/+52+080.dsf.txt");
-		checkDsf(dsfFile);
-		//TODO check result folder structure and file contents
+		return targetDir;
 	}
 
 	private void checkApt(File aptFile) throws IOException {
@@ -114,6 +154,117 @@ public class ConsoleAppIntegrationTest extends TestCase {
 		assertEquals(0, stack);
 	}
 
+	/**
+	 * Check binary DSF file structure against DSF specification, without using encoder or {@link DsfReader}: 
+	 * file header, MD5 footer and atom lengths, which should exactly fill the file and parent atoms
+	 */
+	private void checkDsfStructure(File dsfFile) throws Exception {
+		byte[] data = java.nio.file.Files.readAllBytes(dsfFile.toPath());
+		assertTrue(data.length > 12 + 16);
+		assertEquals("XPLNEDSF", new String(data, 0, 8, StandardCharsets.US_ASCII));
+		ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+		assertEquals("DSF master version", 1, buffer.getInt(8));
+		MessageDigest md5 = MessageDigest.getInstance("MD5");
+		md5.update(data, 0, data.length - 16);
+		assertTrue("MD5 footer should match file contents", Arrays.equals(md5.digest(), Arrays.copyOfRange(data, data.length - 16, data.length)));
+		Map<String, byte[]> atoms = readAtoms(data, 12, data.length - 16);
+		assertEquals(new HashSet<>(Arrays.asList("HEAD", "DEFN", "GEOD", "CMDS")), atoms.keySet());
+		Map<String, byte[]> head = readAtoms(atoms.get("HEAD"), 0, atoms.get("HEAD").length);
+		byte[] properties = head.get("PROP");
+		assertNotNull(properties);
+		assertEquals("Properties should be name/value pairs of null-terminated strings", 0, countStrings(properties) % 2);
+		Map<String, byte[]> defn = readAtoms(atoms.get("DEFN"), 0, atoms.get("DEFN").length);
+		assertTrue(defn.keySet().containsAll(Arrays.asList("TERT", "OBJT", "POLY", "NETW")));
+		assertEquals(26, countStrings(defn.get("POLY")));
+		assertEquals(6, countStrings(defn.get("OBJT")));
+		// Each point pool should be followed by it's scaling atom, with scale and offset for each plane
+		byte[] geod = atoms.get("GEOD");
+		ByteBuffer geodBuffer = ByteBuffer.wrap(geod).order(ByteOrder.LITTLE_ENDIAN);
+		int pools = 0;
+		while (geodBuffer.hasRemaining()) {
+			String id = atomName(geodBuffer.getInt());
+			int length = geodBuffer.getInt();
+			assertTrue(id, "POOL".equals(id) || "PO32".equals(id));
+			int planes = geod[geodBuffer.position() + 4];
+			geodBuffer.position(geodBuffer.position() + length - 8);
+			String scalingId = atomName(geodBuffer.getInt());
+			assertEquals("POOL".equals(id) ? "SCAL" : "SC32", scalingId);
+			assertEquals(8 + planes * 8, geodBuffer.getInt());
+			geodBuffer.position(geodBuffer.position() + planes * 8);
+			pools++;
+		}
+		assertTrue(pools > 0);
+		assertTrue(atoms.get("CMDS").length > 0);
+	}
+
+	/**
+	 * Read atoms from given range, checking their lengths fill it exactly
+	 * @return atom contents by atom id
+	 */
+	private Map<String, byte[]> readAtoms(byte[] data, int start, int end) {
+		Map<String, byte[]> result = new HashMap<>();
+		ByteBuffer buffer = ByteBuffer.wrap(data, start, end - start).order(ByteOrder.LITTLE_ENDIAN);
+		while (buffer.hasRemaining()) {
+			assertTrue("Truncated atom header", buffer.remaining() >= 8);
+			String id = atomName(buffer.getInt());
+			int length = buffer.getInt();
+			assertTrue("Atom " + id + " length " + length + " is out of range", length >= 8 && length - 8 <= buffer.remaining());
+			byte[] content = new byte[length - 8];
+			buffer.get(content);
+			result.put(id, content);
+		}
+		return result;
+	}
+
+	/**
+	 * Atom id is 4 chars packed into little-endian int, e.g. "HEAD" is stored as bytes 'D', 'A', 'E', 'H'
+	 */
+	private static String atomName(int id) {
+		return new String(new char[] { (char) (id >>> 24), (char) ((id >>> 16) & 0xFF), (char) ((id >>> 8) & 0xFF), (char) (id & 0xFF) });
+	}
+
+	private static int countStrings(byte[] table) {
+		int count = 0;
+		for (byte b : table) {
+			if (b == 0) {
+				count++;
+			}
+		}
+		assertTrue("String table should end with null", table.length == 0 || table[table.length - 1] == 0);
+		return count;
+	}
+
+	private void checkBinaryDsf(File dsfFile) throws IOException {
+		assertTrue(dsfFile.isFile());
+		DsfReader dsf = DsfReader.read(dsfFile);
+		assertEquals("earth", dsf.getProperty("sim/planet"));
+		assertEquals("1", dsf.getProperty("sim/overlay"));
+		assertEquals("1/0", dsf.getProperty("sim/require_object"));
+		assertEquals("3/0", dsf.getProperty("sim/require_facade"));
+		assertEquals("80.327000000/52.017000000/80.348000000/52.034000000", dsf.getProperty("sim/exclude_obj"));
+		assertEquals("80.327000000/52.017000000/80.348000000/52.034000000", dsf.getProperty("sim/exclude_for"));
+		assertEquals("80", dsf.getProperty("sim/west"));
+		assertEquals("81", dsf.getProperty("sim/east"));
+		assertEquals("53", dsf.getProperty("sim/north"));
+		assertEquals("52", dsf.getProperty("sim/south"));
+		assertTrue(dsf.getNetworkDefs().contains("lib/g10/roads.net"));
+		
+		//Basic structure check is below
+		boolean hasWindings = false;
+		for (DsfPolygon polygon : dsf.getPolygons()) {
+			assertTrue(polygon.definition < dsf.getPolygonDefs().size());
+			hasWindings |= !polygon.windings.isEmpty();
+		}
+		for (DsfObject object : dsf.getObjects()) {
+			assertTrue(object.definition < dsf.getObjectDefs().size());
+		}
+		assertTrue(hasWindings);
+		assertFalse(dsf.getSegments().isEmpty());
+		assertFalse(dsf.getObjects().isEmpty());
+		assertEquals(26, dsf.getPolygonDefs().size());
+		assertEquals(6, dsf.getObjectDefs().size());
+	}
+
 	private boolean isTestRootFolder(File basicFolder) {
 		return new File(basicFolder.getAbsolutePath(),"testdata").isDirectory();
 	}
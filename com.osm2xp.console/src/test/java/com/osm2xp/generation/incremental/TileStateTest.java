@@ -0,0 +1,191 @@
+package com.osm2xp.generation.incremental;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.osm2xp.core.exceptions.Osm2xpBusinessException;
+import com.osm2xp.core.model.osm.Member;
+import com.osm2xp.core.model.osm.Nd;
+import com.osm2xp.core.model.osm.Relation;
+import com.osm2xp.core.model.osm.Tag;
+import com.osm2xp.core.model.osm.Way;
+
+import gnu.trove.set.hash.TLongHashSet;
+import math.geom2d.Point2D;
+
+/**
+ * Checks tiles {@link TileState} marks as dirty for node changes - tiles of ways and multipolygon relations containing changed nodes
+ * should be regenerated along with node tiles themselves
+ *
+ * @author 32kda
+ *
+ */
+public class TileStateTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testNodeMoveMarksWayTiles() throws Exception {
+		TileStateRecorder recorder = new TileStateRecorder();
+		recorder.visitUntagged(1, 80.5, 52.5);
+		recorder.visitUntagged(2, 81.5, 52.5);
+		recorder.visitUntagged(3, 85.5, 52.5);
+		recorder.visit(createWay(10, 1, 2));
+		recorder.complete();
+		// Node 2 is moved inside it's tile, but way segment 1-2 is changed in both tiles
+		List<Point2D> dirty = recorder.getState().getDirtyTiles(readChange(node(2, 81.6, 52.6)));
+		assertEquals(tiles(80, 52, 81, 52), dirty);
+	}
+
+	@Test
+	public void testGeometryTiles() throws Exception {
+		TileStateRecorder recorder = new TileStateRecorder();
+		recorder.visitUntagged(1, 80.5, 52.5);
+		recorder.visitUntagged(2, 82.5, 52.5);
+		recorder.visitUntagged(3, 90.5, 50.5);
+		recorder.visitUntagged(4, 92.5, 50.5);
+		recorder.visitUntagged(5, 92.5, 52.5);
+		// Segment 1-2 crosses tile without way nodes
+		recorder.wayTile(10, 80, 52);
+		recorder.wayTile(10, 81, 52);
+		recorder.wayTile(10, 82, 52);
+		recorder.visit(createWay(10, 1, 2));
+		recorder.visit(createWay(11, 3, 4, 5, 3));
+		// Multipolygon geometry crosses tile (91, 51), having no member way nodes inside
+		recorder.relationTile(100, 91, 51);
+		recorder.visit(createMultipolygon(100, 11));
+		recorder.complete();
+		TileState state = recorder.getState();
+		List<Point2D> dirty = state.getDirtyTiles(readChange(node(1, 80.6, 52.6)));
+		assertEquals(tiles(80, 52, 81, 52, 82, 52), dirty);
+		dirty = state.getDirtyTiles(readChange(node(4, 92.6, 50.6)));
+		for (int x = 90; x <= 92; x++) {
+			for (int y = 50; y <= 52; y++) {
+				assertTrue("Tile " + x + ", " + y + " should be dirty", dirty.contains(new Point2D(x, y)));
+			}
+		}
+	}
+
+	@Test
+	public void testApplyRecomputesWayTiles() throws Exception {
+		TileStateRecorder recorder = new TileStateRecorder();
+		recorder.visitUntagged(1, 80.5, 52.5);
+		recorder.visitUntagged(2, 81.5, 52.5);
+		recorder.visit(createWay(10, 1, 2));
+		recorder.complete();
+		TileState state = recorder.getState();
+		state.apply(readChange(node(2, 83.5, 52.5)));
+		File stateFile = folder.newFile();
+		state.save(stateFile);
+		state = TileState.load(stateFile);
+		// Way 10 now spans tiles 80 - 83, though only node 2 was changed last time
+		List<Point2D> dirty = state.getDirtyTiles(readChange(node(1, 80.6, 52.6)));
+		assertEquals(tiles(80, 52, 81, 52, 82, 52, 83, 52), dirty);
+	}
+
+	/**
+	 * Way node lists should be stored packed - close node ids take 1-2 bytes instead of 8
+	 */
+	@Test
+	public void testStateSize() throws Exception {
+		int wayCount = 10000;
+		int wayLength = 10;
+		long firstNodeId = 10_000_000_000L;
+		TileStateRecorder recorder = new TileStateRecorder();
+		for (int i = 0; i < wayCount * wayLength; i++) {
+			recorder.visitUntagged(firstNodeId + i, 80.5, 52.5);
+		}
+		for (int i = 0; i < wayCount; i++) {
+			long[] nodeIds = new long[wayLength];
+			for (int j = 0; j < wayLength; j++) {
+				nodeIds[j] = firstNodeId + i * wayLength + j;
+			}
+			recorder.visit(createWay(1_000_000_000L + i, nodeIds));
+		}
+		recorder.complete();
+		File stateFile = folder.newFile();
+		recorder.getState().save(stateFile);
+		long nodeRefs = (long) wayCount * wayLength;
+		assertTrue("State takes " + stateFile.length() + " bytes for " + nodeRefs + " way nodes", stateFile.length() < nodeRefs * 3);
+		// Node changes are still propagated after load
+		TileState state = TileState.load(stateFile);
+		List<Point2D> dirty = state.getDirtyTiles(readChange(node(firstNodeId + 5, 81.5, 52.5)));
+		assertEquals(tiles(80, 52, 81, 52), dirty);
+	}
+
+	@Test
+	public void testPackedIds() {
+		Random random = new Random(1);
+		for (int n = 0; n < 1000; n++) {
+			long[] ids = new long[random.nextInt(20)];
+			for (int i = 0; i < ids.length; i++) {
+				ids[i] = n % 2 == 0 ? random.nextLong() : random.nextInt(1000) - 500;
+			}
+			if (n == 0) {
+				ids = new long[] { Long.MIN_VALUE, Long.MAX_VALUE, 0, -1, Long.MIN_VALUE };
+			}
+			byte[] packed = PackedIds.pack(ids);
+			assertArrayEquals(ids, PackedIds.unpack(packed));
+			for (long id : ids) {
+				assertTrue(PackedIds.containsAny(packed, new TLongHashSet(new long[] { id })));
+			}
+		}
+		assertFalse(PackedIds.containsAny(PackedIds.pack(new long[] { 1, 2, 3 }), new TLongHashSet(new long[] { 4 })));
+	}
+
+	private OsmChange readChange(String... elements) throws IOException, Osm2xpBusinessException {
+		StringBuilder builder = new StringBuilder("<osmChange version=\"0.6\">\n<modify>\n");
+		for (String element : elements) {
+			builder.append(element).append('\n');
+		}
+		builder.append("</modify>\n</osmChange>\n");
+		File changeFile = folder.newFile("change" + System.nanoTime() + ".osc");
+		Files.write(changeFile.toPath(), builder.toString().getBytes(StandardCharsets.UTF_8));
+		return OsmChange.read(changeFile);
+	}
+
+	private static String node(long id, double lon, double lat) {
+		return "<node id=\"" + id + "\" lon=\"" + lon + "\" lat=\"" + lat + "\"/>";
+	}
+
+	private static Way createWay(long id, long... nodeIds) {
+		List<Nd> nodes = new ArrayList<>();
+		for (long nodeId : nodeIds) {
+			nodes.add(new Nd(nodeId));
+		}
+		return new Way(new ArrayList<>(), nodes, id);
+	}
+
+	private static Relation createMultipolygon(long id, long... wayIds) {
+		List<Member> members = new ArrayList<>();
+		for (long wayId : wayIds) {
+			members.add(new Member(wayId, "way", null, "outer"));
+		}
+		return new Relation(new ArrayList<>(Collections.singletonList(new Tag("type", "multipolygon"))), members, id);
+	}
+
+	private static List<Point2D> tiles(int... coords) {
+		List<Point2D> result = new ArrayList<>();
+		for (int i = 0; i < coords.length; i += 2) {
+			result.add(new Point2D(coords[i], coords[i + 1]));
+		}
+		return result;
+	}
+
+}
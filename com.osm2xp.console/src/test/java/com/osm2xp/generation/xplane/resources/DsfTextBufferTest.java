@@ -0,0 +1,64 @@
+package com.osm2xp.generation.xplane.resources;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * {@link DsfTextBuffer#appendFixed(double, int)} output should be identical to <code>String.format(Locale.ROOT, "%.Nf", value)</code>,
+ * which was used for DSF text before
+ *
+ * @author 32kda
+ *
+ */
+public class DsfTextBufferTest {
+
+	private static final int MAX_DECIMALS = 12;
+
+	@Test
+	public void testSpecialValues() {
+		double[] values = { 0.0, -0.0, -0.0001, -0.0004, 0.5, 1.5, 2.5, -2.5, 0.125, 2.675, 1.0005, -1.0005, 1e-10,
+				0.99999995, 0.9999999995, 9.9999999995, 99.99999999995, -0.99999995, 179.9999999995, -179.9999999995,
+				80.3357702, 52.0198865, 123456.7890125, 1e15, -1e15, 1e20, Double.MAX_VALUE, Double.MIN_VALUE,
+				Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY };
+		DsfTextBuffer buffer = new DsfTextBuffer(16);
+		for (double value : values) {
+			for (int decimals = 0; decimals <= MAX_DECIMALS; decimals++) {
+				checkFormat(buffer, value, decimals);
+			}
+		}
+	}
+
+	@Test
+	public void testCoordinates() {
+		Random random = new Random(1);
+		DsfTextBuffer buffer = new DsfTextBuffer();
+		for (int i = 0; i < 200_000; i++) {
+			int decimals = random.nextInt(MAX_DECIMALS + 1);
+			double value = (random.nextDouble() - 0.5) * 360;
+			if (i % 2 == 0) {
+				// Values having decimal representation with 5 right after the last printed digit
+				double factor = Math.pow(10, decimals + 1);
+				value = (Math.floor(value * factor / 10) * 10 + 5) / factor;
+			}
+			checkFormat(buffer, value, decimals);
+		}
+	}
+
+	@Test
+	public void testAppendToCommand() {
+		DsfTextBuffer buffer = new DsfTextBuffer(4);
+		buffer.append("OBJECT ").append(3).append(' ').appendFixed(-80.5, 9).append(' ').appendFixed(52.25, 9).append(' ').appendFixed(-0.0, 2);
+		assertEquals("OBJECT 3 -80.500000000 52.250000000 -0.00", buffer.toString());
+		assertEquals("-9223372036854775808", buffer.clear().append(Long.MIN_VALUE).toString());
+	}
+
+	private static void checkFormat(DsfTextBuffer buffer, double value, int decimals) {
+		String expected = String.format(Locale.ROOT, "%." + decimals + "f", value);
+		assertEquals(value + ", " + decimals + " decimals", expected, buffer.clear().appendFixed(value, decimals).toString());
+	}
+
+}
@@ -0,0 +1,125 @@
+package com.osm2xp.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+/**
+ * Compares {@link IntIndexStorage} with {@link HashMap} for ids added out of order - unsorted, negative, less than base id or
+ * replacing existing items, both before and after segments were published
+ *
+ * @author 32kda
+ *
+ */
+public class IntIndexStorageTest {
+
+	/**
+	 * Ids span several index segments in both directions from the first added one
+	 */
+	private static final int ID_RANGE = 400_000;
+	private static final int BATCH_SIZE = 50_000;
+
+	@Test
+	public void testOutOfOrder() throws Exception {
+		Random random = new Random(1);
+		IntIndexStorage<Long> storage = new IntIndexStorage<>();
+		Map<Long, Long> reference = new HashMap<>();
+		addSorted(storage, reference, 0, ID_RANGE, 7);
+		addRandom(storage, reference, random, BATCH_SIZE);
+		check(storage, reference, random);
+		storage.seal();
+		check(storage, reference, random);
+		addRandom(storage, reference, random, BATCH_SIZE);
+		addSorted(storage, reference, ID_RANGE, 2 * ID_RANGE, 5);
+		addRandom(storage, reference, random, BATCH_SIZE);
+		storage.seal();
+		check(storage, reference, random);
+		checkForEach(storage, reference);
+	}
+
+	@Test
+	public void testOutOfOrderAfterPublication() throws Exception {
+		Random random = new Random(2);
+		IntIndexStorage<Long> storage = new IntIndexStorage<>(true);
+		Map<Long, Long> reference = new HashMap<>();
+		ExecutorService reader = Executors.newSingleThreadExecutor();
+		try {
+			addSorted(storage, reference, 0, ID_RANGE, 3);
+			storage.seal();
+			Map<Long, Long> published = new HashMap<>(reference);
+			reader.submit(() -> check(storage, published, new Random(3))).get();
+			// Ids less than base id move it back, items are added to sealed segments and between them
+			addRandom(storage, reference, random, BATCH_SIZE);
+			addSorted(storage, reference, 2 * ID_RANGE, 3 * ID_RANGE, 11);
+			check(storage, reference, random);
+			// Other threads still see published items unchanged until next seal
+			reader.submit(() -> {
+				for (Map.Entry<Long, Long> entry : published.entrySet()) {
+					assertEquals("Published item " + entry.getKey(), entry.getValue(), storage.get(entry.getKey()));
+				}
+			}).get();
+			storage.seal();
+			reader.submit(() -> check(storage, reference, new Random(4))).get();
+			addRandom(storage, reference, random, BATCH_SIZE);
+			storage.seal();
+			reader.submit(() -> check(storage, reference, new Random(5))).get();
+			checkForEach(storage, reference);
+		} finally {
+			reader.shutdownNow();
+		}
+	}
+
+	private static void addSorted(IntIndexStorage<Long> storage, Map<Long, Long> reference, long from, long to, int step) {
+		for (long id = from; id < to; id += step) {
+			add(storage, reference, id, id);
+		}
+	}
+
+	/**
+	 * Add random ids from the whole range, including negative ones. Some of them replace existing items
+	 */
+	private static void addRandom(IntIndexStorage<Long> storage, Map<Long, Long> reference, Random random, int count) {
+		for (int i = 0; i < count; i++) {
+			long id = random.nextInt(4 * ID_RANGE) - 2 * ID_RANGE;
+			add(storage, reference, id, random.nextLong());
+		}
+	}
+
+	private static void add(IntIndexStorage<Long> storage, Map<Long, Long> reference, long id, long value) {
+		storage.add(id, value);
+		reference.put(id, value);
+	}
+
+	private static void check(IntIndexStorage<Long> storage, Map<Long, Long> reference, Random random) {
+		for (Map.Entry<Long, Long> entry : reference.entrySet()) {
+			assertEquals("Item " + entry.getKey(), entry.getValue(), storage.get(entry.getKey()));
+		}
+		for (int i = 0; i < 10_000; i++) {
+			long id = random.nextInt(8 * ID_RANGE) - 4 * ID_RANGE;
+			if (!reference.containsKey(id)) {
+				assertNull("Missing item " + id, storage.get(id));
+			}
+		}
+	}
+
+	private static void checkForEach(IntIndexStorage<Long> storage, Map<Long, Long> reference) throws Exception {
+		assertEquals(reference.size(), storage.size());
+		List<Long> ids = new ArrayList<>();
+		storage.forEach((id, item) -> {
+			ids.add(id);
+			assertEquals("Item " + id, reference.get(id), item);
+		});
+		assertEquals(new ArrayList<>(new TreeMap<>(reference).keySet()), ids);
+	}
+
+}
@@ -0,0 +1,96 @@
+package com.osm2xp.index;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * JMH throughput comparison of {@link PointIndexStorage} in plain and concurrent reads mode - filling the storage and resolving point coordinates.
+ * Not run as part of the build, run with JMH runner, e.g. <code>org.openjdk.jmh.Main PointIndexStorageBenchmark</code> on test classpath
+ *
+ * @author 32kda
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class PointIndexStorageBenchmark {
+
+	private static final long BASE_ID = 1_000_000_000L;
+	private static final int POINT_COUNT = 5_000_000;
+	private static final int LOOKUP_BATCH = 256;
+
+	@Param({ "false", "true" })
+	public boolean concurrentReads;
+
+	private PointIndexStorage storage;
+	private long[][] lookupIds;
+	private double[] outXY = new double[LOOKUP_BATCH * 2];
+	private int batch;
+
+	@Setup
+	public void setUp() {
+		storage = fill(concurrentReads);
+		Random random = new Random(42);
+		lookupIds = new long[64][LOOKUP_BATCH];
+		for (long[] ids : lookupIds) {
+			for (int i = 0; i < ids.length; i++) {
+				ids[i] = BASE_ID + 2L * random.nextInt(POINT_COUNT);
+			}
+		}
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MINUTES)
+	public PointIndexStorage fillStorage() {
+		return fill(concurrentReads);
+	}
+
+	/**
+	 * @return resolved points count for one batch of {@link #LOOKUP_BATCH} random ids
+	 */
+	@Benchmark
+	public int resolveCoordinates() {
+		long[] ids = lookupIds[batch++ & (lookupIds.length - 1)];
+		return storage.resolveCoordinates(ids, outXY);
+	}
+
+	@Benchmark
+	public void getPoint(Blackhole blackhole) {
+		long[] ids = lookupIds[batch++ & (lookupIds.length - 1)];
+		for (long id : ids) {
+			blackhole.consume(storage.get(id));
+		}
+	}
+
+	private static PointIndexStorage fill(boolean concurrentReads) {
+		PointIndexStorage storage = new PointIndexStorage(concurrentReads) {
+
+			@Override
+			protected AbstractPointCoordsIndex createIndex() {
+				return new PointCoordsIndex();
+			}
+		};
+		for (int i = 0; i < POINT_COUNT; i++) {
+			storage.add(BASE_ID + 2L * i, 80 + i % 10000 / 10000.0, 52 + i / 1000 % 10000 / 10000.0);
+		}
+		storage.seal();
+		return storage;
+	}
+
+}
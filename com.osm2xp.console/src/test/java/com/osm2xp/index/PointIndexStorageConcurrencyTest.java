@@ -0,0 +1,128 @@
+package com.osm2xp.index;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+/**
+ * One writer and several reader threads on {@link PointIndexStorage} in concurrent reads mode. Readers must never get wrong coordinates,
+ * and must see all the points from segments writer has already moved past
+ *
+ * @author 32kda
+ *
+ */
+public class PointIndexStorageConcurrencyTest {
+
+	private static final long BASE_ID = 1_000_000_000L;
+	/**
+	 * Only each 3rd id is added, so readers also query ids, which should be missing
+	 */
+	private static final int ID_STEP = 3;
+	private static final int POINT_COUNT = 2_000_000;
+	private static final int READER_COUNT = 4;
+	private static final double EPS = 1e-6;
+
+	@Test
+	public void testOneWriterManyReaders() throws Exception {
+		PointIndexStorage storage = createStorage();
+		AtomicLong lastAdded = new AtomicLong(-1);
+		AtomicBoolean done = new AtomicBoolean();
+		ExecutorService readers = Executors.newFixedThreadPool(READER_COUNT);
+		List<Future<Long>> results = new ArrayList<>();
+		for (int i = 0; i < READER_COUNT; i++) {
+			results.add(readers.submit(() -> readWhileWriting(storage, lastAdded, done)));
+		}
+		try {
+			for (int i = 0; i < POINT_COUNT; i++) {
+				long id = BASE_ID + (long) i * ID_STEP;
+				storage.add(id, lon(id), lat(id));
+				lastAdded.set(id);
+			}
+			storage.seal();
+			// After seal() all the points should be visible to other threads. Readers are busy, so check is done on separate thread
+			ExecutorService checker = Executors.newSingleThreadExecutor();
+			Future<?> check = checker.submit(() -> {
+				for (int i = 0; i < POINT_COUNT; i += 997) {
+					long id = BASE_ID + (long) i * ID_STEP;
+					assertArrayEquals("Point " + id + " after seal", new double[] { lon(id), lat(id) }, storage.get(id), EPS);
+				}
+			});
+			checker.shutdown();
+			check.get(1, TimeUnit.MINUTES);
+		} finally {
+			done.set(true);
+			readers.shutdown();
+		}
+		for (Future<Long> result : results) {
+			result.get(1, TimeUnit.MINUTES); // Rethrows reader assertion errors
+		}
+	}
+
+	private static long readWhileWriting(PointIndexStorage storage, AtomicLong lastAdded, AtomicBoolean done) {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		long[] ids = new long[16];
+		double[] xy = new double[ids.length * 2];
+		long lookups = 0;
+		while (!done.get()) {
+			long last = lastAdded.get();
+			if (last < 0) {
+				continue;
+			}
+			// Writer moved to segment, containing last added id, so all the previous segments are published
+			long publishedEnd = BASE_ID + (last - BASE_ID) / Character.MAX_VALUE * Character.MAX_VALUE;
+			for (int i = 0; i < ids.length; i++) {
+				ids[i] = BASE_ID + random.nextLong(last - BASE_ID + ID_STEP);
+			}
+			storage.resolveCoordinates(ids, xy);
+			for (int i = 0; i < ids.length; i++) {
+				long id = ids[i];
+				boolean stored = (id - BASE_ID) % ID_STEP == 0;
+				if (!stored) {
+					assertEquals("Missing point " + id, Double.NaN, xy[2 * i], 0);
+				} else if (id < publishedEnd || !Double.isNaN(xy[2 * i])) {
+					assertEquals("Point " + id + " lon", lon(id), xy[2 * i], EPS);
+					assertEquals("Point " + id + " lat", lat(id), xy[2 * i + 1], EPS);
+				}
+			}
+			long id = ids[0] - (ids[0] - BASE_ID) % ID_STEP;
+			if (id < publishedEnd) {
+				assertNotNull("Point " + id + " from published segment", storage.get(id));
+			}
+			assertNull(storage.get(id + 1));
+			lookups += ids.length + 2;
+		}
+		return lookups;
+	}
+
+	private static PointIndexStorage createStorage() {
+		return new PointIndexStorage(true) {
+
+			@Override
+			protected AbstractPointCoordsIndex createIndex() {
+				return new PointCoordsIndex();
+			}
+		};
+	}
+
+	private static double lon(long id) {
+		return 80 + (id * 7919 % 10000) / 10000.0;
+	}
+
+	private static double lat(long id) {
+		return 52 + (id * 104729 % 10000) / 10000.0;
+	}
+
+}
@@ -0,0 +1,94 @@
+package com.osm2xp.utils.geometry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH comparison of {@link RingBuilder} and sequential scan ring assembly on synthetic multipolygon relations - several rings,
+ * each one split into open member ways, randomly reversed and shuffled. Sequential scan works on boxed id lists, as it did before.
+ * Not run as part of the build, run with JMH runner, e.g. <code>org.openjdk.jmh.Main RingBuilderBenchmark</code> on test classpath
+ *
+ * @author 32kda
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class RingBuilderBenchmark {
+
+	@Param({ "10000" })
+	public int members;
+
+	@Param({ "3" })
+	public int rings;
+
+	private List<long[]> segments;
+
+	@Setup
+	public void setUp() {
+		segments = createRelation(new Random(2), members, rings);
+	}
+
+	@Benchmark
+	public List<long[]> ringBuilder() {
+		return RingBuilder.buildRings(segments);
+	}
+
+	@Benchmark
+	public List<List<Long>> sequentialScan() {
+		return RingBuilderTest.buildRingsSequentially(segments);
+	}
+
+	/**
+	 * Create relation members for given number of rings. Adjacent members share end nodes, last member of each ring ends with its first node
+	 */
+	static List<long[]> createRelation(Random random, int members, int rings) {
+		List<long[]> segments = new ArrayList<>();
+		long id = 1;
+		int perRing = members / rings;
+		for (int ring = 0; ring < rings; ring++) {
+			long first = id;
+			for (int i = 0; i < perRing; i++) {
+				long[] segment = new long[2 + random.nextInt(5)];
+				for (int j = 0; j < segment.length; j++) {
+					segment[j] = id++;
+				}
+				if (i == perRing - 1) {
+					segment[segment.length - 1] = first;
+				} else {
+					id--; // Next member starts with the last node of this one
+				}
+				if (random.nextBoolean()) {
+					for (int a = 0, b = segment.length - 1; a < b; a++, b--) {
+						long tmp = segment[a];
+						segment[a] = segment[b];
+						segment[b] = tmp;
+					}
+				}
+				segments.add(segment);
+			}
+			id++;
+		}
+		Collections.shuffle(segments, random);
+		return segments;
+	}
+
+}
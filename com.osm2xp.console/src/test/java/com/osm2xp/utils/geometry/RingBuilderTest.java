@@ -0,0 +1,139 @@
+package com.osm2xp.utils.geometry;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.google.common.primitives.Longs;
+
+/**
+ * Checks {@link RingBuilder} against sequential scan ring assembly, which was used by multipolygon relation processing before
+ *
+ * @author 32kda
+ *
+ */
+public class RingBuilderTest {
+
+	@Test
+	public void testClosedWays() {
+		List<long[]> segments = Arrays.asList(
+				new long[] { 10, 11, 12 },
+				new long[] { 1, 2, 3, 1 },
+				new long[] { 12, 13, 10 },
+				new long[] { 4, 5, 6, 4 });
+		List<long[]> rings = RingBuilder.buildRings(segments);
+		assertRings(segments, rings);
+		assertEquals(3, rings.size());
+		// Closed ways go first, in original order
+		assertArrayEquals(new long[] { 1, 2, 3, 1 }, rings.get(0));
+		assertArrayEquals(new long[] { 4, 5, 6, 4 }, rings.get(1));
+		assertArrayEquals(new long[] { 10, 11, 12, 13, 10 }, rings.get(2));
+	}
+
+	@Test
+	public void testReversedSegment() {
+		List<long[]> segments = Arrays.asList(
+				new long[] { 1, 2, 3 },
+				new long[] { 5, 4, 3 },
+				new long[] { 5, 6, 1 });
+		List<long[]> rings = RingBuilder.buildRings(segments);
+		assertRings(segments, rings);
+		assertEquals(1, rings.size());
+		assertArrayEquals(new long[] { 1, 2, 3, 4, 5, 6, 1 }, rings.get(0));
+		assertArrayEquals("Input segments should not be modified", new long[] { 5, 4, 3 }, segments.get(1));
+	}
+
+	@Test
+	public void testUnclosedChainDropped() {
+		List<long[]> segments = Arrays.asList(
+				new long[] { 1, 2, 3 },
+				new long[] { 7, 8, 9, 7 },
+				new long[] { 3, 4 });
+		List<long[]> rings = RingBuilder.buildRings(segments);
+		assertRings(segments, rings);
+		assertEquals(1, rings.size());
+		assertArrayEquals(new long[] { 7, 8, 9, 7 }, rings.get(0));
+	}
+
+	/**
+	 * Random small inputs with shared nodes, branches and open chains, where choice of the next segment matters
+	 */
+	@Test
+	public void testSameAsSequentialScan() {
+		Random random = new Random(1);
+		for (int n = 0; n < 3000; n++) {
+			List<long[]> segments = new ArrayList<>();
+			int count = 1 + random.nextInt(8);
+			for (int i = 0; i < count; i++) {
+				long[] segment = new long[1 + random.nextInt(4)];
+				for (int j = 0; j < segment.length; j++) {
+					segment[j] = random.nextInt(6);
+				}
+				segments.add(segment);
+			}
+			assertRings(segments, RingBuilder.buildRings(segments));
+		}
+	}
+
+	private static void assertRings(List<long[]> segments, List<long[]> rings) {
+		List<List<Long>> expected = buildRingsSequentially(segments);
+		assertEquals(expected.size(), rings.size());
+		for (int i = 0; i < rings.size(); i++) {
+			assertEquals(expected.get(i), Longs.asList(rings.get(i)));
+		}
+	}
+
+	/**
+	 * Reference implementation - for each ring end, scan all remaining segments for the one starting or ending with it
+	 */
+	static List<List<Long>> buildRingsSequentially(List<long[]> input) {
+		List<List<Long>> curves = new ArrayList<>();
+		for (long[] segment : input) {
+			curves.add(new ArrayList<>(Longs.asList(segment)));
+		}
+		List<List<Long>> result = new ArrayList<>();
+		for (Iterator<List<Long>> iterator = curves.iterator(); iterator.hasNext();) {
+			List<Long> curList = iterator.next();
+			if (curList.size() > 1 && curList.get(0).equals(curList.get(curList.size() - 1))) {
+				result.add(curList);
+				iterator.remove();
+			}
+		}
+		while (!curves.isEmpty()) {
+			List<Long> segment = curves.remove(0);
+			List<Long> current = new ArrayList<>();
+			while (segment != null) {
+				if (!current.isEmpty()) {
+					segment = segment.subList(1, segment.size());
+				}
+				current.addAll(segment);
+				segment = null;
+				Long lastNodeId = current.get(current.size() - 1);
+				for (int i = 0; i < curves.size(); i++) {
+					List<Long> curve = curves.get(i);
+					if (curve.get(0).equals(lastNodeId)) {
+						segment = curves.remove(i);
+						break;
+					} else if (curve.get(curve.size() - 1).equals(lastNodeId)) {
+						segment = curves.remove(i);
+						Collections.reverse(segment);
+						break;
+					}
+				}
+			}
+			if (current.get(0).equals(current.get(current.size() - 1))) {
+				result.add(current);
+			}
+		}
+		return result;
+	}
+
+}
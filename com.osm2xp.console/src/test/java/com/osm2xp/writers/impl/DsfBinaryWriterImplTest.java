@@ -0,0 +1,230 @@
+package com.osm2xp.writers.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.osm2xp.generation.xplane.resources.DsfHeader;
+import com.osm2xp.generation.xplane.resources.XPOutputFormat;
+import com.osm2xp.translators.xplane.XPPathSegment;
+import com.osm2xp.writers.impl.DsfReader.DsfObject;
+import com.osm2xp.writers.impl.DsfReader.DsfPolygon;
+import com.osm2xp.writers.impl.DsfReader.DsfSegment;
+
+import math.geom2d.Point2D;
+import math.geom2d.polygon.LinearRing2D;
+
+/**
+ * Encodes known tile contents with {@link DsfBinaryWriterImpl} and decodes resulting DSF with {@link DsfReader}
+ *
+ * @author 32kda
+ *
+ */
+public class DsfBinaryWriterImplTest {
+
+	/**
+	 * 16-bit pool precision for the coordinate ranges used below
+	 */
+	private static final double EPS = 1e-5;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		Point2D tile = new Point2D(80, 52);
+		DsfBinaryWriterImpl writer = new DsfBinaryWriterImpl(folder.getRoot().getAbsolutePath(), tile);
+		writer.setHeader(new DsfHeader()
+				.addProperty("sim/planet", "earth")
+				.addProperty("sim/west", "80")
+				.addProperty("sim/south", "52")
+				.addPolygonDef("forests/mixed.for")
+				.addPolygonDef("facades/simple.fac")
+				.addObjectDef("objects/tower.obj")
+				.addNetworkDef("lib/g10/roads.net"));
+		XPOutputFormat format = new XPOutputFormat(1, 3);
+
+		format.writeObject(writer, 0, 80.3357702, 52.0198865, 191.5);
+
+		LinearRing2D forest = new LinearRing2D(Arrays.asList(new Point2D(80.31, 52.01), new Point2D(80.32, 52.01),
+				new Point2D(80.32, 52.02), new Point2D(80.31, 52.02), new Point2D(80.31, 52.01)));
+		format.writePolygon(writer, forest, 0, 255);
+
+		writer.beginPolygon(1, 12);
+		writer.beginWinding();
+		writer.addPoint(80.4, 52.4);
+		writer.addPoint(80.41, 52.4);
+		writer.addPoint(80.41, 52.41);
+		writer.addPoint(80.4, 52.41);
+		writer.endWinding();
+		writer.beginWinding();
+		writer.addPoint(80.402, 52.402);
+		writer.addPoint(80.402, 52.408);
+		writer.addPoint(80.408, 52.408);
+		writer.endWinding();
+		writer.endPolygon();
+
+		XPPathSegment road = new XPPathSegment(42, 1, 2,
+				new Point2D[] { new Point2D(80.5, 52.5), new Point2D(80.505, 52.51), new Point2D(80.51, 52.52) });
+		road.setEndHeight(1);
+		format.writePath(writer, road);
+
+		writer.complete();
+
+		File dsfFile = new File(folder.getRoot(), "Earth nav data/+50+080/+52+080.dsf");
+		assertTrue(dsfFile.isFile());
+		DsfReader reader = DsfReader.read(dsfFile);
+
+		assertEquals("earth", reader.getProperty("sim/planet"));
+		assertEquals("80", reader.getProperty("sim/west"));
+		assertEquals(Arrays.asList("forests/mixed.for", "facades/simple.fac"), reader.getPolygonDefs());
+		assertEquals(Arrays.asList("objects/tower.obj"), reader.getObjectDefs());
+		assertEquals(Arrays.asList("lib/g10/roads.net"), reader.getNetworkDefs());
+
+		assertEquals(1, reader.getObjects().size());
+		DsfObject object = reader.getObjects().get(0);
+		assertEquals(0, object.definition);
+		assertEquals(80.3357702, object.lon, EPS);
+		assertEquals(52.0198865, object.lat, EPS);
+		assertEquals(191.5, object.heading, EPS);
+
+		assertEquals(2, reader.getPolygons().size());
+		DsfPolygon forestPoly = reader.getPolygons().get(0);
+		assertEquals(0, forestPoly.definition);
+		assertEquals(255, forestPoly.param);
+		assertEquals(1, forestPoly.windings.size());
+		// Closing point is dropped - DSF windings are implicitly closed
+		assertArrayEquals(new double[] { 80.31, 52.01, 80.32, 52.01, 80.32, 52.02, 80.31, 52.02 }, forestPoly.windings.get(0), EPS);
+
+		DsfPolygon facadePoly = reader.getPolygons().get(1);
+		assertEquals(1, facadePoly.definition);
+		assertEquals(12, facadePoly.param);
+		assertEquals(2, facadePoly.windings.size());
+		assertArrayEquals(new double[] { 80.4, 52.4, 80.41, 52.4, 80.41, 52.41, 80.4, 52.41 }, facadePoly.windings.get(0), EPS);
+		assertArrayEquals(new double[] { 80.402, 52.402, 80.402, 52.408, 80.408, 52.408 }, facadePoly.windings.get(1), EPS);
+
+		assertEquals(1, reader.getSegments().size());
+		DsfSegment segment = reader.getSegments().get(0);
+		assertEquals(0, segment.definition);
+		assertEquals(42, segment.subtype);
+		assertArrayEquals(new double[] { 80.5, 52.5, 0, 1, 80.505, 52.51, 0, 0, 80.51, 52.52, 1, 2 }, segment.points, EPS);
+	}
+
+	/**
+	 * Segment longer than max chain size should be written as several chains, sharing split point junctions
+	 */
+	@Test
+	public void testLongSegment() throws Exception {
+		int pointCount = 140000;
+		DsfBinaryWriterImpl writer = new DsfBinaryWriterImpl(folder.getRoot().getAbsolutePath(), new Point2D(80, 52));
+		writer.setHeader(new DsfHeader().addProperty("sim/planet", "earth").addNetworkDef("lib/g10/roads.net"));
+		writer.beginSegment(0, 4, 1, 80, 52.5, 0);
+		for (int i = 1; i < pointCount - 1; i++) {
+			writer.addShapePoint(80 + (double) i / pointCount, 52.5);
+		}
+		writer.endSegment(2, 81, 52.5, 0);
+		writer.complete();
+
+		DsfReader reader = DsfReader.read(new File(folder.getRoot(), "Earth nav data/+50+080/+52+080.dsf"));
+		assertEquals(3, reader.getSegments().size());
+		int total = 0;
+		double previousLon = -1;
+		double previousJunction = 1;
+		for (int i = 0; i < reader.getSegments().size(); i++) {
+			DsfSegment segment = reader.getSegments().get(i);
+			double[] points = segment.points;
+			int count = points.length / 4;
+			assertTrue(count <= 65535);
+			assertEquals(4, segment.subtype);
+			if (i > 0) {
+				assertEquals("Chain should start at previous chain end", previousLon, points[0], EPS);
+			}
+			assertEquals(previousJunction, points[3], 0);
+			double junction = points[points.length - 1];
+			assertTrue("Chain should end with junction", junction != 0);
+			for (int j = 1; j < count - 1; j++) {
+				assertEquals(0, points[j * 4 + 3], 0);
+			}
+			previousLon = points[points.length - 4];
+			previousJunction = junction;
+			total += count - 1;
+		}
+		assertEquals(81, previousLon, EPS);
+		assertEquals(2, previousJunction, 0);
+		assertEquals(pointCount - 1, total);
+	}
+
+	@Test
+	public void testEmptyTile() throws Exception {
+		DsfBinaryWriterImpl writer = new DsfBinaryWriterImpl(folder.getRoot().getAbsolutePath(), new Point2D(80, 52));
+		writer.setHeader(new DsfHeader().addProperty("sim/planet", "earth"));
+		writer.complete();
+		assertFalse(new File(folder.getRoot(), "Earth nav data/+50+080/+52+080.dsf").exists());
+	}
+
+	/**
+	 * DSF2Text commands, as written for text writer, should give the same result as structured calls
+	 */
+	@Test
+	public void testTextCommands() throws Exception {
+		XPOutputFormat format = new XPOutputFormat(1, 3);
+		LinearRing2D forest = new LinearRing2D(Arrays.asList(new Point2D(80.31, 52.01), new Point2D(80.32, 52.01),
+				new Point2D(80.32, 52.02), new Point2D(80.31, 52.02), new Point2D(80.31, 52.01)));
+		XPPathSegment road = new XPPathSegment(42, 1, 2,
+				new Point2D[] { new Point2D(80.5, 52.5), new Point2D(80.505, 52.51), new Point2D(80.51, 52.52) });
+		road.setEndHeight(1);
+
+		DsfBinaryWriterImpl writer = new DsfBinaryWriterImpl(folder.newFolder("text").getAbsolutePath(), new Point2D(80, 52));
+		writer.setHeader(new DsfHeader().addProperty("sim/planet", "earth").addPolygonDef("forests/mixed.for")
+				.addObjectDef("objects/tower.obj").addNetworkDef("lib/g10/roads.net"));
+		writer.write(format.getObjectString(0, 80.3357702, 52.0198865, 191.5));
+		writer.write("# comment\n\n" + format.getPolygonString(forest, 0, 255));
+		writer.write(format.getPathStr(road));
+		writer.complete();
+		DsfReader text = DsfReader.read(new File(folder.getRoot(), "text/Earth nav data/+50+080/+52+080.dsf"));
+
+		writer = new DsfBinaryWriterImpl(folder.newFolder("structured").getAbsolutePath(), new Point2D(80, 52));
+		writer.setHeader(new DsfHeader().addProperty("sim/planet", "earth").addPolygonDef("forests/mixed.for")
+				.addObjectDef("objects/tower.obj").addNetworkDef("lib/g10/roads.net"));
+		format.writeObject(writer, 0, 80.3357702, 52.0198865, 191.5);
+		format.writePolygon(writer, forest, 0, 255);
+		format.writePath(writer, road);
+		writer.complete();
+		DsfReader structured = DsfReader.read(new File(folder.getRoot(), "structured/Earth nav data/+50+080/+52+080.dsf"));
+
+		assertEquals(1, text.getObjects().size());
+		DsfObject object = text.getObjects().get(0);
+		assertEquals(structured.getObjects().get(0).lon, object.lon, EPS);
+		assertEquals(structured.getObjects().get(0).lat, object.lat, EPS);
+		assertEquals(structured.getObjects().get(0).heading, object.heading, EPS);
+		assertEquals(1, text.getPolygons().size());
+		DsfPolygon polygon = text.getPolygons().get(0);
+		assertEquals(255, polygon.param);
+		assertEquals(1, polygon.windings.size());
+		assertArrayEquals(structured.getPolygons().get(0).windings.get(0), polygon.windings.get(0), EPS);
+		assertEquals(1, text.getSegments().size());
+		assertEquals(42, text.getSegments().get(0).subtype);
+		assertArrayEquals(structured.getSegments().get(0).points, text.getSegments().get(0).points, EPS);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnsupportedCommand() {
+		DsfBinaryWriterImpl writer = new DsfBinaryWriterImpl(folder.getRoot().getAbsolutePath(), new Point2D(80, 52));
+		writer.write("RASTER_DATA version=1 bpp=2");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMalformedCommand() {
+		DsfBinaryWriterImpl writer = new DsfBinaryWriterImpl(folder.getRoot().getAbsolutePath(), new Point2D(80, 52));
+		writer.write("OBJECT 0 80.5");
+	}
+
+}
@@ -0,0 +1,381 @@
+package com.osm2xp.writers.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Minimal DSF reader for tests. Decodes property and definition tables, point pools and commands emitted by
+ * {@link DsfEncoder} back into objects, polygons and network segments. Fails on anything {@link DsfEncoder}
+ * doesn't produce.
+ *
+ * @author 32kda
+ *
+ */
+public class DsfReader {
+
+	public static class DsfObject {
+		public final int definition;
+		public final double lon;
+		public final double lat;
+		public final double heading;
+
+		public DsfObject(int definition, double lon, double lat, double heading) {
+			this.definition = definition;
+			this.lon = lon;
+			this.lat = lat;
+			this.heading = heading;
+		}
+	}
+
+	public static class DsfPolygon {
+		public final int definition;
+		public final int param;
+		/**
+		 * Windings, each one is a flat lon/lat array
+		 */
+		public final List<double[]> windings;
+
+		public DsfPolygon(int definition, int param, List<double[]> windings) {
+			this.definition = definition;
+			this.param = param;
+			this.windings = windings;
+		}
+	}
+
+	public static class DsfSegment {
+		public final int definition;
+		public final int subtype;
+		/**
+		 * Segment points, 4 values per point - lon, lat, elevation, junction id
+		 */
+		public final double[] points;
+
+		public DsfSegment(int definition, int subtype, double[] points) {
+			this.definition = definition;
+			this.subtype = subtype;
+			this.points = points;
+		}
+	}
+
+	private List<String> properties = new ArrayList<>();
+	private List<String> objectDefs = new ArrayList<>();
+	private List<String> polygonDefs = new ArrayList<>();
+	private List<String> networkDefs = new ArrayList<>();
+
+	private List<double[][]> pools = new ArrayList<>();
+	private List<double[][]> pools32 = new ArrayList<>();
+
+	private List<DsfObject> objects = new ArrayList<>();
+	private List<DsfPolygon> polygons = new ArrayList<>();
+	private List<DsfSegment> segments = new ArrayList<>();
+
+	public static DsfReader read(File file) throws IOException {
+		DsfReader reader = new DsfReader();
+		reader.parse(Files.readAllBytes(file.toPath()));
+		return reader;
+	}
+
+	protected void parse(byte[] bytes) throws IOException {
+		checkDigest(bytes);
+		ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, bytes.length - 16).slice().order(ByteOrder.LITTLE_ENDIAN);
+		byte[] cookie = new byte[8];
+		buffer.get(cookie);
+		if (!"XPLNEDSF".equals(new String(cookie, StandardCharsets.US_ASCII))) {
+			throw new IOException("Invalid DSF cookie");
+		}
+		if (buffer.getInt() != 1) {
+			throw new IOException("Unsupported DSF version");
+		}
+		ByteBuffer commands = null;
+		while (buffer.hasRemaining()) {
+			String id = atomId(buffer.getInt());
+			ByteBuffer content = atomContent(buffer);
+			switch (id) {
+			case "HEAD":
+				readAtoms(content, (childId, child) -> {
+					if ("PROP".equals(childId)) {
+						properties = readStrings(child);
+					}
+				});
+				break;
+			case "DEFN":
+				readAtoms(content, (childId, child) -> {
+					switch (childId) {
+					case "OBJT":
+						objectDefs = readStrings(child);
+						break;
+					case "POLY":
+						polygonDefs = readStrings(child);
+						break;
+					case "NETW":
+						networkDefs = readStrings(child);
+						break;
+					default:
+						break;
+					}
+				});
+				break;
+			case "GEOD":
+				readPools(content);
+				break;
+			case "CMDS":
+				commands = content;
+				break;
+			default:
+				throw new IOException("Unexpected atom " + id);
+			}
+		}
+		if (commands != null) {
+			readCommands(commands);
+		}
+	}
+
+	private void checkDigest(byte[] bytes) throws IOException {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("MD5");
+			digest.update(bytes, 0, bytes.length - 16);
+			if (!Arrays.equals(digest.digest(), Arrays.copyOfRange(bytes, bytes.length - 16, bytes.length))) {
+				throw new IOException("DSF MD5 footer doesn't match file contents");
+			}
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e);
+		}
+	}
+
+	private interface AtomHandler {
+		void handle(String id, ByteBuffer content) throws IOException;
+	}
+
+	private static void readAtoms(ByteBuffer buffer, AtomHandler handler) throws IOException {
+		while (buffer.hasRemaining()) {
+			String id = atomId(buffer.getInt());
+			handler.handle(id, atomContent(buffer));
+		}
+	}
+
+	private static ByteBuffer atomContent(ByteBuffer buffer) {
+		int length = buffer.getInt() - 8;
+		ByteBuffer content = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+		content.limit(length);
+		buffer.position(buffer.position() + length);
+		return content;
+	}
+
+	private static String atomId(int id) {
+		return new String(new char[] { (char) (id >>> 24), (char) ((id >>> 16) & 0xFF), (char) ((id >>> 8) & 0xFF), (char) (id & 0xFF) });
+	}
+
+	private static List<String> readStrings(ByteBuffer buffer) {
+		List<String> result = new ArrayList<>();
+		int start = buffer.position();
+		for (int i = start; i < buffer.limit(); i++) {
+			if (buffer.get(i) == 0) {
+				byte[] bytes = new byte[i - start];
+				buffer.position(start);
+				buffer.get(bytes);
+				result.add(new String(bytes, StandardCharsets.UTF_8));
+				start = i + 1;
+			}
+		}
+		return result;
+	}
+
+	private void readPools(ByteBuffer geod) throws IOException {
+		List<ByteBuffer> poolAtoms = new ArrayList<>();
+		List<ByteBuffer> pool32Atoms = new ArrayList<>();
+		List<ByteBuffer> scaleAtoms = new ArrayList<>();
+		List<ByteBuffer> scale32Atoms = new ArrayList<>();
+		readAtoms(geod, (id, content) -> {
+			switch (id) {
+			case "POOL":
+				poolAtoms.add(content);
+				break;
+			case "PO32":
+				pool32Atoms.add(content);
+				break;
+			case "SCAL":
+				scaleAtoms.add(content);
+				break;
+			case "SC32":
+				scale32Atoms.add(content);
+				break;
+			default:
+				throw new IOException("Unexpected GEOD atom " + id);
+			}
+		});
+		for (int i = 0; i < poolAtoms.size(); i++) {
+			pools.add(decodePool(poolAtoms.get(i), scaleAtoms.get(i), false));
+		}
+		for (int i = 0; i < pool32Atoms.size(); i++) {
+			pools32.add(decodePool(pool32Atoms.get(i), scale32Atoms.get(i), true));
+		}
+	}
+
+	/**
+	 * @return decoded points, <code>[pointIdx][plane]</code>
+	 */
+	private static double[][] decodePool(ByteBuffer pool, ByteBuffer scaling, boolean wide) throws IOException {
+		int count = pool.getInt();
+		int planes = pool.get() & 0xFF;
+		double maxRaw = wide ? 4294967295.0 : 65535.0;
+		double[][] points = new double[count][planes];
+		for (int plane = 0; plane < planes; plane++) {
+			int encoding = pool.get();
+			if (encoding != 0) {
+				throw new IOException("Unsupported pool encoding " + encoding);
+			}
+			float scale = scaling.getFloat(plane * 8);
+			float offset = scaling.getFloat(plane * 8 + 4);
+			for (int i = 0; i < count; i++) {
+				long raw = wide ? Integer.toUnsignedLong(pool.getInt()) : Short.toUnsignedInt(pool.getShort());
+				points[i][plane] = scale == 0 ? raw : raw / maxRaw * scale + offset;
+			}
+		}
+		return points;
+	}
+
+	private void readCommands(ByteBuffer commands) throws IOException {
+		int pool = -1;
+		long junctionOffset = 0;
+		int definition = -1;
+		int subtype = -1;
+		while (commands.hasRemaining()) {
+			int command = commands.get() & 0xFF;
+			switch (command) {
+			case 1: // Pool select
+				pool = Short.toUnsignedInt(commands.getShort());
+				break;
+			case 2: // Junction offset select
+				junctionOffset = Integer.toUnsignedLong(commands.getInt());
+				break;
+			case 3:
+				definition = commands.get() & 0xFF;
+				break;
+			case 4:
+				definition = Short.toUnsignedInt(commands.getShort());
+				break;
+			case 5:
+				definition = commands.getInt();
+				break;
+			case 6:
+				subtype = commands.get() & 0xFF;
+				break;
+			case 7: { // Object
+				double[] point = pools.get(pool)[Short.toUnsignedInt(commands.getShort())];
+				objects.add(new DsfObject(definition, point[0], point[1], point[2]));
+				break;
+			}
+			case 10: { // Network chain range
+				int first = Short.toUnsignedInt(commands.getShort());
+				int last = Short.toUnsignedInt(commands.getShort());
+				int[] indices = new int[last - first];
+				for (int i = 0; i < indices.length; i++) {
+					indices[i] = (int) (junctionOffset + first + i);
+				}
+				segments.add(new DsfSegment(definition, subtype, getNetworkPoints(pool, indices)));
+				break;
+			}
+			case 11: { // Network chain, 32-bit indices
+				int[] indices = new int[commands.get() & 0xFF];
+				for (int i = 0; i < indices.length; i++) {
+					indices[i] = commands.getInt();
+				}
+				segments.add(new DsfSegment(definition, subtype, getNetworkPoints(pool, indices)));
+				break;
+			}
+			case 13: { // Polygon range
+				int param = Short.toUnsignedInt(commands.getShort());
+				int first = Short.toUnsignedInt(commands.getShort());
+				int last = Short.toUnsignedInt(commands.getShort());
+				polygons.add(new DsfPolygon(definition, param, Arrays.asList(getWinding(pool, first, last))));
+				break;
+			}
+			case 15: { // Nested polygon range
+				int param = Short.toUnsignedInt(commands.getShort());
+				int count = commands.get() & 0xFF;
+				int[] starts = new int[count + 1];
+				for (int i = 0; i < starts.length; i++) {
+					starts[i] = Short.toUnsignedInt(commands.getShort());
+				}
+				List<double[]> windings = new ArrayList<>();
+				for (int i = 0; i < count; i++) {
+					windings.add(getWinding(pool, starts[i], starts[i + 1]));
+				}
+				polygons.add(new DsfPolygon(definition, param, windings));
+				break;
+			}
+			default:
+				throw new IOException("Unsupported DSF command " + command);
+			}
+		}
+	}
+
+	private double[] getWinding(int pool, int first, int last) {
+		double[][] points = pools.get(pool);
+		double[] winding = new double[(last - first) * 2];
+		for (int i = first; i < last; i++) {
+			winding[(i - first) * 2] = points[i][0];
+			winding[(i - first) * 2 + 1] = points[i][1];
+		}
+		return winding;
+	}
+
+	private double[] getNetworkPoints(int pool, int[] indices) {
+		double[][] points = pools32.get(pool);
+		double[] result = new double[indices.length * 4];
+		for (int i = 0; i < indices.length; i++) {
+			System.arraycopy(points[indices[i]], 0, result, i * 4, 4);
+		}
+		return result;
+	}
+
+	/**
+	 * @return properties as flat list - name, value, name, value...
+	 */
+	public List<String> getProperties() {
+		return properties;
+	}
+
+	public String getProperty(String name) {
+		for (int i = 0; i + 1 < properties.size(); i += 2) {
+			if (properties.get(i).equals(name)) {
+				return properties.get(i + 1);
+			}
+		}
+		return null;
+	}
+
+	public List<String> getObjectDefs() {
+		return objectDefs;
+	}
+
+	public List<String> getPolygonDefs() {
+		return polygonDefs;
+	}
+
+	public List<String> getNetworkDefs() {
+		return networkDefs;
+	}
+
+	public List<DsfObject> getObjects() {
+		return objects;
+	}
+
+	public List<DsfPolygon> getPolygons() {
+		return polygons;
+	}
+
+	public List<DsfSegment> getSegments() {
+		return segments;
+	}
+
+}
@@ -9,8 +9,6 @@ import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlRootElement;
 import javax.xml.bind.annotation.XmlType;
 
-import org.apache.commons.lang.ArrayUtils;
-
 /**
  * Way.
  * 
@@ -104,7 +102,12 @@ public class Way {
 	}
 	
 	public long[] getNodesArray() {
-		return ArrayUtils.toPrimitive(getNd().stream().map(nd -> nd.getRef()).toArray(Long[]::new));
+		List<Nd> nodes = getNd();
+		long[] result = new long[nodes.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = nodes.get(i).getRef();
+		}
+		return result;
 	}
 
 	/**
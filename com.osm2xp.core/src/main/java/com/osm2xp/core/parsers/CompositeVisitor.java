@@ -20,6 +20,10 @@ public class CompositeVisitor implements IOSMDataVisitor {
 		children = preprocessors.toArray(new IOSMDataVisitor[0]);
 	}
 
+	public IOSMDataVisitor[] getChildren() {
+		return children;
+	}
+
 	@Override
 	public void visit(Box2D box) {
 		for (IOSMDataVisitor visitor : children) {
@@ -34,6 +38,13 @@ public class CompositeVisitor implements IOSMDataVisitor {
 		}
 	}
 
+	@Override
+	public void visitUntagged(long id, double lon, double lat) {
+		for (IOSMDataVisitor visitor : children) {
+			visitor.visitUntagged(id, lon, lat);
+		}
+	}
+
 	@Override
 	public void visit(Way way) {
 		for (IOSMDataVisitor visitor : children) {
@@ -1,5 +1,7 @@
 package com.osm2xp.core.parsers;
 
+import java.util.ArrayList;
+
 import com.osm2xp.core.model.osm.Node;
 import com.osm2xp.core.model.osm.Relation;
 import com.osm2xp.core.model.osm.Way;
@@ -9,6 +11,16 @@ import math.geom2d.Box2D;
 public interface IOSMDataVisitor {
 	public void visit(Box2D box);
 	public void visit(Node node);
+	/**
+	 * Visit node without any tags. Most of input nodes are such ones, so this allows to skip {@link Node} instance creation for them.
+	 * Default implementation creates node and passes it to {@link #visit(Node)}
+	 * @param id node id
+	 * @param lon node longitude
+	 * @param lat node latitude
+	 */
+	public default void visitUntagged(long id, double lon, double lat) {
+		visit(new Node(new ArrayList<>(), lat, lon, id));
+	}
 	public void visit(Way way);
 	public void visit(Relation relation);
 	public void complete();
@@ -0,0 +1,77 @@
+package com.osm2xp.core.parsers.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import com.osm2xp.core.parsers.impl.PbfBlockIndex.BlockEntry;
+
+/**
+ * Input stream reading only given blocks of PBF file, one after another. Result is valid PBF stream, so it can be
+ * processed with {@link ParallelBlockReader} or regular block reader without any changes
+ *
+ * @author 32kda
+ *
+ */
+public class BlockRangeInputStream extends InputStream {
+
+	private final RandomAccessFile file;
+	private final List<BlockEntry> blocks;
+	private int blockIdx = -1;
+	private long remaining;
+
+	public BlockRangeInputStream(File pbfFile, List<BlockEntry> blocks) throws IOException {
+		this.file = new RandomAccessFile(pbfFile, "r");
+		this.blocks = blocks;
+	}
+
+	private boolean nextBlock() throws IOException {
+		while (remaining == 0) {
+			blockIdx++;
+			if (blockIdx >= blocks.size()) {
+				return false;
+			}
+			BlockEntry block = blocks.get(blockIdx);
+			file.seek(block.getOffset());
+			remaining = block.getLength();
+		}
+		return true;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!nextBlock()) {
+			return -1;
+		}
+		int result = file.read();
+		if (result < 0) {
+			throw new IOException("Unexpected end of PBF file, block index is probably outdated");
+		}
+		remaining--;
+		return result;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		if (!nextBlock()) {
+			return -1;
+		}
+		int read = file.read(b, off, (int) Math.min(len, remaining));
+		if (read < 0) {
+			throw new IOException("Unexpected end of PBF file, block index is probably outdated");
+		}
+		remaining -= read;
+		return read;
+	}
+
+	@Override
+	public void close() throws IOException {
+		file.close();
+	}
+
+}
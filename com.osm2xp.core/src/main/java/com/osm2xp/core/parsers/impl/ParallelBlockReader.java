@@ -0,0 +1,163 @@
+package com.osm2xp.core.parsers.impl;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.openstreetmap.osmosis.osmbinary.BinaryParser;
+import org.openstreetmap.osmosis.osmbinary.Fileformat.Blob;
+import org.openstreetmap.osmosis.osmbinary.Fileformat.BlobHeader;
+import org.openstreetmap.osmosis.osmbinary.Osmformat.PrimitiveBlock;
+import org.openstreetmap.osmosis.osmbinary.file.FileBlock;
+
+import com.google.protobuf.ByteString;
+
+/**
+ * PBF block reader, which reads raw blobs from input stream in file order, inflates and decodes them
+ * on a pool of worker threads and hands decoded blocks back to the {@link BinaryParser} in original file order.
+ * All parser callbacks are made from the thread calling {@link #process()}, so parser and it's visitor don't need to be thread-safe.
+ *
+ * @author 32kda
+ *
+ */
+public class ParallelBlockReader {
+
+	private static final String OSM_HEADER = "OSMHeader";
+	private static final String OSM_DATA = "OSMData";
+
+	private static final int MAX_HEADER_SIZE = 64 * 1024;
+	private static final int MAX_BLOB_SIZE = 32 * 1024 * 1024;
+	/**
+	 * How many decoded blocks can wait for the parser per one worker. Limits memory consumption if parser is slower than decoders
+	 */
+	private static final int BLOCKS_PER_WORKER = 2;
+
+	private static final AtomicInteger poolCounter = new AtomicInteger();
+
+	private final InputStream input;
+	private final BinaryParser parser;
+	private final int workerCount;
+
+	public ParallelBlockReader(InputStream input, BinaryParser parser, int workerCount) {
+		this.input = input;
+		this.parser = parser;
+		this.workerCount = Math.max(1, workerCount);
+	}
+
+	public void process() throws IOException {
+		ExecutorService service = Executors.newFixedThreadPool(workerCount, createThreadFactory());
+		Queue<Future<Object>> pending = new ArrayDeque<>();
+		int maxPending = workerCount * BLOCKS_PER_WORKER;
+		try (DataInputStream dataInput = new DataInputStream(new BufferedInputStream(input, 64 * 1024))) {
+			while (true) {
+				int headerSize;
+				try {
+					headerSize = dataInput.readInt();
+				} catch (EOFException e) {
+					break;
+				}
+				if (headerSize < 0 || headerSize > MAX_HEADER_SIZE) {
+					throw new IOException("Invalid PBF blob header size: " + headerSize);
+				}
+				byte[] headerBytes = new byte[headerSize];
+				dataInput.readFully(headerBytes);
+				BlobHeader header = BlobHeader.parseFrom(headerBytes);
+				int dataSize = header.getDatasize();
+				if (dataSize < 0 || dataSize > MAX_BLOB_SIZE) {
+					throw new IOException("Invalid PBF blob size: " + dataSize);
+				}
+				byte[] blobBytes = new byte[dataSize];
+				dataInput.readFully(blobBytes);
+				String type = header.getType();
+				if (!OSM_HEADER.equals(type) && !OSM_DATA.equals(type)) {
+					continue; //Unknown block type - skip it, like BinaryParser does
+				}
+				pending.add(service.submit(() -> decode(type, blobBytes)));
+				while (pending.size() >= maxPending) {
+					deliver(pending.poll());
+				}
+			}
+			while (!pending.isEmpty()) {
+				deliver(pending.poll());
+			}
+		} finally {
+			service.shutdownNow();
+		}
+		parser.complete();
+	}
+
+	protected void deliver(Future<Object> future) throws IOException {
+		Object block;
+		try {
+			block = future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("PBF parsing was interrupted", e);
+		} catch (ExecutionException e) {
+			throw new IOException("Error decoding PBF block", e.getCause());
+		}
+		if (block instanceof PrimitiveBlock) {
+			parser.parse((PrimitiveBlock) block);
+		} else if (block instanceof ByteString) {
+			// Header is tiny, so let BinaryParser handle it completely, including required features check
+			parser.handleBlock(FileBlock.newInstance(OSM_HEADER, (ByteString) block, null));
+		}
+	}
+
+	protected Object decode(String type, byte[] blobBytes) throws IOException, DataFormatException {
+		ByteString data = inflate(Blob.parseFrom(blobBytes));
+		if (OSM_HEADER.equals(type)) {
+			return data;
+		}
+		return PrimitiveBlock.parseFrom(data);
+	}
+
+	/**
+	 * Get raw block data from PBF blob, inflating it if necessary
+	 * @param blob PBF blob
+	 * @return raw block data
+	 */
+	static ByteString inflate(Blob blob) throws IOException, DataFormatException {
+		if (blob.hasRaw()) {
+			return blob.getRaw();
+		}
+		if (blob.hasZlibData()) {
+			byte[] buf = new byte[blob.getRawSize()];
+			Inflater inflater = new Inflater();
+			try {
+				inflater.setInput(blob.getZlibData().toByteArray());
+				inflater.inflate(buf);
+				if (!inflater.finished()) {
+					throw new IOException("PBF blob was not fully inflated, expected raw size " + blob.getRawSize());
+				}
+			} finally {
+				inflater.end();
+			}
+			return ByteString.copyFrom(buf);
+		}
+		throw new IOException("Unsupported PBF blob compression");
+	}
+
+	private ThreadFactory createThreadFactory() {
+		int poolNum = poolCounter.incrementAndGet();
+		AtomicInteger threadCounter = new AtomicInteger();
+		return runnable -> {
+			Thread thread = new Thread(runnable, "pbf-decoder-" + poolNum + "-" + threadCounter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+}
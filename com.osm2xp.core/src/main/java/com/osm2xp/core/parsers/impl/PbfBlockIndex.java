@@ -0,0 +1,448 @@
+package com.osm2xp.core.parsers.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.zip.DataFormatException;
+
+import org.openstreetmap.osmosis.osmbinary.Fileformat.Blob;
+import org.openstreetmap.osmosis.osmbinary.Fileformat.BlobHeader;
+import org.openstreetmap.osmosis.osmbinary.Osmformat.DenseNodes;
+import org.openstreetmap.osmosis.osmbinary.Osmformat.Node;
+import org.openstreetmap.osmosis.osmbinary.Osmformat.PrimitiveBlock;
+import org.openstreetmap.osmosis.osmbinary.Osmformat.PrimitiveGroup;
+import org.openstreetmap.osmosis.osmbinary.Osmformat.Relation;
+import org.openstreetmap.osmosis.osmbinary.Osmformat.Relation.MemberType;
+import org.openstreetmap.osmosis.osmbinary.Osmformat.Way;
+
+import com.osm2xp.core.logging.Osm2xpLogger;
+
+import math.geom2d.Box2D;
+
+/**
+ * Block-level spatial index of PBF file, stored in sidecar file next to it. For each data blob, it's file position, element types,
+ * element id range and bounding box are recorded, and also indexes of other blocks, which contain nodes or ways referenced by elements of this block.
+ * Way block bounding box is union of bounding boxes of node blocks it references, relation block bounding box - union of referenced blocks bounding boxes.
+ *
+ * Index allows to decode only blocks needed for some area, see {@link #select(Box2D)}.
+ * Since node and way blocks are looked up by id range, index can be built only for files sorted by type, then by id, which is standard for PBF.
+ *
+ * @author 32kda
+ *
+ */
+public class PbfBlockIndex {
+
+	public static final int NODES = 1;
+	public static final int WAYS = 2;
+	public static final int RELATIONS = 4;
+
+	private static final String INDEX_EXTENSION = ".blockidx";
+	private static final int MAGIC = 0x4F324249; // "O2BI"
+	private static final int VERSION = 1;
+
+	private static final String OSM_HEADER = "OSMHeader";
+	private static final String OSM_DATA = "OSMData";
+	private static final int MAX_HEADER_SIZE = 64 * 1024;
+	private static final int MAX_BLOB_SIZE = 32 * 1024 * 1024;
+	private static final double NANO = 0.000000001;
+
+	/**
+	 * Index entry for single PBF blob
+	 */
+	public static class BlockEntry {
+		private final long offset;
+		private final int length;
+		private int types;
+		private long minId = Long.MAX_VALUE;
+		private long maxId = Long.MIN_VALUE;
+		private double minLon = Double.MAX_VALUE;
+		private double minLat = Double.MAX_VALUE;
+		private double maxLon = -Double.MAX_VALUE;
+		private double maxLat = -Double.MAX_VALUE;
+		private int[] refs = new int[0];
+
+		BlockEntry(long offset, int length) {
+			this.offset = offset;
+			this.length = length;
+		}
+
+		/**
+		 * @return blob start position in file, including blob header size field
+		 */
+		public long getOffset() {
+			return offset;
+		}
+
+		/**
+		 * @return blob length in file, including blob header size field and blob header
+		 */
+		public int getLength() {
+			return length;
+		}
+
+		/**
+		 * @return element types contained in this block, combination of {@link PbfBlockIndex#NODES}, {@link PbfBlockIndex#WAYS}, {@link PbfBlockIndex#RELATIONS}
+		 */
+		public int getTypes() {
+			return types;
+		}
+
+		public boolean hasBounds() {
+			return minLon <= maxLon;
+		}
+
+		public boolean intersects(Box2D box) {
+			return hasBounds() && minLon <= box.getMaxX() && maxLon >= box.getMinX() && minLat <= box.getMaxY() && maxLat >= box.getMinY();
+		}
+
+		void addId(long id) {
+			minId = Math.min(minId, id);
+			maxId = Math.max(maxId, id);
+		}
+
+		void addPoint(double lon, double lat) {
+			minLon = Math.min(minLon, lon);
+			maxLon = Math.max(maxLon, lon);
+			minLat = Math.min(minLat, lat);
+			maxLat = Math.max(maxLat, lat);
+		}
+
+		void addBounds(BlockEntry other) {
+			if (other.hasBounds()) {
+				addPoint(other.minLon, other.minLat);
+				addPoint(other.maxLon, other.maxLat);
+			}
+		}
+	}
+
+	private final long fileLength;
+	private final long fileModified;
+	private final List<BlockEntry> headerBlocks;
+	private final List<BlockEntry> blocks;
+
+	private PbfBlockIndex(long fileLength, long fileModified, List<BlockEntry> headerBlocks, List<BlockEntry> blocks) {
+		this.fileLength = fileLength;
+		this.fileModified = fileModified;
+		this.headerBlocks = headerBlocks;
+		this.blocks = blocks;
+	}
+
+	/**
+	 * Load index for given PBF file from sidecar file, or build it and save if sidecar file is missing or outdated
+	 * @param pbfFile PBF file
+	 * @return index or <code>null</code> if index can't be built for given file, e.g. if file is not sorted
+	 * @throws IOException in case of PBF file read error
+	 */
+	public static PbfBlockIndex loadOrBuild(File pbfFile) throws IOException {
+		File indexFile = getIndexFile(pbfFile);
+		if (indexFile.isFile()) {
+			try {
+				PbfBlockIndex index = load(indexFile);
+				if (index.fileLength == pbfFile.length() && index.fileModified == pbfFile.lastModified()) {
+					return index;
+				}
+				Osm2xpLogger.info("PBF block index " + indexFile + " is outdated, would be rebuilt");
+			} catch (IOException e) {
+				Osm2xpLogger.warning("Error reading PBF block index " + indexFile + ", would be rebuilt", e);
+			}
+		}
+		long t1 = System.currentTimeMillis();
+		PbfBlockIndex index = build(pbfFile);
+		if (index == null) {
+			return null;
+		}
+		Osm2xpLogger.info("PBF block index for " + index.blocks.size() + " blocks built in " + (System.currentTimeMillis() - t1) + " ms");
+		try {
+			index.save(indexFile);
+		} catch (IOException e) {
+			Osm2xpLogger.warning("Unable to save PBF block index " + indexFile, e);
+		}
+		return index;
+	}
+
+	public static File getIndexFile(File pbfFile) {
+		return new File(pbfFile.getAbsolutePath() + INDEX_EXTENSION);
+	}
+
+	/**
+	 * Select blocks needed to process given area - blocks, which bounding box intersects given one, and blocks containing nodes and ways
+	 * referenced by elements of these blocks, so all the ways and relations decoded from selected blocks can be fully resolved.
+	 * Header blocks are always selected.
+	 * @param bounds area bounds
+	 * @return selected blocks, in original file order
+	 */
+	public List<BlockEntry> select(Box2D bounds) {
+		return select(Collections.singletonList(bounds));
+	}
+
+	/**
+	 * Select blocks needed to process several areas at once, see {@link #select(Box2D)}
+	 * @param areas areas bounds
+	 * @return selected blocks, in original file order
+	 */
+	public List<BlockEntry> select(Collection<Box2D> areas) {
+		boolean[] selected = new boolean[blocks.size()];
+		Deque<Integer> toProcess = new ArrayDeque<>();
+		for (int i = 0; i < blocks.size(); i++) {
+			BlockEntry block = blocks.get(i);
+			if (areas.stream().anyMatch(block::intersects)) {
+				selected[i] = true;
+				toProcess.add(i);
+			}
+		}
+		while (!toProcess.isEmpty()) {
+			for (int ref : blocks.get(toProcess.poll()).refs) {
+				if (!selected[ref]) {
+					selected[ref] = true;
+					toProcess.add(ref);
+				}
+			}
+		}
+		List<BlockEntry> result = new ArrayList<>(headerBlocks);
+		for (int i = 0; i < blocks.size(); i++) {
+			if (selected[i]) {
+				result.add(blocks.get(i));
+			}
+		}
+		Collections.sort(result, (b1, b2) -> Long.compare(b1.offset, b2.offset));
+		return result;
+	}
+
+	/**
+	 * @return total blocks count, including header blocks
+	 */
+	public int getBlockCount() {
+		return headerBlocks.size() + blocks.size();
+	}
+
+	protected static PbfBlockIndex build(File pbfFile) throws IOException {
+		List<BlockEntry> headerBlocks = new ArrayList<>();
+		List<BlockEntry> blocks = new ArrayList<>();
+		List<BlockEntry> nodeBlocks = new ArrayList<>();
+		List<Integer> nodeBlockIdx = new ArrayList<>();
+		List<BlockEntry> wayBlocks = new ArrayList<>();
+		List<Integer> wayBlockIdx = new ArrayList<>();
+		BitSet refs = new BitSet();
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(pbfFile), 64 * 1024))) {
+			long offset = 0;
+			while (true) {
+				int headerSize;
+				try {
+					headerSize = input.readInt();
+				} catch (EOFException e) {
+					break;
+				}
+				if (headerSize < 0 || headerSize > MAX_HEADER_SIZE) {
+					throw new IOException("Invalid PBF blob header size: " + headerSize);
+				}
+				byte[] headerBytes = new byte[headerSize];
+				input.readFully(headerBytes);
+				BlobHeader header = BlobHeader.parseFrom(headerBytes);
+				int dataSize = header.getDatasize();
+				if (dataSize < 0 || dataSize > MAX_BLOB_SIZE) {
+					throw new IOException("Invalid PBF blob size: " + dataSize);
+				}
+				byte[] blobBytes = new byte[dataSize];
+				input.readFully(blobBytes);
+				BlockEntry entry = new BlockEntry(offset, 4 + headerSize + dataSize);
+				offset += entry.length;
+				if (OSM_HEADER.equals(header.getType())) {
+					headerBlocks.add(entry);
+				} else if (OSM_DATA.equals(header.getType())) {
+					PrimitiveBlock block;
+					try {
+						block = PrimitiveBlock.parseFrom(ParallelBlockReader.inflate(Blob.parseFrom(blobBytes)));
+					} catch (DataFormatException e) {
+						throw new IOException("Error inflating PBF blob at " + entry.offset, e);
+					}
+					for (PrimitiveGroup group : block.getPrimitivegroupList()) {
+						if (group.hasDense()) {
+							addDenseNodes(entry, block, group.getDense());
+						}
+						for (Node node : group.getNodesList()) {
+							entry.types |= NODES;
+							entry.addId(node.getId());
+							entry.addPoint(getLon(block, node.getLon()), getLat(block, node.getLat()));
+						}
+						for (Way way : group.getWaysList()) {
+							entry.types |= WAYS;
+							entry.addId(way.getId());
+							long ref = 0;
+							for (int i = 0; i < way.getRefsCount(); i++) {
+								ref += way.getRefs(i);
+								addRef(refs, nodeBlocks, nodeBlockIdx, ref);
+							}
+						}
+						for (Relation relation : group.getRelationsList()) {
+							entry.types |= RELATIONS;
+							entry.addId(relation.getId());
+							long memberId = 0;
+							for (int i = 0; i < relation.getMemidsCount(); i++) {
+								memberId += relation.getMemids(i);
+								MemberType type = relation.getTypes(i);
+								if (type == MemberType.NODE) {
+									addRef(refs, nodeBlocks, nodeBlockIdx, memberId);
+								} else if (type == MemberType.WAY) {
+									addRef(refs, wayBlocks, wayBlockIdx, memberId);
+								}
+							}
+						}
+					}
+					if (entry.types == 0) {
+						continue;
+					}
+					if (entry.types != NODES && entry.types != WAYS && entry.types != RELATIONS) {
+						Osm2xpLogger.warning("PBF block at " + entry.offset + " contains elements of different types, block index can't be built for " + pbfFile);
+						return null;
+					}
+					if (entry.types == NODES && !isSorted(nodeBlocks, entry) || entry.types == WAYS && !isSorted(wayBlocks, entry)) {
+						Osm2xpLogger.warning("PBF file " + pbfFile + " is not sorted by id, block index can't be built for it");
+						return null;
+					}
+					entry.refs = refs.stream().toArray();
+					refs.clear();
+					for (int ref : entry.refs) {
+						entry.addBounds(blocks.get(ref));
+					}
+					if (entry.types == NODES) {
+						nodeBlocks.add(entry);
+						nodeBlockIdx.add(blocks.size());
+					} else if (entry.types == WAYS) {
+						wayBlocks.add(entry);
+						wayBlockIdx.add(blocks.size());
+					}
+					blocks.add(entry);
+				}
+			}
+		}
+		return new PbfBlockIndex(pbfFile.length(), pbfFile.lastModified(), headerBlocks, blocks);
+	}
+
+	private static void addDenseNodes(BlockEntry entry, PrimitiveBlock block, DenseNodes nodes) {
+		long id = 0, lat = 0, lon = 0;
+		for (int i = 0; i < nodes.getIdCount(); i++) {
+			id += nodes.getId(i);
+			lat += nodes.getLat(i);
+			lon += nodes.getLon(i);
+			entry.types |= NODES;
+			entry.addId(id);
+			entry.addPoint(getLon(block, lon), getLat(block, lat));
+		}
+	}
+
+	private static double getLon(PrimitiveBlock block, long lon) {
+		return (block.getLonOffset() + (long) block.getGranularity() * lon) * NANO;
+	}
+
+	private static double getLat(PrimitiveBlock block, long lat) {
+		return (block.getLatOffset() + (long) block.getGranularity() * lat) * NANO;
+	}
+
+	private static boolean isSorted(List<BlockEntry> previous, BlockEntry entry) {
+		return previous.isEmpty() || previous.get(previous.size() - 1).maxId < entry.minId;
+	}
+
+	/**
+	 * Add index of block containing element with given id to refs set. Blocks are sorted by id, so binary search is used
+	 */
+	private static void addRef(BitSet refs, List<BlockEntry> typeBlocks, List<Integer> typeBlockIdx, long id) {
+		int low = 0;
+		int high = typeBlocks.size() - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			BlockEntry block = typeBlocks.get(mid);
+			if (block.maxId < id) {
+				low = mid + 1;
+			} else if (block.minId > id) {
+				high = mid - 1;
+			} else {
+				refs.set(typeBlockIdx.get(mid));
+				return;
+			}
+		}
+	}
+
+	protected static PbfBlockIndex load(File indexFile) throws IOException {
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+			if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+				throw new IOException("Unsupported PBF block index format");
+			}
+			long fileLength = input.readLong();
+			long fileModified = input.readLong();
+			List<BlockEntry> headerBlocks = new ArrayList<>();
+			int headerCount = input.readInt();
+			for (int i = 0; i < headerCount; i++) {
+				headerBlocks.add(new BlockEntry(input.readLong(), input.readInt()));
+			}
+			int count = input.readInt();
+			List<BlockEntry> blocks = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				BlockEntry entry = new BlockEntry(input.readLong(), input.readInt());
+				entry.types = input.readByte();
+				entry.minId = input.readLong();
+				entry.maxId = input.readLong();
+				entry.minLon = input.readDouble();
+				entry.minLat = input.readDouble();
+				entry.maxLon = input.readDouble();
+				entry.maxLat = input.readDouble();
+				entry.refs = new int[input.readInt()];
+				for (int j = 0; j < entry.refs.length; j++) {
+					entry.refs[j] = input.readInt();
+					if (entry.refs[j] < 0 || entry.refs[j] >= count) {
+						throw new IOException("Invalid PBF block index reference: " + entry.refs[j]);
+					}
+				}
+				blocks.add(entry);
+			}
+			return new PbfBlockIndex(fileLength, fileModified, headerBlocks, blocks);
+		}
+	}
+
+	protected void save(File indexFile) throws IOException {
+		File tempFile = new File(indexFile.getAbsolutePath() + ".tmp");
+		try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+			output.writeInt(MAGIC);
+			output.writeInt(VERSION);
+			output.writeLong(fileLength);
+			output.writeLong(fileModified);
+			output.writeInt(headerBlocks.size());
+			for (BlockEntry entry : headerBlocks) {
+				output.writeLong(entry.offset);
+				output.writeInt(entry.length);
+			}
+			output.writeInt(blocks.size());
+			for (BlockEntry entry : blocks) {
+				output.writeLong(entry.offset);
+				output.writeInt(entry.length);
+				output.writeByte(entry.types);
+				output.writeLong(entry.minId);
+				output.writeLong(entry.maxId);
+				output.writeDouble(entry.minLon);
+				output.writeDouble(entry.minLat);
+				output.writeDouble(entry.maxLon);
+				output.writeDouble(entry.maxLat);
+				output.writeInt(entry.refs.length);
+				for (int ref : entry.refs) {
+					output.writeInt(ref);
+				}
+			}
+		}
+		Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+}
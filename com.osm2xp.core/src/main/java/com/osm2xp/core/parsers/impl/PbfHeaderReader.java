@@ -0,0 +1,61 @@
+package com.osm2xp.core.parsers.impl;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+
+import org.openstreetmap.osmosis.osmbinary.Fileformat.Blob;
+import org.openstreetmap.osmosis.osmbinary.Fileformat.BlobHeader;
+import org.openstreetmap.osmosis.osmbinary.Osmformat.HeaderBBox;
+import org.openstreetmap.osmosis.osmbinary.Osmformat.HeaderBlock;
+
+import math.geom2d.Box2D;
+
+/**
+ * Utility for reading PBF file header without parsing the whole file
+ * 
+ * @author 32kda
+ *
+ */
+public class PbfHeaderReader {
+
+	private static final String OSM_HEADER = "OSMHeader";
+	private static final int MAX_HEADER_SIZE = 64 * 1024;
+
+	/**
+	 * Read bounding box from PBF file header block
+	 * 
+	 * @param pbfFile PBF file to read
+	 * @return bounding box, or <code>null</code> if file header doesn't contain it
+	 * @throws IOException in case of read error or invalid file format
+	 */
+	public static Box2D readBoundingBox(File pbfFile) throws IOException {
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(pbfFile)))) {
+			int headerSize = input.readInt();
+			if (headerSize < 0 || headerSize > MAX_HEADER_SIZE) {
+				throw new IOException("Invalid PBF blob header size: " + headerSize);
+			}
+			byte[] headerBytes = new byte[headerSize];
+			input.readFully(headerBytes);
+			BlobHeader blobHeader = BlobHeader.parseFrom(headerBytes);
+			if (!OSM_HEADER.equals(blobHeader.getType())) {
+				throw new IOException("First PBF block should be " + OSM_HEADER + ", but was " + blobHeader.getType());
+			}
+			byte[] blobBytes = new byte[blobHeader.getDatasize()];
+			input.readFully(blobBytes);
+			HeaderBlock header = HeaderBlock.parseFrom(ParallelBlockReader.inflate(Blob.parseFrom(blobBytes)));
+			if (!header.hasBbox()) {
+				return null;
+			}
+			HeaderBBox bbox = header.getBbox();
+			return new Box2D(bbox.getLeft() / TranslatingBinaryParser.COORD_DIV_FACTOR, bbox.getRight() / TranslatingBinaryParser.COORD_DIV_FACTOR, 
+					bbox.getBottom() / TranslatingBinaryParser.COORD_DIV_FACTOR, bbox.getTop() / TranslatingBinaryParser.COORD_DIV_FACTOR);
+		} catch (DataFormatException e) {
+			throw new IOException("Error inflating PBF header block", e);
+		}
+	}
+	
+}
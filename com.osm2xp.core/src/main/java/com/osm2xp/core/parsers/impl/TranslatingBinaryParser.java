@@ -28,6 +28,7 @@ import com.osm2xp.core.model.osm.Tag;
 import com.osm2xp.core.parsers.IOSMDataVisitor;
 import com.osm2xp.core.parsers.IParser;
 import com.osm2xp.core.parsers.IVisitingParser;
+import com.osm2xp.core.parsers.impl.PbfBlockIndex.BlockEntry;
 
 import math.geom2d.Box2D;
 
@@ -40,6 +41,14 @@ public class TranslatingBinaryParser extends BinaryParser implements IParser, IV
 	
 	protected IOSMDataVisitor osmDataVisitor;
 	private File binaryFile;
+	/**
+	 * Number of threads used to inflate and decode PBF blocks. 1 means old single-threaded mode
+	 */
+	private int workerCount = 1;
+	/**
+	 * Blocks to read, <code>null</code> to read whole file
+	 */
+	private List<BlockEntry> blocks;
 	
 	public TranslatingBinaryParser(File binaryFile,IOSMDataVisitor osmDataVisitor) {
 		this.binaryFile = binaryFile;
@@ -53,9 +62,13 @@ public class TranslatingBinaryParser extends BinaryParser implements IParser, IV
 	public void process() {
 		try {
 			InputStream input;
-			input = new FileInputStream(this.binaryFile);
-			BlockInputStream bm = new BlockInputStream(input, this);
-			bm.process();
+			input = blocks != null ? new BlockRangeInputStream(binaryFile, blocks) : new FileInputStream(this.binaryFile);
+			if (workerCount > 1) {
+				new ParallelBlockReader(input, this, workerCount).process();
+			} else {
+				BlockInputStream bm = new BlockInputStream(input, this);
+				bm.process();
+			}
 		} catch (FileNotFoundException e1) {
 			Osm2xpLogger.log(new OsmParsingException("Error loading file "
 					+ binaryFile.getPath(), e1));
@@ -111,7 +124,7 @@ public class TranslatingBinaryParser extends BinaryParser implements IParser, IV
 		long lastId = 0, lastLat = 0, lastLon = 0;
 		int j = 0;
 		for (int i = 0; i < nodes.getIdCount(); i++) {
-			List<Tag> tags = new ArrayList<Tag>();
+			List<Tag> tags = null;
 			long lat = nodes.getLat(i) + lastLat;
 			lastLat = lat;
 			long lon = nodes.getLon(i) + lastLon;
@@ -121,6 +134,9 @@ public class TranslatingBinaryParser extends BinaryParser implements IParser, IV
 			double latf = parseLat(lat), lonf = parseLon(lon);
 			if (nodes.getKeysValsCount() > 0) {
 				while (nodes.getKeysVals(j) != 0) {
+					if (tags == null) {
+						tags = new ArrayList<Tag>();
+					}
 					int keyId = nodes.getKeysVals(j++);
 					int valId = nodes.getKeysVals(j++);
 					Tag tag = new Tag();
@@ -130,6 +146,10 @@ public class TranslatingBinaryParser extends BinaryParser implements IParser, IV
 				}
 				j++;
 			}
+			if (tags == null) { // Most nodes have no tags, pass them without creating Node object
+				osmDataVisitor.visitUntagged(id, lonf, latf);
+				continue;
+			}
 			com.osm2xp.core.model.osm.Node node = new com.osm2xp.core.model.osm.Node();
 			node.setId(id);
 			node.setLat(latf);
@@ -180,4 +200,23 @@ public class TranslatingBinaryParser extends BinaryParser implements IParser, IV
 		return osmDataVisitor;
 	}
 
+	public int getWorkerCount() {
+		return workerCount;
+	}
+
+	/**
+	 * @param workerCount number of threads used for PBF blocks decoding. Decoded blocks are still passed to visitor in original order, 
+	 * from the thread calling {@link #process()}
+	 */
+	public void setWorkerCount(int workerCount) {
+		this.workerCount = workerCount;
+	}
+
+	/**
+	 * @param blocks blocks to read, e.g. selected from {@link PbfBlockIndex}. <code>null</code> to read whole file
+	 */
+	public void setBlocks(List<BlockEntry> blocks) {
+		this.blocks = blocks;
+	}
+
 }
\ No newline at end of file
@@ -3,15 +3,17 @@ package com.osm2xp.converters.impl;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
 import java.util.stream.Collectors;
 
-import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.CoordinateSequence;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.LinearRing;
 import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.locationtech.jts.index.strtree.STRtree;
 
 import com.osm2xp.core.exceptions.DataSinkException;
 import com.osm2xp.core.exceptions.Osm2xpBusinessException;
@@ -24,10 +26,12 @@ import com.osm2xp.core.model.osm.Way;
 import com.osm2xp.core.parsers.IOSMDataVisitor;
 import com.osm2xp.datastore.IDataSink;
 import com.osm2xp.utils.geometry.GeomUtils;
-import com.osm2xp.utils.geometry.NodeCoordinate;
 import com.osm2xp.utils.geometry.Osm2XPGeometryFactory;
+import com.osm2xp.utils.geometry.PackedNodeCoordinateSequence;
+import com.osm2xp.utils.geometry.RingBuilder;
 import com.osm2xp.utils.osm.OsmUtils;
 
+import gnu.trove.set.TLongSet;
 import math.geom2d.Box2D;
 
 public abstract class AbstractOSMDataConverter implements IOSMDataVisitor {
@@ -35,6 +39,13 @@ public abstract class AbstractOSMDataConverter implements IOSMDataVisitor {
 	protected IDataSink dataSink;
 	private int nodeCnt = 0;
 	private long wayCnt = 0;
+	/**
+	 * Ids of ways, which are members of relations this converter is interested in. <code>null</code> means set is unknown and all ways should be stored
+	 */
+	private TLongSet relationWayIds;
+	private long relationCnt = 0;
+	private long maxRelationTime = -1;
+	private String slowestRelation;
 	
 	public AbstractOSMDataConverter(IDataSink processor) {
 		super();
@@ -54,27 +65,56 @@ public abstract class AbstractOSMDataConverter implements IOSMDataVisitor {
 			//pointParsed(node.getLon(), node.getLat());
 			if (mustStoreNode(node)) {
 				dataSink.storeNode(node);
-				nodeCnt ++;
-				if (nodeCnt % 1000000 == 0) {
-					Osm2xpLogger.info(nodeCnt + " nodes processed");		
-				}
+				nodeStored();
+			} else if (!dataSink.isReadOnly()) {
+				dataSink.markPartial();
 			}
 		} 
 		catch (DataSinkException e) {
 			Osm2xpLogger.error("Error processing node.", e);
 		}
 	}
+	
+	@Override
+	public void visitUntagged(long id, double lon, double lat) {
+		if (needsUntaggedNodes()) {
+			IOSMDataVisitor.super.visitUntagged(id, lon, lat);
+			return;
+		}
+		try {
+			if (mustStoreNode(id, lon, lat)) {
+				dataSink.storeNode(id, lon, lat);
+				nodeStored();
+			} else if (!dataSink.isReadOnly()) {
+				dataSink.markPartial();
+			}
+		} 
+		catch (DataSinkException e) {
+			Osm2xpLogger.error("Error processing node.", e);
+		}
+	}
+
+	private void nodeStored() {
+		nodeCnt ++;
+		if (nodeCnt % 1000000 == 0) {
+			Osm2xpLogger.info(nodeCnt + " nodes processed");		
+		}
+	}
 
 	@Override
 	public void visit(Way way) {
 		try {
-			dataSink.storeWayPoints(way.getId(), way.getNodesArray());
+			long[] ids = way.getNodesArray();
+			if (mustStoreWay(way)) {
+				dataSink.storeWayPoints(way.getId(), ids);
+			} else if (!dataSink.isReadOnly()) {
+				dataSink.markPartial();
+			}
 
 			if (!mustProcessPolyline(way.getTags())) {
 				return;
 			}
 
-			List<Long> ids = way.getNd().stream().map(nd -> nd.getRef()).collect(Collectors.toList());
 			translateWay(way, ids);
 
 			wayCnt++;
@@ -88,32 +128,77 @@ public abstract class AbstractOSMDataConverter implements IOSMDataVisitor {
 
 	}
 	
+	/**
+	 * Way node lists are only needed to assemble multipolygon relations, so if relation pre-scan was done,
+	 * only ways referenced by relations of interest are stored. Nothing is stored if data sink is read-only,
+	 * e.g. ways were already stored by preprocessing pass
+	 */
 	protected boolean mustStoreWay(Way way) {
-		return !dataSink.isReadOnly();
+		return !dataSink.isReadOnly() && (relationWayIds == null || relationWayIds.contains(way.getId()));
+	}
+	
+	/**
+	 * Set ids of ways, which are members of relations this converter is interested in, see {@link #mustProcessRelation(Relation)}
+	 * @param relationWayIds way ids set, <code>null</code> to store all the ways
+	 */
+	public void setRelationWayIds(TLongSet relationWayIds) {
+		this.relationWayIds = relationWayIds;
+	}
+	
+	/**
+	 * @param relation relation to check
+	 * @return <code>true</code> if given relation would be processed by this converter
+	 */
+	public boolean mustProcessRelation(Relation relation) {
+		return "multipolygon".equals(relation.getTagValue("type")) && mustProcessPolyline(relation.getTags());
+	}
+	
+	/**
+	 * @return <code>true</code> if {@link #mustProcessRelation(Relation)} can be answered before parsing, 
+	 * <code>false</code> if converter configuration is only known after parsing some data
+	 */
+	public boolean canSelectRelations() {
+		return true;
 	}
 	
 	protected abstract boolean mustStoreNode(Node node);
 	
+	/**
+	 * Primitive version of {@link #mustStoreNode(Node)} used for untagged nodes. 
+	 * Default implementation creates {@link Node} instance, override to avoid this.
+	 */
+	protected boolean mustStoreNode(long id, double lon, double lat) {
+		return mustStoreNode(new Node(new ArrayList<>(), lat, lon, id));
+	}
+	
+	/**
+	 * @return <code>true</code> if untagged nodes should be passed to {@link #visit(Node)} as {@link Node} instances,
+	 * <code>false</code> if it's enough to only store them
+	 */
+	protected boolean needsUntaggedNodes() {
+		return false;
+	}
+	
 	
 	protected abstract boolean mustProcessPolyline(List<Tag> tagsModel);
 	
-	protected abstract void translateWay(Way way, List<Long> ids) throws Osm2xpBusinessException;	
+	protected abstract void translateWay(Way way, long[] ids) throws Osm2xpBusinessException;	
 
 	protected abstract void translatePolys(long id, List<Tag> tagsModel, List<Polygon> cleanedPolys) throws Osm2xpBusinessException;
 
 	@Override
 	public void visit(Relation relation) {
  		List<Tag> tagsModel = relation.getTags();
-		if ("multipolygon".equals(relation.getTagValue("type")) && mustProcessPolyline(tagsModel)) {
+		if (mustProcessRelation(relation)) {
 			try {
-				List<List<Long>> outer = new ArrayList<>();
-				List<List<Long>> inner = new ArrayList<>();
+				List<long[]> outer = new ArrayList<>();
+				List<long[]> inner = new ArrayList<>();
 				for (Member member : relation.getMember()) {
 					String role = member.getRole();
 					if ("outer".equals(role)) {
 						long[] wayPoints = dataSink.getWayPoints(member.getId());
 						if (wayPoints != null) {
-							outer.add(Arrays.stream(wayPoints).boxed().collect(Collectors.toList()));
+							outer.add(wayPoints);
 						} else {
 							Osm2xpLogger.error("Invalid way id: " + member.getId());
 						}
@@ -121,16 +206,18 @@ public abstract class AbstractOSMDataConverter implements IOSMDataVisitor {
 					if ("inner".equals(role)) {
 						long[] wayPoints = dataSink.getWayPoints(member.getId());
 						if (wayPoints != null) {
-							inner.add(Arrays.stream(wayPoints).boxed().collect(Collectors.toList()));
+							inner.add(wayPoints);
 						} else {
 							Osm2xpLogger.error("Invalid way id: " + member.getId());
 						}
 					}
 				}
-				List<List<Long>> polygons = getPolygonsFrom(outer);
+				long start = System.currentTimeMillis();
+				List<long[]> polygons = getPolygonsFrom(outer);
 				if (!polygons.isEmpty()) {
-					List<List<Long>> innerPolygons = getPolygonsFrom(inner);
+					List<long[]> innerPolygons = getPolygonsFrom(inner);
 					List<Polygon> cleanedPolys = doCleanup(polygons, innerPolygons);
+					relationAssembled(relation, polygons.size(), innerPolygons.size(), System.currentTimeMillis() - start);
 					translatePolys(relation.getId(), tagsModel, cleanedPolys);
 				} else {
 					Osm2xpLogger.error("Problem processing " + OsmUtils.getReadableType(tagsModel) + " relation, id=" + relation.getId() + ": Outer ring is invalid, possibly not closed");						
@@ -142,6 +229,14 @@ public abstract class AbstractOSMDataConverter implements IOSMDataVisitor {
 
 	}
 	
+	private void relationAssembled(Relation relation, int outerCount, int innerCount, long time) {
+		relationCnt++;
+		if (time > maxRelationTime) {
+			maxRelationTime = time;
+			slowestRelation = OsmUtils.getReadableType(relation.getTags()) + " relation, id=" + relation.getId() + ", " + outerCount + " outer and " + innerCount + " inner rings";
+		}
+	}
+	
 	protected List<com.osm2xp.core.model.osm.Node> getNodes(List<Long> polyIds) {
 		try {
 			return dataSink.getNodes(polyIds);
@@ -151,56 +246,20 @@ public abstract class AbstractOSMDataConverter implements IOSMDataVisitor {
 		return null;
 	}
 	
-	protected List<List<Long>> getPolygonsFrom(List<List<Long>> input) {
-		List<List<Long>> curves = new ArrayList<>(input);
-		List<List<Long>> result = new ArrayList<List<Long>>();
-		for (Iterator<List<Long>> iterator = curves.iterator(); iterator.hasNext();) {
-			List<Long> curList = (List<Long>) iterator.next();
-			if (isClosed(curList)) { // If some way forms closed contour - remove it without further analysis
-				result.add(curList);
-				iterator.remove();
-			}
-		}
-		while (!curves.isEmpty()) {
-			List<Long> segment = curves.remove(0);
-			List<Long> current = new ArrayList<>();
-			while (segment != null) {
-				if (!current.isEmpty()) {
-					segment = segment.subList(1, segment.size());
-				}
-				current.addAll(segment);
-				segment = null;
-				Long lastNodeId = current.get(current.size() - 1);
-				for (int i = 0; i < curves.size(); i++) {
-					List<Long> curve = curves.get(i);
-					if (!curve.isEmpty()) { 
-						if (curve.get(0).equals(lastNodeId)) {
-							segment = curves.remove(i);
-							break;
-						} else if (curve.get(curve.size() - 1).equals(lastNodeId)) {
-							segment = curves.remove(i);							
-							Collections.reverse(segment);
-							break;
-						}
-					}
-				}
-			}
-			if (current.get(0).equals(current.get(current.size() - 1))) {
-				result.add(current);
-			}
-	
-		}
-		return result;
+	/**
+	 * Assemble closed rings from given way segments, see {@link RingBuilder}
+	 * @param input way segments, as node id arrays
+	 * @return closed rings list
+	 */
+	protected List<long[]> getPolygonsFrom(List<long[]> input) {
+		return RingBuilder.buildRings(input);
 	}
 	
-	protected boolean isClosed(List<Long> curList) {
-		if (curList.size() > 1) {
-			return curList.get(0).equals(curList.get(curList.size() - 1));
-		}
-		return false;
+	protected boolean isClosed(long[] ids) {
+		return RingBuilder.isClosed(ids);
 	}
 	
-	protected List<Polygon> doCleanup(List<List<Long>> outer, List<List<Long>> inner) {
+	protected List<Polygon> doCleanup(List<long[]> outer, List<long[]> inner) {
 		GeometryFactory factory = Osm2XPGeometryFactory.getInstance();
 		if (outer.size() == 1) { // If we have only one outer ring - assign all inner rings to it and return
 			LinearRing[] innerRings = inner.stream().map(ids -> getRing(ids)).filter(ring -> ring != null)
@@ -214,14 +273,30 @@ public abstract class AbstractOSMDataConverter implements IOSMDataVisitor {
 				.collect(Collectors.toList());
 		List<LinearRing> innerRingsList = inner.stream().map(ids -> getRing(ids)).filter(ring -> ring != null)
 				.collect(Collectors.toList());
+		// Index inner rings by envelope, so only rings inside outer ring's envelope are checked with (prepared) covers predicate
+		STRtree innerIndex = new STRtree();
+		for (int i = 0; i < innerRingsList.size(); i++) {
+			innerIndex.insert(innerRingsList.get(i).getEnvelopeInternal(), i);
+		}
+		boolean[] assigned = new boolean[innerRingsList.size()];
 		List<Polygon> resultList = new ArrayList<Polygon>();
 		for (Polygon outerPoly : outerPolysList) {
+			@SuppressWarnings("unchecked")
+			List<Integer> candidates = innerIndex.query(outerPoly.getEnvelopeInternal());
+			Collections.sort(candidates); // Keep original inner rings order
+			PreparedGeometry preparedOuter = null;
 			List<LinearRing> innerRingList = new ArrayList<LinearRing>();
-			for (Iterator<LinearRing> iterator = innerRingsList.iterator(); iterator.hasNext();) {
-				LinearRing innerRing = iterator.next();
-				if (outerPoly.covers(innerRing)) {
+			for (int idx : candidates) {
+				if (assigned[idx]) { // Inner ring is assigned to the first outer ring covering it 
+					continue;
+				}
+				LinearRing innerRing = innerRingsList.get(idx);
+				if (preparedOuter == null) {
+					preparedOuter = PreparedGeometryFactory.prepare(outerPoly);
+				}
+				if (preparedOuter.covers(innerRing)) {
 					innerRingList.add(innerRing);
-					iterator.remove();
+					assigned[idx] = true;
 				}
 			}
 			resultList.add(factory.createPolygon(factory.createLinearRing(outerPoly.getCoordinates()),
@@ -230,59 +305,65 @@ public abstract class AbstractOSMDataConverter implements IOSMDataVisitor {
 		return resultList;
 	}
 
-	protected Geometry getGeometry(List<Long> nodeIds) {
+	protected Geometry getGeometry(long[] nodeIds) {
 		if (isClosed(nodeIds)) {
-			if (nodeIds.size() == 3) { //This can be a result of mistake when editing OSM - "closing" 2-point line by clicking first point after adding second one 
-				nodeIds = nodeIds.subList(0,2);
+			if (nodeIds.length == 3) { //This can be a result of mistake when editing OSM - "closing" 2-point line by clicking first point after adding second one 
+				nodeIds = Arrays.copyOf(nodeIds, 2);
 			} else {
 				return getPolygon(nodeIds);
 			}
 		}
-		Coordinate[] points = getCoords(nodeIds);
-		if (points != null && points.length >= 2) {
+		CoordinateSequence points = getCoords(nodeIds);
+		if (points != null && points.size() >= 2) {
 			GeometryFactory factory = Osm2XPGeometryFactory.getInstance();
 			return factory.createLineString(points);
 		}
 		return null;	
 	}
 
-	protected Polygon getPolygon(List<Long> polyNodeIds) {
-		Coordinate[] points = getCoords(polyNodeIds);
-		if (points != null && points.length >= 4 && points.length == polyNodeIds.size()) {
+	protected Polygon getPolygon(long[] polyNodeIds) {
+		CoordinateSequence points = getCoords(polyNodeIds);
+		if (points != null && points.size() >= 4 && points.size() == polyNodeIds.length) {
 			GeometryFactory factory = Osm2XPGeometryFactory.getInstance();
 			return factory.createPolygon(points);
 		}
 		return null;
 	}
 
-	protected LinearRing getRing(List<Long> nodeIds) {
-		Coordinate[] points = getCoords(nodeIds);
-		if (points != null && points.length >= 4) {
+	protected LinearRing getRing(long[] nodeIds) {
+		CoordinateSequence points = getCoords(nodeIds);
+		if (points != null && points.size() >= 4) {
 			GeometryFactory factory = Osm2XPGeometryFactory.getInstance();
 			return factory.createLinearRing(points);
 		}
 		return null;
 	}
 
-	protected Coordinate[] getCoords(List<Long> nodeIds) {
-		List<com.osm2xp.core.model.osm.Node> nodes = getNodes(nodeIds);
-		if (nodes == null) {
-			return null;
-		}
-		NodeCoordinate[] points = nodes.stream().map(node -> new NodeCoordinate(node.getLon(), node.getLat(), node.getId()))
-				.toArray(NodeCoordinate[]::new);
-		if (points.length < 1) {
-			return null;
+	protected CoordinateSequence getCoords(long[] nodeIds) {
+		try {
+			return PackedNodeCoordinateSequence.fromResolved(nodeIds, dataSink);
+		} catch (DataSinkException e) {
+			Osm2xpLogger.error(e);
 		}
-		return points;
+		return null;
 	}
 
 	protected List<Geometry> fix(List<? extends Geometry> geometries) {
 		return geometries.stream().map(geom -> GeomUtils.fix(geom)).filter(geom -> geom != null).collect(Collectors.toList());
 	}
 	
+	/**
+	 * Log assembled relations count and worst-case relation assembly time
+	 */
+	protected void logRelationStats() {
+		if (relationCnt > 0) {
+			Osm2xpLogger.info(relationCnt + " multipolygon relations assembled, slowest took " + maxRelationTime + " ms: " + slowestRelation);
+		}
+	}
+	
 	@Override
 	public void complete() {
+		logRelationStats();
 		try {
 			dataSink.complete();
 		} catch (DataSinkException e) {
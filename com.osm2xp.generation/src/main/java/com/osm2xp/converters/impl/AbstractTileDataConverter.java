@@ -1,9 +1,11 @@
 package com.osm2xp.converters.impl;
 
-import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
+import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.Polygon;
 
@@ -14,21 +16,23 @@ import com.osm2xp.core.model.osm.Tag;
 import com.osm2xp.datastore.IDataSink;
 import com.osm2xp.translators.ISpecificTranslator;
 import com.osm2xp.translators.ITranslatorProvider;
+import com.osm2xp.utils.geometry.Osm2XPGeometryFactory;
 import com.osm2xp.utils.osm.OsmUtils;
 
 import math.geom2d.Box2D;
 
 public abstract class AbstractTileDataConverter extends AbstractOSMDataConverter {
-	protected List<ISpecificTranslator> translationAdapters = new ArrayList<>();
+	protected TileRouter router = new TileRouter();
 	protected Box2D boundingBox;
 	protected ITranslatorProvider translatorProvider;
+	protected ITileGeometryListener tileGeometryListener;
 
 	public AbstractTileDataConverter(IDataSink processor) {
 		super(processor);
 	}
 
 	public void complete() {
-		for (ISpecificTranslator tileTranslationAdapter : translationAdapters) {
+		for (ISpecificTranslator tileTranslationAdapter : router.getAdapters()) {
 			tileTranslationAdapter.complete();
 		}
 		super.complete();
@@ -36,12 +40,7 @@ public abstract class AbstractTileDataConverter extends AbstractOSMDataConverter
 
 	@Override
 	protected boolean mustProcessPolyline(List<Tag> tagsModel) {
-		for (ISpecificTranslator adapter : translationAdapters) {
-			if (adapter.mustProcessPolyline(tagsModel)) {
-				return true;
-			}
-		}
-		return false;
+		return router.mustProcessPolyline(tagsModel);
 	}
 
 	@Override
@@ -51,13 +50,16 @@ public abstract class AbstractTileDataConverter extends AbstractOSMDataConverter
 			Osm2xpLogger.warning( "Way/Relation of type " + type + " with id " + id + " is invalid, unable to fix it automatically. Possible reasons - self-intersection or partial node information.");
 			return;
 		}
-		for (ISpecificTranslator adapter : translationAdapters) {
+		for (ISpecificTranslator adapter : router.getAdapters(cleanedPolys)) {
 			adapter.processWays(id, tagsModel, null, cleanedPolys);
 		}
+		if (tileGeometryListener != null) {
+			fireGeometryTiles(id, true, cleanedPolys);
+		}
 	}
 
 	@Override
-	protected void translateWay(com.osm2xp.core.model.osm.Way way, List<Long> ids) throws Osm2xpBusinessException {
+	protected void translateWay(com.osm2xp.core.model.osm.Way way, long[] ids) throws Osm2xpBusinessException {
 		Geometry geometry = getGeometry(ids);
 		if (geometry == null) {
 			return;
@@ -66,16 +68,59 @@ public abstract class AbstractTileDataConverter extends AbstractOSMDataConverter
 		if (fixed.isEmpty()) {
 			return;
 		} 
-		for (ISpecificTranslator adapter : translationAdapters) {
+		for (ISpecificTranslator adapter : router.getAdapters(fixed)) {
 			adapter.processWays(way.getId(), way.getTags(), geometry, fixed);
 		}
+		if (tileGeometryListener != null) {
+			fireGeometryTiles(way.getId(), false, fixed);
+		}
+	}
+
+	/**
+	 * Notify {@link #tileGeometryListener} about each tile, which is intersected by any of given geometries
+	 * @param id way or relation id
+	 * @param relation whether given id is relation id
+	 * @param geometries way or relation geometries
+	 */
+	private void fireGeometryTiles(long id, boolean relation, List<? extends Geometry> geometries) {
+		Set<Envelope> tiles = new LinkedHashSet<>();
+		for (Geometry geometry : geometries) {
+			Envelope envelope = geometry.getEnvelopeInternal();
+			int minX = (int) Math.floor(envelope.getMinX());
+			int maxX = (int) Math.floor(envelope.getMaxX());
+			int minY = (int) Math.floor(envelope.getMinY());
+			int maxY = (int) Math.floor(envelope.getMaxY());
+			for (int x = minX; x <= maxX; x++) {
+				for (int y = minY; y <= maxY; y++) {
+					Envelope tile = new Envelope(x, x + 1, y, y + 1);
+					// Single tile envelope - no need to check intersection
+					if (!tiles.contains(tile) && ((minX == maxX && minY == maxY) || geometry.intersects(Osm2XPGeometryFactory.getInstance().toGeometry(tile)))) {
+						tiles.add(tile);
+					}
+				}
+			}
+		}
+		for (Envelope tile : tiles) {
+			if (relation) {
+				tileGeometryListener.relationTile(id, (int) tile.getMinX(), (int) tile.getMinY());
+			} else {
+				tileGeometryListener.wayTile(id, (int) tile.getMinX(), (int) tile.getMinY());
+			}
+		}
+	}
+
+	/**
+	 * @param tileGeometryListener listener to notify about tiles translated geometries were clipped to, <code>null</code> if not needed
+	 */
+	public void setTileGeometryListener(ITileGeometryListener tileGeometryListener) {
+		this.tileGeometryListener = tileGeometryListener;
 	}
 
 	@Override
 	public void visit(Box2D boundingBox) {
 		super.visit(boundingBox);
 		this.boundingBox = boundingBox;
-		for (ISpecificTranslator tileTranslationAdapter : translationAdapters) {
+		for (ISpecificTranslator tileTranslationAdapter : router.getAdapters()) {
 			tileTranslationAdapter.processBoundingBox(boundingBox);
 		}
 		
@@ -84,7 +129,7 @@ public abstract class AbstractTileDataConverter extends AbstractOSMDataConverter
 	@Override
 	public void visit(Node node) {
 		// give the node to the translator for processing 
-		for (ISpecificTranslator adapter : translationAdapters) {
+		for (ISpecificTranslator adapter : router.getNodeAdapters(node)) {
 			try {
 				adapter.processNode(node);
 			} catch (Exception e) {
@@ -99,12 +144,20 @@ public abstract class AbstractTileDataConverter extends AbstractOSMDataConverter
 		if (dataSink.isReadOnly()) {
 			return false;
 		}
-		for (ISpecificTranslator tileTranslationAdapter : translationAdapters) {
-			if (tileTranslationAdapter.mustStoreNode(node)) {
-				return true;		
-			}
+		return router.mustStoreNode(node);
+	}
+	
+	@Override
+	protected boolean mustStoreNode(long id, double lon, double lat) {
+		if (dataSink.isReadOnly()) {
+			return false;
 		}
-		return false;
+		return router.mustStoreNode(id, lon, lat);
+	}
+	
+	@Override
+	protected boolean needsUntaggedNodes() {
+		return router.needsUntaggedNodes();
 	}
 	
 	public abstract int getTilesCount();
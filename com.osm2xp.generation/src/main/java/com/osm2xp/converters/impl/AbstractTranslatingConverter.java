@@ -26,6 +26,7 @@ public abstract class AbstractTranslatingConverter extends AbstractOSMDataConver
 
 	@Override
 	public void complete() {
+		logRelationStats();
 		translator.complete();
 	}
 
@@ -34,6 +35,16 @@ public abstract class AbstractTranslatingConverter extends AbstractOSMDataConver
 		return !dataSink.isReadOnly() && translator.mustStoreNode(node);
 	}
 
+	@Override
+	protected boolean mustStoreNode(long id, double lon, double lat) {
+		return !dataSink.isReadOnly() && translator.mustStoreNode(id, lon, lat);
+	}
+	
+	@Override
+	protected boolean needsUntaggedNodes() {
+		return translator.needsUntaggedNodes();
+	}
+
 	@Override
 	protected boolean mustProcessPolyline(List<Tag> tagsModel) {
 		return translator.mustProcessPolyline(tagsModel);
@@ -33,7 +33,7 @@ public class GeneralTranslatingConverter extends AbstractTranslatingConverter {
 	}
 	
 	@Override
-	protected void translateWay(Way way, List<Long> ids) throws Osm2xpBusinessException {
+	protected void translateWay(Way way, long[] ids) throws Osm2xpBusinessException {
 		Geometry geometry = getGeometry(ids);
 		if (geometry == null) {
 			return;
@@ -0,0 +1,27 @@
+package com.osm2xp.converters.impl;
+
+/**
+ * Listener notified about tiles translated way or multipolygon relation geometry was clipped to, i.e. tiles it's geometry intersects.
+ * Unlike tiles of element nodes, these include tiles crossed by way segments with no nodes inside and tiles covered by polygon entirely.
+ * For each element, calls are made before it is passed to other visitors following the converter
+ *
+ * @author 32kda
+ *
+ */
+public interface ITileGeometryListener {
+
+	/**
+	 * @param wayId way id
+	 * @param x tile longitude, lower left corner
+	 * @param y tile latitude, lower left corner
+	 */
+	public void wayTile(long wayId, int x, int y);
+
+	/**
+	 * @param relationId multipolygon relation id
+	 * @param x tile longitude, lower left corner
+	 * @param y tile latitude, lower left corner
+	 */
+	public void relationTile(long relationId, int x, int y);
+
+}
@@ -1,12 +1,17 @@
 package com.osm2xp.converters.impl;
 
+import java.util.Collection;
 import java.util.Set;
 
 import com.osm2xp.core.logging.Osm2xpLogger;
 import com.osm2xp.core.model.osm.Node;
 import com.osm2xp.datastore.IDataSink;
 import com.osm2xp.generation.collections.PointSet;
+import com.osm2xp.generation.options.GlobalOptionsProvider;
+import com.osm2xp.translators.ISpecificTranslator;
+import com.osm2xp.translators.ITranslator;
 import com.osm2xp.translators.ITranslatorProvider;
+import com.osm2xp.translators.impl.ParallelTranslationAdapter;
 import com.osm2xp.translators.impl.TileTranslationAdapter;
 
 import math.geom2d.Point2D;
@@ -21,24 +26,48 @@ import math.geom2d.Point2D;
 public class MultiTileDataConverter extends AbstractTileDataConverter {
 	
 	private Set<Point2D> tiles = new PointSet();
+	/**
+	 * Whether tiles should be detected from parsed nodes. Not needed if tiles list is known in advance
+	 */
+	private boolean detectTiles = true;
+	
 	public MultiTileDataConverter(IDataSink processor, ITranslatorProvider translatorProvider) {
 		super(processor);
 		this.translatorProvider = translatorProvider;
-		translationAdapters.addAll(translatorProvider.createAdditinalAdapters());
+		router.addGlobalAdapters(translatorProvider.createAdditinalAdapters());
+	}
+	
+	/**
+	 * Create converter for known tiles list, e.g. got from pre-scan pass. All the translation adapters are created immediately,
+	 * and per-node tile detection is skipped during parsing
+	 * @param processor data sink
+	 * @param translatorProvider translator provider
+	 * @param tiles tiles to translate
+	 */
+	public MultiTileDataConverter(IDataSink processor, ITranslatorProvider translatorProvider, Collection<Point2D> tiles) {
+		this(processor, translatorProvider);
+		for (Point2D tile : tiles) {
+			addTranslationAdapter(tile);
+		}
+		detectTiles = false;
 	}
 	
 	protected void pointParsed(double lonf, double latf) {
-		Point2D cleanedLoc = new Point2D((int) Math.floor(lonf), (int) Math.floor(latf));
-		if (!tiles.contains(cleanedLoc)) {
+		if (router.getTileAdapter(lonf, latf) == null) {
+			Point2D cleanedLoc = new Point2D((int) Math.floor(lonf), (int) Math.floor(latf));
 			Osm2xpLogger.info("Detected tile (" + cleanedLoc.x() + ", " + cleanedLoc.y() + ")");
 			addTranslationAdapter(cleanedLoc);
 		}
 	}
 
 	protected void addTranslationAdapter(Point2D point) {
-		TileTranslationAdapter adapter = new TileTranslationAdapter(point, dataSink, translatorProvider.getTranslator(point));
+		ITranslator translator = translatorProvider.getTranslator(point);
+		ISpecificTranslator adapter = new TileTranslationAdapter(point, dataSink, translator);
+		if (GlobalOptionsProvider.getOptions().isParallelTiles()) {
+			adapter = new ParallelTranslationAdapter((TileTranslationAdapter) adapter);
+		}
 		adapter.init();
-		translationAdapters.add(adapter);
+		router.addTileAdapter(point, adapter, translator.getClass());
 		tiles.add(point);
 		if (boundingBox != null) {
 			adapter.processBoundingBox(boundingBox);
@@ -48,10 +77,28 @@ public class MultiTileDataConverter extends AbstractTileDataConverter {
 	
 	@Override
 	public void visit(Node node) {
-		pointParsed(node.getLon(), node.getLat());
+		if (detectTiles) {
+			pointParsed(node.getLon(), node.getLat());
+		}
 		super.visit(node);
 	}
 	
+	@Override
+	public void visitUntagged(long id, double lon, double lat) {
+		if (detectTiles) {
+			pointParsed(lon, lat);
+		}
+		super.visitUntagged(id, lon, lat);
+	}
+	
+	/**
+	 * Translators are known in advance only if tiles list was given on creation
+	 */
+	@Override
+	public boolean canSelectRelations() {
+		return !detectTiles;
+	}
+	
 	public int getTilesCount() {
 		return tiles.size();
 	}
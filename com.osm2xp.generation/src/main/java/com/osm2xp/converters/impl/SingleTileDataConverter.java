@@ -12,6 +12,7 @@ import com.osm2xp.core.model.osm.Tag;
 import com.osm2xp.core.model.osm.Way;
 import com.osm2xp.datastore.IDataSink;
 import com.osm2xp.translators.ISpecificTranslator;
+import com.osm2xp.translators.ITranslator;
 import com.osm2xp.translators.ITranslatorProvider;
 import com.osm2xp.translators.impl.TileTranslationAdapter;
 
@@ -24,10 +25,11 @@ public class SingleTileDataConverter extends AbstractTileDataConverter {
 	public SingleTileDataConverter(IDataSink processor, ITranslatorProvider translatorProvider, Point2D tile) {
 		super(processor);
 		this.translatorProvider = translatorProvider;
-		translationAdapters.addAll(translatorProvider.createAdditinalAdapters());
-		TileTranslationAdapter adapter = new TileTranslationAdapter(tile, dataSink, translatorProvider.getTranslator(tile));
+		router.addGlobalAdapters(translatorProvider.createAdditinalAdapters());
+		ITranslator translator = translatorProvider.getTranslator(tile);
+		TileTranslationAdapter adapter = new TileTranslationAdapter(tile, dataSink, translator);
 		adapter.init();
-		translationAdapters.add(adapter);
+		router.addTileAdapter(tile, adapter, translator.getClass());
 		envelope = new Envelope(tile.x(), tile.x() + 1, tile.y(), tile.y() + 1);
 	}
 	
@@ -46,7 +48,7 @@ public class SingleTileDataConverter extends AbstractTileDataConverter {
 	}
 	
 	@Override
-	protected void translateWay(Way way, List<Long> ids) throws Osm2xpBusinessException {
+	protected void translateWay(Way way, long[] ids) throws Osm2xpBusinessException {
 		Geometry geometry = getGeometry(ids);
 		if (geometry == null) {
 			return;
@@ -64,7 +66,7 @@ public class SingleTileDataConverter extends AbstractTileDataConverter {
 			
 		}		
 		if (hasIntersection) {
-			for (ISpecificTranslator adapter : translationAdapters) {
+			for (ISpecificTranslator adapter : router.getAdapters(fixed)) {
 				adapter.processWays(way.getId(), way.getTags(), geometry, fixed);
 			} 
 		}
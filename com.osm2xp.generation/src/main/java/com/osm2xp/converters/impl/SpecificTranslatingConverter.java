@@ -19,7 +19,7 @@ public class SpecificTranslatingConverter extends AbstractTranslatingConverter {
 	}
 
 	@Override
-	protected void translateWay(Way way, List<Long> ids) throws Osm2xpBusinessException {
+	protected void translateWay(Way way, long[] ids) throws Osm2xpBusinessException {
 		Geometry geometry = getGeometry(ids);
 		if (geometry != null) {
 			List<Geometry> geoms = fix(Collections.singletonList(geometry));
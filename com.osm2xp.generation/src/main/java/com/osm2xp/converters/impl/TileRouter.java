@@ -0,0 +1,219 @@
+package com.osm2xp.converters.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+
+import com.osm2xp.core.model.osm.Node;
+import com.osm2xp.core.model.osm.Tag;
+import com.osm2xp.translators.ISpecificTranslator;
+
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import math.geom2d.Point2D;
+
+/**
+ * Routing index for translation adapters. Tile adapters are indexed by integer (lon, lat) cell of their tile, so node or geometry
+ * is dispatched only to adapters of tiles it covers, instead of broadcasting it to every adapter.
+ * Global adapters, not bound to any tile (e.g. airfield adapter), get everything.
+ *
+ * Tile translators of the same configuration (same translator class, created by the same provider from global options) are expected to give
+ * the same answer for {@link ISpecificTranslator#mustProcessPolyline(List)}, so it's asked only once per configuration,
+ * and {@link ISpecificTranslator#mustStoreNode(Node)} is asked only from adapter of the tile node belongs to.
+ *
+ * @author 32kda
+ *
+ */
+public class TileRouter {
+
+	private List<ISpecificTranslator> adapters = new ArrayList<>();
+	private List<ISpecificTranslator> globalAdapters = new ArrayList<>();
+	private TLongObjectMap<ISpecificTranslator> tileAdapters = new TLongObjectHashMap<>();
+	private Map<Object, ISpecificTranslator> configurationAdapters = new LinkedHashMap<>();
+	/**
+	 * Global adapters + one adapter per tile translator configuration
+	 */
+	private List<ISpecificTranslator> representativeAdapters = new ArrayList<>();
+	private boolean needsUntaggedNodes;
+
+	/**
+	 * Add adapter, which should get all the data regardless of location
+	 * @param adapter adapter to add
+	 */
+	public void addGlobalAdapter(ISpecificTranslator adapter) {
+		adapters.add(adapter);
+		globalAdapters.add(adapter);
+		updateRepresentatives();
+	}
+
+	public void addGlobalAdapters(Collection<ISpecificTranslator> adapters) {
+		for (ISpecificTranslator adapter : adapters) {
+			addGlobalAdapter(adapter);
+		}
+	}
+
+	/**
+	 * Add tile adapter
+	 * @param tile tile, lower left corner
+	 * @param adapter adapter for this tile
+	 * @param configuration configuration key, adapters with equal key are assumed to give same answer for {@link ISpecificTranslator#mustProcessPolyline(List)}.
+	 * Normally translator class should be used
+	 */
+	public void addTileAdapter(Point2D tile, ISpecificTranslator adapter, Object configuration) {
+		adapters.add(adapter);
+		tileAdapters.put(getCellKey((int) Math.floor(tile.x()), (int) Math.floor(tile.y())), adapter);
+		if (!configurationAdapters.containsKey(configuration)) {
+			configurationAdapters.put(configuration, adapter);
+			updateRepresentatives();
+		}
+	}
+
+	private void updateRepresentatives() {
+		representativeAdapters = new ArrayList<>(globalAdapters);
+		representativeAdapters.addAll(configurationAdapters.values());
+		needsUntaggedNodes = false;
+		for (ISpecificTranslator adapter : representativeAdapters) {
+			needsUntaggedNodes |= adapter.needsUntaggedNodes();
+		}
+	}
+
+	/**
+	 * @return all registered adapters, in order of registration
+	 */
+	public List<ISpecificTranslator> getAdapters() {
+		return Collections.unmodifiableList(adapters);
+	}
+
+	/**
+	 * @param lon longitude
+	 * @param lat latitude
+	 * @return adapter for the tile containing given point, or <code>null</code> if there is no such adapter
+	 */
+	public ISpecificTranslator getTileAdapter(double lon, double lat) {
+		return tileAdapters.get(getCellKey((int) Math.floor(lon), (int) Math.floor(lat)));
+	}
+
+	public boolean mustStoreNode(Node node) {
+		for (ISpecificTranslator adapter : globalAdapters) {
+			if (adapter.mustStoreNode(node)) {
+				return true;
+			}
+		}
+		ISpecificTranslator tileAdapter = getTileAdapter(node.getLon(), node.getLat());
+		if (tileAdapter != null) {
+			return tileAdapter.mustStoreNode(node);
+		}
+		for (ISpecificTranslator adapter : configurationAdapters.values()) {
+			if (adapter.mustStoreNode(node)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public boolean mustStoreNode(long id, double lon, double lat) {
+		for (ISpecificTranslator adapter : globalAdapters) {
+			if (adapter.mustStoreNode(id, lon, lat)) {
+				return true;
+			}
+		}
+		ISpecificTranslator tileAdapter = getTileAdapter(lon, lat);
+		if (tileAdapter != null) {
+			return tileAdapter.mustStoreNode(id, lon, lat);
+		}
+		for (ISpecificTranslator adapter : configurationAdapters.values()) {
+			if (adapter.mustStoreNode(id, lon, lat)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public boolean mustProcessPolyline(List<Tag> tags) {
+		for (ISpecificTranslator adapter : representativeAdapters) {
+			if (adapter.mustProcessPolyline(tags)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public boolean needsUntaggedNodes() {
+		return needsUntaggedNodes;
+	}
+
+	/**
+	 * Get adapters, which should process given node - global ones and adapters for tiles, which contain this node.
+	 * Node lying exactly on tile border belongs to both tiles
+	 * @param node node to process
+	 * @return adapters list
+	 */
+	public Collection<ISpecificTranslator> getNodeAdapters(Node node) {
+		return getAdapters(new Envelope(node.getLon(), node.getLon(), node.getLat(), node.getLat()));
+	}
+
+	/**
+	 * Get adapters, which should process given geometries - global ones and adapters for tiles, which intersect envelope of any of them
+	 * @param geometries geometries to process
+	 * @return adapters list
+	 */
+	public Collection<ISpecificTranslator> getAdapters(List<? extends Geometry> geometries) {
+		if (geometries.size() == 1) {
+			return getAdapters(geometries.get(0).getEnvelopeInternal());
+		}
+		Set<ISpecificTranslator> result = new LinkedHashSet<>(globalAdapters);
+		for (Geometry geometry : geometries) {
+			addTileAdapters(geometry.getEnvelopeInternal(), result);
+		}
+		return result;
+	}
+
+	protected Collection<ISpecificTranslator> getAdapters(Envelope envelope) {
+		if (tileAdapters.isEmpty()) {
+			return globalAdapters;
+		}
+		List<ISpecificTranslator> result = new ArrayList<>(globalAdapters);
+		addTileAdapters(envelope, result);
+		return result;
+	}
+
+	private void addTileAdapters(Envelope envelope, Collection<ISpecificTranslator> result) {
+		// Envelope intersects closed tile [x, x + 1] if x <= maxX and x + 1 >= minX
+		int minX = (int) Math.ceil(envelope.getMinX()) - 1;
+		int maxX = (int) Math.floor(envelope.getMaxX());
+		int minY = (int) Math.ceil(envelope.getMinY()) - 1;
+		int maxY = (int) Math.floor(envelope.getMaxY());
+		long cellsCount = (long) (maxX - minX + 1) * (maxY - minY + 1);
+		if (cellsCount > tileAdapters.size()) { // Huge geometry - cheaper to check all the tiles
+			for (long key : tileAdapters.keys()) {
+				int x = (int) (key >> 32);
+				int y = (int) key;
+				if (x >= minX && x <= maxX && y >= minY && y <= maxY) {
+					result.add(tileAdapters.get(key));
+				}
+			}
+			return;
+		}
+		for (int x = minX; x <= maxX; x++) {
+			for (int y = minY; y <= maxY; y++) {
+				ISpecificTranslator adapter = tileAdapters.get(getCellKey(x, y));
+				if (adapter != null) {
+					result.add(adapter);
+				}
+			}
+		}
+	}
+
+	private static long getCellKey(int x, int y) {
+		return ((long) x << 32) | (y & 0xFFFFFFFFL);
+	}
+
+}
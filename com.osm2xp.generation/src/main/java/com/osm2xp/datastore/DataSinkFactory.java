@@ -1,10 +1,19 @@
 package com.osm2xp.datastore;
 
+import java.io.File;
+import java.io.IOException;
+
 import com.osm2xp.core.exceptions.DataSinkException;
+import com.osm2xp.core.logging.Osm2xpLogger;
+import com.osm2xp.core.parsers.impl.PbfHeaderReader;
 import com.osm2xp.datastore.impl.MapDBProcessorImpl;
+import com.osm2xp.datastore.impl.MappedFileProcessorImpl;
 import com.osm2xp.datastore.impl.MemoryCriticalProcessorImpl;
+import com.osm2xp.datastore.impl.NodeStoreSnapshot;
 import com.osm2xp.generation.options.GlobalOptionsProvider;
 
+import math.geom2d.Box2D;
+
 /**
  * Data Sink Factory.
  * 
@@ -12,13 +21,66 @@ import com.osm2xp.generation.options.GlobalOptionsProvider;
  * 
  */
 public class DataSinkFactory {
+	
+	/**
+	 * PBF files bigger than this size would be processed with off-heap mapped file node store
+	 */
+	private static final long LARGE_PBF_SIZE = 2L * 1024 * 1024 * 1024;
+	/**
+	 * XML files bigger than this size would be processed with off-heap mapped file node store
+	 */
+	private static final long LARGE_XML_SIZE = 20L * 1024 * 1024 * 1024;
+	/**
+	 * Inputs with declared bounding box area (in square degrees) bigger than this would be processed with off-heap mapped file node store
+	 */
+	private static final double LARGE_BBOX_AREA = 1800;
 
 	public static IDataSink getDataSink() throws DataSinkException {
+		String filePath = GlobalOptionsProvider.getOptions().getCurrentFilePath();
+		NodeStoreSnapshot snapshot = null;
+		if (GlobalOptionsProvider.getOptions().isNodeStoreSnapshot() && filePath != null && new File(filePath).isFile()) {
+			snapshot = new NodeStoreSnapshot(new File(filePath));
+			IDataSink snapshotSink = snapshot.open();
+			if (snapshotSink != null) {
+				return snapshotSink;
+			}
+		}
+		// Tile translation workers may read the store while parser thread is filling it. MapDB maps and read-only snapshot are thread-safe as is
+		boolean concurrentReads = GlobalOptionsProvider.getOptions().isParallelTiles();
 		if (GlobalOptionsProvider.getOptions().isDatabaseMode()) { 
 			return new MapDBProcessorImpl();
+		} else if (isLargeInput(filePath)) {
+			Osm2xpLogger.info("Large input file detected, using memory-mapped node store");
+			return new MappedFileProcessorImpl(concurrentReads);
 		} else {
-			return new MemoryCriticalProcessorImpl();
+			MemoryCriticalProcessorImpl processor = new MemoryCriticalProcessorImpl(concurrentReads);
+			processor.setSnapshot(snapshot);
+			return processor;
 		}
 
 	}
+
+	private static boolean isLargeInput(String filePath) {
+		if (filePath == null) {
+			return false;
+		}
+		File file = new File(filePath);
+		if (!file.isFile()) {
+			return false;
+		}
+		String name = file.getName().toLowerCase();
+		if (name.endsWith(".pbf")) {
+			if (file.length() > LARGE_PBF_SIZE) {
+				return true;
+			}
+			try {
+				Box2D bbox = PbfHeaderReader.readBoundingBox(file);
+				return bbox != null && bbox.getWidth() * bbox.getHeight() > LARGE_BBOX_AREA;
+			} catch (IOException e) {
+				Osm2xpLogger.warning("Unable to read PBF header of " + filePath, e);
+				return false;
+			}
+		}
+		return file.length() > LARGE_XML_SIZE;
+	}
 }
@@ -29,6 +29,16 @@ public interface IDataSink {
 	 * @throws DataSinkException
 	 */
 	void storeNode(Node node) throws DataSinkException;
+	
+	/**
+	 * Store a node given by it's id and coordinates. Allows to store untagged nodes without creating {@link Node} instance.
+	 * 
+	 * @param id node id
+	 * @param lon node longitude
+	 * @param lat node latitude
+	 * @throws DataSinkException
+	 */
+	void storeNode(long id, double lon, double lat) throws DataSinkException;
 
 	/**
 	 * find a node in the storage implementation.
@@ -46,6 +56,37 @@ public interface IDataSink {
 	 * @return a list of osm nodes
 	 */
 	List<Node> getNodes(List<Long> nodeIds) throws DataSinkException;
+	
+	/**
+	 * Resolve coordinates for a bunch of nodes at once, without creating {@link Node} instances.
+	 * 
+	 * @param ids node ids
+	 * @param outXY output array of size <code>2 * ids.length</code>. Longitude and latitude of node <code>ids[i]</code> 
+	 * are written to <code>outXY[2 * i]</code> and <code>outXY[2 * i + 1]</code>, {@link Double#NaN} is written for missing nodes 
+	 * @return number of resolved nodes
+	 * @throws DataSinkException
+	 */
+	int resolveCoordinates(long[] ids, double[] outXY) throws DataSinkException;
+
+	/**
+	 * Pre-size node storage for known node id range, e.g. got from pre-scan pass. Should be called before storing any nodes.
+	 * Does nothing by default
+	 * 
+	 * @param minNodeId min node id to be stored
+	 * @param maxNodeId max node id to be stored
+	 * @param nodeCount expected nodes count
+	 */
+	public default void reserveNodes(long minNodeId, long maxNodeId, long nodeCount) {
+		// Do nothing by default
+	}
+
+	/**
+	 * Notify this sink, that some nodes or ways weren't stored, e.g. were filtered out or skipped while parsing.
+	 * Contents of such sink aren't complete and can't be reused for other runs. Does nothing by default
+	 */
+	public default void markPartial() {
+		// Do nothing by default
+	}
 
 	/**
 	 * called on completion of generation job.
@@ -25,6 +25,28 @@ public abstract class AbstractDataProcessor implements IDataSink {
 		return nodes.size() > 0 ? nodes : null;
 	}
 	
+	@Override
+	public int resolveCoordinates(long[] ids, double[] outXY) throws DataSinkException {
+		int found = 0;
+		for (int i = 0; i < ids.length; i++) {
+			Node node = getNode(ids[i]);
+			if (node != null) {
+				outXY[2 * i] = node.getLon();
+				outXY[2 * i + 1] = node.getLat();
+				found++;
+			} else {
+				outXY[2 * i] = Double.NaN;
+				outXY[2 * i + 1] = Double.NaN;
+			}
+		}
+		return found;
+	}
+	
+	@Override
+	public void storeNode(long id, double lon, double lat) throws DataSinkException {
+		storeNode(new Node(null, lat, lon, id));
+	}
+	
 	@Override
 	public void processBoundingBox(Box2D boundingBox) {
 		// Data Sink doesn't care by default; Override if necessary		
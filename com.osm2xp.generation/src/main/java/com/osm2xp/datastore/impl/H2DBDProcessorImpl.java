@@ -2,9 +2,12 @@ package com.osm2xp.datastore.impl;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 
 import org.h2.tools.Server;
@@ -23,11 +26,18 @@ public class H2DBDProcessorImpl extends AbstractDataProcessor {
 
 	private static final String QUERY_COUNT_NODES = "SELECT COUNT(*) FROM nodes";
 	private static final String QUERY_SELECT_NODE = "SELECT * FROM nodes where id=";
+	/**
+	 * Ids count for single batch node query. Statement is prepared once, last batch is padded with repeated id
+	 */
+	private static final int SELECT_BATCH_SIZE = 500;
+	private static final String QUERY_SELECT_NODES = "SELECT id, latitude, longitude FROM nodes where id IN ("
+			+ String.join(",", Collections.nCopies(SELECT_BATCH_SIZE, "?")) + ")";
 	private static final String QUERY_INSERT_NODE = "INSERT INTO NODES (id,latitude,longitude) VALUES ";
 	private static final String QUERY_CREATE_NODES_TABLE = "CREATE TABLE NODES(id LONG PRIMARY KEY, latitude DOUBLE,longitude DOUBLE)";
 	private static final String QUERY_DROP_NODES_TABLE = "DROP TABLE IF EXISTS NODES";
 	private Server server;
 	private Connection conn;
+	private PreparedStatement selectNodesStatement;
 	private long count = -1;
 
 	public H2DBDProcessorImpl() throws DataSinkException {
@@ -91,6 +101,60 @@ public class H2DBDProcessorImpl extends AbstractDataProcessor {
 		return node;
 	}
 
+	@Override
+	public int resolveCoordinates(long[] ids, double[] outXY) throws DataSinkException {
+		if (ids.length == 0) {
+			return 0;
+		}
+		long[] sorted = distinctSorted(ids);
+		double[] sortedXY = new double[sorted.length * 2];
+		Arrays.fill(sortedXY, Double.NaN);
+		try {
+			if (selectNodesStatement == null) {
+				selectNodesStatement = conn.prepareStatement(QUERY_SELECT_NODES);
+			}
+			for (int start = 0; start < sorted.length; start += SELECT_BATCH_SIZE) {
+				for (int i = 0; i < SELECT_BATCH_SIZE; i++) {
+					selectNodesStatement.setLong(i + 1, sorted[Math.min(start + i, sorted.length - 1)]);
+				}
+				try (ResultSet result = selectNodesStatement.executeQuery()) {
+					while (result.next()) {
+						int pos = Arrays.binarySearch(sorted, result.getLong(1));
+						sortedXY[2 * pos] = result.getDouble(3);
+						sortedXY[2 * pos + 1] = result.getDouble(2);
+					}
+				}
+			}
+		} catch (SQLException e) {
+			throw new DataSinkException("H2DB get nodes error", e);
+		}
+		int found = 0;
+		for (int i = 0; i < ids.length; i++) {
+			int pos = Arrays.binarySearch(sorted, ids[i]);
+			outXY[2 * i] = sortedXY[2 * pos];
+			outXY[2 * i + 1] = sortedXY[2 * pos + 1];
+			if (!Double.isNaN(outXY[2 * i])) {
+				found++;
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * @return sorted ids without duplicates - closed ways repeat first node id
+	 */
+	private static long[] distinctSorted(long[] ids) {
+		long[] sorted = ids.clone();
+		Arrays.sort(sorted);
+		int count = 1;
+		for (int i = 1; i < sorted.length; i++) {
+			if (sorted[i] != sorted[count - 1]) {
+				sorted[count++] = sorted[i];
+			}
+		}
+		return count < sorted.length ? Arrays.copyOf(sorted, count) : sorted;
+	}
+
 	@Override
 	public long getNodesNumber() {
 		if (count == -1) {
@@ -110,6 +174,14 @@ public class H2DBDProcessorImpl extends AbstractDataProcessor {
 
 	@Override
 	public void complete() throws DataSinkException {
+		if (selectNodesStatement != null) {
+			try {
+				selectNodesStatement.close();
+			} catch (SQLException e) {
+				Osm2xpLogger.error("H2DB statement closing error", e);
+			}
+			selectNodesStatement = null;
+		}
 		server.stop();
 	}
 	
@@ -64,8 +64,7 @@ public class MapDBProcessorImpl extends AbstractDataProcessor {
 
 	@Override
 	public void storeNode(Node node) throws DataSinkException {
-		double[] coords = new double[] { node.getLat(), node.getLon() };
-		nodesMap.put(node.getId(), coords);
+		storeNode(node.getId(), node.getLon(), node.getLat());
 //		sink.put(node.getId(), coords);
 //
 //		if (sink.size() == 100000) {
@@ -74,6 +73,11 @@ public class MapDBProcessorImpl extends AbstractDataProcessor {
 //		}
 	}
 
+	@Override
+	public void storeNode(long id, double lon, double lat) throws DataSinkException {
+		nodesMap.put(id, new double[] { lat, lon });
+	}
+
 //	private void injectNodesIntoStorage() {
 //		nodesMap.putAll(sink);
 //		db.commit();
@@ -97,6 +101,23 @@ public class MapDBProcessorImpl extends AbstractDataProcessor {
 
 	}
 
+	@Override
+	public int resolveCoordinates(long[] ids, double[] outXY) throws DataSinkException {
+		int found = 0;
+		for (int i = 0; i < ids.length; i++) {
+			double[] node = nodesMap.get(ids[i]);
+			if (node != null) {
+				outXY[2 * i] = node[1];
+				outXY[2 * i + 1] = node[0];
+				found++;
+			} else {
+				outXY[2 * i] = Double.NaN;
+				outXY[2 * i + 1] = Double.NaN;
+			}
+		}
+		return found;
+	}
+
 	@Override
 	public void complete() {
 		db.close();
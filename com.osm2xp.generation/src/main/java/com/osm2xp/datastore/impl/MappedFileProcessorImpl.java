@@ -0,0 +1,244 @@
+package com.osm2xp.datastore.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import com.osm2xp.core.exceptions.DataSinkException;
+import com.osm2xp.core.logging.Osm2xpLogger;
+import com.osm2xp.core.model.osm.Node;
+import com.osm2xp.generation.options.GlobalOptionsProvider;
+import com.osm2xp.index.MappedLongArray;
+
+import gnu.trove.TCollections;
+import gnu.trove.map.TLongLongMap;
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongLongHashMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+/**
+ * Off-heap data sink implementation for planet-scale inputs.
+ * Node coordinates are stored as packed fixed-point lon/lat pairs in memory-mapped file, directly indexed by node id,
+ * so lookup is O(1) and heap consumption doesn't depend on input size. Way point lists are appended to another mapped file,
+ * with mapped id-indexed offsets table.
+ * Ids, which are negative or too large for dense indexing (e.g. from JOSM edits) are stored in small on-heap hash maps.
+ * 
+ * In concurrent reads mode nodes and ways can be read from other threads (e.g. tile translation workers) while parser thread keeps storing them.
+ * Way is published to the index only after its point list is completely written.
+ *
+ * @author 32kda
+ *
+ */
+public class MappedFileProcessorImpl extends AbstractDataProcessor {
+
+	private static final double COORD_FACTOR = 10000000.0;
+	/**
+	 * Shift applied to stored latitude, so that stored value for any valid point is never 0, which means "no point"
+	 */
+	private static final int LAT_SHIFT = 91 * 10000000;
+	/**
+	 * Max id for dense id-indexed storage. Corresponds to 512 GB of virtual node address space. Mapped file chunks are created
+	 * only for touched id ranges, so disk usage is about <code>8 * max node id</code> bytes on file systems supporting sparse files
+	 * (ext4, XFS, APFS). On file systems without sparse files support (e.g. NTFS, FAT) file is allocated up to the last written chunk.
+	 * Free space is checked before each chunk is created, see {@link MappedLongArray}
+	 */
+	private static final long MAX_DENSE_ID = 1L << 36;
+
+	private MappedLongArray nodes;
+	private MappedLongArray wayIndex;
+	private MappedLongArray wayData;
+	private long wayDataSize = 0;
+	private TLongLongMap sparseNodes;
+	private TLongObjectMap<long[]> sparseWays;
+	private long nodesCount = 0;
+
+	public MappedFileProcessorImpl() throws DataSinkException {
+		this(false);
+	}
+
+	/**
+	 * @param concurrentReads <code>true</code> to allow reading stored nodes and ways from other threads while parser thread stores them
+	 * @throws DataSinkException in case of store files creation error
+	 */
+	public MappedFileProcessorImpl(boolean concurrentReads) throws DataSinkException {
+		if (concurrentReads) {
+			sparseNodes = TCollections.synchronizedMap(new TLongLongHashMap());
+			sparseWays = TCollections.synchronizedMap(new TLongObjectHashMap<>());
+		} else {
+			sparseNodes = new TLongLongHashMap();
+			sparseWays = new TLongObjectHashMap<>();
+		}
+		try {
+			nodes = new MappedLongArray(createTempFile("nodes"), true);
+			Osm2xpLogger.info("Node store files are created in " + nodes.getFile().getParentFile().getAbsolutePath() + ", "
+					+ (nodes.getFile().getParentFile().getUsableSpace() >> 20) + " MB free");
+			wayIndex = new MappedLongArray(createTempFile("wayidx"), true);
+			wayData = new MappedLongArray(createTempFile("waydata"), true);
+		} catch (IOException e) {
+			throw new DataSinkException("Error creating memory-mapped node store", e);
+		}
+	}
+
+	/**
+	 * Create node store file. Files are planet-sized for large inputs, so they are created in node store folder from options
+	 * or next to the input file rather than in system temp folder, which is often RAM-backed
+	 */
+	protected File createTempFile(String name) throws IOException {
+		File file = File.createTempFile("osm2xp-" + name, ".bin", getStoreFolder());
+		file.deleteOnExit();
+		return file;
+	}
+
+	/**
+	 * @return folder to create node store files in, <code>null</code> to use system temp folder
+	 */
+	protected File getStoreFolder() {
+		String folderPath = GlobalOptionsProvider.getOptions().getNodeStoreFolder();
+		if (folderPath != null && !folderPath.trim().isEmpty()) {
+			File folder = new File(folderPath.trim());
+			folder.mkdirs();
+			if (folder.isDirectory() && Files.isWritable(folder.toPath())) {
+				return folder;
+			}
+			Osm2xpLogger.warning("Node store folder " + folder.getAbsolutePath() + " is not writable, trying input file folder");
+		}
+		String inputPath = GlobalOptionsProvider.getOptions().getCurrentFilePath();
+		if (inputPath != null) {
+			File folder = new File(inputPath).getAbsoluteFile().getParentFile();
+			if (folder != null && folder.isDirectory() && Files.isWritable(folder.toPath())) {
+				return folder;
+			}
+		}
+		Osm2xpLogger.warning("Input file folder is not writable, node store files would be created in system temp folder");
+		return null;
+	}
+
+	@Override
+	public void storeNode(Node node) throws DataSinkException {
+		storeNode(node.getId(), node.getLon(), node.getLat());
+	}
+
+	@Override
+	public void storeNode(long id, double lon, double lat) throws DataSinkException {
+		long packed = pack(lon, lat);
+		if (isDense(id)) {
+			try {
+				if (nodes.get(id) == 0) {
+					nodesCount++;
+				}
+				nodes.set(id, packed);
+			} catch (IOException e) {
+				throw new DataSinkException("Error storing node " + id, e);
+			}
+		} else if (sparseNodes.put(id, packed) == 0) {
+			nodesCount++;
+		}
+	}
+
+	@Override
+	public Node getNode(Long id) throws DataSinkException {
+		long packed = getPacked(id);
+		if (packed == 0) {
+			return null;
+		}
+		Node node = new Node();
+		node.setId(id);
+		node.setLon(unpackLon(packed));
+		node.setLat(unpackLat(packed));
+		return node;
+	}
+
+	@Override
+	public int resolveCoordinates(long[] ids, double[] outXY) throws DataSinkException {
+		int found = 0;
+		for (int i = 0; i < ids.length; i++) {
+			long packed = getPacked(ids[i]);
+			if (packed != 0) {
+				outXY[2 * i] = unpackLon(packed);
+				outXY[2 * i + 1] = unpackLat(packed);
+				found++;
+			} else {
+				outXY[2 * i] = Double.NaN;
+				outXY[2 * i + 1] = Double.NaN;
+			}
+		}
+		return found;
+	}
+
+	protected long getPacked(long id) {
+		return isDense(id) ? nodes.get(id) : sparseNodes.get(id);
+	}
+
+	@Override
+	public void storeWayPoints(long wayId, long[] pointIds) {
+		if (!isDense(wayId)) {
+			sparseWays.put(wayId, pointIds);
+			return;
+		}
+		try {
+			long offset = wayDataSize;
+			wayData.set(offset, pointIds.length);
+			for (int i = 0; i < pointIds.length; i++) {
+				wayData.set(offset + 1 + i, pointIds[i]);
+			}
+			wayDataSize += pointIds.length + 1;
+			wayIndex.set(wayId, offset + 1); // 0 means "no way", so store offset + 1
+		} catch (IOException e) {
+			throw new IllegalStateException("Error storing way " + wayId, e);
+		}
+	}
+
+	@Override
+	public long[] getWayPoints(long wayId) {
+		if (!isDense(wayId)) {
+			return sparseWays.get(wayId);
+		}
+		long offset = wayIndex.get(wayId) - 1;
+		if (offset < 0) {
+			return null;
+		}
+		int size = (int) wayData.get(offset);
+		long[] result = new long[size];
+		for (int i = 0; i < size; i++) {
+			result[i] = wayData.get(offset + 1 + i);
+		}
+		return result;
+	}
+
+	@Override
+	public long getNodesNumber() {
+		return nodesCount;
+	}
+
+	@Override
+	public void complete() throws DataSinkException {
+		try {
+			nodes.close();
+			wayIndex.close();
+			wayData.close();
+		} catch (IOException e) {
+			Osm2xpLogger.warning("Error closing memory-mapped node store", e);
+		}
+		sparseNodes = null;
+		sparseWays = null;
+	}
+
+	private static boolean isDense(long id) {
+		return id >= 0 && id < MAX_DENSE_ID;
+	}
+
+	static long pack(double lon, double lat) {
+		long lonInt = Math.round(lon * COORD_FACTOR);
+		long latInt = Math.round(lat * COORD_FACTOR) + LAT_SHIFT;
+		return (lonInt << 32) | (latInt & 0xFFFFFFFFL);
+	}
+
+	static double unpackLon(long packed) {
+		return (int) (packed >> 32) / COORD_FACTOR;
+	}
+
+	static double unpackLat(long packed) {
+		return ((int) packed - LAT_SHIFT) / COORD_FACTOR;
+	}
+
+}
@@ -1,36 +1,61 @@
 package com.osm2xp.datastore.impl;
 
 import com.osm2xp.core.exceptions.DataSinkException;
+import com.osm2xp.core.logging.Osm2xpLogger;
 import com.osm2xp.core.model.osm.Node;
-import com.osm2xp.index.IIdIndex;
+import com.osm2xp.index.AbstractPointCoordsIndex;
 import com.osm2xp.index.IntIndexStorage;
 import com.osm2xp.index.PointCoordsIndex;
+import com.osm2xp.index.PointIndexStorage;
 import com.osm2xp.index.PointUnpackedCoordsIndex;
 
 import math.geom2d.Box2D;
 
 /**
  * Memory-critical data sink implementation for processing large files. 
- * Using sorted arrays and binary search methods instead of Hashmaps for storing nodes and way point ids
+ * Using sorted arrays and binary search methods instead of Hashmaps for storing nodes and way point ids.
+ * Input doesn't need to be sorted by id - nodes and ways coming out of order are kept aside and merged into sorted arrays later, see {@link IntIndexStorage}  
+ * 
+ * In concurrent reads mode nodes and ways can be read from other threads (e.g. tile translation workers) while parser thread keeps storing them.
+ * Other threads see only sealed storage segments - node segments are sealed when parser moves to the next segment and when first way is stored, 
+ * all segments are sealed when store becomes read-only.
  * 
  * @author 32kda
  * 
  */
 public class MemoryCriticalProcessorImpl extends AbstractDataProcessor {
 
-	private IntIndexStorage<double[]> pointStorage = new IntIndexStorage<double[]>() {
-
-		@Override
-		protected IIdIndex<double[]> createIndex() {
-			return createPointIndex();
-		}
-	};
+	private PointIndexStorage pointStorage;
 	/**
 	 * Try to use coordinate packing storage to lower memory consumption.  
 	 */
 	private boolean packedMode = true; 
-	private IntIndexStorage<Object> wayStorage = new IntIndexStorage<Object>();	
+	private IntIndexStorage<Object> wayStorage;	
 	private IDListFactory idListFactory = new IDListFactory();
+	private boolean nodesSealed = false;
+	/**
+	 * Snapshot to save complete store contents to, <code>null</code> if not needed
+	 */
+	private NodeStoreSnapshot snapshot;
+	private boolean partial = false;
+	
+	public MemoryCriticalProcessorImpl() {
+		this(false);
+	}
+	
+	/**
+	 * @param concurrentReads <code>true</code> to allow reading stored nodes and ways from other threads while parser thread stores them
+	 */
+	public MemoryCriticalProcessorImpl(boolean concurrentReads) {
+		pointStorage = new PointIndexStorage(concurrentReads) {
+
+			@Override
+			protected AbstractPointCoordsIndex createIndex() {
+				return createPointIndex();
+			}
+		};
+		wayStorage = new IntIndexStorage<Object>(concurrentReads);
+	}
 	
 	public void processBoundingBox(Box2D boundingBox) {
 		if (boundingBox.getMinX() < -179 && boundingBox.getMaxX() > 179) { //We are near meridian 180
@@ -40,8 +65,17 @@ public class MemoryCriticalProcessorImpl extends AbstractDataProcessor {
 
 	@Override
 	public void storeNode(final Node node) throws DataSinkException {
-		long id = node.getId();
-		pointStorage.add(id, new double[] {node.getLon(), node.getLat()});
+		pointStorage.add(node.getId(), node.getLon(), node.getLat());
+	}
+	
+	@Override
+	public void storeNode(long id, double lon, double lat) throws DataSinkException {
+		pointStorage.add(id, lon, lat);
+	}
+
+	@Override
+	public void reserveNodes(long minNodeId, long maxNodeId, long nodeCount) {
+		pointStorage.reserve(minNodeId, maxNodeId);
 	}
 
 	@Override
@@ -57,11 +91,35 @@ public class MemoryCriticalProcessorImpl extends AbstractDataProcessor {
 		return null;
 	}
 
+	@Override
+	public int resolveCoordinates(long[] ids, double[] outXY) throws DataSinkException {
+		return pointStorage.resolveCoordinates(ids, outXY);
+	}
+
+	@Override
+	public void markPartial() {
+		partial = true;
+	}
+
 	@Override
 	public void complete() {
+		if (snapshot != null && pointStorage != null) {
+			if (partial) {
+				Osm2xpLogger.info("Not all the nodes and ways were stored, node store snapshot won't be saved");
+			} else {
+				snapshot.save(pointStorage, wayStorage, idListFactory);
+			}
+		}
 		pointStorage = null;
 		wayStorage = null;
 	}
+	
+	/**
+	 * @param snapshot snapshot to save store contents to on {@link #complete()}. Contents are saved only if all the input nodes and ways were stored
+	 */
+	public void setSnapshot(NodeStoreSnapshot snapshot) {
+		this.snapshot = snapshot;
+	}
 
 	@Override
 	public long getNodesNumber() {
@@ -70,15 +128,28 @@ public class MemoryCriticalProcessorImpl extends AbstractDataProcessor {
 
 	@Override
 	public void storeWayPoints(long wayId, long[] pointIds) {
+		if (!nodesSealed) { // Nodes usually go before ways, so it's time to merge out-of-order nodes and publish the last nodes segment
+			pointStorage.seal();
+			nodesSealed = true;
+		}
 		wayStorage.add(wayId, idListFactory.getStore(pointIds));
 	}
+	
+	@Override
+	public void setReadOnly(boolean readOnly) {
+		super.setReadOnly(readOnly);
+		if (readOnly && pointStorage != null) {
+			pointStorage.seal();
+			wayStorage.seal();
+		}
+	}
 
 	@Override
 	public long[] getWayPoints(long wayId) {
 		return idListFactory.getIdsList(wayStorage.get(wayId));
 	}
 
-	protected IIdIndex<double[]> createPointIndex() {
+	protected AbstractPointCoordsIndex createPointIndex() {
 		if (packedMode) {
 			return new PointCoordsIndex();
 		} else {
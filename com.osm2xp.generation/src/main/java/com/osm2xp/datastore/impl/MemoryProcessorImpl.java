@@ -23,8 +23,12 @@ public class MemoryProcessorImpl extends AbstractDataProcessor {
 
 	@Override
 	public void storeNode(final Node node) throws DataSinkException {
-		double[] pt = new double[] { node.getLat(), node.getLon() };
-		this.nodeMap.put(node.getId(), pt);
+		storeNode(node.getId(), node.getLon(), node.getLat());
+	}
+	
+	@Override
+	public void storeNode(long id, double lon, double lat) throws DataSinkException {
+		this.nodeMap.put(id, new double[] { lat, lon });
 	}
 
 	@Override
@@ -0,0 +1,259 @@
+package com.osm2xp.datastore.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import com.osm2xp.core.logging.Osm2xpLogger;
+import com.osm2xp.datastore.IDataSink;
+import com.osm2xp.index.IntIndexStorage;
+import com.osm2xp.index.MappedLongArray;
+import com.osm2xp.index.PointIndexStorage;
+import com.osm2xp.utils.FilesUtils;
+
+/**
+ * Snapshot of completed node store - node coordinates and way node lists, stored next to the input file.
+ * Snapshot is keyed by input file size, modification time and SHA-1 hash of it's contents. If input file wasn't changed,
+ * next generation run with the same input maps snapshot file into memory instead of storing nodes again,
+ * see {@link SnapshotDataSink}.
+ *
+ * Snapshot file consists of big-endian long values only, so it can be mapped as {@link MappedLongArray}:
+ * header, sorted node ids, packed node coordinates, node ids directory, sorted way ids, way offsets, way node ids and way ids directory.
+ * Directory holds position of the first element for each 2^16 id bucket, so element lookup is a binary search inside one bucket.
+ *
+ * @author 32kda
+ *
+ */
+public class NodeStoreSnapshot {
+
+	private static final String SNAPSHOT_EXTENSION = ".nodestore";
+	private static final long MAGIC = 0x4F32584E4F444553L; // "O2XNODES"
+	private static final long VERSION = 1;
+	/**
+	 * Max directory size, ids range for bigger directory is too sparse to be snapshotted
+	 */
+	private static final long MAX_BUCKETS = 1L << 24;
+
+	static final int BUCKET_SHIFT = 16;
+	static final int HEADER_SIZE = 16;
+	static final int H_MAGIC = 0;
+	static final int H_VERSION = 1;
+	static final int H_LENGTH = 2;
+	static final int H_MODIFIED = 3;
+	static final int H_HASH = 4; // 3 longs
+	static final int H_NODE_COUNT = 7;
+	static final int H_MIN_NODE_ID = 8;
+	static final int H_NODE_BUCKETS = 9;
+	static final int H_WAY_COUNT = 10;
+	static final int H_MIN_WAY_ID = 11;
+	static final int H_WAY_BUCKETS = 12;
+	static final int H_WAY_DATA_SIZE = 13;
+
+	private final File inputFile;
+	private final File snapshotFile;
+
+	public NodeStoreSnapshot(File inputFile) {
+		this.inputFile = inputFile;
+		this.snapshotFile = new File(inputFile.getAbsolutePath() + SNAPSHOT_EXTENSION);
+	}
+
+	/**
+	 * Open snapshot for reading, if it exists and is valid for current input file
+	 * @return read-only data sink, backed by snapshot file, or <code>null</code> if there is no valid snapshot
+	 */
+	public IDataSink open() {
+		if (!snapshotFile.isFile()) {
+			return null;
+		}
+		MappedLongArray data = null;
+		try {
+			data = new MappedLongArray(snapshotFile);
+			if (data.get(H_MAGIC) != MAGIC || data.get(H_VERSION) != VERSION) {
+				Osm2xpLogger.info("Node store snapshot " + snapshotFile + " has unsupported format, would be rebuilt");
+				data.close();
+				return null;
+			}
+			if (data.get(H_LENGTH) != inputFile.length() ||
+					(data.get(H_MODIFIED) != inputFile.lastModified() && !hashEquals(data, FilesUtils.computeHash(inputFile)))) {
+				Osm2xpLogger.info("Input file was changed, node store snapshot would be rebuilt");
+				data.close();
+				return null;
+			}
+			SnapshotDataSink sink = new SnapshotDataSink(data);
+			Osm2xpLogger.info("Node store snapshot " + snapshotFile + " mapped, " + sink.getNodesNumber() + " nodes and " + sink.getWaysNumber() + " ways");
+			return sink;
+		} catch (IOException e) {
+			Osm2xpLogger.warning("Error reading node store snapshot " + snapshotFile + ", would be rebuilt", e);
+			if (data != null) {
+				try {
+					data.close();
+				} catch (IOException e1) {
+					// Ignore
+				}
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Save node store contents to snapshot file. Errors are logged, since snapshot is optional
+	 * @param points stored points
+	 * @param ways stored ways
+	 * @param idListFactory factory used to store way node lists
+	 */
+	public void save(PointIndexStorage points, IntIndexStorage<Object> ways, IDListFactory idListFactory) {
+		long t1 = System.currentTimeMillis();
+		File tempFile = new File(snapshotFile.getAbsolutePath() + ".tmp");
+		try {
+			String hash = FilesUtils.computeHash(inputFile);
+			IdStats nodeStats = new IdStats();
+			points.forEachPoint((id, lon, lat) -> nodeStats.add(id, 0));
+			IdStats wayStats = new IdStats();
+			ways.forEach((id, item) -> wayStats.add(id, idListFactory.getIdsList(item).length));
+			try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile), 1 << 16))) {
+				long[] header = new long[HEADER_SIZE];
+				header[H_MAGIC] = MAGIC;
+				header[H_VERSION] = VERSION;
+				header[H_LENGTH] = inputFile.length();
+				header[H_MODIFIED] = inputFile.lastModified();
+				System.arraycopy(hashToLongs(hash), 0, header, H_HASH, 3);
+				header[H_NODE_COUNT] = nodeStats.count;
+				header[H_MIN_NODE_ID] = nodeStats.min;
+				header[H_NODE_BUCKETS] = nodeStats.getBucketCount();
+				header[H_WAY_COUNT] = wayStats.count;
+				header[H_MIN_WAY_ID] = wayStats.min;
+				header[H_WAY_BUCKETS] = wayStats.getBucketCount();
+				header[H_WAY_DATA_SIZE] = wayStats.dataSize;
+				for (long value : header) {
+					output.writeLong(value);
+				}
+				DirectoryBuilder nodeDirectory = new DirectoryBuilder(nodeStats);
+				points.forEachPoint((id, lon, lat) -> {
+					nodeDirectory.add(id);
+					output.writeLong(id);
+				});
+				points.forEachPoint((id, lon, lat) -> output.writeLong(MappedFileProcessorImpl.pack(lon, lat)));
+				nodeDirectory.write(output);
+				DirectoryBuilder wayDirectory = new DirectoryBuilder(wayStats);
+				ways.forEach((id, item) -> {
+					wayDirectory.add(id);
+					output.writeLong(id);
+				});
+				long[] offset = new long[1];
+				ways.forEach((id, item) -> {
+					output.writeLong(offset[0]);
+					offset[0] += idListFactory.getIdsList(item).length;
+				});
+				output.writeLong(offset[0]);
+				ways.forEach((id, item) -> {
+					for (long nodeId : idListFactory.getIdsList(item)) {
+						output.writeLong(nodeId);
+					}
+				});
+				wayDirectory.write(output);
+			}
+			Files.move(tempFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			Osm2xpLogger.info("Node store snapshot with " + nodeStats.count + " nodes and " + wayStats.count + " ways saved to "
+					+ snapshotFile + " in " + (System.currentTimeMillis() - t1) + " ms");
+		} catch (IOException e) {
+			Osm2xpLogger.warning("Unable to save node store snapshot " + snapshotFile, e);
+			tempFile.delete();
+		}
+	}
+
+	public File getSnapshotFile() {
+		return snapshotFile;
+	}
+
+	private static boolean hashEquals(MappedLongArray data, String hash) {
+		long[] values = hashToLongs(hash);
+		for (int i = 0; i < values.length; i++) {
+			if (data.get(H_HASH + i) != values[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Pack 40-char hex SHA-1 hash into 3 longs
+	 */
+	private static long[] hashToLongs(String hash) {
+		long[] result = new long[3];
+		for (int i = 0; i < 3; i++) {
+			String part = hash.substring(i * 16, Math.min(hash.length(), (i + 1) * 16));
+			result[i] = Long.parseUnsignedLong(part, 16);
+		}
+		return result;
+	}
+
+	/**
+	 * Id range, count and data size of stored elements, gathered before writing
+	 */
+	private static class IdStats {
+		private long count;
+		private long min = 0;
+		private long max = Long.MIN_VALUE;
+		private long dataSize;
+
+		public void add(long id, int size) throws IOException {
+			if (id <= max) {
+				throw new IOException("Stored ids aren't sorted, id " + id + " follows id " + max);
+			}
+			if (count == 0) {
+				min = id;
+			}
+			max = id;
+			count++;
+			dataSize += size;
+		}
+
+		public long getBucketCount() throws IOException {
+			if (count == 0) {
+				return 0;
+			}
+			long buckets = ((max - min) >>> BUCKET_SHIFT) + 1;
+			if (buckets > MAX_BUCKETS) {
+				throw new IOException("Stored ids range is too sparse: " + min + " - " + max);
+			}
+			return buckets;
+		}
+	}
+
+	/**
+	 * Builds bucket directory - position of the first element for each bucket and total element count as the last entry
+	 */
+	private static class DirectoryBuilder {
+		private final long[] directory;
+		private final long min;
+		private int nextBucket = 0;
+		private long position = 0;
+
+		public DirectoryBuilder(IdStats stats) throws IOException {
+			directory = new long[(int) stats.getBucketCount() + 1];
+			min = stats.min;
+		}
+
+		public void add(long id) {
+			int bucket = (int) ((id - min) >>> BUCKET_SHIFT);
+			while (nextBucket <= bucket) {
+				directory[nextBucket++] = position;
+			}
+			position++;
+		}
+
+		public void write(DataOutputStream output) throws IOException {
+			while (nextBucket < directory.length) {
+				directory[nextBucket++] = position;
+			}
+			for (long value : directory) {
+				output.writeLong(value);
+			}
+		}
+	}
+
+}
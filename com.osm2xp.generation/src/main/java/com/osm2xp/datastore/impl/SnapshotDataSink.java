@@ -0,0 +1,179 @@
+package com.osm2xp.datastore.impl;
+
+import java.io.IOException;
+
+import com.osm2xp.core.exceptions.DataSinkException;
+import com.osm2xp.core.model.osm.Node;
+import com.osm2xp.index.MappedLongArray;
+
+/**
+ * Read-only data sink backed by memory-mapped node store snapshot, saved by {@link NodeStoreSnapshot} during some previous run.
+ * Nodes and ways are already present here, so storing anything is not supported - sink is read-only from the beginning.
+ *
+ * @author 32kda
+ *
+ */
+public class SnapshotDataSink extends AbstractDataProcessor {
+
+	private final MappedLongArray data;
+	private final Section nodes;
+	private final Section ways;
+	private final long nodeCoordsStart;
+	private final long wayOffsetsStart;
+	private final long wayDataStart;
+
+	SnapshotDataSink(MappedLongArray data) {
+		this.data = data;
+		long nodeCount = data.get(NodeStoreSnapshot.H_NODE_COUNT);
+		long nodeBuckets = data.get(NodeStoreSnapshot.H_NODE_BUCKETS);
+		long wayCount = data.get(NodeStoreSnapshot.H_WAY_COUNT);
+		long wayBuckets = data.get(NodeStoreSnapshot.H_WAY_BUCKETS);
+		long pos = NodeStoreSnapshot.HEADER_SIZE;
+		long nodeIdsStart = pos;
+		pos += nodeCount;
+		nodeCoordsStart = pos;
+		pos += nodeCount;
+		nodes = new Section(nodeIdsStart, pos, nodeCount, data.get(NodeStoreSnapshot.H_MIN_NODE_ID), nodeBuckets);
+		pos += nodeBuckets + 1;
+		long wayIdsStart = pos;
+		pos += wayCount;
+		wayOffsetsStart = pos;
+		pos += wayCount + 1;
+		wayDataStart = pos;
+		pos += data.get(NodeStoreSnapshot.H_WAY_DATA_SIZE);
+		ways = new Section(wayIdsStart, pos, wayCount, data.get(NodeStoreSnapshot.H_MIN_WAY_ID), wayBuckets);
+		setReadOnly(true);
+	}
+
+	@Override
+	public void storeNode(Node node) throws DataSinkException {
+		throw new DataSinkException("Node store snapshot is read-only", null);
+	}
+
+	@Override
+	public void storeNode(long id, double lon, double lat) throws DataSinkException {
+		throw new DataSinkException("Node store snapshot is read-only", null);
+	}
+
+	@Override
+	public Node getNode(Long id) throws DataSinkException {
+		long idx = nodes.find(id);
+		if (idx < 0) {
+			return null;
+		}
+		long packed = data.get(nodeCoordsStart + idx);
+		Node node = new Node();
+		node.setId(id);
+		node.setLon(MappedFileProcessorImpl.unpackLon(packed));
+		node.setLat(MappedFileProcessorImpl.unpackLat(packed));
+		return node;
+	}
+
+	@Override
+	public int resolveCoordinates(long[] ids, double[] outXY) throws DataSinkException {
+		int found = 0;
+		for (int i = 0; i < ids.length; i++) {
+			long idx = nodes.find(ids[i]);
+			if (idx >= 0) {
+				long packed = data.get(nodeCoordsStart + idx);
+				outXY[2 * i] = MappedFileProcessorImpl.unpackLon(packed);
+				outXY[2 * i + 1] = MappedFileProcessorImpl.unpackLat(packed);
+				found++;
+			} else {
+				outXY[2 * i] = Double.NaN;
+				outXY[2 * i + 1] = Double.NaN;
+			}
+		}
+		return found;
+	}
+
+	@Override
+	public void storeWayPoints(long wayId, long[] pointIds) {
+		throw new UnsupportedOperationException("Node store snapshot is read-only");
+	}
+
+	@Override
+	public long[] getWayPoints(long wayId) {
+		long idx = ways.find(wayId);
+		if (idx < 0) {
+			return null;
+		}
+		long start = data.get(wayOffsetsStart + idx);
+		long end = data.get(wayOffsetsStart + idx + 1);
+		long[] result = new long[(int) (end - start)];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = data.get(wayDataStart + start + i);
+		}
+		return result;
+	}
+
+	@Override
+	public long getNodesNumber() {
+		return nodes.count;
+	}
+
+	public long getWaysNumber() {
+		return ways.count;
+	}
+
+	@Override
+	public void setReadOnly(boolean readOnly) {
+		super.setReadOnly(true);
+	}
+
+	@Override
+	public void complete() throws DataSinkException {
+		try {
+			data.close();
+		} catch (IOException e) {
+			throw new DataSinkException("Error closing node store snapshot", e);
+		}
+	}
+
+	/**
+	 * Sorted id section with bucket directory
+	 */
+	private class Section {
+		private final long idsStart;
+		private final long directoryStart;
+		private final long count;
+		private final long minId;
+		private final long buckets;
+
+		public Section(long idsStart, long directoryStart, long count, long minId, long buckets) {
+			this.idsStart = idsStart;
+			this.directoryStart = directoryStart;
+			this.count = count;
+			this.minId = minId;
+			this.buckets = buckets;
+		}
+
+		/**
+		 * @return element position for given id, -1 if not found
+		 */
+		public long find(long id) {
+			if (count == 0 || id < minId) {
+				return -1;
+			}
+			long bucket = (id - minId) >>> NodeStoreSnapshot.BUCKET_SHIFT;
+			if (bucket >= buckets) {
+				return -1;
+			}
+			long low = data.get(directoryStart + bucket);
+			long high = data.get(directoryStart + bucket + 1) - 1;
+			while (low <= high) {
+				long mid = (low + high) >>> 1;
+				long midId = data.get(idsStart + mid);
+				if (midId < id) {
+					low = mid + 1;
+				} else if (midId > id) {
+					high = mid - 1;
+				} else {
+					return mid;
+				}
+			}
+			return -1;
+		}
+	}
+
+}
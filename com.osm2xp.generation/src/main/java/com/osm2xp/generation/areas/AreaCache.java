@@ -0,0 +1,169 @@
+package com.osm2xp.generation.areas;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKBReader;
+import org.locationtech.jts.io.WKBWriter;
+
+import com.osm2xp.core.logging.Osm2xpLogger;
+import com.osm2xp.core.model.osm.Tag;
+import com.osm2xp.utils.FilesUtils;
+import com.osm2xp.utils.geometry.Osm2XPGeometryFactory;
+
+/**
+ * On-disk cache of landuse areas, produced by {@link LanduseAreasAnalyzer}. Cache is stored next to the input file
+ * and is keyed by SHA-1 hash of input file contents, so it can be reused by subsequent generation runs with any translation options,
+ * and preprocessing pass can be skipped completely.
+ *
+ * Input file size and modification time are stored too - if they match, stored hash is trusted without re-reading the whole input file.
+ * If only modification time differs, but hash matches, stored modification time is updated.
+ *
+ * @author 32kda
+ *
+ */
+public class AreaCache {
+
+	private static final String CACHE_EXTENSION = ".areas";
+	private static final int MAGIC = 0x4F325841; // "O2XA"
+	private static final int VERSION = 1;
+	/**
+	 * Header offset of input file modification time - it follows magic, version and input file length
+	 */
+	private static final long LAST_MODIFIED_OFFSET = 4 + 4 + 8;
+
+	private final File inputFile;
+	private final File cacheFile;
+
+	public AreaCache(File inputFile) {
+		this.inputFile = inputFile;
+		this.cacheFile = new File(inputFile.getAbsolutePath() + CACHE_EXTENSION);
+	}
+
+	/**
+	 * Load cached areas into given provider
+	 * @param provider provider to load areas to
+	 * @return <code>true</code> if cache is valid for current input file and was loaded, <code>false</code> otherwise
+	 */
+	public boolean load(AreaProvider provider) {
+		if (!cacheFile.isFile()) {
+			return false;
+		}
+		long inputModified = inputFile.lastModified();
+		boolean modifiedChanged = false;
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))) {
+			if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+				Osm2xpLogger.info("Landuse areas cache " + cacheFile + " has unsupported format, would be rebuilt");
+				return false;
+			}
+			long length = input.readLong();
+			long lastModified = input.readLong();
+			String hash = input.readUTF();
+			if (length != inputFile.length()) {
+				return false;
+			}
+			if (lastModified != inputModified) {
+				if (!hash.equals(FilesUtils.computeHash(inputFile))) {
+					Osm2xpLogger.info("Input file was changed, landuse areas cache would be rebuilt");
+					return false;
+				}
+				modifiedChanged = true; // E.g. file was copied or touched, contents are the same
+			}
+			int count = input.readInt();
+			List<MapArea> areas = new ArrayList<>(count);
+			WKBReader reader = new WKBReader(Osm2XPGeometryFactory.getInstance());
+			for (int i = 0; i < count; i++) {
+				int tagCount = input.readInt();
+				List<Tag> tags = new ArrayList<>(tagCount);
+				for (int j = 0; j < tagCount; j++) {
+					tags.add(new Tag(input.readUTF(), input.readUTF()));
+				}
+				byte[] wkb = new byte[input.readInt()];
+				input.readFully(wkb);
+				Geometry geometry = reader.read(wkb);
+				if (geometry instanceof Polygon) {
+					areas.add(new MapArea(tags, (Polygon) geometry));
+				}
+			}
+			provider.clear();
+			for (MapArea area : areas) {
+				provider.addArea(area);
+			}
+			Osm2xpLogger.info(areas.size() + " landuse areas loaded from cache " + cacheFile);
+		} catch (IOException | ParseException e) {
+			Osm2xpLogger.warning("Error reading landuse areas cache " + cacheFile + ", would be rebuilt", e);
+			return false;
+		}
+		if (modifiedChanged) {
+			updateLastModified(inputModified);
+		}
+		return true;
+	}
+
+	/**
+	 * Rewrite input file modification time in cache header in place, so input file hash isn't computed again on next load
+	 * @param lastModified current input file modification time
+	 */
+	private void updateLastModified(long lastModified) {
+		try (RandomAccessFile file = new RandomAccessFile(cacheFile, "rw")) {
+			file.seek(LAST_MODIFIED_OFFSET);
+			file.writeLong(lastModified);
+		} catch (IOException e) {
+			Osm2xpLogger.warning("Unable to update landuse areas cache " + cacheFile, e);
+		}
+	}
+
+	/**
+	 * Save given areas to cache file. Errors are logged, since cache is optional
+	 * @param areas areas to save
+	 */
+	public void save(List<MapArea> areas) {
+		File tempFile = new File(cacheFile.getAbsolutePath() + ".tmp");
+		try {
+			String hash = FilesUtils.computeHash(inputFile);
+			try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+				output.writeInt(MAGIC);
+				output.writeInt(VERSION);
+				output.writeLong(inputFile.length());
+				output.writeLong(inputFile.lastModified());
+				output.writeUTF(hash);
+				output.writeInt(areas.size());
+				WKBWriter writer = new WKBWriter();
+				for (MapArea area : areas) {
+					output.writeInt(area.tags.size());
+					for (Tag tag : area.tags) {
+						output.writeUTF(tag.getKey());
+						output.writeUTF(tag.getValue() != null ? tag.getValue() : "");
+					}
+					byte[] wkb = writer.write(area.polygon);
+					output.writeInt(wkb.length);
+					output.write(wkb);
+				}
+			}
+			Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			Osm2xpLogger.info(areas.size() + " landuse areas saved to cache " + cacheFile);
+		} catch (IOException e) {
+			Osm2xpLogger.warning("Unable to save landuse areas cache " + cacheFile, e);
+			tempFile.delete();
+		}
+	}
+
+	public File getCacheFile() {
+		return cacheFile;
+	}
+
+}
@@ -1,21 +1,51 @@
 package com.osm2xp.generation.areas;
 
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Point;
-import org.locationtech.jts.index.quadtree.Quadtree;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.locationtech.jts.index.strtree.STRtree;
 
 import com.osm2xp.utils.geometry.Osm2XPGeometryFactory;
 
+/**
+ * Landuse areas index. Areas are added during preprocessing and then queried for each translated node and polyline center.
+ *
+ * On first query after areas were added, read-only index is built - packed {@link STRtree} of {@link PreparedGeometry},
+ * each area ranked by it's size, largest first. Candidate lists for small grid cells are cached, already sorted by rank, so lookup
+ * in already visited cell is a map lookup and point-in-polygon checks until first containing area is found.
+ *
+ * Index is immutable once built, so querying is thread-safe and can be done by several tile workers simultaneously.
+ *
+ * @author 32kda
+ */
 public class AreaProvider {
-	
+
+	/**
+	 * Cache cell size, degrees
+	 */
+	private static final double CELL_SIZE = 0.01;
+	/**
+	 * Max cached cells count. Cache is simply dropped when overflown - lookups are spatially clustered, so most recent cells would be cached again soon
+	 */
+	private static final int MAX_CACHED_CELLS = 16384;
+
+	private static final AreaEntry[] NO_ENTRIES = new AreaEntry[0];
+
 	private static AreaProvider instance;
-	
-	private Quadtree quadtree = new Quadtree();
-	
+
+	private List<MapArea> areas = new ArrayList<>();
+
+	private volatile AreaIndex index;
+
 	public static synchronized AreaProvider getInstance() {
 		if (instance == null) {
 			instance = new AreaProvider();
@@ -24,34 +54,130 @@ public class AreaProvider {
 	}
 
 	private AreaProvider() {
-		
+
 	}
-	
-	public void clear() {
-		if (quadtree.size() > 0) {
-			quadtree = new Quadtree();
-		}
+
+	public synchronized void clear() {
+		areas = new ArrayList<>();
+		index = null;
 	}
 
-	public void addArea(MapArea area) {
-		Envelope envelope = area.polygon.getEnvelopeInternal();
-		quadtree.insert(envelope, area);
+	public synchronized void addArea(MapArea area) {
+		areas.add(area);
+		index = null;
 	}
-	
-	@SuppressWarnings("unchecked")
+
+	/**
+	 * @return copy of added areas list
+	 */
+	public synchronized List<MapArea> getAreas() {
+		return new ArrayList<>(areas);
+	}
+
+	/**
+	 * @param point point to check
+	 * @return areas containing given point, largest first
+	 */
 	public List<MapArea> queryContainingAreas(Coordinate point) {
-		List<MapArea> result = quadtree.query(new Envelope(point));
+		List<MapArea> result = new ArrayList<>();
 		Point pt = Osm2XPGeometryFactory.getInstance().createPoint(point);
-		for (Iterator<MapArea> iterator = result.iterator(); iterator.hasNext();) {
-			MapArea mapArea = (MapArea) iterator.next();
-			if (!mapArea.polygon.getEnvelopeInternal().contains(point)) {
-				iterator.remove();
-				continue;
-			}
-			if (!mapArea.polygon.contains(pt)) {
-				iterator.remove();
+		for (AreaEntry entry : getIndex().getCandidates(point.x, point.y)) {
+			if (entry.contains(pt)) {
+				result.add(entry.area);
 			}
 		}
 		return result;
 	}
+
+	/**
+	 * @param x point longitude
+	 * @param y point latitude
+	 * @return largest area containing given point, <code>null</code> if there is no such area
+	 */
+	public MapArea getContainingArea(double x, double y) {
+		AreaEntry[] candidates = getIndex().getCandidates(x, y);
+		if (candidates.length == 0) {
+			return null;
+		}
+		Point pt = Osm2XPGeometryFactory.getInstance().createPoint(new Coordinate(x, y));
+		for (AreaEntry entry : candidates) {
+			if (entry.contains(pt)) {
+				return entry.area;
+			}
+		}
+		return null;
+	}
+
+	private AreaIndex getIndex() {
+		AreaIndex curIndex = index;
+		if (curIndex == null) {
+			synchronized (this) {
+				if (index == null) {
+					index = new AreaIndex(areas);
+				}
+				curIndex = index;
+			}
+		}
+		return curIndex;
+	}
+
+	private static class AreaEntry {
+		private final MapArea area;
+		private final PreparedGeometry prepared;
+		private final Envelope envelope;
+		private final int rank;
+
+		public AreaEntry(MapArea area, int rank) {
+			this.area = area;
+			this.prepared = PreparedGeometryFactory.prepare(area.polygon);
+			this.envelope = area.polygon.getEnvelopeInternal();
+			this.rank = rank;
+		}
+
+		public boolean contains(Point pt) {
+			return envelope.contains(pt.getCoordinate()) && prepared.contains(pt);
+		}
+	}
+
+	private static class AreaIndex {
+
+		private final STRtree tree = new STRtree();
+		private final int size;
+		private final Map<Long, AreaEntry[]> cellCache = new ConcurrentHashMap<>();
+
+		public AreaIndex(List<MapArea> areas) {
+			List<MapArea> sorted = new ArrayList<>(areas);
+			sorted.sort(Comparator.comparingDouble((MapArea area) -> area.polygon.getArea()).reversed()); // Stable - equal areas keep adding order
+			for (int i = 0; i < sorted.size(); i++) {
+				AreaEntry entry = new AreaEntry(sorted.get(i), i);
+				tree.insert(entry.envelope, entry);
+			}
+			tree.build();
+			size = sorted.size();
+		}
+
+		/**
+		 * @return areas, which envelopes intersect grid cell containing given point, sorted by rank
+		 */
+		public AreaEntry[] getCandidates(double x, double y) {
+			if (size == 0) {
+				return NO_ENTRIES;
+			}
+			long cellX = (long) Math.floor(x / CELL_SIZE);
+			long cellY = (long) Math.floor(y / CELL_SIZE);
+			Long key = (cellX << 32) | (cellY & 0xFFFFFFFFL);
+			AreaEntry[] candidates = cellCache.get(key);
+			if (candidates == null) {
+				@SuppressWarnings("unchecked")
+				List<AreaEntry> found = tree.query(new Envelope(cellX * CELL_SIZE, (cellX + 1) * CELL_SIZE, cellY * CELL_SIZE, (cellY + 1) * CELL_SIZE));
+				candidates = found.toArray(new AreaEntry[0]);
+				Arrays.sort(candidates, Comparator.comparingInt(entry -> entry.rank));
+				if (cellCache.size() >= MAX_CACHED_CELLS) {
+					cellCache.clear();
+				}
+				cellCache.put(key, candidates);
+			}
+			return candidates;
+		}
+	}
 }
@@ -21,14 +21,30 @@ import static com.osm2xp.generation.osm.OsmConstants.*;
 
 public class LanduseAreasAnalyzer extends AbstractOSMDataConverter {
 	
+	private final AreaCache areaCache;
+
 	public LanduseAreasAnalyzer(IDataSink dataSink) {
+		this(dataSink, null);
+	}
+	
+	/**
+	 * @param dataSink data sink to use
+	 * @param areaCache cache to save found areas to, <code>null</code> if not needed
+	 */
+	public LanduseAreasAnalyzer(IDataSink dataSink, AreaCache areaCache) {
 		super(dataSink);
+		this.areaCache = areaCache;
 		AreaProvider.getInstance().clear();
 	}
 
 	@Override
 	protected boolean mustStoreNode(Node node) {
-		return true;
+		return !dataSink.isReadOnly();
+	}
+	
+	@Override
+	protected boolean mustStoreNode(long id, double lon, double lat) {
+		return !dataSink.isReadOnly();
 	}
 
 	@Override
@@ -37,7 +53,7 @@ public class LanduseAreasAnalyzer extends AbstractOSMDataConverter {
 	}
 
 	@Override
-	protected void translateWay(Way way, List<Long> ids) throws Osm2xpBusinessException {
+	protected void translateWay(Way way, long[] ids) throws Osm2xpBusinessException {
 		List<Tag> tags = way.getTags();		
 		for (String tagName : SUPPORTED_AREA_TYPES) {
 			String value = OsmUtils.getTagValue(tagName, tags);
@@ -77,6 +93,10 @@ public class LanduseAreasAnalyzer extends AbstractOSMDataConverter {
 	
 	@Override
 	public void complete() {
+		logRelationStats();
+		if (areaCache != null) {
+			areaCache.save(AreaProvider.getInstance().getAreas());
+		}
 		dataSink.setReadOnly(true);
 	}
 
@@ -0,0 +1,207 @@
+package com.osm2xp.generation.incremental;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import com.osm2xp.core.exceptions.Osm2xpBusinessException;
+
+import gnu.trove.list.array.TLongArrayList;
+
+/**
+ * Contents of OSM change file (.osc or .osc.gz), as produced by osmosis, osmium or OSM replication diffs.
+ * Only data needed to detect changed tiles is kept - node coordinates, way node lists and relation member ways.
+ *
+ * @author 32kda
+ *
+ */
+public class OsmChange {
+
+	private final List<ChangedNode> nodes = new ArrayList<>();
+	private final List<ChangedWay> ways = new ArrayList<>();
+	private final List<ChangedRelation> relations = new ArrayList<>();
+
+	/**
+	 * Read change file
+	 * @param file .osc file, can be gzipped
+	 * @return file contents
+	 * @throws Osm2xpBusinessException in case of read or parse error
+	 */
+	public static OsmChange read(File file) throws Osm2xpBusinessException {
+		OsmChange change = new OsmChange();
+		try (InputStream input = openStream(file)) {
+			SAXParser parser = SAXParserFactory.newInstance().newSAXParser();
+			parser.parse(input, change.new ChangeHandler());
+		} catch (Exception e) {
+			throw new Osm2xpBusinessException("Error reading change file " + file + ": " + e.getMessage(), e);
+		}
+		return change;
+	}
+
+	private static InputStream openStream(File file) throws IOException {
+		InputStream input = new BufferedInputStream(new FileInputStream(file), 64 * 1024);
+		if (file.getName().toLowerCase().endsWith(".gz")) {
+			return new GZIPInputStream(input, 64 * 1024);
+		}
+		return input;
+	}
+
+	public List<ChangedNode> getNodes() {
+		return nodes;
+	}
+
+	public List<ChangedWay> getWays() {
+		return ways;
+	}
+
+	public List<ChangedRelation> getRelations() {
+		return relations;
+	}
+
+	public boolean isEmpty() {
+		return nodes.isEmpty() && ways.isEmpty() && relations.isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		return nodes.size() + " changed nodes, " + ways.size() + " changed ways, " + relations.size() + " changed relations";
+	}
+
+	public static class ChangedNode {
+		public final long id;
+		/**
+		 * New node coordinates, {@link Double#NaN} for deleted node
+		 */
+		public final double lon;
+		public final double lat;
+		public final boolean deleted;
+
+		public ChangedNode(long id, double lon, double lat, boolean deleted) {
+			this.id = id;
+			this.lon = lon;
+			this.lat = lat;
+			this.deleted = deleted;
+		}
+	}
+
+	public static class ChangedWay {
+		public final long id;
+		/**
+		 * New way node ids, empty for deleted way
+		 */
+		public final long[] nodeIds;
+		public final boolean deleted;
+
+		public ChangedWay(long id, long[] nodeIds, boolean deleted) {
+			this.id = id;
+			this.nodeIds = nodeIds;
+			this.deleted = deleted;
+		}
+	}
+
+	public static class ChangedRelation {
+		public final long id;
+		/**
+		 * New member way ids, empty for deleted relation
+		 */
+		public final long[] wayIds;
+		public final boolean multipolygon;
+		public final boolean deleted;
+
+		public ChangedRelation(long id, long[] wayIds, boolean multipolygon, boolean deleted) {
+			this.id = id;
+			this.wayIds = wayIds;
+			this.multipolygon = multipolygon;
+			this.deleted = deleted;
+		}
+	}
+
+	private class ChangeHandler extends DefaultHandler {
+
+		private boolean deleting;
+		private String element;
+		private long id;
+		private double lon;
+		private double lat;
+		private boolean multipolygon;
+		private final TLongArrayList refs = new TLongArrayList();
+
+		@Override
+		public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+			String name = !localName.isEmpty() ? localName : qName;
+			switch (name) {
+			case "create":
+			case "modify":
+				deleting = false;
+				break;
+			case "delete":
+				deleting = true;
+				break;
+			case "node":
+			case "way":
+			case "relation":
+				element = name;
+				id = Long.parseLong(attributes.getValue("id"));
+				lon = parseCoord(attributes.getValue("lon"));
+				lat = parseCoord(attributes.getValue("lat"));
+				multipolygon = false;
+				refs.resetQuick();
+				break;
+			case "nd":
+				refs.add(Long.parseLong(attributes.getValue("ref")));
+				break;
+			case "member":
+				if ("way".equals(attributes.getValue("type"))) {
+					refs.add(Long.parseLong(attributes.getValue("ref")));
+				}
+				break;
+			case "tag":
+				if ("type".equals(attributes.getValue("k")) && "multipolygon".equals(attributes.getValue("v"))) {
+					multipolygon = true;
+				}
+				break;
+			default:
+				break;
+			}
+		}
+
+		@Override
+		public void endElement(String uri, String localName, String qName) throws SAXException {
+			String name = !localName.isEmpty() ? localName : qName;
+			if (!name.equals(element)) {
+				return;
+			}
+			switch (name) {
+			case "node":
+				nodes.add(deleting ? new ChangedNode(id, Double.NaN, Double.NaN, true) : new ChangedNode(id, lon, lat, false));
+				break;
+			case "way":
+				ways.add(new ChangedWay(id, deleting ? new long[0] : refs.toArray(), deleting));
+				break;
+			case "relation":
+				relations.add(new ChangedRelation(id, deleting ? new long[0] : refs.toArray(), multipolygon, deleting));
+				break;
+			default:
+				break;
+			}
+			element = null;
+		}
+
+		private double parseCoord(String value) {
+			return value != null ? Double.parseDouble(value) : Double.NaN;
+		}
+	}
+
+}
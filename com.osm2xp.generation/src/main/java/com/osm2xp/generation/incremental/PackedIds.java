@@ -0,0 +1,92 @@
+package com.osm2xp.generation.incremental;
+
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.set.TLongSet;
+
+/**
+ * Compact encoding for id lists like way node lists. Each id is stored as difference with the previous one, zigzag-encoded
+ * and written as variable-length integer, 7 bits per byte. Neighbouring way nodes usually have close ids, so most of them take
+ * 1-3 bytes instead of 8.
+ *
+ * @author 32kda
+ *
+ */
+public class PackedIds {
+
+	private PackedIds() {
+		// Utility class
+	}
+
+	/**
+	 * @param ids ids to pack
+	 * @return packed ids
+	 */
+	public static byte[] pack(long[] ids) {
+		byte[] buffer = new byte[ids.length * 10];
+		int pos = 0;
+		long previous = 0;
+		for (long id : ids) {
+			long delta = id - previous;
+			long value = (delta << 1) ^ (delta >> 63);
+			while ((value & ~0x7FL) != 0) {
+				buffer[pos++] = (byte) ((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			buffer[pos++] = (byte) value;
+			previous = id;
+		}
+		byte[] result = new byte[pos];
+		System.arraycopy(buffer, 0, result, 0, pos);
+		return result;
+	}
+
+	/**
+	 * @param packed packed ids
+	 * @return unpacked ids
+	 */
+	public static long[] unpack(byte[] packed) {
+		TLongArrayList result = new TLongArrayList(packed.length);
+		long previous = 0;
+		int pos = 0;
+		while (pos < packed.length) {
+			long value = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = packed[pos++];
+				value |= (long) (b & 0x7F) << shift;
+				shift += 7;
+			} while (b < 0);
+			previous += (value >>> 1) ^ -(value & 1);
+			result.add(previous);
+		}
+		return result.toArray();
+	}
+
+	/**
+	 * Check whether packed list contains any of given ids, without unpacking it
+	 * @param packed packed ids
+	 * @param ids ids to look for
+	 * @return <code>true</code> if any of given ids is found
+	 */
+	public static boolean containsAny(byte[] packed, TLongSet ids) {
+		long previous = 0;
+		int pos = 0;
+		while (pos < packed.length) {
+			long value = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = packed[pos++];
+				value |= (long) (b & 0x7F) << shift;
+				shift += 7;
+			} while (b < 0);
+			previous += (value >>> 1) ^ -(value & 1);
+			if (ids.contains(previous)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
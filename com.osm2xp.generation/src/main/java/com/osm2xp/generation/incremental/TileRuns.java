@@ -0,0 +1,199 @@
+package com.osm2xp.generation.incremental;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+import gnu.trove.list.array.TCharArrayList;
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.TLongCharMap;
+
+/**
+ * Compact element id - tile mapping. Ids are stored as runs - each run starts with some id and covers all the ids up to the start
+ * of the next run. OSM ids are strongly correlated with location (elements are usually added by region, changeset by changeset),
+ * so consecutive ids mostly share the same tile and mapping takes only small fraction of memory needed to store each id.
+ *
+ * Ids, which are absent in source data, but fall inside some run, get this run's tile. This is acceptable for dirty tiles detection,
+ * since such ids are never looked up, or lead to regenerating an extra tile at most.
+ *
+ * @author 32kda
+ *
+ */
+public class TileRuns {
+
+	/**
+	 * Tile value for unknown or deleted elements
+	 */
+	public static final char NO_TILE = 0xFFFF;
+	/**
+	 * Tile value for elements spanning several tiles, these should be looked up elsewhere
+	 */
+	public static final char MULTI_TILE = 0xFFFE;
+
+	private final long[] starts;
+	private final char[] tiles;
+	private final long maxId;
+
+	private TileRuns(long[] starts, char[] tiles, long maxId) {
+		this.starts = starts;
+		this.tiles = tiles;
+		this.maxId = maxId;
+	}
+
+	/**
+	 * @param id element id
+	 * @return tile key for given id, see {@link TileState#getTileKey(double, double)}, {@link #NO_TILE} if id is unknown
+	 */
+	public char get(long id) {
+		if (starts.length == 0 || id < starts[0] || id > maxId) {
+			return NO_TILE;
+		}
+		int idx = Arrays.binarySearch(starts, id);
+		if (idx < 0) {
+			idx = -idx - 2;
+		}
+		return tiles[idx];
+	}
+
+	/**
+	 * Create new runs with given ids tiles overridden. This object isn't modified
+	 * @param overrides new tiles for ids
+	 * @return new runs instance
+	 */
+	public TileRuns merge(TLongCharMap overrides) {
+		if (overrides.isEmpty()) {
+			return this;
+		}
+		long[] ids = overrides.keys();
+		Arrays.sort(ids);
+		Builder builder = new Builder();
+		int j = 0;
+		// Overrides before first run
+		long firstStart = starts.length > 0 ? starts[0] : Long.MAX_VALUE;
+		while (j < ids.length && ids[j] < firstStart) {
+			j = appendOverride(builder, ids, j, overrides, firstStart);
+		}
+		for (int i = 0; i < starts.length; i++) {
+			long end = i + 1 < starts.length ? starts[i + 1] - 1 : maxId;
+			long pos = starts[i];
+			while (j < ids.length && ids[j] <= end) {
+				if (ids[j] > pos) {
+					builder.append(pos, tiles[i]);
+				}
+				builder.append(ids[j], overrides.get(ids[j]));
+				pos = ids[j] + 1;
+				j++;
+			}
+			if (pos <= end) {
+				builder.append(pos, tiles[i]);
+			}
+			builder.extendTo(end);
+		}
+		// Overrides after last run, e.g. newly created elements
+		if (j < ids.length && starts.length > 0 && ids[j] > maxId + 1) {
+			builder.append(maxId + 1, NO_TILE);
+		}
+		while (j < ids.length) {
+			j = appendOverride(builder, ids, j, overrides, Long.MAX_VALUE);
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Append override standing outside of existing runs, id range between it and the next id is marked as unknown
+	 */
+	private int appendOverride(Builder builder, long[] ids, int j, TLongCharMap overrides, long limit) {
+		builder.append(ids[j], overrides.get(ids[j]));
+		long next = j + 1 < ids.length ? Math.min(ids[j + 1], limit) : limit;
+		if (next > ids[j] + 1) {
+			builder.append(ids[j] + 1, NO_TILE);
+		}
+		return j + 1;
+	}
+
+	public int getRunCount() {
+		return starts.length;
+	}
+
+	public void write(DataOutput output) throws IOException {
+		output.writeLong(maxId);
+		output.writeInt(starts.length);
+		long prev = 0;
+		for (int i = 0; i < starts.length; i++) {
+			output.writeLong(starts[i] - prev);
+			output.writeChar(tiles[i]);
+			prev = starts[i];
+		}
+	}
+
+	public static TileRuns read(DataInput input) throws IOException {
+		long maxId = input.readLong();
+		int count = input.readInt();
+		long[] starts = new long[count];
+		char[] tiles = new char[count];
+		long prev = 0;
+		for (int i = 0; i < count; i++) {
+			starts[i] = prev + input.readLong();
+			tiles[i] = input.readChar();
+			prev = starts[i];
+		}
+		return new TileRuns(starts, tiles, maxId);
+	}
+
+	/**
+	 * Runs builder. Ids should be appended in increasing order
+	 */
+	public static class Builder {
+
+		private final TLongArrayList starts = new TLongArrayList();
+		private final TCharArrayList tiles = new TCharArrayList();
+		private long maxId = Long.MIN_VALUE;
+
+		/**
+		 * @param id element id, should be bigger than previously added one
+		 * @param tile element tile
+		 * @return <code>false</code> if id order is violated and id wasn't added, <code>true</code> otherwise
+		 */
+		public boolean append(long id, char tile) {
+			if (id <= maxId) {
+				return false;
+			}
+			maxId = id;
+			if (tiles.isEmpty() || tiles.get(tiles.size() - 1) != tile) {
+				starts.add(id);
+				tiles.add(tile);
+			}
+			return true;
+		}
+
+		/**
+		 * Make last added run cover all the ids up to given one
+		 * @param id last id covered
+		 */
+		public void extendTo(long id) {
+			maxId = Math.max(maxId, id);
+		}
+
+		/**
+		 * Get tile for already added id. Can be used while building
+		 * @param id element id
+		 * @return tile for given id, {@link TileRuns#NO_TILE} if it's unknown
+		 */
+		public char get(long id) {
+			if (starts.isEmpty() || id < starts.get(0) || id > maxId) {
+				return NO_TILE;
+			}
+			int idx = starts.binarySearch(id);
+			if (idx < 0) {
+				idx = -idx - 2;
+			}
+			return tiles.get(idx);
+		}
+
+		public TileRuns build() {
+			return new TileRuns(starts.toArray(), tiles.toArray(), maxId);
+		}
+	}
+
+}
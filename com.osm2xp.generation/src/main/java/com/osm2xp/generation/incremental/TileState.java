@@ -0,0 +1,500 @@
+package com.osm2xp.generation.incremental;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.osm2xp.generation.incremental.OsmChange.ChangedNode;
+import com.osm2xp.generation.incremental.OsmChange.ChangedRelation;
+import com.osm2xp.generation.incremental.OsmChange.ChangedWay;
+
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.TLongCharMap;
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongCharHashMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.set.TCharSet;
+import gnu.trove.set.TLongSet;
+import gnu.trove.set.hash.TCharHashSet;
+import gnu.trove.set.hash.TLongHashSet;
+import math.geom2d.Point2D;
+
+/**
+ * Tiles occupied by input elements at the end of generation run - tile for each node, tiles and node ids for each way (packed with {@link PackedIds})
+ * and tiles for each multipolygon relation together with it's member way ids. Stored in the scenery folder and used by the next run
+ * to determine which tiles are affected by OSM change file, so only these tiles are regenerated. State is updated with
+ * change file contents after each incremental run, so it can be applied for the next change file.
+ *
+ * Tile is stored as char key, see {@link #getTileKey(double, double)}.
+ *
+ * @author 32kda
+ *
+ */
+public class TileState {
+
+	private static final String STATE_FILE_NAME = "osm2xp.tilestate";
+	private static final int MAGIC = 0x4F325453; // "O2TS"
+	private static final int VERSION = 3;
+
+	private TileRuns nodeTiles;
+	private TileRuns wayTiles;
+	private final TLongObjectMap<char[]> multiTileWays;
+	/**
+	 * Way node ids, packed with {@link PackedIds}
+	 */
+	private final TLongObjectMap<byte[]> wayNodes;
+	private final TLongObjectMap<RelationState> relations;
+	/**
+	 * Reverse member way id - relation ids index, built on demand
+	 */
+	private TLongObjectMap<long[]> wayRelations;
+
+	public TileState(TileRuns nodeTiles, TileRuns wayTiles, TLongObjectMap<char[]> multiTileWays, TLongObjectMap<byte[]> wayNodes,
+			TLongObjectMap<RelationState> relations) {
+		this.nodeTiles = nodeTiles;
+		this.wayTiles = wayTiles;
+		this.multiTileWays = multiTileWays;
+		this.wayNodes = wayNodes;
+		this.relations = relations;
+	}
+
+	/**
+	 * @param sceneryFolder scenery folder
+	 * @return state file for given scenery folder
+	 */
+	public static File getStateFile(File sceneryFolder) {
+		return new File(sceneryFolder, STATE_FILE_NAME);
+	}
+
+	/**
+	 * @param lon longitude
+	 * @param lat latitude
+	 * @return key for the tile containing given point
+	 */
+	public static char getTileKey(double lon, double lat) {
+		return getTileKey((int) Math.floor(lon), (int) Math.floor(lat));
+	}
+
+	/**
+	 * @param x tile longitude, lower left corner
+	 * @param y tile latitude, lower left corner
+	 * @return key for given tile
+	 */
+	public static char getTileKey(int x, int y) {
+		x = Math.min(179, Math.max(-180, x));
+		y = Math.min(89, Math.max(-90, y));
+		return (char) ((x + 180) * 180 + (y + 90));
+	}
+
+	/**
+	 * @param key tile key
+	 * @return tile lower left corner
+	 */
+	public static Point2D getTile(char key) {
+		return new Point2D(key / 180 - 180, key % 180 - 90);
+	}
+
+	/**
+	 * Determine tiles, which are affected by given change and should be regenerated - tiles elements were located in before the change
+	 * and tiles they're located in after it. Ways are affected by changes of their nodes and multipolygon relations are affected by
+	 * changes of their member ways, so tiles of such ways and relations are also included.
+	 * @param change OSM change
+	 * @return affected tiles, sorted
+	 */
+	public List<Point2D> getDirtyTiles(OsmChange change) {
+		TCharSet dirty = new TCharHashSet();
+		Update update = getUpdate(change);
+		for (ChangedNode node : change.getNodes()) {
+			dirty.add(nodeTiles.get(node.id));
+			dirty.add(update.nodeTiles.get(node.id));
+		}
+		update.wayTiles.forEachEntry((wayId, tiles) -> {
+			addWayTiles(wayId, dirty);
+			dirty.addAll(tiles);
+			return true;
+		});
+		update.relationTiles.forEachEntry((relationId, tiles) -> {
+			RelationState oldState = relations.get(relationId);
+			if (oldState != null) {
+				dirty.addAll(oldState.tiles);
+			}
+			dirty.addAll(tiles);
+			return true;
+		});
+		dirty.remove(TileRuns.NO_TILE);
+		dirty.remove(TileRuns.MULTI_TILE);
+		char[] keys = dirty.toArray();
+		Arrays.sort(keys);
+		List<Point2D> result = new ArrayList<>(keys.length);
+		for (char key : keys) {
+			result.add(getTile(key));
+		}
+		return result;
+	}
+
+	/**
+	 * Update state with given change, so it reflects input file with this change applied
+	 * @param change OSM change
+	 */
+	public void apply(OsmChange change) {
+		Update update = getUpdate(change);
+		nodeTiles = nodeTiles.merge(update.nodeTiles);
+		update.wayNodes.forEachEntry((wayId, nodeIds) -> {
+			if (nodeIds.length == 0) {
+				wayNodes.remove(wayId);
+			} else {
+				wayNodes.put(wayId, PackedIds.pack(nodeIds));
+			}
+			return true;
+		});
+		TLongCharMap wayOverrides = new TLongCharHashMap();
+		update.wayTiles.forEachEntry((wayId, tiles) -> {
+			multiTileWays.remove(wayId);
+			if (tiles.isEmpty()) {
+				wayOverrides.put(wayId, TileRuns.NO_TILE);
+			} else if (tiles.size() == 1) {
+				wayOverrides.put(wayId, tiles.iterator().next());
+			} else {
+				wayOverrides.put(wayId, TileRuns.MULTI_TILE);
+				multiTileWays.put(wayId, tiles.toArray());
+			}
+			return true;
+		});
+		wayTiles = wayTiles.merge(wayOverrides);
+		update.relationTiles.forEachEntry((relationId, tiles) -> {
+			long[] wayIds = update.relationWays.get(relationId);
+			if (wayIds == null) {
+				wayIds = relations.get(relationId).wayIds;
+			}
+			if (wayIds.length == 0) {
+				relations.remove(relationId);
+			} else {
+				relations.put(relationId, new RelationState(wayIds, tiles.toArray()));
+			}
+			return true;
+		});
+		wayRelations = null;
+	}
+
+	/**
+	 * Compute new tiles of elements affected by given change - changed nodes, changed ways and ways containing changed nodes,
+	 * changed multipolygon relations and relations having affected ways as members.
+	 * Only node tiles are known, not their coordinates, so new way and relation tiles are estimated by {@link #getWayCover(long[], TLongCharMap)}
+	 * @param change OSM change
+	 * @return new tiles of affected elements
+	 */
+	private Update getUpdate(OsmChange change) {
+		Update update = new Update();
+		TLongSet changedNodes = new TLongHashSet();
+		for (ChangedNode node : change.getNodes()) {
+			update.nodeTiles.put(node.id, node.deleted || Double.isNaN(node.lon) ? TileRuns.NO_TILE : getTileKey(node.lon, node.lat));
+			changedNodes.add(node.id);
+		}
+		for (ChangedWay way : change.getWays()) {
+			update.wayNodes.put(way.id, way.nodeIds);
+		}
+		TLongSet affectedWays = getNodeWays(changedNodes);
+		affectedWays.addAll(update.wayNodes.keys());
+		TLongSet affectedRelations = new TLongHashSet();
+		for (long wayId : affectedWays.toArray()) {
+			long[] nodeIds = update.wayNodes.get(wayId);
+			if (nodeIds == null && wayNodes.containsKey(wayId)) {
+				nodeIds = PackedIds.unpack(wayNodes.get(wayId));
+			}
+			update.wayTiles.put(wayId, getWayCover(nodeIds, update.nodeTiles));
+			affectedRelations.addAll(getWayRelations(wayId));
+		}
+		for (ChangedRelation relation : change.getRelations()) {
+			update.relationWays.put(relation.id, !relation.deleted && relation.multipolygon ? relation.wayIds : new long[0]);
+			affectedRelations.add(relation.id);
+		}
+		for (long relationId : affectedRelations.toArray()) {
+			long[] wayIds = update.relationWays.get(relationId);
+			if (wayIds == null) {
+				RelationState relation = relations.get(relationId);
+				if (relation == null) {
+					continue;
+				}
+				wayIds = relation.wayIds;
+			}
+			TCharSet tiles = new TCharHashSet();
+			for (long wayId : wayIds) {
+				TCharSet newTiles = update.wayTiles.get(wayId);
+				if (newTiles != null) {
+					tiles.addAll(newTiles);
+				} else {
+					addWayTiles(wayId, tiles);
+				}
+			}
+			tiles.remove(TileRuns.NO_TILE);
+			tiles.remove(TileRuns.MULTI_TILE);
+			// Multipolygon can cover tiles with no member way passing through them
+			fillBounds(tiles);
+			update.relationTiles.put(relationId, tiles);
+		}
+		return update;
+	}
+
+	/**
+	 * Get tiles way with given nodes can occupy, judging by it's node tiles. Way segment can cross tiles, which are lying between tiles
+	 * of it's ends, and closed way can cover tiles having no way nodes at all, so for open way all the tiles of the rectangle between
+	 * segment end tiles are included, and for closed way - all the tiles of the rectangle bounding it's node tiles.
+	 * @param nodeIds way node ids, can be <code>null</code> for unknown way
+	 * @param newNodeTiles new tiles of changed nodes
+	 * @return way tiles
+	 */
+	private TCharSet getWayCover(long[] nodeIds, TLongCharMap newNodeTiles) {
+		TCharSet result = new TCharHashSet();
+		if (nodeIds == null) {
+			return result;
+		}
+		char previous = TileRuns.NO_TILE;
+		for (long nodeId : nodeIds) {
+			char tile = newNodeTiles.containsKey(nodeId) ? newNodeTiles.get(nodeId) : nodeTiles.get(nodeId);
+			if (tile == TileRuns.NO_TILE) {
+				continue;
+			}
+			if (previous == TileRuns.NO_TILE || previous == tile) {
+				result.add(tile);
+			} else {
+				addRectangle(previous, tile, result);
+			}
+			previous = tile;
+		}
+		if (nodeIds.length > 3 && nodeIds[0] == nodeIds[nodeIds.length - 1]) {
+			fillBounds(result);
+		}
+		return result;
+	}
+
+	/**
+	 * Add all the tiles of the rectangle bounding given tiles to the set
+	 * @param tiles tiles set
+	 */
+	private static void fillBounds(TCharSet tiles) {
+		if (tiles.size() < 2) {
+			return;
+		}
+		int minX = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, minY = Integer.MAX_VALUE, maxY = Integer.MIN_VALUE;
+		for (char tile : tiles.toArray()) {
+			minX = Math.min(minX, tile / 180);
+			maxX = Math.max(maxX, tile / 180);
+			minY = Math.min(minY, tile % 180);
+			maxY = Math.max(maxY, tile % 180);
+		}
+		addRectangle((char) (minX * 180 + minY), (char) (maxX * 180 + maxY), tiles);
+	}
+
+	/**
+	 * Add all the tiles of the rectangle with given corner tiles to the set
+	 */
+	private static void addRectangle(char corner1, char corner2, TCharSet tiles) {
+		int x1 = corner1 / 180, y1 = corner1 % 180;
+		int x2 = corner2 / 180, y2 = corner2 % 180;
+		for (int x = Math.min(x1, x2); x <= Math.max(x1, x2); x++) {
+			for (int y = Math.min(y1, y2); y <= Math.max(y1, y2); y++) {
+				tiles.add((char) (x * 180 + y));
+			}
+		}
+	}
+
+	/**
+	 * Reverse node - way lookup. Single pass over all the way node lists is done instead of keeping node - ways index,
+	 * which would take much more memory than node lists themselves
+	 * @param nodeIds node ids
+	 * @return ids of ways containing any of given nodes
+	 */
+	private TLongSet getNodeWays(TLongSet nodeIds) {
+		TLongSet result = new TLongHashSet();
+		if (nodeIds.isEmpty()) {
+			return result;
+		}
+		wayNodes.forEachEntry((wayId, ids) -> {
+			if (PackedIds.containsAny(ids, nodeIds)) {
+				result.add(wayId);
+			}
+			return true;
+		});
+		return result;
+	}
+
+	private void addWayTiles(long wayId, TCharSet result) {
+		char tile = wayTiles.get(wayId);
+		if (tile == TileRuns.MULTI_TILE) {
+			char[] tiles = multiTileWays.get(wayId);
+			if (tiles != null) {
+				result.addAll(tiles);
+			}
+		} else {
+			result.add(tile);
+		}
+	}
+
+	private long[] getWayRelations(long wayId) {
+		if (wayRelations == null) {
+			TLongObjectMap<TLongArrayList> index = new TLongObjectHashMap<>();
+			relations.forEachEntry((relationId, relation) -> {
+				for (long id : relation.wayIds) {
+					TLongArrayList list = index.get(id);
+					if (list == null) {
+						list = new TLongArrayList(1);
+						index.put(id, list);
+					}
+					list.add(relationId);
+				}
+				return true;
+			});
+			wayRelations = new TLongObjectHashMap<>(index.size());
+			index.forEachEntry((id, list) -> {
+				wayRelations.put(id, list.toArray());
+				return true;
+			});
+		}
+		long[] result = wayRelations.get(wayId);
+		return result != null ? result : new long[0];
+	}
+
+	/**
+	 * Save state to given file
+	 * @param stateFile file to save to
+	 * @throws IOException in case of write error
+	 */
+	public void save(File stateFile) throws IOException {
+		File tempFile = new File(stateFile.getAbsolutePath() + ".tmp");
+		try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile), 64 * 1024))) {
+			output.writeInt(MAGIC);
+			output.writeInt(VERSION);
+			nodeTiles.write(output);
+			wayTiles.write(output);
+			output.writeInt(multiTileWays.size());
+			for (long wayId : multiTileWays.keys()) {
+				output.writeLong(wayId);
+				writeChars(output, multiTileWays.get(wayId));
+			}
+			output.writeInt(wayNodes.size());
+			for (long wayId : wayNodes.keys()) {
+				byte[] nodeIds = wayNodes.get(wayId);
+				output.writeLong(wayId);
+				output.writeInt(nodeIds.length);
+				output.write(nodeIds);
+			}
+			output.writeInt(relations.size());
+			for (long relationId : relations.keys()) {
+				RelationState relation = relations.get(relationId);
+				output.writeLong(relationId);
+				writeChars(output, relation.tiles);
+				output.writeInt(relation.wayIds.length);
+				for (long wayId : relation.wayIds) {
+					output.writeLong(wayId);
+				}
+			}
+		}
+		Files.move(tempFile.toPath(), stateFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * Load state from given file
+	 * @param stateFile file to load from
+	 * @return loaded state
+	 * @throws IOException in case of read error or unsupported file format
+	 */
+	public static TileState load(File stateFile) throws IOException {
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(stateFile), 64 * 1024))) {
+			if (input.readInt() != MAGIC) {
+				throw new IOException("Tile state file " + stateFile + " has unsupported format");
+			}
+			if (input.readInt() != VERSION) {
+				throw new IOException("Tile state file " + stateFile + " was recorded by another program version, full generation with tile state recording should be done again");
+			}
+			TileRuns nodeTiles = TileRuns.read(input);
+			TileRuns wayTiles = TileRuns.read(input);
+			int count = input.readInt();
+			TLongObjectMap<char[]> multiTileWays = new TLongObjectHashMap<>(count);
+			for (int i = 0; i < count; i++) {
+				multiTileWays.put(input.readLong(), readChars(input));
+			}
+			count = input.readInt();
+			TLongObjectMap<byte[]> wayNodes = new TLongObjectHashMap<>(count);
+			for (int i = 0; i < count; i++) {
+				long wayId = input.readLong();
+				byte[] nodeIds = new byte[input.readInt()];
+				input.readFully(nodeIds);
+				wayNodes.put(wayId, nodeIds);
+			}
+			count = input.readInt();
+			TLongObjectMap<RelationState> relations = new TLongObjectHashMap<>(count);
+			for (int i = 0; i < count; i++) {
+				long relationId = input.readLong();
+				char[] tiles = readChars(input);
+				long[] wayIds = new long[input.readInt()];
+				for (int j = 0; j < wayIds.length; j++) {
+					wayIds[j] = input.readLong();
+				}
+				relations.put(relationId, new RelationState(wayIds, tiles));
+			}
+			return new TileState(nodeTiles, wayTiles, multiTileWays, wayNodes, relations);
+		}
+	}
+
+	private static void writeChars(DataOutputStream output, char[] chars) throws IOException {
+		output.writeShort(chars.length);
+		for (char c : chars) {
+			output.writeChar(c);
+		}
+	}
+
+	private static char[] readChars(DataInputStream input) throws IOException {
+		char[] result = new char[input.readUnsignedShort()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = input.readChar();
+		}
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return nodeTiles.getRunCount() + " node runs, " + wayTiles.getRunCount() + " way runs, " + wayNodes.size() + " ways, " + multiTileWays.size() + " multi-tile ways, "
+				+ relations.size() + " multipolygon relations";
+	}
+
+	/**
+	 * New tiles of elements affected by some change, see {@link TileState#getUpdate(OsmChange)}
+	 */
+	private static class Update {
+		private final TLongCharMap nodeTiles = new TLongCharHashMap();
+		/**
+		 * New node ids of changed ways, empty for deleted way
+		 */
+		private final TLongObjectMap<long[]> wayNodes = new TLongObjectHashMap<>();
+		private final TLongObjectMap<TCharSet> wayTiles = new TLongObjectHashMap<>();
+		/**
+		 * New member way ids of changed relations, empty for deleted relation or relation, which isn't multipolygon anymore
+		 */
+		private final TLongObjectMap<long[]> relationWays = new TLongObjectHashMap<>();
+		private final TLongObjectMap<TCharSet> relationTiles = new TLongObjectHashMap<>();
+	}
+
+	/**
+	 * Multipolygon relation state - tiles it occupies and it's member ways
+	 */
+	public static class RelationState {
+		private final long[] wayIds;
+		private final char[] tiles;
+
+		public RelationState(long[] wayIds, char[] tiles) {
+			this.wayIds = wayIds;
+			this.tiles = tiles;
+		}
+	}
+
+}
@@ -0,0 +1,158 @@
+package com.osm2xp.generation.incremental;
+
+import com.osm2xp.converters.impl.ITileGeometryListener;
+import com.osm2xp.core.logging.Osm2xpLogger;
+import com.osm2xp.core.model.osm.Member;
+import com.osm2xp.core.model.osm.Nd;
+import com.osm2xp.core.model.osm.Node;
+import com.osm2xp.core.model.osm.Relation;
+import com.osm2xp.core.model.osm.Way;
+import com.osm2xp.core.parsers.IOSMDataVisitor;
+import com.osm2xp.generation.incremental.TileState.RelationState;
+
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.set.TCharSet;
+import gnu.trove.set.hash.TCharHashSet;
+import math.geom2d.Box2D;
+
+/**
+ * Visitor recording {@link TileState} for the whole input file during full generation run.
+ * Input elements are expected to be sorted by type and id, like in most PBF and OSM files - otherwise nothing is recorded.
+ * Way and relation tiles are tiles of their nodes together with tiles their translated geometry was clipped to, so recorder should be
+ * registered as {@link ITileGeometryListener} of tile data converter visiting elements before it.
+ *
+ * @author 32kda
+ *
+ */
+public class TileStateRecorder implements IOSMDataVisitor, ITileGeometryListener {
+
+	private final TileRuns.Builder nodeTiles = new TileRuns.Builder();
+	private final TileRuns.Builder wayTiles = new TileRuns.Builder();
+	private final TLongObjectMap<char[]> multiTileWays = new TLongObjectHashMap<>();
+	private final TLongObjectMap<byte[]> wayNodes = new TLongObjectHashMap<>();
+	private final TLongObjectMap<RelationState> relations = new TLongObjectHashMap<>();
+	private final TCharSet tiles = new TCharHashSet();
+	/**
+	 * Geometry tiles of the element being visited, reported by converter before visiting it
+	 */
+	private final TLongObjectMap<TCharSet> wayGeometryTiles = new TLongObjectHashMap<>();
+	private final TLongObjectMap<TCharSet> relationGeometryTiles = new TLongObjectHashMap<>();
+	private boolean sorted = true;
+	private TileState state;
+
+	@Override
+	public void visit(Box2D box) {
+		// Not needed
+	}
+
+	@Override
+	public void visit(Node node) {
+		visitUntagged(node.getId(), node.getLon(), node.getLat());
+	}
+
+	@Override
+	public void visitUntagged(long id, double lon, double lat) {
+		if (sorted && !nodeTiles.append(id, TileState.getTileKey(lon, lat))) {
+			unsorted(id);
+		}
+	}
+
+	@Override
+	public void wayTile(long wayId, int x, int y) {
+		addGeometryTile(wayGeometryTiles, wayId, x, y);
+	}
+
+	@Override
+	public void relationTile(long relationId, int x, int y) {
+		addGeometryTile(relationGeometryTiles, relationId, x, y);
+	}
+
+	private void addGeometryTile(TLongObjectMap<TCharSet> geometryTiles, long id, int x, int y) {
+		TCharSet set = geometryTiles.get(id);
+		if (set == null) {
+			set = new TCharHashSet();
+			geometryTiles.put(id, set);
+		}
+		set.add(TileState.getTileKey(x, y));
+	}
+
+	@Override
+	public void visit(Way way) {
+		TCharSet geometryTiles = wayGeometryTiles.remove(way.getId());
+		if (!sorted) {
+			return;
+		}
+		tiles.clear();
+		for (Nd nd : way.getNd()) {
+			tiles.add(nodeTiles.get(nd.getRef()));
+		}
+		if (geometryTiles != null) {
+			tiles.addAll(geometryTiles);
+		}
+		tiles.remove(TileRuns.NO_TILE);
+		char tile;
+		if (tiles.isEmpty()) {
+			tile = TileRuns.NO_TILE;
+		} else if (tiles.size() == 1) {
+			tile = tiles.iterator().next();
+		} else {
+			tile = TileRuns.MULTI_TILE;
+		}
+		if (!wayTiles.append(way.getId(), tile)) {
+			unsorted(way.getId());
+			return;
+		} else if (tile == TileRuns.MULTI_TILE) {
+			multiTileWays.put(way.getId(), tiles.toArray());
+		}
+		wayNodes.put(way.getId(), PackedIds.pack(way.getNodesArray()));
+	}
+
+	@Override
+	public void visit(Relation relation) {
+		TCharSet geometryTiles = relationGeometryTiles.remove(relation.getId());
+		if (!sorted || !"multipolygon".equals(relation.getTagValue("type"))) {
+			return;
+		}
+		TLongArrayList wayIds = new TLongArrayList();
+		tiles.clear();
+		if (geometryTiles != null) {
+			tiles.addAll(geometryTiles);
+		}
+		for (Member member : relation.getMember()) {
+			if ("way".equalsIgnoreCase(member.getType())) {
+				wayIds.add(member.getId());
+				char tile = wayTiles.get(member.getId());
+				if (tile == TileRuns.MULTI_TILE) {
+					tiles.addAll(multiTileWays.get(member.getId()));
+				} else {
+					tiles.add(tile);
+				}
+			}
+		}
+		tiles.remove(TileRuns.NO_TILE);
+		relations.put(relation.getId(), new RelationState(wayIds.toArray(), tiles.toArray()));
+	}
+
+	private void unsorted(long id) {
+		sorted = false;
+		Osm2xpLogger.warning("Input file isn't sorted by element id (id " + id + " is out of order), tile state for incremental generation won't be recorded");
+	}
+
+	@Override
+	public void complete() {
+		if (sorted) {
+			state = new TileState(nodeTiles.build(), wayTiles.build(), multiTileWays, wayNodes, relations);
+			Osm2xpLogger.info("Tile state recorded: " + state);
+		}
+	}
+
+	/**
+	 * @return recorded state, <code>null</code> if input wasn't sorted or parsing isn't complete yet
+	 */
+	public TileState getState() {
+		return state;
+	}
+
+}
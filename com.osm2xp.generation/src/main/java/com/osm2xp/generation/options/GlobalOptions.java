@@ -17,7 +17,7 @@ import org.apache.commons.lang.StringUtils;
 @XmlAccessorType(XmlAccessType.FIELD)
 @XmlType(name = "", propOrder = { "databaseMode", "appendHour", "appendTile","analyzeAreas", "generateLibrary",
 		"simplifyShapes", "currentFilePath", "levelHeight", 
-		"allowedHighwayTypes","allowedHighwayLinkTypes", "allowedHighwaySurfaceTypes", "disallowedHighwayTags", "roadLaneWidth"})
+		"allowedHighwayTypes","allowedHighwayLinkTypes", "allowedHighwaySurfaceTypes", "disallowedHighwayTags", "roadLaneWidth", "parserThreads", "parallelTiles", "tilePrescan", "relationPrescan", "areaCache", "blockIndex", "nodeStoreSnapshot", "randomSeed", "nodeStoreFolder"})
 @XmlRootElement(name = "GlobalOptions")
 public class GlobalOptions {
 
@@ -32,6 +32,15 @@ public class GlobalOptions {
 	@XmlElement(required = true)
 	protected double levelHeight = 3;
 	protected double roadLaneWidth = 5;
+	protected int parserThreads = 0;
+	protected boolean parallelTiles = false;
+	protected boolean tilePrescan = false;
+	protected boolean relationPrescan = false;
+	protected boolean areaCache = false;
+	protected boolean blockIndex = false;
+	protected boolean nodeStoreSnapshot = false;
+	protected String nodeStoreFolder;
+	protected long randomSeed = 0;
 //	protected boolean singlePass;
 	protected String allowedHighwayTypes = "motorway;trunk;primary;secondary;tertiary;unclassified;residential";
 	protected String allowedHighwayLinkTypes = "motorway_link;trunk_link;primary_link;secondary_link;tertiary_link";
@@ -246,4 +255,115 @@ public class GlobalOptions {
 		this.roadLaneWidth = roadLaneWidth;
 	}
 
+	/**
+	 * @return Number of threads used for input file blocks decoding, 0 or less means "use all available processors" 
+	 */
+	public int getParserThreads() {
+		return parserThreads;
+	}
+
+	public void setParserThreads(int parserThreads) {
+		this.parserThreads = parserThreads;
+	}
+	
+	/**
+	 * @return actual number of parser threads to use - {@link #getParserThreads()} if it's positive, or available processors count otherwise
+	 */
+	public int getEffectiveParserThreads() {
+		return parserThreads > 0 ? parserThreads : Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * @return whether each detected tile should be translated on it's own worker thread
+	 */
+	public boolean isParallelTiles() {
+		return parallelTiles;
+	}
+
+	public void setParallelTiles(boolean parallelTiles) {
+		this.parallelTiles = parallelTiles;
+	}
+
+	/**
+	 * @return whether fast node-only pre-scan pass should be done for PBF input to detect tiles and node id ranges before main pass
+	 */
+	public boolean isTilePrescan() {
+		return tilePrescan;
+	}
+
+	public void setTilePrescan(boolean tilePrescan) {
+		this.tilePrescan = tilePrescan;
+	}
+
+	/**
+	 * @return whether relation-only pre-scan pass should be done to store node lists only for ways, which are members of multipolygon relations of interest
+	 */
+	public boolean isRelationPrescan() {
+		return relationPrescan;
+	}
+
+	public void setRelationPrescan(boolean relationPrescan) {
+		this.relationPrescan = relationPrescan;
+	}
+
+	/**
+	 * @return whether landuse areas found by preprocessing should be cached on disk next to the input file, 
+	 * so preprocessing pass can be skipped for subsequent runs on the same file
+	 */
+	public boolean isAreaCache() {
+		return areaCache;
+	}
+
+	public void setAreaCache(boolean areaCache) {
+		this.areaCache = areaCache;
+	}
+
+	/**
+	 * @return whether PBF block index, stored next to the input file, should be used for single tile generation, 
+	 * so only blocks needed for this tile are decoded
+	 */
+	public boolean isBlockIndex() {
+		return blockIndex;
+	}
+
+	public void setBlockIndex(boolean blockIndex) {
+		this.blockIndex = blockIndex;
+	}
+
+	/**
+	 * @return whether complete node store should be saved next to the input file as a snapshot, 
+	 * so subsequent runs on the same unchanged file can map it instead of storing nodes again
+	 */
+	public boolean isNodeStoreSnapshot() {
+		return nodeStoreSnapshot;
+	}
+
+	public void setNodeStoreSnapshot(boolean nodeStoreSnapshot) {
+		this.nodeStoreSnapshot = nodeStoreSnapshot;
+	}
+
+	/**
+	 * @return folder for memory-mapped node store files, which is used for large inputs. Should be on a real disk with enough free space,
+	 * not RAM-backed temp folder. If not specified, node store files are created next to the input file
+	 */
+	public String getNodeStoreFolder() {
+		return nodeStoreFolder;
+	}
+
+	public void setNodeStoreFolder(String nodeStoreFolder) {
+		this.nodeStoreFolder = nodeStoreFolder;
+	}
+
+	/**
+	 * @return seed for random choices made during generation, like facade or object selection. 
+	 * Same input and seed give identical output
+	 */
+	public long getRandomSeed() {
+		return randomSeed;
+	}
+
+	public void setRandomSeed(long randomSeed) {
+		this.randomSeed = randomSeed;
+	}
+
 }
@@ -31,7 +31,7 @@ import com.osm2xp.generation.options.rules.XplaneObjectsRulesList;
 		"restrictFacadeLod", "facadeLod", "generateXmlStats", "generatePdfStats", "generateDebugImg", "generateComments", "generateHighwayLights", 
 		"roadBridgeRampLen","railBridgeRampLen", "streetLightsInterval", "maxPerimeterToSimplify", "objSizeTolerance", "objHeightTolerance", "objHeightAllowedDifference",
 		"buildingsExclusions", "forestsRules", "objectsRules", "lightsRules", "facadesRules", "polygonRules", "streetLightObjects", "airfieldOptions",
-		"deleteSrc" })
+		"deleteSrc", "useDsfTool" })
 @XmlRootElement(name = "XplaneOptions")
 public class XplaneOptions {
 
@@ -83,6 +83,11 @@ public class XplaneOptions {
 	protected boolean generateStreetLights = true;
 	protected boolean generateSlopedRoofs;
 	protected boolean deleteSrc = true;
+	/**
+	 * Write DSF as text and pack it with external DSFTool - <code>true</code>, or encode binary DSF directly - <code>false</code>.
+	 * Text mode is mostly useful for debugging
+	 */
+	protected boolean useDsfTool = false;
 	protected int lightsDensity;
 	protected boolean packageFacades;
 	protected boolean hardBuildings;
@@ -994,6 +999,14 @@ public class XplaneOptions {
 		this.deleteSrc = deleteSrc;
 	}
 
+	public boolean isUseDsfTool() {
+		return useDsfTool;
+	}
+
+	public void setUseDsfTool(boolean useDsfTool) {
+		this.useDsfTool = useDsfTool;
+	}
+
 	public int getObjectRenderLevel() {
 		return objectRenderLevel;
 	}
@@ -0,0 +1,163 @@
+package com.osm2xp.generation.options.rules;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.apache.commons.lang.StringUtils;
+
+import com.osm2xp.core.model.osm.Tag;
+
+import gnu.trove.list.array.TIntArrayList;
+
+/**
+ * Compiled index for tag rules list. Rules are indexed by case-insensitive tag key and value, so candidate rules for some entity
+ * are obtained with one pass over it's tags instead of comparing each rule with each tag.
+ *
+ * Index gives superset of matching rules - candidates should still be checked with rule matching logic, e.g.
+ * {@link com.osm2xp.utils.osm.OsmUtils#compareTags(Tag, Tag)}. Rules with empty or "*" value are returned for any value of their key.
+ * Candidates are returned in original rules order, so first/last match semantics of rule lists is preserved.
+ *
+ * @author 32kda
+ *
+ * @param <T> rule type
+ */
+public class TagRulesIndex<T> {
+
+	private static final String ID_KEY = "id";
+	private static final String ANY_VALUE = "*";
+
+	private final List<T> rules;
+	private final Map<String, KeyRules> keyRules = new HashMap<>();
+
+	/**
+	 * @param rules rules list. Index is built for rules present at the moment and isn't updated later
+	 * @param tagFunction function to get rule tag
+	 */
+	public TagRulesIndex(List<T> rules, Function<T, Tag> tagFunction) {
+		this.rules = new ArrayList<>(rules);
+		Map<String, Map<String, List<Integer>>> values = new HashMap<>();
+		Map<String, List<Integer>> anyValues = new HashMap<>();
+		for (int i = 0; i < this.rules.size(); i++) {
+			Tag tag = tagFunction.apply(this.rules.get(i));
+			if (tag == null || tag.getKey() == null) {
+				continue;
+			}
+			String key = normalize(tag.getKey());
+			String value = normalizeValue(tag.getValue());
+			if (value.isEmpty() || ANY_VALUE.equals(value)) {
+				anyValues.computeIfAbsent(key, k -> new ArrayList<>()).add(i);
+			} else {
+				values.computeIfAbsent(key, k -> new HashMap<>()).computeIfAbsent(value, k -> new ArrayList<>()).add(i);
+			}
+		}
+		for (String key : values.keySet()) {
+			keyRules.computeIfAbsent(key, k -> new KeyRules()).compileValues(values.get(key));
+		}
+		for (String key : anyValues.keySet()) {
+			keyRules.computeIfAbsent(key, k -> new KeyRules()).anyValue = toArray(anyValues.get(key));
+		}
+	}
+
+	/**
+	 * @param tags entity tags
+	 * @return candidate rules in original rules order, which might match given tags
+	 */
+	public List<T> getCandidates(List<Tag> tags) {
+		return getCandidates(tags, null);
+	}
+
+	/**
+	 * @param tags entity tags
+	 * @param id entity id, to get "id" rules for this exact entity. Can be <code>null</code>
+	 * @return candidate rules in original rules order, which might match given tags or entity id
+	 */
+	public List<T> getCandidates(List<Tag> tags, Long id) {
+		if (keyRules.isEmpty() || tags.isEmpty()) {
+			return Collections.emptyList();
+		}
+		TIntArrayList found = new TIntArrayList();
+		for (Tag tag : tags) {
+			if (tag.getKey() == null) {
+				continue;
+			}
+			KeyRules curRules = keyRules.get(normalize(tag.getKey()));
+			if (curRules != null) {
+				add(curRules.anyValue, found);
+				if (curRules.byValue != null) {
+					add(curRules.byValue.get(normalizeValue(tag.getValue())), found);
+				}
+			}
+		}
+		if (id != null) {
+			KeyRules idRules = keyRules.get(ID_KEY);
+			if (idRules != null && idRules.byValue != null) {
+				add(idRules.byValue.get(String.valueOf(id)), found);
+			}
+		}
+		if (found.isEmpty()) {
+			return Collections.emptyList();
+		}
+		found.sort();
+		List<T> result = new ArrayList<>(found.size());
+		for (int i = 0; i < found.size(); i++) {
+			if (i == 0 || found.get(i) != found.get(i - 1)) {
+				result.add(rules.get(found.get(i)));
+			}
+		}
+		return result;
+	}
+
+	private static void add(int[] items, TIntArrayList target) {
+		if (items != null) {
+			target.add(items);
+		}
+	}
+
+	private static int[] toArray(List<Integer> list) {
+		return list.stream().mapToInt(Integer::intValue).toArray();
+	}
+
+	private static String normalizeValue(String value) {
+		return normalize(StringUtils.stripToEmpty(value));
+	}
+
+	/**
+	 * Normalize string for case-insensitive comparison. Uses same char folding as {@link String#equalsIgnoreCase(String)},
+	 * so strings equal ignoring case have the same normalized form. Returns same string if there is nothing to change, which is common case
+	 */
+	private static String normalize(String str) {
+		int i = 0;
+		while (i < str.length() && fold(str.charAt(i)) == str.charAt(i)) {
+			i++;
+		}
+		if (i == str.length()) {
+			return str;
+		}
+		char[] chars = str.toCharArray();
+		for (; i < chars.length; i++) {
+			chars[i] = fold(chars[i]);
+		}
+		return new String(chars);
+	}
+
+	private static char fold(char c) {
+		return Character.toLowerCase(Character.toUpperCase(c));
+	}
+
+	private static class KeyRules {
+		private Map<String, int[]> byValue;
+		private int[] anyValue;
+
+		private void compileValues(Map<String, List<Integer>> values) {
+			byValue = new HashMap<>();
+			for (Map.Entry<String, List<Integer>> entry : values.entrySet()) {
+				byValue.put(entry.getKey(), toArray(entry.getValue()));
+			}
+		}
+	}
+
+}
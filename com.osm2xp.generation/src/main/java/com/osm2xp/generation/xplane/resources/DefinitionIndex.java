@@ -0,0 +1,63 @@
+package com.osm2xp.generation.xplane.resources;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Frozen DSF definition table - definition path to DSF definition index. Built once definitions list is complete,
+ * gives same results as {@link List#indexOf(Object)} for original list, i.e. first index for duplicate definitions.
+ *
+ * @author 32kda
+ *
+ */
+class DefinitionIndex {
+
+	private final Map<String, Integer> indexes;
+	/**
+	 * Tables for definitions starting with some prefix, keyed by path without prefix. Allows to find index for prefixed path
+	 * without concatenating strings for each lookup
+	 */
+	private final Map<String, Map<String, Integer>> prefixIndexes = new ConcurrentHashMap<>();
+
+	public DefinitionIndex(List<String> definitions) {
+		Map<String, Integer> map = new HashMap<>();
+		for (int i = 0; i < definitions.size(); i++) {
+			map.putIfAbsent(definitions.get(i), i);
+		}
+		indexes = Collections.unmodifiableMap(map);
+	}
+
+	/**
+	 * @param definition definition path
+	 * @return definition index, -1 if it's absent
+	 */
+	public int indexOf(String definition) {
+		Integer idx = indexes.get(definition);
+		return idx != null ? idx : -1;
+	}
+
+	/**
+	 * Same as <code>indexOf(prefix + definition)</code>
+	 * @param prefix definition path prefix, e.g. folder name. Should be a constant, since table for each prefix is cached
+	 * @param definition definition path without prefix
+	 * @return definition index, -1 if it's absent
+	 */
+	public int indexOf(String prefix, String definition) {
+		Integer idx = prefixIndexes.computeIfAbsent(prefix, this::buildPrefixIndex).get(definition);
+		return idx != null ? idx : -1;
+	}
+
+	private Map<String, Integer> buildPrefixIndex(String prefix) {
+		Map<String, Integer> map = new HashMap<>();
+		for (Map.Entry<String, Integer> entry : indexes.entrySet()) {
+			if (entry.getKey().startsWith(prefix)) {
+				map.put(entry.getKey().substring(prefix.length()), entry.getValue());
+			}
+		}
+		return map;
+	}
+
+}
@@ -0,0 +1,81 @@
+package com.osm2xp.generation.xplane.resources;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DSF header - properties and object, polygon and network definitions. {@link #toString()} gives header in DSF2TEXT format,
+ * binary writers can use properties and definitions directly.
+ *
+ * @author 32kda
+ *
+ */
+public class DsfHeader {
+
+	private final List<String[]> properties = new ArrayList<>();
+	private final List<String> polygonDefs = new ArrayList<>();
+	private final List<String> objectDefs = new ArrayList<>();
+	private final List<String> networkDefs = new ArrayList<>();
+
+	public DsfHeader addProperty(String name, String value) {
+		properties.add(new String[] { name, value });
+		return this;
+	}
+
+	public DsfHeader addPolygonDef(String path) {
+		polygonDefs.add(path);
+		return this;
+	}
+
+	public DsfHeader addObjectDef(String path) {
+		objectDefs.add(path);
+		return this;
+	}
+
+	public DsfHeader addNetworkDef(String path) {
+		networkDefs.add(path);
+		return this;
+	}
+
+	/**
+	 * @return properties list, each element is <code>{name, value}</code> pair
+	 */
+	public List<String[]> getProperties() {
+		return properties;
+	}
+
+	public List<String> getPolygonDefs() {
+		return polygonDefs;
+	}
+
+	public List<String> getObjectDefs() {
+		return objectDefs;
+	}
+
+	public List<String> getNetworkDefs() {
+		return networkDefs;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("I\n");
+		sb.append("800\n");
+		sb.append("DSF2TEXT\n\n");
+		for (String[] property : properties) {
+			sb.append("PROPERTY ").append(property[0]).append(' ').append(property[1]).append('\n');
+		}
+		sb.append('\n');
+		for (String def : polygonDefs) {
+			sb.append("POLYGON_DEF ").append(def).append('\n');
+		}
+		for (String def : objectDefs) {
+			sb.append("OBJECT_DEF ").append(def).append('\n');
+		}
+		for (String def : networkDefs) {
+			sb.append("NETWORK_DEF ").append(def).append('\n');
+		}
+		return sb.toString();
+	}
+
+}
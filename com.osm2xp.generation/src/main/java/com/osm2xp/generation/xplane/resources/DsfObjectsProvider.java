@@ -29,6 +29,7 @@ import com.osm2xp.generation.options.rules.FacadeTagRule;
 import com.osm2xp.generation.options.rules.ForestTagRule;
 import com.osm2xp.generation.options.rules.PolygonTagsRule;
 import com.osm2xp.generation.options.rules.RulesUtil;
+import com.osm2xp.generation.options.rules.TagRulesIndex;
 import com.osm2xp.generation.options.rules.TagsRule;
 import com.osm2xp.generation.options.rules.XplaneLightTagRule;
 import com.osm2xp.generation.options.rules.XplaneObjectTagRule;
@@ -43,6 +44,7 @@ import com.osm2xp.model.xplane.XplaneDsf3DObject;
 import com.osm2xp.model.xplane.XplaneDsfLightObject;
 import com.osm2xp.model.xplane.XplaneDsfObject;
 import com.osm2xp.translators.BuildingType;
+import com.osm2xp.utils.EntityRandom;
 import com.osm2xp.utils.FilesUtils;
 import com.osm2xp.utils.osm.OsmUtils;
 
@@ -59,13 +61,17 @@ public class DsfObjectsProvider {
 	public static final String OBJECTS_TARGET_FOLDER_NAME = "objects";
 	public static final String SPECIAL_OBJECTS_TARGET_FOLDER_NAME = "specobjects";
 	public static final String FORESTS_TARGET_FOLDER_NAME = "forests";
+	private static final String SPECIAL_OBJECTS_PREFFIX = SPECIAL_OBJECTS_TARGET_FOLDER_NAME + "/";
 	private List<String> objectsList = new ArrayList<String>();
 	private List<String> singlesFacadesList = new ArrayList<String>();
 	private List<String> facadesList = new ArrayList<String>();
 	private List<String> forestsList = new ArrayList<String>();
 	private List<String> drapedPolysList = new ArrayList<String>();
 	private List<String> polygonsList = new ArrayList<String>();
-	private List<FacadeTagRule> facadesRules = XPlaneOptionsProvider.getOptions().getFacadesRules().getRules();
+	private TagRulesIndex<FacadeTagRule> facadeRulesIndex = new TagRulesIndex<>(XPlaneOptionsProvider.getOptions().getFacadesRules().getRules(), FacadeTagRule::getTag);
+	private TagRulesIndex<XplaneObjectTagRule> objectRulesIndex = new TagRulesIndex<>(XPlaneOptionsProvider.getOptions().getObjectsRules().getRules(), XplaneObjectTagRule::getTag);
+	private TagRulesIndex<ForestTagRule> forestRulesIndex = new TagRulesIndex<>(XPlaneOptionsProvider.getOptions().getForestsRules().getRules(), ForestTagRule::getTag);
+	private TagRulesIndex<XplaneLightTagRule> lightRulesIndex = new TagRulesIndex<>(XPlaneOptionsProvider.getOptions().getLightsRules().getRules(), XplaneLightTagRule::getTag);
 	private boolean buildLibrary = XPlaneOptionsProvider.getOptions().isBuildLibrary();
 
 	private FacadeSetManager facadeSetManager;
@@ -74,6 +80,8 @@ public class DsfObjectsProvider {
 	private long lastPolyId = -1;
 	private int lastFacade = -1;
 	private ResourceLibraryDescriptor resourceLibraryDescriptor;
+	private DefinitionIndex polygonIndex;
+	private DefinitionIndex objectIndex;
 
 	/**
 	 * @param facadeSet
@@ -86,6 +94,8 @@ public class DsfObjectsProvider {
 		copyUserResources();
 		resourceLibraryDescriptor = new ResourceLibraryDescriptor(polygonsList, objectsList, new File(targetFolderPath), XPlaneOptionsProvider.getOptions().isBuildLibrary());
 		resourceLibraryDescriptor.processResourceLibrary();
+		polygonIndex = resourceLibraryDescriptor.getPolygonIndex();
+		objectIndex = resourceLibraryDescriptor.getObjectIndex();
 	}
 
 	
@@ -105,7 +115,7 @@ public class DsfObjectsProvider {
 	 * @param xVectorLength
 	 * @return Integer the facade file index
 	 */
-	public Integer computeFacadeDsfIndex(boolean simpleBuilding,
+	public synchronized Integer computeFacadeDsfIndex(boolean simpleBuilding,
 			BuildingType buildingType, boolean slopedRoof, OsmPolygon osmPolygon) {
 		if (osmPolygon.getId() == lastPolyId && lastFacade >= 0) {
 			return lastFacade;
@@ -115,11 +125,12 @@ public class DsfObjectsProvider {
 		Double minVector = osmPolygon.getMinVectorSize();
 		Integer height = osmPolygon.getHeight();
 		Facade resFacade = null;
+		Random random = EntityRandom.get(osmPolygon.getId(), EntityRandom.FACADE);
 		if (slopedRoof) {
-			resFacade = facadeSetManager.getRandomHouseSlopedFacade(buildingType, minVector, height, roofColor, landuse); 
+			resFacade = facadeSetManager.getRandomHouseSlopedFacade(buildingType, minVector, height, roofColor, landuse, random); 
 		}
 		if (resFacade == null) {
-			resFacade = facadeSetManager.getRandomFacade(buildingType,height,simpleBuilding, landuse);
+			resFacade = facadeSetManager.getRandomFacade(buildingType,height,simpleBuilding, landuse, random);
 		}
 		
 		int idx = getFacadeStrIndex(resFacade.getFile());
@@ -128,7 +139,7 @@ public class DsfObjectsProvider {
 		return idx;
 	}
 	
-	public int computeFacadeIndexFromRules(OsmPolygon osmPolygon) {
+	public synchronized int computeFacadeIndexFromRules(OsmPolygon osmPolygon) {
 		if (osmPolygon.getId() == lastPolyId && lastFacade >= 0) {
 			return lastFacade;
 		}
@@ -158,28 +169,28 @@ public class DsfObjectsProvider {
 
 	private int getFacadeStrIndex(String name) {
 		if (!name.startsWith(FACADES_DIR_PREFFIX)) {
-			return polygonsList.indexOf(FACADES_DIR_PREFFIX + name);
+			return polygonIndex.indexOf(FACADES_DIR_PREFFIX, name);
 		} else {
-			return polygonsList.indexOf(name);
+			return polygonIndex.indexOf(name);
 		}
 	}
 	
 	protected String getFacadeNameFromRules(OsmPolygon osmPolygon) {
-		for (FacadeTagRule facadeTagRule : facadesRules) {
+		for (FacadeTagRule facadeTagRule : facadeRulesIndex.getCandidates(osmPolygon.getTags())) {
 			if (facadeTagRule.matches(osmPolygon)) {
 				List<ObjectFile> objectsFiles = facadeTagRule.getObjectsFiles();
-				Random rand = new Random();
+				Random rand = EntityRandom.get(osmPolygon.getId(), EntityRandom.FACADE);
 				return objectsFiles.get(rand.nextInt(objectsFiles.size())).getPath();
 			}
 		}
 		return null;
 	}
 	
-	public Integer computeSpecialFacadeDsfIndex(SpecialFacadeType specialFacadeType, OsmPolyline polyline) {
+	public synchronized Integer computeSpecialFacadeDsfIndex(SpecialFacadeType specialFacadeType, OsmPolyline polyline) {
 		if (polyline.getId() == lastPolyId && lastFacade >= 0) {
 			return lastFacade;
 		}
-		Facade randomSpecialFacade = facadeSetManager.getRandomSpecialFacade(specialFacadeType);
+		Facade randomSpecialFacade = facadeSetManager.getRandomSpecialFacade(specialFacadeType, EntityRandom.get(polyline.getId(), EntityRandom.FACADE));
 		if (randomSpecialFacade != null) {
 			int idx = getFacadeStrIndex(randomSpecialFacade.getFile());
 			lastPolyId = polyline.getId();
@@ -356,11 +367,11 @@ public class DsfObjectsProvider {
 
 	/**
 	 * @param tagRule
+	 * @param random randomizer to use, see {@link EntityRandom}
 	 * @return
 	 */
-	public Integer getRandomObject(TagsRule tagRule) {
-		Random rnd = new Random();
-		int i = rnd.nextInt(tagRule.getObjectsFiles().size());
+	public Integer getRandomObject(TagsRule tagRule, Random random) {
+		int i = random.nextInt(tagRule.getObjectsFiles().size());
 		String objectFile = tagRule.getObjectsFiles().get(i).getPath();
 		int objectIndex = getObjectIndex(objectFile);
 		if (objectIndex == -1) {
@@ -370,7 +381,7 @@ public class DsfObjectsProvider {
 	}
 
 	public int getObjectIndex(String objectPath) {
-		return objectsList.indexOf(objectPath);
+		return objectIndex.indexOf(objectPath);
 	}
 	
 	/**
@@ -383,18 +394,18 @@ public class DsfObjectsProvider {
 
 	/**
 	 * @param forestTagRule
+	 * @param random randomizer to use, see {@link EntityRandom}
 	 * @return
 	 */
-	public Integer getRandomForest(ForestTagRule forestTagRule) {
+	public Integer getRandomForest(ForestTagRule forestTagRule, Random random) {
 		List<ObjectFile> objectsFiles = forestTagRule.getObjectsFiles();
-		Random rnd = new Random();
-		int i = rnd.nextInt(objectsFiles.size());
+		int i = random.nextInt(objectsFiles.size());
 		String forestFile = objectsFiles.get(i).getPath();
-		return polygonsList.indexOf(forestFile);
+		return polygonIndex.indexOf(forestFile);
 	}
 	
 	public int getStringIndex(String str) {
-		return polygonsList.indexOf(str);
+		return polygonIndex.indexOf(str);
 	}
 
 	/**
@@ -406,8 +417,7 @@ public class DsfObjectsProvider {
 	public XplaneDsf3DObject getRandomDsfObjectIndexAndAngle(List<Tag> tags,
 			Long id) {
 		XplaneDsf3DObject result = null;
-		for (XplaneObjectTagRule objectTagRule : XPlaneOptionsProvider
-				.getOptions().getObjectsRules().getRules()) {
+		for (XplaneObjectTagRule objectTagRule : objectRulesIndex.getCandidates(tags, id)) {
 			if (!RulesUtil.areaTypeMatches(objectTagRule, tags)) {
 				continue;
 			}
@@ -417,10 +427,9 @@ public class DsfObjectsProvider {
 						.equalsIgnoreCase(String.valueOf(id)))
 						|| OsmUtils.compareTags(objectTagRule.getTag(), tag)) {
 					result = new XplaneDsf3DObject();
-					result.setDsfIndex(getRandomObject(objectTagRule));
+					result.setDsfIndex(getRandomObject(objectTagRule, EntityRandom.get(id, EntityRandom.OBJECT)));
 					if (objectTagRule.isRandomAngle()) {
-						Random randomGenerator = new Random();
-						result.setAngle(randomGenerator.nextInt(360));
+						result.setAngle(EntityRandom.get(id, EntityRandom.ANGLE).nextInt(360));
 					} else {
 						result.setAngle(objectTagRule.getAngle());
 					}
@@ -433,19 +442,18 @@ public class DsfObjectsProvider {
 
 	/**
 	 * @param tags
-	 * @param dsfObjectsProvider
+	 * @param id entity id, used to seed random forest choice
 	 * @return
 	 */
-	public Integer[] getRandomForestIndexAndDensity(List<Tag> tags) {
-		for (ForestTagRule forestTagRule : XPlaneOptionsProvider.getOptions()
-				.getForestsRules().getRules()) {
+	public Integer[] getRandomForestIndexAndDensity(List<Tag> tags, long id) {
+		for (ForestTagRule forestTagRule : forestRulesIndex.getCandidates(tags)) {
 			if (!RulesUtil.areaTypeMatches(forestTagRule, tags)) {
 				continue;
 			}
 			for (Tag tag : tags) {
 				if (OsmUtils.compareTags(forestTagRule.getTag(), tag)) {
 					Integer[] result = new Integer[2];
-					result[0] = getRandomForest(forestTagRule);
+					result[0] = getRandomForest(forestTagRule, EntityRandom.get(id, EntityRandom.FOREST));
 					result[1] = forestTagRule.getForestDensity();
 					return result;
 
@@ -468,6 +476,7 @@ public class DsfObjectsProvider {
 	 */
 	public void setObjectsList(List<String> objectsList) {
 		this.objectsList = objectsList;
+		this.objectIndex = new DefinitionIndex(objectsList);
 	}
 
 	@Deprecated
@@ -475,9 +484,9 @@ public class DsfObjectsProvider {
 		XplaneDsfObject result = null;
 		// shuffle rules
 		List<XplaneLightTagRule> tagsRules = new ArrayList<XplaneLightTagRule>();
-		tagsRules.addAll(XPlaneOptionsProvider.getOptions().getLightsRules()
-				.getRules());
-		Collections.shuffle(tagsRules);
+		tagsRules.addAll(lightRulesIndex.getCandidates(osmPolygon.getTags(), osmPolygon.getId()));
+		Random rand = EntityRandom.get(osmPolygon.getId(), EntityRandom.LIGHT);
+		Collections.shuffle(tagsRules, rand);
 		for (XplaneLightTagRule rule : tagsRules) {
 			if (!RulesUtil.areaTypeMatches(rule, osmPolygon.getTags())) {
 				continue;
@@ -489,14 +498,13 @@ public class DsfObjectsProvider {
 						.equalsIgnoreCase(String.valueOf(osmPolygon.getId())))
 						|| (OsmUtils.compareTags(rule.getTag(), tag))) {
 					// percentage check
-					Random rand = new Random();
 					int min = 0;
 					int max = 100;
 					int percentage = rand.nextInt(max - min + 1) + min;
 					if (percentage < rule.getPercentage()) {
 						result = new XplaneDsfLightObject(osmPolygon, rule);
 						// compute object index
-						result.setDsfIndex(getRandomObject(rule));
+						result.setDsfIndex(getRandomObject(rule, rand));
 					}
 				}
 			}
@@ -505,7 +513,7 @@ public class DsfObjectsProvider {
 	}
 
 	public Integer getSpecialObject(String specialObjectFile) {
-		return objectsList.indexOf(SPECIAL_OBJECTS_TARGET_FOLDER_NAME + "/" + specialObjectFile);
+		return objectIndex.indexOf(SPECIAL_OBJECTS_PREFFIX, specialObjectFile);
 	}
 	
 	public String getResourcePathPreffix() {
@@ -0,0 +1,165 @@
+package com.osm2xp.generation.xplane.resources;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Reusable char buffer for DSF2TEXT commands. Numbers are formatted directly into the buffer, without creating
+ * intermediate strings and parsing format patterns, as {@link String#format(String, Object...)} does.
+ * Buffer is intended to be cleared and reused for each written element, so formatting produces almost no garbage.
+ *
+ * @author 32kda
+ *
+ */
+public class DsfTextBuffer implements CharSequence {
+
+	private static final long[] POWERS_OF_TEN = { 1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L,
+			1000000000L, 10000000000L, 100000000000L, 1000000000000L };
+	/**
+	 * Max scaled value, for which fraction part can be checked. Max coordinate with max decimals count is far less
+	 */
+	private static final double MAX_SCALED = 0x1p52;
+	/**
+	 * Scaled value error from multiplication and decimal conversion is less than 2 ulps, so closer values are treated as possible ties
+	 */
+	private static final int TIE_ULPS = 4;
+
+	private char[] chars;
+	private int length;
+
+	public DsfTextBuffer() {
+		this(1024);
+	}
+
+	public DsfTextBuffer(int capacity) {
+		chars = new char[capacity];
+	}
+
+	public DsfTextBuffer clear() {
+		length = 0;
+		return this;
+	}
+
+	public DsfTextBuffer append(char c) {
+		ensureCapacity(length + 1);
+		chars[length++] = c;
+		return this;
+	}
+
+	public DsfTextBuffer append(CharSequence str) {
+		int strLength = str.length();
+		ensureCapacity(length + strLength);
+		if (str instanceof String) {
+			((String) str).getChars(0, strLength, chars, length);
+			length += strLength;
+		} else {
+			for (int i = 0; i < strLength; i++) {
+				chars[length++] = str.charAt(i);
+			}
+		}
+		return this;
+	}
+
+	public DsfTextBuffer append(long value) {
+		if (value == Long.MIN_VALUE) {
+			return append(Long.toString(value));
+		}
+		if (value < 0) {
+			append('-');
+			value = -value;
+		}
+		int digits = 1;
+		for (long v = value; v >= 10; v /= 10) {
+			digits++;
+		}
+		ensureCapacity(length + digits);
+		for (int i = length + digits - 1; i >= length; i--) {
+			chars[i] = (char) ('0' + value % 10);
+			value /= 10;
+		}
+		length += digits;
+		return this;
+	}
+
+	/**
+	 * Append given value in fixed-point notation, same as <code>String.format(Locale.ROOT, "%.Nf", value)</code> does, where N is <code>decimals</code>.
+	 * Formatter rounds decimal representation of the value half-up, so values too close to half of last digit, for which scaled 
+	 * double value can be rounded differently, are formatted with {@link String#format(Locale, String, Object...)} itself. 
+	 * Same is done for NaN, infinite and too large values
+	 * @param value value to append
+	 * @param decimals digits count after decimal point, 0..12
+	 * @return this buffer
+	 */
+	public DsfTextBuffer appendFixed(double value, int decimals) {
+		long factor = POWERS_OF_TEN[decimals];
+		double scaledValue = Math.abs(value) * factor;
+		if (!(scaledValue < MAX_SCALED)) {
+			return appendFormatted(value, decimals);
+		}
+		double scaledFraction = scaledValue - Math.floor(scaledValue);
+		if (Math.abs(scaledFraction - 0.5) <= TIE_ULPS * Math.ulp(scaledValue)) {
+			return appendFormatted(value, decimals);
+		}
+		long scaled = (long) scaledValue + (scaledFraction > 0.5 ? 1 : 0);
+		if (Math.copySign(1.0, value) < 0) {
+			append('-'); // Formatter keeps sign for -0.0 and negative values rounded to 0
+		}
+		append(scaled / factor);
+		if (decimals > 0) {
+			ensureCapacity(length + decimals + 1);
+			chars[length++] = '.';
+			long fraction = scaled % factor;
+			for (int i = length + decimals - 1; i >= length; i--) {
+				chars[i] = (char) ('0' + fraction % 10);
+				fraction /= 10;
+			}
+			length += decimals;
+		}
+		return this;
+	}
+
+	private DsfTextBuffer appendFormatted(double value, int decimals) {
+		return append(String.format(Locale.ROOT, "%." + decimals + "f", value));
+	}
+
+	/**
+	 * Write buffer contents to given writer
+	 * @param writer writer to use
+	 * @throws IOException in case of write error
+	 */
+	public void writeTo(Writer writer) throws IOException {
+		writer.write(chars, 0, length);
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > chars.length) {
+			chars = Arrays.copyOf(chars, Math.max(capacity, chars.length * 2));
+		}
+	}
+
+	@Override
+	public int length() {
+		return length;
+	}
+
+	@Override
+	public char charAt(int index) {
+		if (index >= length) {
+			throw new IndexOutOfBoundsException("Index " + index + ", length " + length);
+		}
+		return chars[index];
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		return new String(chars, start, end - start);
+	}
+
+	@Override
+	public String toString() {
+		return new String(chars, 0, length);
+	}
+
+}
@@ -15,6 +15,8 @@ public class ResourceLibraryDescriptor {
 	protected List<String> objectResources;
 	protected File parentFolder;
 	protected boolean separateLibrary;
+	protected DefinitionIndex polygonIndex;
+	protected DefinitionIndex objectIndex;
 	
 	public ResourceLibraryDescriptor(List<String> polygonResources, List<String> objectResources, File parentFolder,
 			boolean separateLibrary) {
@@ -26,6 +28,8 @@ public class ResourceLibraryDescriptor {
 	}
 	
 	public void processResourceLibrary() {
+		polygonIndex = new DefinitionIndex(polygonResources);
+		objectIndex = new DefinitionIndex(objectResources);
 		if (separateLibrary) {
 			XPLibraryOutputFormat format = new XPLibraryOutputFormat(getLibPathPreffix());
 			try (PrintWriter printWriter = new PrintWriter(
@@ -47,6 +51,20 @@ public class ResourceLibraryDescriptor {
 		}
 	}
 
+	/**
+	 * @return polygon definitions index, available after {@link #processResourceLibrary()} was called
+	 */
+	DefinitionIndex getPolygonIndex() {
+		return polygonIndex;
+	}
+	
+	/**
+	 * @return object definitions index, available after {@link #processResourceLibrary()} was called
+	 */
+	DefinitionIndex getObjectIndex() {
+		return objectIndex;
+	}
+
 	private String getLibPathPreffix() {
 		return "osm2xp/";
 	}
@@ -13,8 +13,9 @@ import com.osm2xp.model.osm.polygon.OsmMultiPolygon;
 import com.osm2xp.model.osm.polygon.OsmPolygon;
 import com.osm2xp.model.xplane.XplaneDsf3DObject;
 import com.osm2xp.translators.xplane.XPPathSegment;
-import com.osm2xp.translators.xplane.XPlaneTranslatorImpl;
 import com.osm2xp.utils.geometry.GeomUtils;
+import com.osm2xp.writers.IDsfWriter;
+import com.osm2xp.writers.IWriter;
 
 import math.geom2d.Box2D;
 import math.geom2d.Point2D;
@@ -35,12 +36,22 @@ public class XPOutputFormat {
 	
 	private static final String EXCLUSIONS_WARNING_MSG = "Generate %s selected, but no exclusion '%s' turned on. This can result in artifacts in generated scenery.";
 
+	/**
+	 * Digits after decimal point for coordinates
+	 */
+	private static final int COORD_DECIMALS = 9;
+
 	private int objectRenderLevel;
 
 	private int facadeRenderLevel;
 	
 	
 	private IExclusionsProvider exclusionsProvider = new BasicExclusionsProvider();
+	
+	/**
+	 * Reusable buffer for writeXXX methods. Output format instance is created per translator, so it's used by single thread only
+	 */
+	private DsfTextBuffer buffer = new DsfTextBuffer();
 
 	public XPOutputFormat(int objectRenderLevel, int facadeRenderLevel) {
 		this.objectRenderLevel = objectRenderLevel;
@@ -48,200 +59,333 @@ public class XPOutputFormat {
 	}
 
 	public String getHeaderString(Point2D tileCoordinates, Box2D exclusionBox, ResourceLibraryDescriptor resourceLibraryDescriptor) {
+		return getHeader(tileCoordinates, exclusionBox, resourceLibraryDescriptor).toString();
+	}
+
+	public DsfHeader getHeader(Point2D tileCoordinates, Box2D exclusionBox, ResourceLibraryDescriptor resourceLibraryDescriptor) {
 
-		StringBuilder sb = new StringBuilder();
+		DsfHeader header = new DsfHeader();
 		int latitude = (int) tileCoordinates.y();
 		int longitude = (int) tileCoordinates.x();
 
-		sb.append("I\n");
-		sb.append("800\n");
-		sb.append("DSF2TEXT\n\n");
-		sb.append("PROPERTY sim/planet earth\n");
-		sb.append("PROPERTY sim/overlay 1\n");
+		header.addProperty("sim/planet", "earth");
+		header.addProperty("sim/overlay", "1");
 		// if (XPlaneOptionsProvider.getOptions().isGenerateStreetLights()) {
 		// // we set the require index so only streetlights objects will
 		// // disappear when using the objects number slider in xplane
 		// int requireIndex = dsfObjectsProvider.getStreetLightObjectsList()
 		// .size();
-		// sb.append("PROPERTY sim/require_object 1/" + requireIndex + "\n");
+		// header.addProperty("sim/require_object", "1/" + requireIndex);
 		// } else {
-		sb.append(String.format("PROPERTY sim/require_object %d/0\n", objectRenderLevel));
+		header.addProperty("sim/require_object", objectRenderLevel + "/0");
 		// }
-		sb.append(String.format("PROPERTY sim/require_facade %d/0\n", facadeRenderLevel));
-		sb.append("PROPERTY sim/creation_agent OSM2XP " + CoreConstants.OSM2XP_VERSION
-				+ " by Benjamin Blanchet, Dmitry Karpenko \n");
+		header.addProperty("sim/require_facade", facadeRenderLevel + "/0");
+		header.addProperty("sim/creation_agent", "OSM2XP " + CoreConstants.OSM2XP_VERSION
+				+ " by Benjamin Blanchet, Dmitry Karpenko");
 		// Exclusions
 		String exclusionCoordinate = exclusionBox != null
 				? formatDsfCoord(exclusionBox.getMinX()) + "/" + formatDsfCoord(exclusionBox.getMinY()) + "/"
-						+ formatDsfCoord(exclusionBox.getMaxX()) + "/" + formatDsfCoord(exclusionBox.getMaxY()) + "\n"
+						+ formatDsfCoord(exclusionBox.getMaxX()) + "/" + formatDsfCoord(exclusionBox.getMaxY())
 				: longitude + ".000000/" + latitude + ".000000/" + (longitude + 1) + ".000000/" + (latitude + 1)
-						+ ".000000\n";
-		sb.append(getDsfExclusions(exclusionCoordinate));
-		sb.append("PROPERTY sim/west " + longitude + "\n");
-		sb.append("PROPERTY sim/east " + (longitude + 1) + "\n");
-		sb.append("PROPERTY sim/north " + (latitude + 1) + "\n");
-		sb.append("PROPERTY sim/south " + latitude + "\n\n");
+						+ ".000000";
+		addDsfExclusions(header, exclusionCoordinate);
+		header.addProperty("sim/west", String.valueOf(longitude));
+		header.addProperty("sim/east", String.valueOf(longitude + 1));
+		header.addProperty("sim/north", String.valueOf(latitude + 1));
+		header.addProperty("sim/south", String.valueOf(latitude));
 		
-		List<String> preffixedPolyDefinitions = resourceLibraryDescriptor.getPreffixedPolyDefinitions();
-		preffixedPolyDefinitions.stream().map(str -> "POLYGON_DEF " + str + "\n")
-				.forEach(str -> sb.append(str));
+		for (String polyPath : resourceLibraryDescriptor.getPreffixedPolyDefinitions()) {
+			header.addPolygonDef(polyPath);
+		}
 
-		List<String> preffixedObjectDefinitions = resourceLibraryDescriptor.getPreffixedObjectDefinitions();
-			for (String objectPath : preffixedObjectDefinitions) {
-				sb.append("OBJECT_DEF " + objectPath + "\n");
-			}
+		for (String objectPath : resourceLibraryDescriptor.getPreffixedObjectDefinitions()) {
+			header.addObjectDef(objectPath);
+		}
 
-		sb.append("NETWORK_DEF lib/g10/roads.net\n");
+		header.addNetworkDef("lib/g10/roads.net");
 
-		return sb.toString();
+		return header;
 	}
 
 	public String getObjectString(int index, double x, double y, double angle) {
-		StringBuilder sb = new StringBuilder();
-		sb.append("OBJECT " + index + " " + x + " " + y + " "
-				+ String.format(Locale.ROOT, "%1.2f", angle));
-		sb.append(XPlaneTranslatorImpl.LINE_SEP);
-		return sb.toString();
+		return appendObject(new DsfTextBuffer(64), index, x, y, angle).toString();
 	}
 	
 	public String getObjectString(XplaneDsf3DObject obj) {
 		return getObjectString(obj.getDsfIndex(), obj.getOrigin().x(), obj.getOrigin().y(), obj.getAngle());
 	}
 
-	public String getPolygonString(LinearCurve2D poly, String arg1, String arg2) {
-		return getPolygonString(poly, null, arg1, arg2);
+	/**
+	 * Write object command to given writer, using reusable buffer of this format. Preferred to {@link #getObjectString(int, double, double, double)}, 
+	 * since doesn't create intermediate strings
+	 */
+	public void writeObject(IWriter writer, int index, double x, double y, double angle) {
+		if (writer instanceof IDsfWriter) {
+			((IDsfWriter) writer).addObject(index, x, y, angle);
+		} else {
+			writer.write(appendObject(buffer.clear(), index, x, y, angle));
+		}
+	}
+
+	public void writeObject(IWriter writer, XplaneDsf3DObject obj) {
+		writeObject(writer, obj.getDsfIndex(), obj.getOrigin().x(), obj.getOrigin().y(), obj.getAngle());
 	}
 
-	public String getPolygonString(LinearCurve2D poly, List<? extends LinearCurve2D> innerPolys, String arg1,
-			String arg2) {
-		StringBuilder sb = new StringBuilder();
-		sb.append("BEGIN_POLYGON " + arg1 + " " + arg2 + " 2");
-		sb.append(XPlaneTranslatorImpl.LINE_SEP);
-		sb.append(getWindingStr(poly.vertices()));
-
-		if (innerPolys != null && !innerPolys.isEmpty()) {
-			if (innerPolys.size() > MAX_INNER_POLYS) {
-				Osm2xpLogger.warning("255 windings at most supported for polygon, current polygon has "
-						+ innerPolys.size() + ". Only first 255 would be used.");
-				innerPolys = innerPolys.subList(0, MAX_INNER_POLYS);
-			}
+	public DsfTextBuffer appendObject(DsfTextBuffer sb, int index, double x, double y, double angle) {
+		sb.append("OBJECT ").append(index).append(' ');
+		sb.appendFixed(x, COORD_DECIMALS).append(' ').appendFixed(y, COORD_DECIMALS).append(' ').appendFixed(angle, 2);
+		return sb.append(LINE_SEP);
+	}
+
+	public String getPolygonString(LinearCurve2D poly, int definition, int param) {
+		return getPolygonString(poly, null, definition, param);
+	}
+
+	public String getPolygonString(LinearCurve2D poly, List<? extends LinearCurve2D> innerPolys, int definition,
+			int param) {
+		return appendPolygon(new DsfTextBuffer(), poly, innerPolys, definition, param).toString();
+	}
+
+	/**
+	 * Write polygon to given writer, using reusable buffer of this format. Preferred to {@link #getPolygonString(LinearCurve2D, int, int)}, 
+	 * since doesn't create intermediate strings
+	 */
+	public void writePolygon(IWriter writer, LinearCurve2D poly, int definition, int param) {
+		if (writer instanceof IDsfWriter) {
+			emitPolygon((IDsfWriter) writer, poly, null, definition, param);
+		} else {
+			writer.write(appendPolygon(buffer.clear(), poly, null, definition, param));
+		}
+	}
+
+	public void writePolygon(IWriter writer, OsmPolygon osmPolygon, int definition, int param) {
+		if (writer instanceof IDsfWriter) {
+			emitPolygon((IDsfWriter) writer, osmPolygon.getPolygon(), getInnerPolys(osmPolygon), definition, param);
+		} else {
+			writer.write(appendPolygon(buffer.clear(), osmPolygon, definition, param));
+		}
+	}
+
+	public DsfTextBuffer appendPolygon(DsfTextBuffer sb, LinearCurve2D poly, List<? extends LinearCurve2D> innerPolys, int definition,
+			int param) {
+		sb.append("BEGIN_POLYGON ").append(definition).append(' ').append(param).append(" 2");
+		sb.append(LINE_SEP);
+		appendWinding(sb, poly.vertices());
+
+		innerPolys = limitInnerPolys(innerPolys);
+		if (innerPolys != null) {
 			for (LinearCurve2D polyline2d : innerPolys) {
-				sb.append(getWindingStr(GeomUtils.forceCW((LinearRing2D) polyline2d).vertices()));
+				appendWinding(sb, GeomUtils.forceCW((LinearRing2D) polyline2d).vertices());
 			}
 		}
 
 		sb.append("END_POLYGON");
-		sb.append(XPlaneTranslatorImpl.LINE_SEP);
-		return sb.toString();
+		sb.append(LINE_SEP);
+		return sb;
 	}
 
-	protected String getWindingStr(Collection<Point2D> vertices) {
-		if (vertices instanceof List && vertices.size() > 1
-				&& ((List<Point2D>) vertices).get(0).equals(((List<Point2D>) vertices).get(vertices.size() - 1))) {
-			((List<Point2D>) vertices).remove(vertices.size() - 1);
-		}
-		StringBuilder sb = new StringBuilder();
+	protected DsfTextBuffer appendWinding(DsfTextBuffer sb, Collection<Point2D> vertices) {
+		removeClosingVertex(vertices);
 		sb.append("BEGIN_WINDING");
-		sb.append(XPlaneTranslatorImpl.LINE_SEP);
+		sb.append(LINE_SEP);
 		for (Point2D loc : vertices) {
-			sb.append(String.format(Locale.ROOT, "POLYGON_POINT %1.9f %2.9f", loc.x(), loc.y()));
-			sb.append(XPlaneTranslatorImpl.LINE_SEP);
+			sb.append("POLYGON_POINT ").appendFixed(loc.x(), COORD_DECIMALS).append(' ').appendFixed(loc.y(), COORD_DECIMALS);
+			sb.append(LINE_SEP);
 		}
 		sb.append("END_WINDING");
-		sb.append(XPlaneTranslatorImpl.LINE_SEP);
-		return sb.toString();
+		sb.append(LINE_SEP);
+		return sb;
 	}
 
-	public String getPolygonString(OsmPolygon osmPolygon, String arg1, String arg2) {
-		String result; 
-		if (osmPolygon instanceof OsmMultiPolygon) {
-			result = getPolygonString(osmPolygon.getPolygon(), ((OsmMultiPolygon) osmPolygon).getInnerPolys(), arg1,
-					arg2);
-		} else {
-			result = getPolygonString(osmPolygon.getPolygon(), arg1, arg2);
+	/**
+	 * Emit polygon to structured DSF writer, same as {@link #appendPolygon(DsfTextBuffer, LinearCurve2D, List, int, int)} does for text
+	 */
+	protected void emitPolygon(IDsfWriter writer, LinearCurve2D poly, List<? extends LinearCurve2D> innerPolys, int definition,
+			int param) {
+		writer.beginPolygon(definition, param);
+		emitWinding(writer, poly);
+		innerPolys = limitInnerPolys(innerPolys);
+		if (innerPolys != null) {
+			for (LinearCurve2D polyline2d : innerPolys) {
+				emitWinding(writer, GeomUtils.forceCW((LinearRing2D) polyline2d));
+			}
 		}
+		writer.endPolygon();
+	}
+
+	/**
+	 * Emit winding, reading curve vertices by index - unlike {@link LinearCurve2D#vertices()} it doesn't copy vertex list.
+	 * Closing vertex is skipped, see {@link #removeClosingVertex(Collection)}
+	 */
+	protected void emitWinding(IDsfWriter writer, LinearCurve2D curve) {
+		int count = curve.vertexNumber();
+		if (count > 1 && curve.vertex(0).equals(curve.vertex(count - 1))) {
+			count--;
+		}
+		writer.beginWinding();
+		for (int i = 0; i < count; i++) {
+			Point2D loc = curve.vertex(i);
+			writer.addPoint(loc.x(), loc.y());
+		}
+		writer.endWinding();
+	}
+
+	/**
+	 * DSF windings are implicitly closed, so closing vertex duplicating the first one is removed from given vertex list
+	 */
+	@SuppressWarnings("unchecked")
+	protected void removeClosingVertex(Collection<Point2D> vertices) {
+		if (vertices instanceof List && vertices.size() > 1
+				&& ((List<Point2D>) vertices).get(0).equals(((List<Point2D>) vertices).get(vertices.size() - 1))) {
+			((List<Point2D>) vertices).remove(vertices.size() - 1);
+		}
+	}
+
+	protected List<? extends LinearCurve2D> limitInnerPolys(List<? extends LinearCurve2D> innerPolys) {
+		if (innerPolys == null || innerPolys.isEmpty()) {
+			return null;
+		}
+		if (innerPolys.size() > MAX_INNER_POLYS) {
+			Osm2xpLogger.warning("255 windings at most supported for polygon, current polygon has "
+					+ innerPolys.size() + ". Only first 255 would be used.");
+			return innerPolys.subList(0, MAX_INNER_POLYS);
+		}
+		return innerPolys;
+	}
+
+	public String getPolygonString(OsmPolygon osmPolygon, int definition, int param) {
+		return appendPolygon(new DsfTextBuffer(), osmPolygon, definition, param).toString();
+	}
+
+	public DsfTextBuffer appendPolygon(DsfTextBuffer sb, OsmPolygon osmPolygon, int definition, int param) {
 		if (XPlaneOptionsProvider.getOptions().isGenerateComments()) {
-			StringBuilder builder = new StringBuilder();
-			builder.append("#");
-			builder.append("Way id ");
-			builder.append(osmPolygon.getId());
-			builder.append(LINE_SEP);
-			builder.append(result);
-			return builder.toString();
+			sb.append("#Way id ").append(osmPolygon.getId());
+			sb.append(LINE_SEP);
 		}
-		return result;
+		return appendPolygon(sb, osmPolygon.getPolygon(), getInnerPolys(osmPolygon), definition, param);
+	}
+
+	protected List<LinearRing2D> getInnerPolys(OsmPolygon osmPolygon) {
+		return osmPolygon instanceof OsmMultiPolygon ? ((OsmMultiPolygon) osmPolygon).getInnerPolys() : null;
 	}
 
 	public String getPathStr(XPPathSegment pathSegment) {
-		StringBuilder builder = new StringBuilder();
+		return appendPath(new DsfTextBuffer(), pathSegment).toString();
+	}
+
+	/**
+	 * Write path segment to given writer, using reusable buffer of this format. Preferred to {@link #getPathStr(XPPathSegment)}, 
+	 * since doesn't create intermediate strings
+	 */
+	public void writePath(IWriter writer, XPPathSegment pathSegment) {
+		if (writer instanceof IDsfWriter) {
+			emitPath((IDsfWriter) writer, pathSegment);
+		} else {
+			writer.write(appendPath(buffer.clear(), pathSegment));
+		}
+	}
+
+	/**
+	 * Emit path segment to structured DSF writer, same as {@link #appendPath(DsfTextBuffer, XPPathSegment)} does for text
+	 */
+	protected void emitPath(IDsfWriter writer, XPPathSegment pathSegment) {
+		Point2D[] points = pathSegment.getPoints();
+		writer.beginSegment(0, pathSegment.getType(), pathSegment.getStartId(), points[0].x(), points[0].y(), pathSegment.getStartHeight());
+		for (int i = 1; i < points.length - 1; i++) {
+			writer.addShapePoint(points[i].x(), points[i].y());
+		}
+		Point2D last = points[points.length - 1];
+		writer.endSegment(pathSegment.getEndId(), last.x(), last.y(), pathSegment.getEndHeight());
+	}
+
+	/**
+	 * Start comment line in reusable buffer of this format. Comment text should be appended to returned buffer,
+	 * then comment is written with {@link #writeComment(IWriter)}
+	 * @return buffer, containing comment start char only
+	 */
+	public DsfTextBuffer beginComment() {
+		return buffer.clear().append('#');
+	}
+
+	/**
+	 * Write comment, started with {@link #beginComment()}, to given writer. Comments are skipped for structured {@link IDsfWriter}s
+	 */
+	public void writeComment(IWriter writer) {
+		if (!(writer instanceof IDsfWriter)) {
+			writer.write(buffer.append(LINE_SEP));
+		}
+	}
+
+	public DsfTextBuffer appendPath(DsfTextBuffer sb, XPPathSegment pathSegment) {
 		if (XPlaneOptionsProvider.getOptions().isGenerateComments() && pathSegment.getComment() != null) {
-			builder.append("#");
-			builder.append(pathSegment.getComment());
-			builder.append(LINE_SEP);
+			sb.append('#');
+			sb.append(pathSegment.getComment());
+			sb.append(LINE_SEP);
 		}
 		Point2D[] points = pathSegment.getPoints();
-		builder.append(String.format(Locale.ROOT, "BEGIN_SEGMENT 0 %d %d %3.9f %4.9f %5.9f", pathSegment.getType(),
-				pathSegment.getStartId(), points[0].x(), points[0].y(), pathSegment.getStartHeight()));
-		builder.append(LINE_SEP);
+		sb.append("BEGIN_SEGMENT 0 ").append(pathSegment.getType()).append(' ').append(pathSegment.getStartId()).append(' ');
+		sb.appendFixed(points[0].x(), COORD_DECIMALS).append(' ').appendFixed(points[0].y(), COORD_DECIMALS).append(' ')
+				.appendFixed(pathSegment.getStartHeight(), COORD_DECIMALS);
+		sb.append(LINE_SEP);
 		for (int i = 1; i < points.length - 1; i++) {
-			builder.append(
-					String.format(Locale.ROOT, "SHAPE_POINT %1.9f %2.9f 0.000000000", points[i].x(), points[i].y()));
-			builder.append(LINE_SEP);
+			sb.append("SHAPE_POINT ").appendFixed(points[i].x(), COORD_DECIMALS).append(' ').appendFixed(points[i].y(), COORD_DECIMALS)
+					.append(" 0.000000000");
+			sb.append(LINE_SEP);
 		}
-		builder.append(String.format(Locale.ROOT, "END_SEGMENT %d %2.9f %3.9f %4.9f", pathSegment.getEndId(),
-				points[points.length - 1].x(), points[points.length - 1].y(), pathSegment.getEndHeight()));
-		builder.append(LINE_SEP);
-		return builder.toString();
+		Point2D last = points[points.length - 1];
+		sb.append("END_SEGMENT ").append(pathSegment.getEndId()).append(' ');
+		sb.appendFixed(last.x(), COORD_DECIMALS).append(' ').appendFixed(last.y(), COORD_DECIMALS).append(' ')
+				.appendFixed(pathSegment.getEndHeight(), COORD_DECIMALS);
+		sb.append(LINE_SEP);
+		return sb;
 	}
 
 	/**
-	 * @param tileCoordinate
-	 * @return
+	 * Add exclusion properties to DSF header
+	 * @param header header to add properties to
+	 * @param tileCoordinate exclusion rectangle, formatted as "west/south/east/north"
 	 */
-	protected String getDsfExclusions(String tileCoordinate) {
-		StringBuilder sb = new StringBuilder();
+	protected void addDsfExclusions(DsfHeader header, String tileCoordinate) {
 		// Exclusions
 		if (exclusionsProvider.isExcludeObj()) {
 //			// smart OBJ exclusion
 //			if (XPlaneOptionsProvider.getOptions().isSmartExclusions()) {
 //				sb.append(EXCLUSION_PLACEHOLDER + "\n");
 //			} else {
-			sb.append("PROPERTY sim/exclude_obj " + tileCoordinate);
+			header.addProperty("sim/exclude_obj", tileCoordinate);
 //			} 
 		} else if (exclusionsProvider.objectsGenerated()) {
 			Osm2xpLogger.warning(String.format(EXCLUSIONS_WARNING_MSG, "3D objects", "Objects"));
 		}
 		if (exclusionsProvider.isExcludeFac()) {
-			sb.append("PROPERTY sim/exclude_fac " + tileCoordinate);
+			header.addProperty("sim/exclude_fac", tileCoordinate);
 		} else if (exclusionsProvider.facadesGenerated()) {
 			Osm2xpLogger.warning(String.format(EXCLUSIONS_WARNING_MSG, "Facades, fence or tanks", "Facades"));
 		}
 		if (exclusionsProvider.isExcludeFor()) {
-			sb.append("PROPERTY sim/exclude_for " + tileCoordinate);
+			header.addProperty("sim/exclude_for", tileCoordinate);
 		} else if (exclusionsProvider.forestsGenerated()) {
 			Osm2xpLogger.warning(String.format(EXCLUSIONS_WARNING_MSG, "Forests", "Forests"));
 		}
 		if (exclusionsProvider.isExcludeNet()) {
-			sb.append("PROPERTY sim/exclude_net " + tileCoordinate);
+			header.addProperty("sim/exclude_net", tileCoordinate);
 		} else if (exclusionsProvider.networkGenerated()) {
 			Osm2xpLogger.warning(String.format(EXCLUSIONS_WARNING_MSG, "Roads, railways or powerlines", "Network"));
 		}
 		if (exclusionsProvider.isExcludeLin()) {
-			sb.append("PROPERTY sim/exclude_lin " + tileCoordinate);
+			header.addProperty("sim/exclude_lin", tileCoordinate);
 		}
 		if (exclusionsProvider.isExcludePol()) {
-			sb.append("PROPERTY sim/exclude_pol " + tileCoordinate);
+			header.addProperty("sim/exclude_pol", tileCoordinate);
 		} else if (exclusionsProvider.polysGenerated()) {
 			Osm2xpLogger.warning(String.format(EXCLUSIONS_WARNING_MSG, "Draped polygons", "Polygons"));
 		}
 		if (exclusionsProvider.isExcludeStr()) {
-			sb.append("PROPERTY sim/exclude_str " + tileCoordinate);
+			header.addProperty("sim/exclude_str", tileCoordinate);
 		}
 		if (exclusionsProvider.isExcludeBch()) {
-			sb.append("PROPERTY sim/exclude_bch " + tileCoordinate);
+			header.addProperty("sim/exclude_bch", tileCoordinate);
 		}
-
-		return sb.toString();
 	}
 
 	/**
@@ -1,5 +1,6 @@
 package com.osm2xp.index;
 
+import java.util.Arrays;
 
 public abstract class AbstractPointCoordsIndex implements IIdIndex<double[]>{
 	
@@ -76,6 +77,12 @@ public abstract class AbstractPointCoordsIndex implements IIdIndex<double[]>{
 		return elementData(index);
 	}
 
+	@Override
+	public char getId(int index) {
+		rangeCheck(index);
+		return idArray[index];
+	}
+
 	public double[] getPoint(int id) {
 		if (idArray.length == 0 || size == 0) {
 			return null;
@@ -112,6 +119,57 @@ public abstract class AbstractPointCoordsIndex implements IIdIndex<double[]>{
 		return null;
 	}
 	
+	/**
+	 * Appends point with given id and coordinates to the end of this index
+	 * @param pointId point id inside index
+	 * @param lon point longitude
+	 * @param lat point latitude
+	 * @return <code>true</code> if point was added
+	 */
+	public abstract boolean add(char pointId, double lon, double lat);
+	
+	/**
+	 * Resolve coordinates for a sorted run of ids, belonging to this index. Since both id run and index ids are sorted,
+	 * search for every next id starts from the position of previous one found
+	 * @param sortedIds sorted ids array
+	 * @param from run start, inclusive
+	 * @param to run end, exclusive
+	 * @param indexBaseId id corresponding to in-index id 0
+	 * @param outXY output array, lon and lat for <code>sortedIds[i]</code> are written to <code>outXY[2 * i]</code> and <code>outXY[2 * i + 1]</code>. Left untouched for missing ids
+	 * @return number of resolved ids
+	 */
+	public int resolveSorted(long[] sortedIds, int from, int to, long indexBaseId, double[] outXY) {
+		int pos = 0;
+		int found = 0;
+		for (int i = from; i < to && pos < size; i++) {
+			char id = (char) (sortedIds[i] - indexBaseId);
+			if (idArray[pos] != id) {
+				int res = Arrays.binarySearch(idArray, pos, size, id);
+				if (res < 0) {
+					pos = -res - 1;
+					continue;
+				}
+				pos = res;
+			}
+			outXY[2 * i] = getLon(pos);
+			outXY[2 * i + 1] = getLat(pos);
+			found++;
+		}
+		return found;
+	}
+	
+	/**
+	 * @param index element position
+	 * @return longitude of element at given position
+	 */
+	protected abstract double getLon(int index);
+	
+	/**
+	 * @param index element position
+	 * @return latitude of element at given position
+	 */
+	protected abstract double getLat(int index);
+	
 	protected abstract double[] elementData(int index);
 	/**
 	 * Increases the capacity to ensure that it can hold at least the number of
@@ -94,6 +94,12 @@ public class ArrayBasedIndex<T> implements IIdIndex<T>{
         return elementData(index);
     }
     
+    @Override
+    public char getId(int index) {
+    	rangeCheck(index);
+    	return idArray[index];
+    }
+    
     public T getItem(char id) {
     	if (idArray.length == 0 || size == 0) {
     		return null;
@@ -4,6 +4,16 @@ public interface IIdIndex<T> {
 
 	public void addItem(char id, T t);
 	public T getItem(char id);
+	/**
+	 * @param index element position, elements are sorted by id
+	 * @return in-index id of element at given position
+	 */
+	public char getId(int index);
+	/**
+	 * @param index element position, elements are sorted by id
+	 * @return element at given position
+	 */
+	public T get(int index);
 	public int size();
 	
 }
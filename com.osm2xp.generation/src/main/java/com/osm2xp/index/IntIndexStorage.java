@@ -1,11 +1,23 @@
 package com.osm2xp.index;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * Storage for long key - T value pairs.
- * For now - keys should appear in strictly increasing order
+ * Keys are expected to appear mostly in increasing order, like in sorted OSM files. Items added out of order (e.g. from unsorted OSM XML or 
+ * negative ids of newly created objects) are collected into {@link SortedRuns} and merged into index segments once there are many of them, 
+ * or on {@link #seal()}, so final memory footprint doesn't depend on input order.
+ * 
+ * Storage is filled by single writer thread. In concurrent reads mode other threads can read it while writer keeps adding items.
+ * Segment is sealed and published to readers once writer moves to the next one, or on {@link #seal()}. Readers see only published segments,
+ * and don't need any locking, since published segment is never modified - if writer needs to add item to it, it modifies it's private copy 
+ * and publishes this copy on next {@link #seal()} call.
+ * 
  * @author 32kda
  *
  * @param <T> Storage values type
@@ -14,45 +26,420 @@ public class IntIndexStorage<T> {
 	
 	protected List<IIdIndex<T>> indexList = new ArrayList<IIdIndex<T>>();
 
+	/**
+	 * Out-of-order items count, after which these are merged into index segments
+	 */
+	private static final int MAX_OUT_OF_ORDER = 1 << 20;
+
 	protected long baseId = 0;
 	
+	private boolean reserved = false;
+	
+	private long lastId = Long.MIN_VALUE;
+	/**
+	 * Items added out of id order and not merged into segments yet, <code>null</code> if there are no such items
+	 */
+	private SortedRuns<T> outOfOrder;
+	
+	private final boolean concurrentReads;
+	/**
+	 * Segments published for reading from non-writer threads. Only used in concurrent reads mode
+	 */
+	private volatile Published<T> published;
+	/**
+	 * View of writer's segments
+	 */
+	private final Segments<T> writerSegments = new Segments<T>() {
+		
+		@Override
+		long getBaseId() {
+			return baseId;
+		}
+		
+		@Override
+		int getCount() {
+			return indexList.size();
+		}
+		
+		@Override
+		IIdIndex<T> get(int storeId) {
+			return storeId < indexList.size() ? indexList.get(storeId) : null;
+		}
+	};
+	/**
+	 * Segments with numbers less than this one were published
+	 */
+	private int sealedCount = 0;
+	/**
+	 * Numbers of published segments, which were copied by writer for modification and should be published again
+	 */
+	private BitSet modifiedSealed = new BitSet();
+	/**
+	 * Writer thread. Reading this field from other threads is racy, but safe - reader thread can't be equal to writer 
+	 * regardless of value seen
+	 */
+	private Thread writer;
+	
+	public IntIndexStorage() {
+		this(false);
+	}
+	
+	/**
+	 * @param concurrentReads <code>true</code> to allow reading from other threads while storage is being filled, 
+	 * <code>false</code> if storage would be written and read from the same thread only
+	 */
+	public IntIndexStorage(boolean concurrentReads) {
+		this.concurrentReads = concurrentReads;
+	}
+	
 	public void add(long id, T t) {
-		if (indexList.isEmpty()) {
+		if (isOutOfOrder(id)) {
+			addOutOfOrder(id, t);
+			return;
+		}
+		getIndexForAdd(id).addItem(getInStoreId(id), t);
+	}
+	
+	/**
+	 * @param id id to be added
+	 * @return <code>true</code> if given id can't be appended to index segments and should be added with {@link #addOutOfOrder(long, Object)}
+	 */
+	protected boolean isOutOfOrder(long id) {
+		return id <= lastId || (reserved && id < baseId);
+	}
+	
+	protected void addOutOfOrder(long id, T t) {
+		if (writer == null) {
+			writer = Thread.currentThread();
+		}
+		if (outOfOrder == null) {
+			outOfOrder = new SortedRuns<T>();
+		}
+		outOfOrder.add(id, t);
+		if (outOfOrder.size() >= MAX_OUT_OF_ORDER) {
+			mergeOutOfOrder();
+		}
+	}
+	
+	/**
+	 * Merge items added out of order into index segments. Affected segments are rebuilt, if id less than base one was added, 
+	 * base id is moved back by whole number of segments, so existing segments remain valid
+	 */
+	protected void mergeOutOfOrder() {
+		if (outOfOrder == null) {
+			return;
+		}
+		SortedRuns.Run run = outOfOrder.mergeAll();
+		outOfOrder = null;
+		if (run.ids.length == 0) {
+			return;
+		}
+		if (run.ids[0] < baseId) {
+			int shift = (int) ((baseId - run.ids[0] + Character.MAX_VALUE - 1) / Character.MAX_VALUE);
+			baseId -= (long) shift * Character.MAX_VALUE;
+			indexList.addAll(0, Collections.nCopies(shift, null));
+			if (concurrentReads) {
+				sealedCount += shift;
+				BitSet shifted = new BitSet();
+				for (int storeId = modifiedSealed.nextSetBit(0); storeId >= 0; storeId = modifiedSealed.nextSetBit(storeId + 1)) {
+					shifted.set(storeId + shift);
+				}
+				modifiedSealed = shifted;
+			}
+		}
+		int i = 0;
+		while (i < run.ids.length) {
+			int storeId = (int) ((run.ids[i] - baseId) / Character.MAX_VALUE);
+			long segmentEnd = baseId + (storeId + 1L) * Character.MAX_VALUE;
+			int end = i;
+			while (end < run.ids.length && run.ids[end] < segmentEnd) {
+				end++;
+			}
+			while (indexList.size() <= storeId) {
+				indexList.add(null);
+			}
+			indexList.set(storeId, mergeIndex(indexList.get(storeId), run, i, end));
+			if (storeId < sealedCount) {
+				modifiedSealed.set(storeId);
+			}
+			i = end;
+		}
+	}
+	
+	/**
+	 * Create new segment containing items from existing one and given run part. Run items replace existing ones with the same id
+	 */
+	@SuppressWarnings("unchecked")
+	private IIdIndex<T> mergeIndex(IIdIndex<T> index, SortedRuns.Run run, int from, int to) {
+		IIdIndex<T> merged = createIndex();
+		int size = index != null ? index.size() : 0;
+		int k = 0;
+		for (int i = from; i < to; i++) {
+			char id = getInStoreId(run.ids[i]);
+			while (k < size && index.getId(k) < id) {
+				merged.addItem(index.getId(k), index.get(k));
+				k++;
+			}
+			if (k < size && index.getId(k) == id) {
+				k++;
+			}
+			merged.addItem(id, (T) run.values[i]);
+		}
+		for (; k < size; k++) {
+			merged.addItem(index.getId(k), index.get(k));
+		}
+		return merged;
+	}
+	
+	/**
+	 * Get index segment, which should hold given id, creating it if necessary
+	 * @param id id to be added
+	 * @return index segment for given id
+	 */
+	protected IIdIndex<T> getIndexForAdd(long id) {
+		if (indexList.isEmpty() && !reserved) {
 			baseId = id;
 		}
+		lastId = id;
 		int storeId = (int) ((id - baseId) / Character.MAX_VALUE);
-		char inStoreId = (char) ((id - baseId) % Character.MAX_VALUE);
+		if (concurrentReads) {
+			if (writer == null) {
+				writer = Thread.currentThread();
+			}
+			if (storeId < sealedCount) {
+				return getSealedForAdd(storeId);
+			}
+			publish(Math.min(storeId, indexList.size()), false);
+		}
 		while (indexList.size() <= storeId) {
 			indexList.add(indexList.size() < storeId ? null : createIndex());
 		}
-		indexList.get(storeId).addItem(inStoreId, t);
+		return indexList.get(storeId);
+	}
+	
+	/**
+	 * Get writer's copy of already published segment, copying it on first modification
+	 */
+	private IIdIndex<T> getSealedForAdd(int storeId) {
+		IIdIndex<T> index = indexList.get(storeId);
+		if (index == null) {
+			index = createIndex();
+			indexList.set(storeId, index);
+			modifiedSealed.set(storeId);
+		} else if (index == published.segments.get(storeId)) {
+			IIdIndex<T> copy = createIndex();
+			for (int i = 0; i < index.size(); i++) {
+				copy.addItem(index.getId(i), index.get(i));
+			}
+			index = copy;
+			indexList.set(storeId, index);
+			modifiedSealed.set(storeId);
+		}
+		return index;
+	}
+	
+	/**
+	 * Merge items added out of order into index segments and publish all the segments written so far for reading from other threads 
+	 * (if storage is in concurrent reads mode). Should be called by writer thread, e.g. after all the items were added. 
+	 */
+	public void seal() {
+		mergeOutOfOrder();
+		if (concurrentReads) {
+			publish(indexList.size(), true);
+		}
+	}
+	
+	/**
+	 * @param upTo publish segments with numbers less than given one
+	 * @param republishModified whether modified copies of already published segments should be published. This is done only on explicit {@link #seal()}
+	 * to avoid copying same segment again and again
+	 */
+	private void publish(int upTo, boolean republishModified) {
+		Published<T> current = published;
+		boolean rebased = current != null && current.baseId != baseId;
+		if (upTo <= sealedCount && !rebased && (!republishModified || modifiedSealed.isEmpty())) {
+			return;
+		}
+		AtomicReferenceArray<IIdIndex<T>> segments = current != null ? current.segments : null;
+		if (segments == null || segments.length() < upTo || rebased) {
+			int capacity = Math.max(upTo, segments != null ? segments.length() * 2 : 16);
+			AtomicReferenceArray<IIdIndex<T>> newSegments = new AtomicReferenceArray<>(capacity);
+			if (current != null) {
+				// Segments were shifted if base id was moved back
+				int shift = (int) ((current.baseId - baseId) / Character.MAX_VALUE);
+				for (int i = shift; i < sealedCount && i - shift < segments.length(); i++) {
+					newSegments.lazySet(i, segments.get(i - shift));
+				}
+			}
+			segments = newSegments;
+		}
+		for (int i = sealedCount; i < upTo; i++) {
+			segments.set(i, indexList.get(i));
+		}
+		if (republishModified) {
+			for (int storeId = modifiedSealed.nextSetBit(0); storeId >= 0; storeId = modifiedSealed.nextSetBit(storeId + 1)) {
+				segments.set(storeId, indexList.get(storeId));
+			}
+			modifiedSealed.clear();
+		}
+		sealedCount = Math.max(sealedCount, upTo);
+		if (current == null || segments != current.segments) {
+			published = new Published<T>(baseId, segments);
+		}
+	}
+	
+	/**
+	 * Pre-size storage for given id range, if it's known in advance (e.g. from pre-scan pass). Should be called before first addition
+	 * @param minId min id to be stored
+	 * @param maxId max id to be stored
+	 */
+	public void reserve(long minId, long maxId) {
+		if (!indexList.isEmpty() || maxId < minId) {
+			return;
+		}
+		baseId = minId;
+		reserved = true;
+		indexList = new ArrayList<IIdIndex<T>>((int) ((maxId - minId) / Character.MAX_VALUE) + 1);
+	}
+	
+	protected char getInStoreId(long id) {
+		return (char) ((id - baseId) % Character.MAX_VALUE);
 	}
 	
 	public T get(long id) {
-		if (id < baseId) {
-			return null;
+		T pending = getOutOfOrder(id);
+		if (pending != null) {
+			return pending;
 		}
-		int storeId = (int) ((id - baseId) / Character.MAX_VALUE);
-		char inStoreId = (char) ((id - baseId) % Character.MAX_VALUE);
-		if (storeId >= indexList.size()) {
+		Segments<T> segments = getSegmentsForRead();
+		long base = segments.getBaseId();
+		if (id < base) {
 			return null;
 		}
-		IIdIndex<T> store = indexList.get(storeId);
+		IIdIndex<T> store = segments.get((int) ((id - base) / Character.MAX_VALUE));
 		if (store != null) {
-			return store.getItem(inStoreId);
+			return store.getItem((char) ((id - base) % Character.MAX_VALUE));
 		}
 		return null;
 	}
+	
+	/**
+	 * Get item, which was added out of order and not merged into segments yet. Non-writer threads see only merged items, so <code>null</code> is returned for them
+	 * @param id item id
+	 * @return item or <code>null</code> if there is no one
+	 */
+	protected T getOutOfOrder(long id) {
+		if (outOfOrder == null || (concurrentReads && Thread.currentThread() != writer)) {
+			return null;
+		}
+		return outOfOrder.get(id);
+	}
+	
+	/**
+	 * @return <code>true</code> if there are items added out of order and visible for current thread, see {@link #getOutOfOrder(long)} 
+	 */
+	protected boolean hasOutOfOrder() {
+		return outOfOrder != null && !(concurrentReads && Thread.currentThread() != writer);
+	}
+	
+	/**
+	 * Get index segments for reading. For non-writer thread in concurrent reads mode only published segments are visible.
+	 * Returned view is consistent - base id and segments don't change for it
+	 * @return segments view
+	 */
+	protected Segments<T> getSegmentsForRead() {
+		if (concurrentReads && Thread.currentThread() != writer) {
+			Published<T> segments = published;
+			return segments != null ? segments : Published.empty();
+		}
+		return writerSegments;
+	}
 
 	protected IIdIndex<T> createIndex() {
 		return new ArrayBasedIndex<T>();
 	}
 
 	public long size() {
-		long sum = 0;
+		long sum = outOfOrder != null ? outOfOrder.size() : 0;
 		for (IIdIndex<T> idIndex : indexList) {
-			sum += idIndex.size();
+			if (idIndex != null) {
+				sum += idIndex.size();
+			}
 		}
 		return sum;
 	}
+	
+	/**
+	 * Iterate over stored items in id order. Should be called from writer thread
+	 * @param consumer item consumer
+	 * @throws IOException if thrown by consumer
+	 */
+	public void forEach(ItemConsumer<T> consumer) throws IOException {
+		mergeOutOfOrder();
+		for (int storeId = 0; storeId < indexList.size(); storeId++) {
+			IIdIndex<T> index = indexList.get(storeId);
+			if (index != null) {
+				long indexBaseId = baseId + (long) storeId * Character.MAX_VALUE;
+				for (int i = 0; i < index.size(); i++) {
+					consumer.accept(indexBaseId + index.getId(i), index.get(i));
+				}
+			}
+		}
+	}
+	
+	public interface ItemConsumer<T> {
+		public void accept(long id, T item) throws IOException;
+	}
+	
+	/**
+	 * Index segments view, used for reading
+	 */
+	protected static abstract class Segments<T> {
+		
+		abstract long getBaseId();
+		
+		abstract int getCount();
+		
+		/**
+		 * @param storeId segment number
+		 * @return segment, <code>null</code> if there is no such segment
+		 */
+		abstract IIdIndex<T> get(int storeId);
+	}
+	
+	/**
+	 * Immutable published segments view
+	 */
+	private static class Published<T> extends Segments<T> {
+		
+		private static final Published<Object> EMPTY = new Published<>(Long.MAX_VALUE, new AtomicReferenceArray<>(0));
+		
+		private final long baseId;
+		private final AtomicReferenceArray<IIdIndex<T>> segments;
+		
+		public Published(long baseId, AtomicReferenceArray<IIdIndex<T>> segments) {
+			this.baseId = baseId;
+			this.segments = segments;
+		}
+		
+		@SuppressWarnings("unchecked")
+		static <T> Published<T> empty() {
+			return (Published<T>) EMPTY;
+		}
+		
+		@Override
+		long getBaseId() {
+			return baseId;
+		}
+		
+		@Override
+		int getCount() {
+			return segments.length();
+		}
+		
+		@Override
+		IIdIndex<T> get(int storeId) {
+			return storeId < segments.length() ? segments.get(storeId) : null;
+		}
+	}
 }
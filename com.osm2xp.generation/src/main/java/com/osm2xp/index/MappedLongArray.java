@@ -0,0 +1,137 @@
+package com.osm2xp.index;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Arrays;
+
+/**
+ * Huge long array, stored off-heap in memory-mapped file. File is mapped by fixed-size chunks, which are created lazily
+ * on first write, so for sparse indexes only touched file regions consume disk space and memory.
+ * Not written elements are read as 0. Array can also be opened read-only over existing file, e.g. previously saved data snapshot.
+ * <p>
+ * Array supports single writer thread and any number of concurrent reader threads. Chunk table is replaced with its grown copy
+ * when new chunk is mapped, so readers never see it partially updated. Elements written by writer become visible to reader
+ * after some happens-before action, e.g. passing data to reader thread through a concurrent queue.
+ *
+ * @author 32kda
+ *
+ */
+public class MappedLongArray implements Closeable {
+
+	/**
+	 * Chunk size is 2^24 longs = 128 MB
+	 */
+	private static final int CHUNK_SHIFT = 24;
+	private static final long CHUNK_SIZE = 1L << CHUNK_SHIFT;
+	private static final long CHUNK_MASK = CHUNK_SIZE - 1;
+	private static final long CHUNK_BYTES = CHUNK_SIZE * Long.BYTES;
+
+	private final File file;
+	private final boolean deleteOnClose;
+	private final boolean readOnly;
+	private RandomAccessFile randomAccessFile;
+	private FileChannel channel;
+	private volatile LongBuffer[] chunks = new LongBuffer[0];
+
+	/**
+	 * Create new array backed by given file.
+	 * @param file backing file, existing file contents would be used as initial array contents
+	 * @param deleteOnClose Whether backing file should be deleted on {@link #close()}
+	 * @throws IOException in case of file open error
+	 */
+	public MappedLongArray(File file, boolean deleteOnClose) throws IOException {
+		this.file = file;
+		this.deleteOnClose = deleteOnClose;
+		this.readOnly = false;
+		randomAccessFile = new RandomAccessFile(file, "rw");
+		channel = randomAccessFile.getChannel();
+		long existingChunks = (channel.size() + CHUNK_BYTES - 1) / CHUNK_BYTES;
+		for (int i = 0; i < existingChunks; i++) {
+			getChunkForWrite(i);
+		}
+	}
+
+	/**
+	 * Create read-only array backed by given existing file. Only existing file contents are mapped, file is never modified or extended
+	 * @param file backing file
+	 * @throws IOException in case of file open error
+	 */
+	public MappedLongArray(File file) throws IOException {
+		this.file = file;
+		this.deleteOnClose = false;
+		this.readOnly = true;
+		randomAccessFile = new RandomAccessFile(file, "r");
+		channel = randomAccessFile.getChannel();
+		long size = channel.size() / Long.BYTES * Long.BYTES;
+		LongBuffer[] mapped = new LongBuffer[(int) ((size + CHUNK_BYTES - 1) / CHUNK_BYTES)];
+		for (int i = 0; i < mapped.length; i++) {
+			long offset = i * CHUNK_BYTES;
+			mapped[i] = channel.map(MapMode.READ_ONLY, offset, Math.min(CHUNK_BYTES, size - offset)).asLongBuffer();
+		}
+		chunks = mapped;
+	}
+
+	public long get(long index) {
+		int chunkIdx = (int) (index >>> CHUNK_SHIFT);
+		LongBuffer[] current = chunks;
+		if (index < 0 || chunkIdx >= current.length) {
+			return 0;
+		}
+		LongBuffer chunk = current[chunkIdx];
+		int idx = (int) (index & CHUNK_MASK);
+		if (chunk == null || idx >= chunk.limit()) {
+			return 0;
+		}
+		return chunk.get(idx);
+	}
+
+	public void set(long index, long value) throws IOException {
+		if (index < 0) {
+			throw new IndexOutOfBoundsException("Negative index: " + index);
+		}
+		if (readOnly) {
+			throw new IOException("Array backed by " + file + " is read-only");
+		}
+		getChunkForWrite((int) (index >>> CHUNK_SHIFT)).put((int) (index & CHUNK_MASK), value);
+	}
+
+	private LongBuffer getChunkForWrite(int chunkIdx) throws IOException {
+		LongBuffer[] current = chunks;
+		LongBuffer chunk = chunkIdx < current.length ? current[chunkIdx] : null;
+		if (chunk == null) {
+			// Writing to mapped region, which can't be allocated on disk, crashes JVM instead of throwing an exception, so better fail early.
+			// Only the chunk itself is checked, since gap before it takes no space on file systems with sparse files support
+			if ((chunkIdx + 1) * CHUNK_BYTES > channel.size() && file.getAbsoluteFile().getParentFile().getUsableSpace() < CHUNK_BYTES) {
+				throw new IOException("Not enough free disk space for " + file.getAbsolutePath() + ", at least " + (CHUNK_BYTES >> 20) + " MB needed");
+			}
+			chunk = channel.map(MapMode.READ_WRITE, chunkIdx * CHUNK_BYTES, CHUNK_BYTES).asLongBuffer();
+			LongBuffer[] grown = Arrays.copyOf(current, Math.max(current.length, chunkIdx + 1));
+			grown[chunkIdx] = chunk;
+			chunks = grown;
+		}
+		return chunk;
+	}
+
+	/**
+	 * @return Backing file
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	@Override
+	public void close() throws IOException {
+		chunks = new LongBuffer[0];
+		channel.close();
+		randomAccessFile.close();
+		if (deleteOnClose && !file.delete()) {
+			file.deleteOnExit(); // Mapped buffer can still hold the file on some platforms until GC
+		}
+	}
+
+}
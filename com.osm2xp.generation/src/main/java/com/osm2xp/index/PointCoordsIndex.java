@@ -46,6 +46,16 @@ public class PointCoordsIndex extends AbstractPointCoordsIndex{
         return new double[] {intToLon(lonArray[index]), intToLat(latArray[index])};
     }
 
+    @Override
+    protected double getLon(int index) {
+    	return intToLon(lonArray[index]);
+    }
+    
+    @Override
+    protected double getLat(int index) {
+    	return intToLat(latArray[index]);
+    }
+
     private double intToLon(int intLon) {
 		return baseLon + intLon / PACK_FACTOR;
 	}
@@ -0,0 +1,113 @@
+package com.osm2xp.index;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * {@link IntIndexStorage} for point coordinates, allowing to add points without creating coordinate arrays
+ * @author 32kda
+ *
+ */
+public abstract class PointIndexStorage extends IntIndexStorage<double[]> {
+	
+	public PointIndexStorage() {
+		super();
+	}
+	
+	/**
+	 * @param concurrentReads <code>true</code> to allow reading from other threads while storage is being filled, see {@link IntIndexStorage}
+	 */
+	public PointIndexStorage(boolean concurrentReads) {
+		super(concurrentReads);
+	}
+	
+	public void add(long id, double lon, double lat) {
+		if (isOutOfOrder(id)) {
+			addOutOfOrder(id, new double[] {lon, lat});
+			return;
+		}
+		((AbstractPointCoordsIndex) getIndexForAdd(id)).add(getInStoreId(id), lon, lat);
+	}
+	
+	/**
+	 * Resolve coordinates for given point ids in bulk. Ids are sorted and looked up segment by segment,
+	 * so each index segment is searched once per call, without creating coordinate arrays for each point
+	 * @param ids point ids
+	 * @param outXY output array of size <code>2 * ids.length</code>, lon and lat for <code>ids[i]</code> are written to <code>outXY[2 * i]</code> and <code>outXY[2 * i + 1]</code>,
+	 * {@link Double#NaN} is written for missing points 
+	 * @return number of resolved ids
+	 */
+	public int resolveCoordinates(long[] ids, double[] outXY) {
+		long[] sorted = ids.clone();
+		Arrays.sort(sorted);
+		double[] sortedXY = new double[sorted.length * 2];
+		Arrays.fill(sortedXY, Double.NaN);
+		Segments<double[]> segments = getSegmentsForRead();
+		long baseId = segments.getBaseId();
+		int indexCount = segments.getCount();
+		int i = 0;
+		while (i < sorted.length) {
+			if (sorted[i] < baseId) {
+				i++;
+				continue;
+			}
+			int storeId = (int) ((sorted[i] - baseId) / Character.MAX_VALUE);
+			if (storeId >= indexCount) {
+				break;
+			}
+			long indexBaseId = baseId + (long) storeId * Character.MAX_VALUE;
+			long indexEndId = indexBaseId + Character.MAX_VALUE;
+			int runEnd = i + 1;
+			while (runEnd < sorted.length && sorted[runEnd] < indexEndId) {
+				runEnd++;
+			}
+			AbstractPointCoordsIndex index = (AbstractPointCoordsIndex) segments.get(storeId);
+			if (index != null) {
+				index.resolveSorted(sorted, i, runEnd, indexBaseId, sortedXY);
+			}
+			i = runEnd;
+		}
+		boolean hasOutOfOrder = hasOutOfOrder();
+		int found = 0;
+		for (int j = 0; j < ids.length; j++) {
+			int pos = Arrays.binarySearch(sorted, ids[j]);
+			outXY[2 * j] = sortedXY[2 * pos];
+			outXY[2 * j + 1] = sortedXY[2 * pos + 1];
+			double[] pending = hasOutOfOrder ? getOutOfOrder(ids[j]) : null;
+			if (pending != null) {
+				outXY[2 * j] = pending[0];
+				outXY[2 * j + 1] = pending[1];
+			}
+			if (!Double.isNaN(outXY[2 * j])) {
+				found++;
+			}
+		}
+		return found;
+	}
+	
+	/**
+	 * Iterate over stored points in id order, without creating coordinate arrays. Should be called from writer thread
+	 * @param consumer point consumer
+	 * @throws IOException if thrown by consumer
+	 */
+	public void forEachPoint(PointConsumer consumer) throws IOException {
+		mergeOutOfOrder();
+		for (int storeId = 0; storeId < indexList.size(); storeId++) {
+			AbstractPointCoordsIndex index = (AbstractPointCoordsIndex) indexList.get(storeId);
+			if (index != null) {
+				long indexBaseId = baseId + (long) storeId * Character.MAX_VALUE;
+				for (int i = 0; i < index.size(); i++) {
+					consumer.accept(indexBaseId + index.idArray[i], index.getLon(i), index.getLat(i));
+				}
+			}
+		}
+	}
+	
+	@Override
+	protected abstract AbstractPointCoordsIndex createIndex();
+	
+	public interface PointConsumer {
+		public void accept(long id, double lon, double lat) throws IOException;
+	}
+
+}
@@ -23,6 +23,16 @@ public class PointUnpackedCoordsIndex extends AbstractPointCoordsIndex {
 	double[] elementData(int index) {
 		return new double[] { lonArray[index], latArray[index] };
 	}
+	
+	@Override
+	protected double getLon(int index) {
+		return lonArray[index];
+	}
+	
+	@Override
+	protected double getLat(int index) {
+		return latArray[index];
+	}
 
 
 	/**
@@ -0,0 +1,142 @@
+package com.osm2xp.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Buffer for items added out of id order. Items are collected into small unsorted buffer, which is sorted into a run once it's full.
+ * Runs are merged like in log-structured storage - while the newest run is not much smaller than the previous one, these two are merged,
+ * so there are only <code>O(log(n))</code> runs and lookup is a binary search in each of them. If same id is added several times,
+ * the latest value wins.
+ *
+ * @author 32kda
+ *
+ * @param <T> values type
+ */
+class SortedRuns<T> {
+
+	private static final int BUFFER_SIZE = 256;
+
+	private final long[] bufferIds = new long[BUFFER_SIZE];
+	private final Object[] bufferValues = new Object[BUFFER_SIZE];
+	private int bufferSize = 0;
+	/**
+	 * Runs from the oldest to the newest one
+	 */
+	private final List<Run> runs = new ArrayList<>();
+	private long size = 0;
+
+	public void add(long id, T value) {
+		bufferIds[bufferSize] = id;
+		bufferValues[bufferSize] = value;
+		bufferSize++;
+		size++;
+		if (bufferSize == BUFFER_SIZE) {
+			flushBuffer();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	public T get(long id) {
+		for (int i = bufferSize - 1; i >= 0; i--) {
+			if (bufferIds[i] == id) {
+				return (T) bufferValues[i];
+			}
+		}
+		for (int i = runs.size() - 1; i >= 0; i--) {
+			Run run = runs.get(i);
+			int idx = Arrays.binarySearch(run.ids, id);
+			if (idx >= 0) {
+				return (T) run.values[idx];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return added items count, including overwritten ones
+	 */
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * Merge all the items into single run
+	 * @return sorted run, without duplicate ids
+	 */
+	public Run mergeAll() {
+		flushBuffer();
+		while (runs.size() > 1) {
+			mergeLast();
+		}
+		return runs.isEmpty() ? new Run(new long[0], new Object[0]) : runs.get(0);
+	}
+
+	private void flushBuffer() {
+		if (bufferSize == 0) {
+			return;
+		}
+		Integer[] order = new Integer[bufferSize];
+		for (int i = 0; i < bufferSize; i++) {
+			order[i] = i;
+		}
+		// Stable sort, so the latest one of the same ids goes last
+		Arrays.sort(order, (i1, i2) -> Long.compare(bufferIds[i1], bufferIds[i2]));
+		long[] ids = new long[bufferSize];
+		Object[] values = new Object[bufferSize];
+		int count = 0;
+		for (int i = 0; i < bufferSize; i++) {
+			long id = bufferIds[order[i]];
+			if (count > 0 && ids[count - 1] == id) {
+				count--;
+			}
+			ids[count] = id;
+			values[count] = bufferValues[order[i]];
+			count++;
+		}
+		Arrays.fill(bufferValues, null);
+		bufferSize = 0;
+		runs.add(new Run(Arrays.copyOf(ids, count), Arrays.copyOf(values, count)));
+		while (runs.size() > 1 && runs.get(runs.size() - 2).ids.length <= 2 * runs.get(runs.size() - 1).ids.length) {
+			mergeLast();
+		}
+	}
+
+	/**
+	 * Merge two newest runs, values from the newest one win for same ids
+	 */
+	private void mergeLast() {
+		Run newer = runs.remove(runs.size() - 1);
+		Run older = runs.remove(runs.size() - 1);
+		long[] ids = new long[newer.ids.length + older.ids.length];
+		Object[] values = new Object[ids.length];
+		int i = 0;
+		int j = 0;
+		int count = 0;
+		while (i < older.ids.length || j < newer.ids.length) {
+			if (j == newer.ids.length || (i < older.ids.length && older.ids[i] < newer.ids[j])) {
+				ids[count] = older.ids[i];
+				values[count++] = older.values[i++];
+			} else {
+				if (i < older.ids.length && older.ids[i] == newer.ids[j]) {
+					i++;
+				}
+				ids[count] = newer.ids[j];
+				values[count++] = newer.values[j++];
+			}
+		}
+		runs.add(new Run(count < ids.length ? Arrays.copyOf(ids, count) : ids, count < ids.length ? Arrays.copyOf(values, count) : values));
+	}
+
+	static class Run {
+		final long[] ids;
+		final Object[] values;
+
+		Run(long[] ids, Object[] values) {
+			this.ids = ids;
+			this.values = values;
+		}
+	}
+
+}
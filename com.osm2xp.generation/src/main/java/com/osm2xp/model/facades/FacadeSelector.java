@@ -0,0 +1,312 @@
+package com.osm2xp.model.facades;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+
+import org.apache.commons.lang.StringUtils;
+
+import com.osm2xp.core.logging.Osm2xpLogger;
+
+/**
+ * Facade selection index for some group of facades, e.g. facades for one building type. Built once after facade sets are loaded.
+ *
+ * Height and roof vector length ranges split value axis into elementary intervals, facades matching each interval are precomputed.
+ * Candidate arrays for each interval and landuse combination are computed on first request and cached, so facade choice is
+ * an interval lookup and random array element pick. Roof colors are parsed once and grouped by color, so nearest color search
+ * only iterates over distinct roof colors.
+ *
+ * @author 32kda
+ *
+ */
+class FacadeSelector {
+
+	private final Facade[] facades;
+	private final Intervals heights;
+	private final Intervals vectors;
+	private final BitSet notSimpleOnly = new BitSet();
+	private final BitSet sloped = new BitSet();
+	private final Map<String, BitSet> landuseMatches = new ConcurrentHashMap<>();
+	/**
+	 * Cached candidates, indexed by height interval and simple flag. Races on these arrays are benign - {@link Candidates} is immutable
+	 * and can be computed twice at most
+	 */
+	private final Candidates[] noLanduseCandidates;
+	private final Map<String, Candidates[]> landuseCandidates = new ConcurrentHashMap<>();
+	/**
+	 * Cached sloped facade candidates, indexed by height interval and vector interval
+	 */
+	private final SlopedCandidates[] noLanduseSloped;
+	private final Map<String, SlopedCandidates[]> landuseSloped = new ConcurrentHashMap<>();
+
+	/**
+	 * @param facades facades to select from. Same facade can be included several times to make it's choice more probable
+	 */
+	public FacadeSelector(Collection<Facade> facades) {
+		this.facades = facades.toArray(new Facade[0]);
+		heights = new Intervals(this.facades, facade -> facade.getMaxHeight() == 0, facade -> facade.getMinHeight(), facade -> facade.getMaxHeight());
+		vectors = new Intervals(this.facades, facade -> facade.getMaxVectorLength() == 0, facade -> facade.getMinVectorLength(), facade -> facade.getMaxVectorLength());
+		for (int i = 0; i < this.facades.length; i++) {
+			if (!this.facades[i].isSimpleBuildingOnly()) {
+				notSimpleOnly.set(i);
+			}
+			if (this.facades[i].isSloped()) {
+				sloped.set(i);
+			}
+		}
+		noLanduseCandidates = new Candidates[heights.getCount() * 2];
+		noLanduseSloped = new SlopedCandidates[heights.getCount() * vectors.getCount()];
+	}
+
+	public boolean isEmpty() {
+		return facades.length == 0;
+	}
+
+	/**
+	 * @return random facade of this group, <code>null</code> if group is empty
+	 */
+	public Facade getAny(Random random) {
+		return facades.length > 0 ? facades[random.nextInt(facades.length)] : null;
+	}
+
+	/**
+	 * Select random facade for given height. Facades matching given landuse are preferred
+	 * @param height building height
+	 * @param simple whether building is simple
+	 * @param landuse landuse building is located in, <code>null</code> if any facade can be used
+	 * @param random randomizer to use
+	 * @return facade or <code>null</code> if there is no one matching
+	 */
+	public Facade getFacade(double height, boolean simple, String landuse, Random random) {
+		int idx = heights.getInterval(height) * 2 + (simple ? 1 : 0);
+		Candidates[] cache = landuse == null ? noLanduseCandidates : landuseCandidates.computeIfAbsent(landuse, key -> new Candidates[noLanduseCandidates.length]);
+		Candidates candidates = cache[idx];
+		if (candidates == null) {
+			BitSet matching = heights.getMatching(height);
+			if (!simple) {
+				matching.and(notSimpleOnly);
+			}
+			candidates = new Candidates(preferLanduse(matching, landuse));
+			cache[idx] = candidates;
+		}
+		return candidates.pick(random);
+	}
+
+	/**
+	 * Select random sloped facade for given height and min roof vector length. Facades matching given landuse are preferred.
+	 * If building color is specified, facade with the closest roof color is chosen
+	 * @param height building height
+	 * @param minVector min roof vector length
+	 * @param buildingColor building roof color, <code>null</code> if not specified
+	 * @param landuse landuse building is located in, <code>null</code> if any facade can be used
+	 * @param random randomizer to use
+	 * @return facade or <code>null</code> if there is no one matching
+	 */
+	public Facade getSlopedFacade(double height, double minVector, Color buildingColor, String landuse, Random random) {
+		int idx = heights.getInterval(height) * vectors.getCount() + vectors.getInterval(minVector);
+		SlopedCandidates[] cache = landuse == null ? noLanduseSloped : landuseSloped.computeIfAbsent(landuse, key -> new SlopedCandidates[noLanduseSloped.length]);
+		SlopedCandidates candidates = cache[idx];
+		if (candidates == null) {
+			BitSet matching = heights.getMatching(height);
+			matching.and(sloped);
+			matching.and(vectors.getMatching(minVector));
+			candidates = new SlopedCandidates(preferLanduse(matching, landuse));
+			cache[idx] = candidates;
+		}
+		if (buildingColor == null) {
+			return candidates.pick(random);
+		}
+		return candidates.pickByColor(buildingColor, random);
+	}
+
+	/**
+	 * @return facades matching given landuse, if there are any, all the given facades otherwise
+	 */
+	private Facade[] preferLanduse(BitSet matching, String landuse) {
+		if (landuse != null) {
+			BitSet landuseMatching = (BitSet) matching.clone();
+			landuseMatching.and(landuseMatches.computeIfAbsent(landuse, this::computeLanduseMatches));
+			if (!landuseMatching.isEmpty()) {
+				matching = landuseMatching;
+			}
+		}
+		return matching.stream().mapToObj(i -> facades[i]).toArray(Facade[]::new);
+	}
+
+	private BitSet computeLanduseMatches(String landuse) {
+		BitSet result = new BitSet();
+		for (int i = 0; i < facades.length; i++) {
+			if (facades[i].getAreaTypesDef().matches(landuse)) {
+				result.set(i);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Elementary intervals for set of closed value ranges. Each range bound is an interval itself, and space between successive bounds
+	 * is another one, so all the values inside of the same interval match the same ranges
+	 */
+	private static class Intervals {
+
+		private final double[] bounds;
+		private final BitSet[] matching;
+
+		public Intervals(Facade[] facades, Predicate<Facade> matchesAll, ToDoubleFunction<Facade> min, ToDoubleFunction<Facade> max) {
+			bounds = Arrays.stream(facades).filter(matchesAll.negate())
+					.flatMapToDouble(facade -> Arrays.stream(new double[] {min.applyAsDouble(facade), max.applyAsDouble(facade)}))
+					.sorted().distinct().toArray();
+			matching = new BitSet[bounds.length * 2 + 1];
+			for (int i = 0; i < matching.length; i++) {
+				double value = getRepresentative(i);
+				matching[i] = new BitSet();
+				for (int j = 0; j < facades.length; j++) {
+					if (matchesAll.test(facades[j]) || (min.applyAsDouble(facades[j]) <= value && max.applyAsDouble(facades[j]) >= value)) {
+						matching[i].set(j);
+					}
+				}
+			}
+		}
+
+		/**
+		 * @return some value inside given interval
+		 */
+		private double getRepresentative(int interval) {
+			if (bounds.length == 0) {
+				return 0;
+			}
+			if (interval % 2 == 1) {
+				return bounds[interval / 2];
+			}
+			int upper = interval / 2;
+			if (upper == 0) {
+				return bounds[0] - 1;
+			}
+			if (upper == bounds.length) {
+				return bounds[bounds.length - 1] + 1;
+			}
+			return (bounds[upper - 1] + bounds[upper]) / 2;
+		}
+
+		public int getCount() {
+			return matching.length;
+		}
+
+		public int getInterval(double value) {
+			int idx = Arrays.binarySearch(bounds, value);
+			return idx >= 0 ? idx * 2 + 1 : (-idx - 1) * 2;
+		}
+
+		/**
+		 * @return indexes of facades matching given value, as new {@link BitSet} instance
+		 */
+		public BitSet getMatching(double value) {
+			return (BitSet) matching[getInterval(value)].clone();
+		}
+	}
+
+	private static class Candidates {
+
+		protected final Facade[] facades;
+
+		public Candidates(Facade[] facades) {
+			this.facades = facades;
+		}
+
+		public Facade pick(Random random) {
+			return facades.length > 0 ? facades[random.nextInt(facades.length)] : null;
+		}
+	}
+
+	/**
+	 * Sloped facade candidates, with facades grouped by parsed roof color
+	 */
+	private static class SlopedCandidates extends Candidates {
+
+		private final int[] colors;
+		private final Facade[][] colorFacades;
+
+		public SlopedCandidates(Facade[] facades) {
+			super(facades);
+			List<Integer> colorList = new ArrayList<>();
+			List<List<Facade>> facadeList = new ArrayList<>();
+			for (Facade facade : facades) {
+				Color color = parseColor(facade);
+				if (color != null) {
+					int idx = colorList.indexOf(color.getRGB());
+					if (idx < 0) {
+						idx = colorList.size();
+						colorList.add(color.getRGB());
+						facadeList.add(new ArrayList<>());
+					}
+					facadeList.get(idx).add(facade);
+				}
+			}
+			colors = colorList.stream().mapToInt(Integer::intValue).toArray();
+			colorFacades = facadeList.stream().map(list -> list.toArray(new Facade[0])).toArray(Facade[][]::new);
+		}
+
+		/**
+		 * Pick random facade among the ones with roof color closest to given one
+		 * @return facade or <code>null</code> if there are no facades with roof color specified
+		 */
+		public Facade pickByColor(Color buildingColor, Random random) {
+			int minDistance = Integer.MAX_VALUE;
+			int count = 0;
+			for (int i = 0; i < colors.length; i++) {
+				int distance = getDistance(buildingColor, colors[i]);
+				if (distance < minDistance) {
+					minDistance = distance;
+					count = colorFacades[i].length;
+				} else if (distance == minDistance) {
+					count += colorFacades[i].length;
+				}
+			}
+			if (count == 0) {
+				return null;
+			}
+			int pick = random.nextInt(count);
+			for (int i = 0; i < colors.length; i++) {
+				if (getDistance(buildingColor, colors[i]) == minDistance) {
+					if (pick < colorFacades[i].length) {
+						return colorFacades[i][pick];
+					}
+					pick -= colorFacades[i].length;
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * @return squared color distance, which gives the same ordering as {@link com.osm2xp.utils.MiscUtils#colorDistance(Color, Color)}
+		 */
+		private static int getDistance(Color color, int rgb) {
+			int r = ((rgb >> 16) & 0xFF) - color.getRed();
+			int g = ((rgb >> 8) & 0xFF) - color.getGreen();
+			int b = (rgb & 0xFF) - color.getBlue();
+			return r * r + g * g + b * b;
+		}
+
+		private static Color parseColor(Facade facade) {
+			if (StringUtils.isBlank(facade.getRoofColor())) {
+				return null;
+			}
+			String[] rgbValues = facade.getRoofColor().split(",");
+			try {
+				return new Color(Integer.parseInt(rgbValues[0].trim()), Integer.parseInt(rgbValues[1].trim()), Integer.parseInt(rgbValues[2].trim()));
+			} catch (RuntimeException e) {
+				Osm2xpLogger.warning("Invalid roof color '" + facade.getRoofColor() + "' for facade " + facade + ", expected 'r,g,b'");
+				return null;
+			}
+		}
+	}
+
+}
@@ -6,14 +6,13 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.stream.Collectors;
 
-import org.apache.commons.lang.StringUtils;
-
-import com.google.common.collect.HashMultimap;
+import com.google.common.collect.LinkedHashMultimap;
 import com.google.common.collect.Multimap;
 import com.osm2xp.core.exceptions.Osm2xpTechnicalException;
 import com.osm2xp.core.logging.Osm2xpLogger;
@@ -23,7 +22,6 @@ import com.osm2xp.generation.paths.PathsService;
 import com.osm2xp.generation.xplane.resources.DsfUtils;
 import com.osm2xp.translators.BuildingType;
 import com.osm2xp.utils.FilesUtils;
-import com.osm2xp.utils.MiscUtils;
 import com.osm2xp.utils.StatusInfo;
 
 public class FacadeSetManager {
@@ -32,9 +30,19 @@ public class FacadeSetManager {
 
 	public static final String FACADE_SETS_PROP = "facadeSets";
 	
-	protected Multimap<BuildingType, Facade> buildingFacades = HashMultimap.create();
+	protected Multimap<BuildingType, Facade> buildingFacades = LinkedHashMultimap.create();
+	
+	protected Multimap<SpecialFacadeType, Facade> specialFacades = LinkedHashMultimap.create();
+	
+	/**
+	 * Facade selection indexes for each building type, built once facade sets are loaded
+	 */
+	private final Map<BuildingType, FacadeSelector> typeSelectors = new EnumMap<>(BuildingType.class);
 	
-	protected Multimap<SpecialFacadeType, Facade> specialFacades = HashMultimap.create();
+	/**
+	 * Facade selection index for all building facades, used if there are no facades for some building type
+	 */
+	private FacadeSelector allSelector;
 
 	private String[] setPaths;
 
@@ -85,8 +93,17 @@ public class FacadeSetManager {
 			}
 		}
 		list.stream().flatMap(set -> set.getFacades().stream()).forEach(facade -> addFacade(facade));
+		buildSelectors();
 		checkCopyFacades(targetFolder, specialsMissing);
 	}
+	
+	protected void buildSelectors() {
+		for (BuildingType type : BuildingType.values()) {
+			typeSelectors.put(type, new FacadeSelector(buildingFacades.get(type)));
+		}
+		allSelector = new FacadeSelector(buildingFacades.values());
+	}
+	
 	private FacadeSet loadFacadeSet(String pathStr) {
 		File folder = new File(pathStr);
 		return loadFacadeSet(folder);
@@ -204,28 +221,15 @@ public class FacadeSetManager {
 		}
 	}
 	
-	public Facade getRandomFacade(BuildingType type, int height, boolean simple, String landuse) {
-		Collection<Facade> facades = buildingFacades.get(type);
-		if (facades != null && !facades.isEmpty()) {
-			List<Facade> matching = facades.stream()
-					.filter(facade -> 
-					facade.getMaxHeight() == 0 || (facade.getMinHeight() <= height && facade.getMaxHeight() >= height))
-					.filter(facade -> !simple ? !facade.isSimpleBuildingOnly() : true)
-					.collect(Collectors.toList());
-			List<Facade> tempList = matching.stream().filter(facade -> landuseMatches(facade, landuse)).collect(Collectors.toList());
-			if (!tempList.isEmpty() && tempList.size() < matching.size()) {
-				matching = tempList;
-			}
-			if (matching.size() > 0) {
-				 Random rnd = new Random();
-				 int i = rnd.nextInt(matching.size());
-				return matching.get(i);
-			}
+	public Facade getRandomFacade(BuildingType type, int height, boolean simple, String landuse, Random random) {
+		FacadeSelector selector = typeSelectors.get(type);
+		Facade facade = selector.getFacade(height, simple, getEffectiveLanduse(landuse), random);
+		if (facade != null) {
+			return facade;
 		}
 		Osm2xpLogger.warning( "Unable to find proper facade for building type " + type + " height= " + height + " simple= " + simple);
-		if (facades.size() > 0) {
-			Facade[] array = facades.toArray(new Facade[0]);
-			return array[new Random().nextInt(array.length)];
+		if (!selector.isEmpty()) {
+			return selector.getAny(random);
 		}
 		Collection<Facade> values = buildingFacades.values();
 		return values.iterator().next();
@@ -237,7 +241,7 @@ public class FacadeSetManager {
 		return facadeStrings;
 	}
 	
-	public Facade getRandomSpecialFacade(SpecialFacadeType specialType) {
+	public Facade getRandomSpecialFacade(SpecialFacadeType specialType, Random random) {
 		if (specialFacades.isEmpty()) {
 			return null;
 		}
@@ -247,70 +251,31 @@ public class FacadeSetManager {
 			return null;
 		}
 		Facade[] facadeArray = facades.toArray(new Facade[0]);
-		return (facadeArray[new Random().nextInt(facades.size())]);
+		return (facadeArray[random.nextInt(facades.size())]);
 	}
 	
 	public Facade getRandomHouseSlopedFacade(BuildingType buildingType, double minVector, double height,
-			Color buildingColor, String landuse) {
-
-		
+			Color buildingColor, String landuse, Random random) {
 		// find facades which are good in terms of vector size for the sloped
-		// roof
-		Collection<Facade> goodFacades = buildingFacades.get(buildingType);
-		if (goodFacades == null || goodFacades.isEmpty()) { //Use all facades if no facades for this type are registered
-			goodFacades = buildingFacades.values();
+		// roof, and pick the one with the roof color closest the building one
+		FacadeSelector selector = typeSelectors.get(buildingType);
+		if (selector.isEmpty()) { //Use all facades if no facades for this type are registered
+			selector = allSelector;
 		}
-		List<Facade> resList = goodFacades.stream()
-				.filter(facade -> 
-				facade.getMaxHeight() == 0 || (facade.getMinHeight() <= height && facade.getMaxHeight() >= height))
-				.filter(facade -> facade.isSloped() && (facade.getMaxVectorLength() == 0 ||
-				(facade.getMinVectorLength() <= minVector && facade
-				.getMaxVectorLength() >= minVector))).collect(Collectors.toList());
-		List<Facade> tempList = resList.stream().filter(facade -> landuseMatches(facade, landuse)).collect(Collectors.toList());
-		if (!tempList.isEmpty()) {
-			resList = tempList;
-		}
-		Collections.shuffle(resList);
-		if (buildingColor == null && resList.size() > 0) {
-			return resList.get(0);
-		}
-		// now pick the one with the roof color closest the building one
-
-		Facade facadeResult = null;
-		Double colorDiff = null;
-
-		for (Facade facade : resList) {
-			// only look at facades with roof color information
-			if (StringUtils.isNotBlank(facade.getRoofColor())) {
-				// create a color object
-				String rgbValues[] = facade.getRoofColor().split(",");
-				Color currentFacadeRoofColor = new Color(
-						Integer.parseInt(rgbValues[0]),
-						Integer.parseInt(rgbValues[1]),
-						Integer.parseInt(rgbValues[2]));
-				// compute the difference beetween building roof color and
-				// facade roof color
-				Double colorDifference = MiscUtils.colorDistance(buildingColor,
-						currentFacadeRoofColor);
-
-				// store current Facade if good
-				if (colorDiff == null || (colorDiff > colorDifference)) {
-					colorDiff = colorDifference;
-					facadeResult = facade;
-				}
-			}
-		}
-
-		return facadeResult;
+		return selector.getSlopedFacade(height, minVector, buildingColor, getEffectiveLanduse(landuse), random);
 	}
 	
-	protected boolean landuseMatches(Facade facade, String landuse) {
-		if (landuse == null) {
-			return true;
+	/**
+	 * @param landuse landuse building is located in
+	 * @return landuse facades should be filtered by, <code>null</code> if any facade can be used 
+	 */
+	protected String getEffectiveLanduse(String landuse) {
+		if (landuse == null || !GlobalOptionsProvider.getOptions().isAnalyzeAreas()) {
+			return null;
 		}
-		return !GlobalOptionsProvider.getOptions().isAnalyzeAreas() || facade.getAreaTypesDef().matches(landuse);
+		return landuse;
 	}
-
+	
 	public StatusInfo getFacadeSetStatus() {
 		if (!XPlaneOptionsProvider.getOptions().isGenerateBuildings() && !XPlaneOptionsProvider.getOptions().isGenerateFence()) {
 			return StatusInfo.OK_STATUS;	
@@ -1,32 +1,50 @@
 package com.osm2xp.parsers.builders;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
 
+import com.osm2xp.converters.impl.AbstractOSMDataConverter;
 import com.osm2xp.converters.impl.AbstractTileDataConverter;
 import com.osm2xp.converters.impl.AbstractTranslatingConverter;
 import com.osm2xp.converters.impl.GeneralTranslatingConverter;
+import com.osm2xp.converters.impl.ITileGeometryListener;
 import com.osm2xp.converters.impl.MultiTileDataConverter;
 import com.osm2xp.converters.impl.SingleTileDataConverter;
 import com.osm2xp.converters.impl.SpecificTranslatingConverter;
 import com.osm2xp.core.exceptions.DataSinkException;
 import com.osm2xp.core.exceptions.Osm2xpBusinessException;
 import com.osm2xp.core.logging.Osm2xpLogger;
+import com.osm2xp.core.model.osm.Member;
+import com.osm2xp.core.model.osm.Relation;
 import com.osm2xp.core.parsers.CompositeVisitor;
 import com.osm2xp.core.parsers.IOSMDataVisitor;
 import com.osm2xp.core.parsers.IParser;
 import com.osm2xp.core.parsers.IVisitingParser;
+import com.osm2xp.core.parsers.impl.PbfBlockIndex;
+import com.osm2xp.core.parsers.impl.PbfBlockIndex.BlockEntry;
 import com.osm2xp.core.parsers.impl.SaxParserImpl;
 import com.osm2xp.core.parsers.impl.ShapefileParserImpl;
 import com.osm2xp.core.parsers.impl.TranslatingBinaryParser;
 import com.osm2xp.datastore.DataSinkFactory;
 import com.osm2xp.datastore.IDataSink;
 import com.osm2xp.generation.options.GlobalOptionsProvider;
+import com.osm2xp.parsers.relationsLister.RelationsLister;
+import com.osm2xp.parsers.relationsLister.RelationsListerFactory;
+import com.osm2xp.parsers.tilesLister.PbfTileScanner;
 import com.osm2xp.translators.IPreprocessorProvider;
 import com.osm2xp.translators.ITranslator;
 import com.osm2xp.translators.ITranslatorProvider;
 import com.osm2xp.translators.airfield.XPAirfieldTranslationAdapter;
 
+import gnu.trove.set.TLongSet;
+import gnu.trove.set.hash.TLongHashSet;
+import math.geom2d.Box2D;
 import math.geom2d.Point2D;
 
 /**
@@ -75,7 +93,9 @@ public class ParserBuilder {
 	public static IParser getParser(File currentFile, IOSMDataVisitor converter) {
 		// PBF FILE
 		if (currentFile.getName().toLowerCase().endsWith(".pbf")) {
-			return new TranslatingBinaryParser(currentFile, converter);
+			TranslatingBinaryParser parser = new TranslatingBinaryParser(currentFile, converter);
+			parser.setWorkerCount(GlobalOptionsProvider.getOptions().getEffectiveParserThreads());
+			return parser;
 		}
 		// OSM FILE
 		else if (currentFile.getName().toLowerCase().endsWith(".osm")) {
@@ -102,16 +122,87 @@ public class ParserBuilder {
 	/**
 	 * Build the parser implementation 
 	 * 
+	 * @param additionalVisitors visitors, which should get parsed data along with tile converter, e.g. for gathering some info about input file.
+	 * Ones implementing {@link ITileGeometryListener} are also notified about tiles translated geometries were clipped to
 	 * @return {@link IVisitingParser} instance
 	 * @throws Osm2xpBusinessException
 	 * @throws DataSinkException
 	 */
-	public static IVisitingParser getMultiTileParser(File currentFile,ITranslatorProvider translatorProvider, IDataSink dataSink)
+	public static IVisitingParser getMultiTileParser(File currentFile,ITranslatorProvider translatorProvider, IDataSink dataSink, IOSMDataVisitor... additionalVisitors)
 		throws DataSinkException {
-		AbstractTileDataConverter converter = new MultiTileDataConverter(dataSink, translatorProvider);		
+		AbstractTileDataConverter converter = null;
+		if (GlobalOptionsProvider.getOptions().isTilePrescan() && currentFile.getName().toLowerCase().endsWith(".pbf")) {
+			converter = createPrescannedConverter(currentFile, translatorProvider, dataSink);
+		}
+		if (converter == null) {
+			converter = new MultiTileDataConverter(dataSink, translatorProvider);
+		}
+		if (additionalVisitors.length > 0) {
+			for (IOSMDataVisitor visitor : additionalVisitors) {
+				if (visitor instanceof ITileGeometryListener) {
+					converter.setTileGeometryListener((ITileGeometryListener) visitor);
+				}
+			}
+			List<IOSMDataVisitor> visitors = new ArrayList<>();
+			visitors.add(converter);
+			visitors.addAll(Arrays.asList(additionalVisitors));
+			return (IVisitingParser) getParser(currentFile, new CompositeVisitor(visitors));
+		}
 		return (IVisitingParser) getParser(currentFile, converter);
 	}
 	
+	/**
+	 * Build the parser for generating given tiles only, e.g. tiles affected by some change of input data. 
+	 * Elements located outside of these tiles are skipped. If PBF block index is enabled, only blocks needed for these tiles are decoded
+	 * 
+	 * @param tiles tiles to generate
+	 * @return {@link IVisitingParser} instance
+	 * @throws DataSinkException
+	 */
+	public static IVisitingParser getTilesParser(File currentFile, ITranslatorProvider translatorProvider, IDataSink dataSink, Collection<Point2D> tiles)
+			throws DataSinkException {
+		AbstractTileDataConverter converter = new MultiTileDataConverter(dataSink, translatorProvider, tiles);
+		IVisitingParser parser = (IVisitingParser) getParser(currentFile, converter);
+		if (parser instanceof TranslatingBinaryParser && GlobalOptionsProvider.getOptions().isBlockIndex()) {
+			List<Box2D> areas = tiles.stream().map(tile -> new Box2D(tile.x(), tile.x() + 1, tile.y(), tile.y() + 1)).collect(Collectors.toList());
+			if (selectBlocks(currentFile, (TranslatingBinaryParser) parser, areas)) {
+				dataSink.markPartial();
+			}
+		}
+		return parser;
+	}
+	
+	/**
+	 * @param parser parser
+	 * @return tile data converter used by given parser, <code>null</code> if there is no one
+	 */
+	public static AbstractTileDataConverter getTileConverter(IVisitingParser parser) {
+		List<AbstractOSMDataConverter> converters = new ArrayList<>();
+		addConverters(parser.getVisitor(), converters);
+		return (AbstractTileDataConverter) converters.stream().filter(converter -> converter instanceof AbstractTileDataConverter).findFirst().orElse(null);
+	}
+	
+	/**
+	 * Run fast node-only pre-scan pass on given PBF file, reserve node storage for scanned id range and create converter with pre-created translators for all scanned tiles 
+	 * @return converter instance or <code>null</code> in case of scan error
+	 */
+	private static AbstractTileDataConverter createPrescannedConverter(File currentFile, ITranslatorProvider translatorProvider, IDataSink dataSink) {
+		PbfTileScanner scanner = new PbfTileScanner(currentFile, GlobalOptionsProvider.getOptions().getEffectiveParserThreads());
+		try {
+			long t1 = System.currentTimeMillis();
+			scanner.process();
+			Osm2xpLogger.info("Tiles pre-scan took " + (System.currentTimeMillis() - t1) + " ms");
+		} catch (Osm2xpBusinessException e) {
+			Osm2xpLogger.error("Error pre-scanning input file, tiles would be detected during parsing", e);
+			return null;
+		}
+		Osm2xpLogger.info(scanner.getReport());
+		if (scanner.getNodeCount() > 0) {
+			dataSink.reserveNodes(scanner.getMinId(), scanner.getMaxId(), scanner.getNodeCount());
+		}
+		return new MultiTileDataConverter(dataSink, translatorProvider, scanner.getTilesList());
+	}
+	
 	/**
 	 * Build the parser implementation for the single tile
 	 * 
@@ -122,7 +213,46 @@ public class ParserBuilder {
 	public static IVisitingParser getSingleTileParser(File currentFile, ITranslatorProvider translatorProvider, IDataSink dataSink, Point2D tile)
 			throws DataSinkException {
 		AbstractTileDataConverter converter = new SingleTileDataConverter(dataSink, translatorProvider, tile);		
-		return (IVisitingParser) getParser(currentFile, converter);
+		IVisitingParser parser = (IVisitingParser) getParser(currentFile, converter);
+		if (parser instanceof TranslatingBinaryParser && GlobalOptionsProvider.getOptions().isBlockIndex()) {
+			if (selectBlocks(currentFile, (TranslatingBinaryParser) parser, new Box2D(tile.x(), tile.x() + 1, tile.y(), tile.y() + 1))) {
+				dataSink.markPartial();
+			}
+		}
+		return parser;
+	}
+
+	/**
+	 * Use PBF block index to make parser decode only blocks needed for given area. Index is built, if it's missing or outdated
+	 * @param currentFile PBF file
+	 * @param parser parser to set blocks to
+	 * @param bounds area bounds
+	 * @return <code>true</code> if only part of file blocks would be decoded, <code>false</code> otherwise
+	 */
+	public static boolean selectBlocks(File currentFile, TranslatingBinaryParser parser, Box2D bounds) {
+		return selectBlocks(currentFile, parser, Collections.singletonList(bounds));
+	}
+	
+	/**
+	 * Use PBF block index to make parser decode only blocks needed for given areas, see {@link #selectBlocks(File, TranslatingBinaryParser, Box2D)}
+	 * @param currentFile PBF file
+	 * @param parser parser to set blocks to
+	 * @param areas areas bounds
+	 * @return <code>true</code> if only part of file blocks would be decoded, <code>false</code> otherwise
+	 */
+	public static boolean selectBlocks(File currentFile, TranslatingBinaryParser parser, Collection<Box2D> areas) {
+		try {
+			PbfBlockIndex index = PbfBlockIndex.loadOrBuild(currentFile);
+			if (index != null) {
+				List<BlockEntry> blocks = index.select(areas);
+				Osm2xpLogger.info("Using PBF block index, " + blocks.size() + " of " + index.getBlockCount() + " blocks would be decoded");
+				parser.setBlocks(blocks);
+				return blocks.size() < index.getBlockCount();
+			}
+		} catch (IOException e) {
+			Osm2xpLogger.error("Error building PBF block index, whole file would be parsed", e);
+		}
+		return false;
 	}
 
 	public static IVisitingParser getPreprocessParser(File currentFile, ITranslatorProvider translatorProvider, IDataSink dataSink) {
@@ -137,4 +267,68 @@ public class ParserBuilder {
 		return null;
 	}
 
+	/**
+	 * Run relation-only pre-scan pass, if enabled in options. Collects ids of ways, which are members of multipolygon relations
+	 * processed by converters of given parsers, so these converters store node lists only for such ways instead of every parsed way.
+	 * Should be called before any of given parsers is processed, since converters share the same data sink - e.g. ways stored by 
+	 * preprocessing pass are used by main pass too. 
+	 * @param currentFile input file
+	 * @param parsers parsers to do pre-scan for, <code>null</code> elements are ignored
+	 */
+	public static void prescanRelations(File currentFile, IVisitingParser... parsers) {
+		if (!GlobalOptionsProvider.getOptions().isRelationPrescan()) {
+			return;
+		}
+		List<AbstractOSMDataConverter> converters = new ArrayList<>();
+		for (IVisitingParser parser : parsers) {
+			if (parser != null) {
+				addConverters(parser.getVisitor(), converters);
+			}
+		}
+		if (converters.isEmpty()) {
+			return;
+		}
+		for (AbstractOSMDataConverter converter : converters) {
+			if (!converter.canSelectRelations()) {
+				Osm2xpLogger.warning("Relations pre-scan skipped, since relations to process can't be determined before parsing. Enable tiles pre-scan to use it for multi-tile generation");
+				return;
+			}
+		}
+		RelationsLister lister = RelationsListerFactory.getRelationsLister(currentFile, 
+				relation -> converters.stream().anyMatch(converter -> converter.mustProcessRelation(relation)));
+		if (lister == null) {
+			return;
+		}
+		try {
+			long t1 = System.currentTimeMillis();
+			lister.process();
+			Osm2xpLogger.info("Relations pre-scan took " + (System.currentTimeMillis() - t1) + " ms");
+		} catch (Osm2xpBusinessException e) {
+			Osm2xpLogger.error("Error pre-scanning relations, all the ways would be stored", e);
+			return;
+		}
+		TLongSet wayIds = new TLongHashSet();
+		for (Relation relation : lister.getRelationsList()) {
+			for (Member member : relation.getMember()) {
+				if ("way".equalsIgnoreCase(member.getType())) {
+					wayIds.add(member.getId());
+				}
+			}
+		}
+		Osm2xpLogger.info(lister.getRelationsList().size() + " multipolygon relations to process, " + wayIds.size() + " member ways would be stored");
+		for (AbstractOSMDataConverter converter : converters) {
+			converter.setRelationWayIds(wayIds);
+		}
+	}
+
+	private static void addConverters(IOSMDataVisitor visitor, List<AbstractOSMDataConverter> converters) {
+		if (visitor instanceof AbstractOSMDataConverter) {
+			converters.add((AbstractOSMDataConverter) visitor);
+		} else if (visitor instanceof CompositeVisitor) {
+			for (IOSMDataVisitor child : ((CompositeVisitor) visitor).getChildren()) {
+				addConverters(child, converters);
+			}
+		}
+	}
+
 }
@@ -7,6 +7,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Predicate;
 
 import org.openstreetmap.osmosis.osmbinary.BinaryParser;
 import org.openstreetmap.osmosis.osmbinary.Osmformat;
@@ -16,6 +17,8 @@ import org.openstreetmap.osmosis.osmbinary.file.BlockInputStream;
 import com.osm2xp.core.exceptions.Osm2xpBusinessException;
 import com.osm2xp.core.model.osm.Member;
 import com.osm2xp.core.model.osm.Relation;
+import com.osm2xp.core.model.osm.Tag;
+import com.osm2xp.core.parsers.impl.ParallelBlockReader;
 
 /**
  * PbfRelationsLister.
@@ -27,10 +30,27 @@ public class PbfRelationsLister extends BinaryParser implements RelationsLister
 
 	private List<Relation> relationsList = new ArrayList<Relation>();
 	private File file;
+	private Predicate<Relation> filter;
+	private int workerCount = 1;
 
 	public PbfRelationsLister(File file) {
+		this(file, relation -> true);
+	}
+
+	/**
+	 * @param file PBF file to list relations from
+	 * @param filter only relations accepted by this filter are kept in the list
+	 */
+	public PbfRelationsLister(File file, Predicate<Relation> filter) {
 		this.file = file;
+		this.filter = filter;
+	}
 
+	/**
+	 * @param workerCount number of threads used for blocks decoding
+	 */
+	public void setWorkerCount(int workerCount) {
+		this.workerCount = workerCount;
 	}
 
 	/**
@@ -56,7 +76,14 @@ public class PbfRelationsLister extends BinaryParser implements RelationsLister
 					String ref = rel.getMemidsList().get(i).toString();
 					relation.getMember().add(new Member(memberId,type, ref, role));
 				}
-				relationsList.add(relation);
+				List<Tag> tags = new ArrayList<Tag>();
+				for (int j = 0; j < rel.getKeysCount(); j++) {
+					tags.add(new Tag(getStringById(rel.getKeys(j)), getStringById(rel.getVals(j))));
+				}
+				relation.setTags(tags);
+				if (filter.test(relation)) {
+					relationsList.add(relation);
+				}
 			}
 		}
 	}
@@ -87,12 +114,20 @@ public class PbfRelationsLister extends BinaryParser implements RelationsLister
 		} catch (FileNotFoundException e) {
 			throw new Osm2xpBusinessException(e.getMessage());
 		}
-		BlockInputStream bm = new BlockInputStream(input, this);
 		try {
-			bm.process();
+			if (workerCount > 1) {
+				new ParallelBlockReader(input, this, workerCount).process();
+			} else {
+				new BlockInputStream(input, this).process();
+			}
 		} catch (IOException e) {
 			throw new Osm2xpBusinessException(e.getMessage());
-
+		} finally {
+			try {
+				input.close();
+			} catch (IOException e) {
+				// Ignore
+			}
 		}
 	}
 
@@ -1,7 +1,9 @@
 package com.osm2xp.parsers.relationsLister;
 
 import java.io.File;
+import java.util.function.Predicate;
 
+import com.osm2xp.core.model.osm.Relation;
 import com.osm2xp.generation.options.GlobalOptionsProvider;
 
 /**
@@ -17,14 +19,23 @@ public class RelationsListerFactory {
 	 * @return
 	 */
 	public static RelationsLister getRelationsLister(File file) {
-		RelationsLister result = null;
-		if (GlobalOptionsProvider.getOptions().getCurrentFilePath().toLowerCase()
-				.contains(".pbf")) {
-			result = new PbfRelationsLister(file);
-		} else if (GlobalOptionsProvider.getOptions().getCurrentFilePath()
-				.toLowerCase().contains(".osm")) {
-			result = new XmlRelationsLister(file);
+		return getRelationsLister(file, relation -> true);
+	}
+
+	/**
+	 * @param file input file
+	 * @param filter only relations accepted by this filter are listed
+	 * @return relations lister for given file type, or <code>null</code> if file type isn't supported
+	 */
+	public static RelationsLister getRelationsLister(File file, Predicate<Relation> filter) {
+		String fileName = file.getName().toLowerCase();
+		if (fileName.endsWith(".pbf")) {
+			PbfRelationsLister lister = new PbfRelationsLister(file, filter);
+			lister.setWorkerCount(GlobalOptionsProvider.getOptions().getEffectiveParserThreads());
+			return lister;
+		} else if (fileName.endsWith(".osm")) {
+			return new XmlRelationsLister(file, filter);
 		}
-		return result;
+		return null;
 	}
 }
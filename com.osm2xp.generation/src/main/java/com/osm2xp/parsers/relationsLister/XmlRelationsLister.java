@@ -4,6 +4,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Predicate;
 
 import org.xml.sax.Attributes;
 import org.xml.sax.ContentHandler;
@@ -15,6 +16,7 @@ import org.xml.sax.helpers.XMLReaderFactory;
 import com.osm2xp.core.exceptions.Osm2xpBusinessException;
 import com.osm2xp.core.model.osm.Member;
 import com.osm2xp.core.model.osm.Relation;
+import com.osm2xp.core.model.osm.Tag;
 
 /**
  * Permet de lister les tuiles existantes dans le fichier osm
@@ -28,9 +30,19 @@ public class XmlRelationsLister implements ContentHandler, RelationsLister {
 	private File file;
 	private Boolean parsingRelation = false;
 	private Relation currentRelation;
+	private Predicate<Relation> filter;
 
 	public XmlRelationsLister(File file) {
+		this(file, relation -> true);
+	}
+
+	/**
+	 * @param file OSM file to list relations from
+	 * @param filter only relations accepted by this filter are kept in the list
+	 */
+	public XmlRelationsLister(File file, Predicate<Relation> filter) {
 		this.file = file;
+		this.filter = filter;
 	}
 
 	/**
@@ -68,6 +80,14 @@ public class XmlRelationsLister implements ContentHandler, RelationsLister {
 		if (localName.equalsIgnoreCase("relation")) {
 			this.parsingRelation = true;
 			currentRelation = new Relation();
+			currentRelation.setTags(new ArrayList<Tag>());
+			String id = attributes.getValue("id");
+			if (id != null) {
+				currentRelation.setId(Long.parseLong(id));
+			}
+		}
+		if (parsingRelation && localName.equalsIgnoreCase("tag")) {
+			currentRelation.getTags().add(new Tag(attributes.getValue("k"), attributes.getValue("v")));
 		}
 		if (parsingRelation && localName.equalsIgnoreCase("member")) {
 			long id = 0;
@@ -105,7 +125,9 @@ public class XmlRelationsLister implements ContentHandler, RelationsLister {
 			throws SAXException {
 		if (localName.equalsIgnoreCase("relation")) {
 			this.parsingRelation = false;
-			relationsList.add(currentRelation);
+			if (filter.test(currentRelation)) {
+				relationsList.add(currentRelation);
+			}
 		}
 
 	}
@@ -0,0 +1,218 @@
+package com.osm2xp.parsers.tilesLister;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.openstreetmap.osmosis.osmbinary.BinaryParser;
+import org.openstreetmap.osmosis.osmbinary.Osmformat.DenseNodes;
+import org.openstreetmap.osmosis.osmbinary.Osmformat.HeaderBlock;
+import org.openstreetmap.osmosis.osmbinary.Osmformat.Node;
+import org.openstreetmap.osmosis.osmbinary.Osmformat.Relation;
+import org.openstreetmap.osmosis.osmbinary.Osmformat.Way;
+import org.openstreetmap.osmosis.osmbinary.file.BlockInputStream;
+
+import com.osm2xp.core.exceptions.Osm2xpBusinessException;
+import com.osm2xp.core.parsers.impl.ParallelBlockReader;
+
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import math.geom2d.Point2D;
+
+/**
+ * Fast PBF pre-scan pass. Only node coordinates are decoded, no node or tag objects are created.
+ * Produces tile histogram - nodes count and node id range for each tile, which is used to pre-create tile translators
+ * and pre-size node storage before main pass.
+ * Since PBF files are sorted - nodes first, scan is stopped when first way or relation block is reached.
+ *
+ * @author 32kda
+ *
+ */
+public class PbfTileScanner extends BinaryParser implements TilesLister {
+
+	/**
+	 * Node statistics for single tile
+	 */
+	public static class TileStats {
+		private long nodeCount;
+		private long minId = Long.MAX_VALUE;
+		private long maxId = Long.MIN_VALUE;
+
+		void add(long id) {
+			nodeCount++;
+			minId = Math.min(minId, id);
+			maxId = Math.max(maxId, id);
+		}
+
+		public long getNodeCount() {
+			return nodeCount;
+		}
+
+		public long getMinId() {
+			return minId;
+		}
+
+		public long getMaxId() {
+			return maxId;
+		}
+	}
+
+	/**
+	 * Thrown to stop parsing when all the nodes were scanned
+	 */
+	@SuppressWarnings("serial")
+	private static class NodesScannedException extends RuntimeException {
+		public NodesScannedException() {
+			super(null, null, false, false);
+		}
+	}
+
+	private final File file;
+	private final int workerCount;
+	private TLongObjectMap<TileStats> tileStats = new TLongObjectHashMap<>();
+	private long lastKey = Long.MIN_VALUE;
+	private TileStats lastStats;
+	private long nodeCount;
+	private long minId = Long.MAX_VALUE;
+	private long maxId = Long.MIN_VALUE;
+
+	/**
+	 * @param file PBF file to scan
+	 * @param workerCount number of threads used for blocks decoding
+	 */
+	public PbfTileScanner(File file, int workerCount) {
+		this.file = file;
+		this.workerCount = workerCount;
+	}
+
+	@Override
+	protected void parseDense(DenseNodes nodes) {
+		long lastId = 0, lastLat = 0, lastLon = 0;
+		for (int i = 0; i < nodes.getIdCount(); i++) {
+			lastLat += nodes.getLat(i);
+			lastLon += nodes.getLon(i);
+			lastId += nodes.getId(i);
+			addNode(lastId, parseLon(lastLon), parseLat(lastLat));
+		}
+	}
+
+	@Override
+	protected void parseNodes(List<Node> nodes) {
+		for (Node node : nodes) {
+			addNode(node.getId(), parseLon(node.getLon()), parseLat(node.getLat()));
+		}
+	}
+
+	protected void addNode(long id, double lon, double lat) {
+		long key = ((long) (int) Math.floor(lon) << 32) | ((int) Math.floor(lat) & 0xFFFFFFFFL);
+		if (key != lastKey) { // Nodes are usually spatially clustered, so most nodes belong to the same tile as previous one
+			lastStats = tileStats.get(key);
+			if (lastStats == null) {
+				lastStats = new TileStats();
+				tileStats.put(key, lastStats);
+			}
+			lastKey = key;
+		}
+		lastStats.add(id);
+		nodeCount++;
+		minId = Math.min(minId, id);
+		maxId = Math.max(maxId, id);
+	}
+
+	@Override
+	protected void parseWays(List<Way> ways) {
+		if (!ways.isEmpty()) {
+			throw new NodesScannedException();
+		}
+	}
+
+	@Override
+	protected void parseRelations(List<Relation> rels) {
+		if (!rels.isEmpty()) {
+			throw new NodesScannedException();
+		}
+	}
+
+	@Override
+	protected void parse(HeaderBlock header) {
+		// Do nothing
+	}
+
+	@Override
+	public void complete() {
+		// Do nothing
+	}
+
+	@Override
+	public void process() throws Osm2xpBusinessException {
+		try (InputStream input = new FileInputStream(file)) {
+			if (workerCount > 1) {
+				new ParallelBlockReader(input, this, workerCount).process();
+			} else {
+				new BlockInputStream(input, this).process();
+			}
+		} catch (NodesScannedException e) {
+			// All the nodes were scanned, it's OK
+		} catch (IOException e) {
+			throw new Osm2xpBusinessException(e.getMessage());
+		}
+	}
+
+	@Override
+	public Set<Point2D> getTilesList() {
+		return getTileStats().keySet();
+	}
+
+	/**
+	 * @return node statistics for each tile, sorted by tile longitude, then latitude
+	 */
+	public Map<Point2D, TileStats> getTileStats() {
+		Map<Point2D, TileStats> result = new TreeMap<>(Comparator.comparingDouble(Point2D::x).thenComparingDouble(Point2D::y));
+		for (long key : tileStats.keys()) {
+			result.put(new Point2D((int) (key >> 32), (int) key), tileStats.get(key));
+		}
+		return result;
+	}
+
+	/**
+	 * @return total scanned nodes count
+	 */
+	public long getNodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * @return min scanned node id
+	 */
+	public long getMinId() {
+		return minId;
+	}
+
+	/**
+	 * @return max scanned node id
+	 */
+	public long getMaxId() {
+		return maxId;
+	}
+
+	/**
+	 * @return Human-readable per-tile node count report, one line per tile
+	 */
+	public String getReport() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("Scanned ").append(nodeCount).append(" nodes in ").append(tileStats.size()).append(" tiles");
+		for (Map.Entry<Point2D, TileStats> entry : getTileStats().entrySet()) {
+			TileStats stats = entry.getValue();
+			builder.append('\n').append("Tile (").append((int) entry.getKey().x()).append(", ").append((int) entry.getKey().y()).append("): ")
+			.append(stats.getNodeCount()).append(" nodes, ids ").append(stats.getMinId()).append("..").append(stats.getMaxId());
+		}
+		return builder.toString();
+	}
+
+}
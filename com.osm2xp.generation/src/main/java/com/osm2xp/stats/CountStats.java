@@ -9,23 +9,23 @@ public class CountStats implements ICountStats {
 	private Map<String, Integer> countMap = new HashMap<String, Integer>();
 
 	@Override
-	public int getCount(String id) {
+	public synchronized int getCount(String id) {
 		Integer cnt = countMap.get(id);
 		return cnt != null ? cnt : 0;
 	}
 
 	@Override
-	public void incCount(String id) {
+	public synchronized void incCount(String id) {
 		Integer cnt = countMap.get(id);
 		countMap.put(id, cnt != null ? ++cnt : 1);
 	}
 
-	public String getSummary() {
+	public synchronized String getSummary() {
 		return countMap.keySet().stream().sorted().map(key -> key + ":" + countMap.get(key)).collect(Collectors.joining(", "));
 	}
 
 	@Override
-	public void setCount(String id, int count) {
+	public synchronized void setCount(String id, int count) {
 		countMap.put(id, count);
 	}
 
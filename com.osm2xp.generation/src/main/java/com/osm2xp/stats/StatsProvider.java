@@ -1,7 +1,7 @@
 package com.osm2xp.stats;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import math.geom2d.Point2D;
 
@@ -9,7 +9,7 @@ public class StatsProvider {
 	
 	private static CountStats commonStats = new CountStats();
 	
-	private static Map<Point2D, CountStats> tileStatsMap = new HashMap<Point2D, CountStats>();
+	private static Map<Point2D, CountStats> tileStatsMap = new ConcurrentHashMap<Point2D, CountStats>();
 
 	public static void reinit() {
 		commonStats = new CountStats();
@@ -24,12 +24,10 @@ public class StatsProvider {
 	}
 	
 	public static CountStats getTileStats(Point2D tile, boolean createIfAbsent) {
-		CountStats countStats = tileStatsMap.get(tile);
-		if (countStats == null && createIfAbsent) {
-			countStats = new CountStats();
-			tileStatsMap.put(tile, countStats);
+		if (createIfAbsent) {
+			return tileStatsMap.computeIfAbsent(tile, key -> new CountStats());
 		}
-		return countStats;
+		return tileStatsMap.get(tile);
 				
 	}
 	
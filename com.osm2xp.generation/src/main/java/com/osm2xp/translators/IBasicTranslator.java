@@ -1,5 +1,6 @@
 package com.osm2xp.translators;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import com.osm2xp.core.exceptions.Osm2xpBusinessException;
@@ -39,6 +40,29 @@ public interface IBasicTranslator {
 	 * @return true if this node is of interest for this translator.
 	 */
 	public boolean mustStoreNode(Node node);
+	
+	/**
+	 * Tells if the untagged node with given id and coordinates must be stored.
+	 * Default implementation creates {@link Node} and calls {@link #mustStoreNode(Node)}, override to avoid this. 
+	 * 
+	 * @param id node id
+	 * @param lon node longitude
+	 * @param lat node latitude
+	 * @return true if this node is of interest for this translator.
+	 */
+	public default boolean mustStoreNode(long id, double lon, double lat) {
+		return mustStoreNode(new Node(new ArrayList<>(), lat, lon, id));
+	}
+	
+	/**
+	 * Tells whether {@link #processNode(Node)} should be called for nodes without tags. 
+	 * Most translators produce nothing for such nodes, so they are only stored for way/relation assembly by default.
+	 * 
+	 * @return <code>true</code> if this translator needs untagged nodes to be processed, <code>false</code> otherwise
+	 */
+	public default boolean needsUntaggedNodes() {
+		return false;
+	}
 
 	/**
 	 * Tells whether given polyline or polygon should be processed.
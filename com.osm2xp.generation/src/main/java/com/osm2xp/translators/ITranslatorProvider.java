@@ -10,4 +10,13 @@ public interface ITranslatorProvider {
 	
 	public ITranslator getTranslator(Point2D currentTile);
 	
+	/**
+	 * Remove output files previously generated for given tile, so tile can be regenerated from scratch.
+	 * Needed if tile can become empty, since no output is written for empty tile. Does nothing by default
+	 * @param tile tile to remove output for
+	 */
+	public default void discardTileOutput(Point2D tile) {
+		// Do nothing by default
+	}
+	
 }
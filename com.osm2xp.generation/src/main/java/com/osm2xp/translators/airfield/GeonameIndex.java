@@ -0,0 +1,420 @@
+package com.osm2xp.translators.airfield;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.osm2xp.core.logging.Osm2xpLogger;
+import com.osm2xp.core.model.geonames.NamedPoint;
+import com.osm2xp.core.model.geonames.PointList;
+import com.osm2xp.index.MappedLongArray;
+
+import math.geom2d.Box2D;
+
+/**
+ * Binary geo names index, memory-mapped as {@link MappedLongArray}, so opening it takes constant time and heap usage doesn't depend
+ * on index size.
+ *
+ * Index file consists of big-endian long values only: header, cells directory, packed point coordinates, name offsets and UTF-8 names blob.
+ * Points are sorted by Hilbert curve index of their coordinates. Each Hilbert cell of coarser level covers a continuous range of points,
+ * so directory holds position of the first point for each cell and is used as a static grid for nearest point search.
+ *
+ * Legacy index (serialized {@link PointList}) is converted to this format once, converted index is stored next to it,
+ * see {@link #open(File)}.
+ *
+ * @author 32kda
+ *
+ */
+public class GeonameIndex implements Closeable {
+
+	public static final String BINARY_EXTENSION = ".bin";
+	/**
+	 * Folder for converted indexes in user home, used when legacy index folder isn't writable
+	 */
+	private static final String CACHE_FOLDER = ".osm2xp" + File.separator + "cache";
+
+	private static final long MAGIC = 0x4F3258474E414D45L; // "O2XGNAME"
+	private static final long VERSION = 1;
+	/**
+	 * Hilbert curve order for point coordinates, each coordinate is quantized to 2^15 values. Point index takes 30 bits then,
+	 * so it's a positive value even being shifted to high int of sort key
+	 */
+	private static final int ORDER = 15;
+	private static final int MAX_LEVEL = 11;
+	/**
+	 * Desired average points count for directory cell
+	 */
+	private static final int CELL_POINTS = 8;
+	private static final double COORD_FACTOR = 1e7;
+
+	private static final int HEADER_SIZE = 8;
+	private static final int H_MAGIC = 0;
+	private static final int H_VERSION = 1;
+	private static final int H_SOURCE_LENGTH = 2;
+	private static final int H_SOURCE_MODIFIED = 3;
+	private static final int H_COUNT = 4;
+	private static final int H_LEVEL = 5;
+	private static final int H_NAMES_SIZE = 6;
+
+	private final MappedLongArray data;
+	private final int count;
+	private final int level;
+	private final int cellsCount;
+	private final long cellsStart;
+	private final long coordsStart;
+	private final long offsetsStart;
+	private final long namesStart;
+	private final double cellWidth;
+	private final double cellHeight;
+
+	private GeonameIndex(MappedLongArray data) throws IOException {
+		this.data = data;
+		count = (int) data.get(H_COUNT);
+		level = (int) data.get(H_LEVEL);
+		if (count < 0 || level < 0 || level > MAX_LEVEL) {
+			throw new IOException("Geo names index " + data.getFile() + " is corrupted");
+		}
+		cellsCount = 1 << level;
+		cellsStart = HEADER_SIZE;
+		coordsStart = cellsStart + (long) cellsCount * cellsCount + 1;
+		offsetsStart = coordsStart + count;
+		namesStart = offsetsStart + count + 1;
+		cellWidth = 360.0 / cellsCount;
+		cellHeight = 180.0 / cellsCount;
+	}
+
+	/**
+	 * Open geo names index. If given file is a legacy index, it's converted to binary format first, unless there already is
+	 * a converted index for it. Converted index is stored next to the legacy one, or in user cache folder if that folder isn't writable,
+	 * see {@link #getCacheFiles(File)}
+	 * @param indexFile binary or legacy index file
+	 * @return opened index
+	 * @throws IOException in case of index read or conversion error
+	 */
+	public static GeonameIndex open(File indexFile) throws IOException {
+		if (isBinary(indexFile)) {
+			return new GeonameIndex(new MappedLongArray(indexFile));
+		}
+		List<File> candidates = new ArrayList<>();
+		candidates.add(getBinaryFile(indexFile));
+		candidates.addAll(getCacheFiles(indexFile));
+		for (File binaryFile : candidates) {
+			if (binaryFile.isFile()) {
+				MappedLongArray data = new MappedLongArray(binaryFile);
+				if (data.get(H_MAGIC) == MAGIC && data.get(H_VERSION) == VERSION &&
+						data.get(H_SOURCE_LENGTH) == indexFile.length() && data.get(H_SOURCE_MODIFIED) == indexFile.lastModified()) {
+					return new GeonameIndex(data);
+				}
+				data.close();
+				Osm2xpLogger.info("Geo names index " + indexFile + " was changed, binary index " + binaryFile + " would be rebuilt");
+			}
+		}
+		for (File binaryFile : candidates) {
+			File folder = binaryFile.getParentFile();
+			folder.mkdirs();
+			if (folder.isDirectory() && Files.isWritable(folder.toPath())) {
+				convert(indexFile, binaryFile);
+				return new GeonameIndex(new MappedLongArray(binaryFile));
+			}
+			Osm2xpLogger.warning("Folder " + folder.getAbsolutePath() + " is not writable, can't store binary geo names index there");
+		}
+		throw new IOException("No writable folder found to store binary geo names index for " + indexFile);
+	}
+
+	/**
+	 * Get fallback locations for converted index, in case folder of legacy index isn't writable - user cache folder, then system temp folder.
+	 * File name is unique for legacy index path, so indexes from different installations don't overwrite each other
+	 * @param indexFile legacy index file
+	 * @return fallback binary index files, in order of preference
+	 */
+	protected static List<File> getCacheFiles(File indexFile) {
+		String name = getBinaryFile(indexFile).getName();
+		int idx = name.lastIndexOf('.');
+		name = name.substring(0, idx) + "-" + Integer.toHexString(indexFile.getAbsolutePath().hashCode()) + BINARY_EXTENSION;
+		List<File> result = new ArrayList<>();
+		String userHome = System.getProperty("user.home");
+		if (userHome != null) {
+			result.add(new File(userHome, CACHE_FOLDER + File.separator + name));
+		}
+		result.add(new File(System.getProperty("java.io.tmpdir"), "osm2xp" + File.separator + name));
+		return result;
+	}
+
+	/**
+	 * @param indexFile legacy index file
+	 * @return file to store converted binary index to, e.g. <code>index.bin</code> for <code>index.dat</code>
+	 */
+	public static File getBinaryFile(File indexFile) {
+		String name = indexFile.getName();
+		int idx = name.lastIndexOf('.');
+		return new File(indexFile.getParentFile(), (idx > 0 ? name.substring(0, idx) : name) + BINARY_EXTENSION);
+	}
+
+	private static boolean isBinary(File indexFile) throws IOException {
+		if (indexFile.length() < HEADER_SIZE * Long.BYTES) {
+			return false;
+		}
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+			return input.readLong() == MAGIC;
+		}
+	}
+
+	/**
+	 * Convert legacy index, which is a serialized {@link PointList}, to binary format
+	 * @param indexFile legacy index file
+	 * @param binaryFile target binary index file
+	 * @throws IOException in case of read or write error
+	 */
+	public static void convert(File indexFile, File binaryFile) throws IOException {
+		Osm2xpLogger.info("Converting geo names index " + indexFile + " to binary format");
+		long t1 = System.currentTimeMillis();
+		NamedPoint[] points;
+		try (ObjectInputStream inputStream = new ObjectInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+			points = ((PointList) inputStream.readObject()).getPoints();
+		} catch (ClassNotFoundException | ClassCastException e) {
+			throw new IOException("Geo names index " + indexFile + " has unsupported format", e);
+		}
+		write(points, binaryFile, indexFile.length(), indexFile.lastModified());
+		Osm2xpLogger.info("Geo names index converted, " + points.length + " points, " + (System.currentTimeMillis() - t1) + " ms");
+	}
+
+	/**
+	 * Write binary index for given points. Index is written to temp file first, so there are no partially written indexes in case of error
+	 * @param points named points, points with <code>null</code> name are skipped
+	 * @param binaryFile target file
+	 * @param sourceLength source index length, 0 if there is no source
+	 * @param sourceModified source index modification time, 0 if there is no source
+	 * @throws IOException in case of write error
+	 */
+	public static void write(NamedPoint[] points, File binaryFile, long sourceLength, long sourceModified) throws IOException {
+		int count = 0;
+		long[] keys = new long[points.length];
+		for (int i = 0; i < points.length; i++) {
+			if (points[i] != null && points[i].getName() != null) {
+				// Hilbert index goes to high bits, point position to low ones, so sorting keys gives sorted positions as well.
+				// Index is computed for stored coordinates, so directory cells are consistent with them
+				long packed = pack(points[i].getX(), points[i].getY());
+				long hilbertIdx = getHilbertIndex(ORDER, quantize(unpackX(packed), -180, 360), quantize(unpackY(packed), -90, 180));
+				keys[count++] = (hilbertIdx << 32) | i;
+			}
+		}
+		keys = Arrays.copyOf(keys, count);
+		Arrays.sort(keys);
+		int level = getLevel(count);
+		int shift = 2 * (ORDER - level);
+		File tempFile = new File(binaryFile.getAbsolutePath() + ".tmp");
+		try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile), 1 << 16))) {
+			byte[][] names = new byte[count][];
+			long namesSize = 0;
+			for (int i = 0; i < count; i++) {
+				names[i] = points[(int) keys[i]].getName().getBytes(StandardCharsets.UTF_8);
+				namesSize += names[i].length;
+			}
+			long[] header = new long[HEADER_SIZE];
+			header[H_MAGIC] = MAGIC;
+			header[H_VERSION] = VERSION;
+			header[H_SOURCE_LENGTH] = sourceLength;
+			header[H_SOURCE_MODIFIED] = sourceModified;
+			header[H_COUNT] = count;
+			header[H_LEVEL] = level;
+			header[H_NAMES_SIZE] = namesSize;
+			for (long value : header) {
+				output.writeLong(value);
+			}
+			long cells = 1L << (2 * level);
+			int pos = 0;
+			for (long cell = 0; cell <= cells; cell++) {
+				while (pos < count && (keys[pos] >>> 32) >>> shift < cell) {
+					pos++;
+				}
+				output.writeLong(pos);
+			}
+			for (int i = 0; i < count; i++) {
+				NamedPoint point = points[(int) keys[i]];
+				output.writeLong(pack(point.getX(), point.getY()));
+			}
+			long offset = 0;
+			for (int i = 0; i < count; i++) {
+				output.writeLong(offset);
+				offset += names[i].length;
+			}
+			output.writeLong(offset);
+			for (byte[] name : names) {
+				output.write(name);
+			}
+			int padding = (int) ((Long.BYTES - namesSize % Long.BYTES) % Long.BYTES);
+			output.write(new byte[padding]);
+		}
+		Files.move(tempFile.toPath(), binaryFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * Directory level, so that there are about {@link #CELL_POINTS} points per cell on average
+	 */
+	private static int getLevel(int count) {
+		int level = 1;
+		while (level < MAX_LEVEL && (1L << (2 * level)) * CELL_POINTS < count) {
+			level++;
+		}
+		return level;
+	}
+
+	/**
+	 * @return points count
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Find name of the nearest point. Distance is measured in degrees, same as for {@link org.locationtech.jts.geom.Coordinate#distance(org.locationtech.jts.geom.Coordinate)}
+	 * @param x point longitude
+	 * @param y point latitude
+	 * @param bounds bounds to search points in, points outside of it are ignored. Can be <code>null</code>
+	 * @return nearest point name, <code>null</code> if there are no points inside bounds
+	 */
+	public String getNearestName(double x, double y, Box2D bounds) {
+		double minX = bounds != null ? bounds.getMinX() : -180;
+		double maxX = bounds != null ? bounds.getMaxX() : 180;
+		double minY = bounds != null ? bounds.getMinY() : -90;
+		double maxY = bounds != null ? bounds.getMaxY() : 90;
+		if (count == 0 || minX > maxX || minY > maxY) {
+			return null;
+		}
+		int minCellX = getCell(minX, -180, 360);
+		int maxCellX = getCell(maxX, -180, 360);
+		int minCellY = getCell(minY, -90, 180);
+		int maxCellY = getCell(maxY, -90, 180);
+		int cellX = Math.max(minCellX, Math.min(maxCellX, getCell(x, -180, 360)));
+		int cellY = Math.max(minCellY, Math.min(maxCellY, getCell(y, -90, 180)));
+		int maxRing = Math.max(Math.max(cellX - minCellX, maxCellX - cellX), Math.max(cellY - minCellY, maxCellY - cellY));
+		long best = -1;
+		double bestDist = Double.MAX_VALUE;
+		for (int ring = 0; ring <= maxRing; ring++) {
+			// Cells of this ring are at least ring - 1 whole cells away from the start cell. If point is outside of bounds, start cell
+			// is the closest bounds cell, and other cells aren't closer than it
+			double ringDist = Math.max(Math.max(0, ring - 1) * Math.min(cellWidth, cellHeight), getOutsideDistance(x, y, cellX, cellY));
+			if (best >= 0 && ringDist * ringDist > bestDist) {
+				break;
+			}
+			for (int cx = Math.max(minCellX, cellX - ring); cx <= Math.min(maxCellX, cellX + ring); cx++) {
+				int step = (cx == cellX - ring || cx == cellX + ring) ? 1 : 2 * ring;
+				for (int cy = cellY - ring; cy <= cellY + ring; cy += step) {
+					if (cy < minCellY || cy > maxCellY) {
+						continue;
+					}
+					long cell = getHilbertIndex(level, cx, cy);
+					long end = data.get(cellsStart + cell + 1);
+					for (long i = data.get(cellsStart + cell); i < end; i++) {
+						long packed = data.get(coordsStart + i);
+						double px = unpackX(packed);
+						double py = unpackY(packed);
+						if (px < minX || px > maxX || py < minY || py > maxY) {
+							continue;
+						}
+						double dist = (px - x) * (px - x) + (py - y) * (py - y);
+						if (dist < bestDist) {
+							bestDist = dist;
+							best = i;
+						}
+					}
+				}
+			}
+		}
+		return best >= 0 ? getName(best) : null;
+	}
+
+	/**
+	 * @return distance from given point to given cell, 0 if point is inside it
+	 */
+	private double getOutsideDistance(double x, double y, int cellX, int cellY) {
+		double cellMinX = -180 + cellX * cellWidth;
+		double cellMinY = -90 + cellY * cellHeight;
+		double dx = Math.max(0, Math.max(cellMinX - x, x - cellMinX - cellWidth));
+		double dy = Math.max(0, Math.max(cellMinY - y, y - cellMinY - cellHeight));
+		return Math.max(dx, dy);
+	}
+
+	private String getName(long idx) {
+		long start = data.get(offsetsStart + idx);
+		int length = (int) (data.get(offsetsStart + idx + 1) - start);
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++) {
+			long pos = start + i;
+			bytes[i] = (byte) (data.get(namesStart + pos / Long.BYTES) >>> (8 * (Long.BYTES - 1 - pos % Long.BYTES)));
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private int getCell(double value, double min, double range) {
+		return quantize(value, min, range) >> (ORDER - level);
+	}
+
+	/**
+	 * @return coordinate quantized to Hilbert curve grid of {@link #ORDER}
+	 */
+	private static int quantize(double value, double min, double range) {
+		int max = (1 << ORDER) - 1;
+		return Math.max(0, Math.min(max, (int) Math.floor((value - min) / range * (1 << ORDER))));
+	}
+
+	/**
+	 * Hilbert curve index for given cell. Index of cell on some order is a prefix of indexes of it's sub-cells on higher order
+	 * @param order curve order, grid size is 2^order
+	 * @param x cell x
+	 * @param y cell y
+	 * @return cell index along the curve
+	 */
+	static long getHilbertIndex(int order, int x, int y) {
+		int n = 1 << order;
+		long d = 0;
+		for (int s = n / 2; s > 0; s /= 2) {
+			int rx = (x & s) > 0 ? 1 : 0;
+			int ry = (y & s) > 0 ? 1 : 0;
+			d += (long) s * s * ((3 * rx) ^ ry);
+			if (ry == 0) {
+				if (rx == 1) {
+					x = n - 1 - x;
+					y = n - 1 - y;
+				}
+				int t = x;
+				x = y;
+				y = t;
+			}
+		}
+		return d;
+	}
+
+	private static long pack(double x, double y) {
+		long xInt = Math.round(x * COORD_FACTOR);
+		long yInt = Math.round(y * COORD_FACTOR);
+		return (xInt << 32) | (yInt & 0xFFFFFFFFL);
+	}
+
+	private static double unpackX(long packed) {
+		return (int) (packed >> 32) / COORD_FACTOR;
+	}
+
+	private static double unpackY(long packed) {
+		return (int) packed / COORD_FACTOR;
+	}
+
+	@Override
+	public void close() throws IOException {
+		data.close();
+	}
+
+}
@@ -1,6 +1,7 @@
 package com.osm2xp.translators.airfield;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -51,6 +52,10 @@ public class XPAirfieldTranslationAdapter implements ISpecificTranslator {
 	private File workFolder;
 	private KdTree orphanRunwaysTree = new KdTree();
 	private LocalGeonameProvider provider;
+	/**
+	 * Local index failed to open, don't try it again for each airfield
+	 */
+	private boolean providerFailed;
 	private Box2D bbox;
 
 	public XPAirfieldTranslationAdapter(String outputFolder) {
@@ -118,14 +123,18 @@ public class XPAirfieldTranslationAdapter implements ISpecificTranslator {
 	}
 	
 	protected LocalGeonameProvider getLocalProvider() {
-		if (provider == null) {
+		if (provider == null && !providerFailed) {
 			File basicFolder = PathsService.getPathsProvider().getBasicFolder();
 			File indexFile = new File(basicFolder, "geo/index.dat");
+			if (!indexFile.isFile()) {
+				indexFile = GeonameIndex.getBinaryFile(indexFile);
+			}
 			if (indexFile.isFile()) {
 				try {
 					provider = new LocalGeonameProvider(bbox, indexFile);
 				} catch (Exception e) {
-					Osm2xpLogger.error("Unable to use local geoname index");
+					providerFailed = true;
+					Osm2xpLogger.error("Unable to use local geoname index " + indexFile.getAbsolutePath(), e);
 				}
 			}
 		}
@@ -223,6 +232,14 @@ public class XPAirfieldTranslationAdapter implements ISpecificTranslator {
 		
 		StatsProvider.getCommonStats().setCount("Airfields", airfieldList.size());
 		StatsProvider.getCommonStats().setCount("Separate Runways", runwayList.size());
+		if (provider != null) {
+			try {
+				provider.close();
+			} catch (IOException e) {
+				Osm2xpLogger.warning("Error closing local geoname index", e);
+			}
+			provider = null;
+		}
 	}
 
 	protected File getMultiAirfieldsFolder() {
@@ -351,5 +368,10 @@ public class XPAirfieldTranslationAdapter implements ISpecificTranslator {
 	public boolean mustStoreNode(Node node) {
 		return true;
 	}
+	
+	@Override
+	public boolean mustStoreNode(long id, double lon, double lat) {
+		return true;
+	}
 
 }
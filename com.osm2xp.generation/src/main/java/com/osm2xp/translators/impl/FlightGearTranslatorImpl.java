@@ -2,8 +2,10 @@ package com.osm2xp.translators.impl;
 
 import java.io.File;
 import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 
 import org.apache.commons.lang.StringUtils;
 
@@ -13,6 +15,7 @@ import com.osm2xp.core.model.osm.Node;
 import com.osm2xp.core.model.osm.Tag;
 import com.osm2xp.model.osm.polygon.OsmPolyline;
 import com.osm2xp.translators.ITranslator;
+import com.osm2xp.utils.EntityRandom;
 import com.osm2xp.utils.FilesUtils;
 import com.osm2xp.utils.geometry.GeomUtils;
 import com.osm2xp.generation.options.FlightGearOptionsProvider;
@@ -88,12 +91,12 @@ public class FlightGearTranslatorImpl implements ITranslator {
 				polygon = GeomUtils.getPolygonFromOsmNodes(osmPolygon
 						.getNodes());
 				// inject it into the scenery file.
-				injectPolygonIntoScenery(polygon, matchingTags);
+				injectPolygonIntoScenery(osmPolygon.getId(), polygon, matchingTags);
 			}
 		}
 	}
 
-	private void injectPolygonIntoScenery(LinearRing2D polygon,
+	private void injectPolygonIntoScenery(long id, LinearRing2D polygon,
 			List<TagsRule> matchingTagsRules) {
 
 		// simplify shape until we have a simple rectangle
@@ -101,12 +104,14 @@ public class FlightGearTranslatorImpl implements ITranslator {
 		LinearRing2D simplifiedPolygon = GeomUtils.simplifyPolygon(polygon);
 
 		// shuffle matching tags rules
-		Collections.shuffle(matchingTagsRules);
+		Random random = EntityRandom.get(id, EntityRandom.OBJECT);
+		Collections.shuffle(matchingTagsRules, random);
 		TagsRule logicRule = matchingTagsRules.get(0);
-		// shuffle objects
-		Collections.shuffle(logicRule.getObjectsFiles());
+		// shuffle objects. Rule list is shared, so copy is shuffled
+		List<ObjectFile> objectsFiles = new ArrayList<>(logicRule.getObjectsFiles());
+		Collections.shuffle(objectsFiles, random);
 		// select object that will be injected.
-		ObjectFile object = logicRule.getObjectsFiles().get(0);
+		ObjectFile object = objectsFiles.get(0);
 
 		if (object != null && StringUtils.isNotBlank(object.getPath())) {
 
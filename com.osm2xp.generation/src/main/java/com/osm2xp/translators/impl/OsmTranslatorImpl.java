@@ -120,6 +120,11 @@ public class OsmTranslatorImpl implements ITranslator {
 
 	}
 
+	@Override
+	public boolean needsUntaggedNodes() {
+		return true; //We write all the nodes to output file
+	}
+
 	@Override
 	public boolean mustStoreNode(Node node) {
 		return currentTile != null ? GeomUtils.compareCoordinates(currentTile, node) : true;
@@ -0,0 +1,177 @@
+package com.osm2xp.translators.impl;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+
+import com.osm2xp.core.exceptions.Osm2xpBusinessException;
+import com.osm2xp.core.logging.Osm2xpLogger;
+import com.osm2xp.core.model.osm.Node;
+import com.osm2xp.core.model.osm.Tag;
+import com.osm2xp.translators.ISpecificTranslator;
+import com.osm2xp.utils.osm.OsmUtils;
+
+import math.geom2d.Box2D;
+
+/**
+ * Translation adapter, running wrapped {@link TileTranslationAdapter} on it's own worker thread. Processing calls are put into bounded queue
+ * and executed by worker in original order, so tile translator and it's writer are confined to worker thread and don't need to be thread-safe.
+ * Geometry, which doesn't intersect tile bounds, is filtered out on the caller thread and is not queued at all.
+ *
+ * Queries like {@link #mustStoreNode(Node)} or {@link #mustProcessPolyline(List)} are answered on the caller thread,
+ * translators are expected to answer them based on tags and configuration only.
+ * 
+ * Error while processing single node or way is logged together with element id and worker goes on, same as tile data converter does
+ * for sequential adapter. Any other error - failure of init, bounding box processing or completion, {@link Error} like {@link OutOfMemoryError}
+ * or worker interruption - stops the worker, and all following calls fail immediately with {@link IllegalStateException},
+ * instead of leaving tile incomplete silently.
+ *
+ * @author 32kda
+ *
+ */
+public class ParallelTranslationAdapter implements ISpecificTranslator {
+
+	/**
+	 * Max tasks count waiting for the worker. Caller is blocked when queue is full, which limits memory consumption in case of slow tile
+	 */
+	private static final int QUEUE_CAPACITY = 1024;
+
+	private static final Runnable STOP = () -> {};
+
+	private final TileTranslationAdapter adapter;
+	private final Envelope bounds;
+	private final BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+	private final Thread worker;
+	private volatile Throwable failure;
+
+	public ParallelTranslationAdapter(TileTranslationAdapter adapter) {
+		this.adapter = adapter;
+		this.bounds = adapter.getBounds();
+		worker = new Thread(this::runTasks, "tile-translator-" + (int) bounds.getMinX() + "_" + (int) bounds.getMinY());
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	private void runTasks() {
+		while (true) {
+			Runnable task;
+			try {
+				task = queue.take();
+			} catch (InterruptedException e) {
+				Osm2xpLogger.error("Tile translation thread " + Thread.currentThread().getName() + " was interrupted");
+				fail(e);
+				return;
+			}
+			if (task == STOP) {
+				return;
+			}
+			try {
+				task.run();
+			} catch (Throwable e) {
+				Osm2xpLogger.error("Tile translation thread " + Thread.currentThread().getName() + " failed", e);
+				fail(e);
+				return;
+			}
+		}
+	}
+
+	private void fail(Throwable error) {
+		failure = error;
+		queue.clear(); // Unblock caller, if it's waiting for free space in queue
+	}
+
+	protected void submit(Runnable task) {
+		checkFailure();
+		try {
+			queue.put(task);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			Osm2xpLogger.error("Interrupted while waiting for tile translation thread " + worker.getName());
+		}
+	}
+
+	@Override
+	public void init() {
+		submit(adapter::init);
+	}
+
+	@Override
+	public void processBoundingBox(Box2D bbox) {
+		submit(() -> adapter.processBoundingBox(bbox));
+	}
+
+	@Override
+	public void processNode(Node node) throws Osm2xpBusinessException {
+		if (bounds.contains(node.getLon(), node.getLat())) {
+			submit(() -> {
+				try {
+					adapter.processNode(node);
+				} catch (Osm2xpBusinessException e) {
+					Osm2xpLogger.error(e);
+				} catch (RuntimeException e) {
+					Osm2xpLogger.error("Error processing node, id=" + node.getId(), e);
+				}
+			});
+		}
+	}
+
+	@Override
+	public void processWays(long wayId, List<Tag> tags, Geometry originalGeometry, List<? extends Geometry> fixedGeometries) {
+		for (Geometry geometry : fixedGeometries) {
+			if (geometry.getEnvelopeInternal().intersects(bounds)) {
+				submit(() -> {
+					try {
+						adapter.processWays(wayId, tags, originalGeometry, fixedGeometries);
+					} catch (RuntimeException e) {
+						Osm2xpLogger.error("Error processing " + OsmUtils.getReadableType(tags) + " way/relation, id=" + wayId, e);
+					}
+				});
+				return;
+			}
+		}
+	}
+
+	@Override
+	public void complete() {
+		submit(adapter::complete);
+		submit(STOP);
+		try {
+			worker.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			Osm2xpLogger.error("Interrupted while waiting for tile translation thread " + worker.getName() + " to finish");
+		}
+		checkFailure();
+	}
+
+	private void checkFailure() {
+		Throwable error = failure;
+		if (error != null) {
+			throw new IllegalStateException("Tile translation thread " + worker.getName() + " failed", error);
+		}
+	}
+
+	@Override
+	public boolean mustStoreNode(Node node) {
+		return adapter.mustStoreNode(node);
+	}
+
+	@Override
+	public boolean mustStoreNode(long id, double lon, double lat) {
+		return adapter.mustStoreNode(id, lon, lat);
+	}
+
+	@Override
+	public boolean needsUntaggedNodes() {
+		return adapter.needsUntaggedNodes();
+	}
+
+	@Override
+	public boolean mustProcessPolyline(List<Tag> tags) {
+		return adapter.mustProcessPolyline(tags);
+	}
+
+}
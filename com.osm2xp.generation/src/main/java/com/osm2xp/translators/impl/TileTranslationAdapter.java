@@ -17,10 +17,11 @@ import com.osm2xp.translators.ISpecificTranslator;
 import com.osm2xp.translators.ITranslator;
 import com.osm2xp.utils.geometry.CoordinateNodeIdPreserver;
 import com.osm2xp.utils.geometry.GeomUtils;
-import com.osm2xp.utils.geometry.NodeCoordinate;
 import com.osm2xp.utils.geometry.Osm2XPGeometryFactory;
+import com.osm2xp.utils.geometry.PackedNodeCoordinateSequence;
+import com.osm2xp.utils.geometry.RingBuilder;
 
-import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.CoordinateSequence;
 import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryFactory;
@@ -44,6 +45,13 @@ public class TileTranslationAdapter implements ISpecificTranslator{
 		tileClipper = new GeometryClipper(bounds); //XXX need actual getting tile bounds instead  
 	}	
 	
+	/**
+	 * @return Bounds of the tile this adapter translates data for
+	 */
+	public Envelope getBounds() {
+		return bounds;
+	}
+
 	protected List<Geometry> preprocess(List<? extends Geometry> geometries, List<Tag> tags) {
 		geometries = boundsFilter(geometries);
 		if (geometries.isEmpty()) {
@@ -67,51 +75,47 @@ public class TileTranslationAdapter implements ISpecificTranslator{
 	}
 	
 
-	protected Geometry getGeometry(List<Long> nodeIds) {
+	protected Geometry getGeometry(long[] nodeIds) {
 		if (isClosed(nodeIds)) {
 			return getPolygon(nodeIds);
 		}
-		Coordinate[] points = getCoords(nodeIds);
-		if (points != null && points.length >= 2) {
+		CoordinateSequence points = getCoords(nodeIds);
+		if (points != null && points.size() >= 2) {
 			GeometryFactory factory = Osm2XPGeometryFactory.getInstance();
 			return factory.createLineString(points);
 		}
 		return null;	
 	}
 
-	protected Polygon getPolygon(List<Long> polyNodeIds) {
-		Coordinate[] points = getCoords(polyNodeIds);
-		if (points != null && points.length >= 4) {
+	protected Polygon getPolygon(long[] polyNodeIds) {
+		CoordinateSequence points = getCoords(polyNodeIds);
+		if (points != null && points.size() >= 4) {
 			GeometryFactory factory = Osm2XPGeometryFactory.getInstance();
 			return factory.createPolygon(points);
 		}
 		return null;
 	}
 
-	protected LinearRing getRing(List<Long> nodeIds) {
-		Coordinate[] points = getCoords(nodeIds);
-		if (points != null && points.length >= 4) {
+	protected LinearRing getRing(long[] nodeIds) {
+		CoordinateSequence points = getCoords(nodeIds);
+		if (points != null && points.size() >= 4) {
 			GeometryFactory factory = Osm2XPGeometryFactory.getInstance();
 			return factory.createLinearRing(points);
 		}
 		return null;
 	}
 
-	protected Coordinate[] getCoords(List<Long> nodeIds) {
-		List<com.osm2xp.core.model.osm.Node> nodes = getNodes(nodeIds);
-		NodeCoordinate[] points = nodes.stream().map(node -> new NodeCoordinate(node.getLon(), node.getLat(), node.getId()))
-				.toArray(NodeCoordinate[]::new);
-		if (points.length < 1) {
-			return null;
+	protected CoordinateSequence getCoords(long[] nodeIds) {
+		try {
+			return PackedNodeCoordinateSequence.fromResolved(nodeIds, processor);
+		} catch (DataSinkException e) {
+			Osm2xpLogger.error(e);
 		}
-		return points;
+		return null;
 	}
 	
-	protected boolean isClosed(List<Long> curList) {
-		if (curList.size() > 1) {
-			return curList.get(0).equals(curList.get(curList.size() - 1));
-		}
-		return false;
+	protected boolean isClosed(long[] ids) {
+		return RingBuilder.isClosed(ids);
 	}
 	
 	protected List<com.osm2xp.core.model.osm.Node> getNodes(List<Long> polyIds) {
@@ -151,6 +155,16 @@ public class TileTranslationAdapter implements ISpecificTranslator{
 		return translator.mustStoreNode(node);
 	}
 
+	@Override
+	public boolean mustStoreNode(long id, double lon, double lat) {
+		return translator.mustStoreNode(id, lon, lat);
+	}
+	
+	@Override
+	public boolean needsUntaggedNodes() {
+		return translator.needsUntaggedNodes();
+	}
+
 	@Override
 	public boolean mustProcessPolyline(List<Tag> tags) {
 		return translator.mustProcessPolyline(tags);
@@ -1,6 +1,7 @@
 package com.osm2xp.translators.xplane;
 
 import com.osm2xp.generation.options.XPlaneOptionsProvider;
+import com.osm2xp.generation.xplane.resources.DsfHeader;
 import com.osm2xp.generation.xplane.resources.XPOutputFormat;
 
 public class XP10OutputFormat extends XPOutputFormat {
@@ -10,16 +11,15 @@ public class XP10OutputFormat extends XPOutputFormat {
 	}
 
 	@Override
-	protected String getDsfExclusions(String tileCoordinate) {
-		StringBuilder builder = new StringBuilder(super.getDsfExclusions(tileCoordinate));
+	protected void addDsfExclusions(DsfHeader header, String tileCoordinate) {
+		super.addDsfExclusions(header, tileCoordinate);
 		if (XPlaneOptionsProvider.getOptions().isExcludePol()) {
-			builder.append("PROPERTY sim/exclude_pol " + tileCoordinate);
+			header.addProperty("sim/exclude_pol", tileCoordinate);
 		}
 
 		if (XPlaneOptionsProvider.getOptions().isExcludeBch()) {
-			builder.append("PROPERTY sim/exclude_bch " + tileCoordinate);
+			header.addProperty("sim/exclude_bch", tileCoordinate);
 		}
-		return builder.toString();
 	}
 
 }
@@ -17,6 +17,7 @@ import com.osm2xp.generation.xplane.resources.XPOutputFormat;
 import com.osm2xp.model.osm.polygon.OsmPolygon;
 import com.osm2xp.model.osm.polygon.OsmPolyline;
 import com.osm2xp.model.xplane.XplaneDsf3DObject;
+import com.osm2xp.utils.EntityRandom;
 import com.osm2xp.utils.MiscUtils;
 import com.osm2xp.utils.geometry.GeomUtils;
 import com.osm2xp.utils.osm.OsmUtils;
@@ -51,7 +52,7 @@ public class XP3DObjectByRuleTranslator extends XPWritingTranslator {
 			}
 			XplaneDsf3DObject object = select3DObject((OsmPolygon) osmPolyline);
 			if (object != null) {
-				writer.write(outputFormat.getObjectString(object));
+				outputFormat.writeObject(writer, object);
 				return true;
 			}
 		}		
@@ -67,23 +68,24 @@ public class XP3DObjectByRuleTranslator extends XPWritingTranslator {
 	 */
 	protected XplaneDsf3DObject select3DObject(OsmPolygon osmPolygon) {
 		XplaneDsf3DObject result = null;
-		XplaneObjectTagRule matchingRule = selectMatchingRule(osmPolygon);
+		Random random = EntityRandom.get(osmPolygon.getId(), EntityRandom.OBJECT);
+		XplaneObjectTagRule matchingRule = selectMatchingRule(osmPolygon, random);
 		if (matchingRule != null) {
 			
 			Point2D origin = GeomUtils.getPolylineCenter(osmPolygon.getPolygon());
 			double angle = matchingRule.getAngle();
 			if (matchingRule.isUsePolygonAngle()) {
-				angle = calculateAngle(osmPolygon.getPolygon(), matchingRule);
+				angle = calculateAngle(osmPolygon.getPolygon(), matchingRule, random);
 			} else if (matchingRule.isRandomAngle()) {
-				angle = Double.valueOf(MiscUtils.getRandomInt(0, 360));
+				angle = Double.valueOf(MiscUtils.getRandomInt(0, 360, random));
 			}
-			result = new XplaneDsf3DObject(osmPolygon, getObjectFromRule(matchingRule, osmPolygon), angle, origin);
+			result = new XplaneDsf3DObject(osmPolygon, getObjectFromRule(matchingRule, osmPolygon, random), angle, origin);
 		}
 		// compute object index
 		return result;
 	}
 
-	protected XplaneObjectTagRule selectMatchingRule(OsmPolygon osmPolygon) {
+	protected XplaneObjectTagRule selectMatchingRule(OsmPolygon osmPolygon, Random random) {
 		LinearRing2D polygon = osmPolygon.getPolygon();
 		List<XplaneObjectTagRule> rules = XPlaneOptionsProvider.getOptions().getObjectsRules().getRules();
 		List<XplaneObjectTagRule> matchingRules = new ArrayList<XplaneObjectTagRule>();
@@ -121,7 +123,7 @@ public class XP3DObjectByRuleTranslator extends XPWritingTranslator {
 			}
 		}
 		if (matchingRules.size() > 0) {
-			return matchingRules.get(new Random().nextInt(matchingRules.size()));
+			return matchingRules.get(random.nextInt(matchingRules.size()));
 		}
 		return null;
 	}
@@ -161,7 +163,7 @@ public class XP3DObjectByRuleTranslator extends XPWritingTranslator {
 		return -1;
 	}
 	
-	protected int getObjectFromRule(XplaneObjectTagRule rule, OsmPolygon osmPolygon) {
+	protected int getObjectFromRule(XplaneObjectTagRule rule, OsmPolygon osmPolygon, Random random) {
 		int height = osmPolygon.getHeight();
 		String choosedPath = null;
 		if (isMultiHeight(rule)) {
@@ -184,16 +186,16 @@ public class XP3DObjectByRuleTranslator extends XPWritingTranslator {
 			}
 			return objectIndex;
 		} else {
-			return dsfObjectsProvider.getRandomObject(rule);
+			return dsfObjectsProvider.getRandomObject(rule, random);
 		}
 	}
 
-	private double calculateAngle(LinearRing2D polygon, XplaneObjectTagRule rule) {
+	private double calculateAngle(LinearRing2D polygon, XplaneObjectTagRule rule, Random random) {
 
 		if (polygon.edges().size() == 4) { 
 			
 			if (rule.getxVectorMaxLength() > 0 && rule.getyVectorMaxLength() == 0) { //Simplified mode, we take only one interval into account and choose random edge to get 1 of 4 possible directions for model
-				int edgeIdx = new Random().nextInt(polygon.edgeNumber());
+				int edgeIdx = random.nextInt(polygon.edgeNumber());
 				LineSegment2D edge = polygon.edge(edgeIdx);
 				return GeomUtils.getTrueBearing(edge.lastPoint(), edge.firstPoint());
 			}
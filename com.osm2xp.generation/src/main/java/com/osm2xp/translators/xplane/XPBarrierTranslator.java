@@ -1,7 +1,5 @@
 package com.osm2xp.translators.xplane;
 
-import static com.osm2xp.translators.xplane.XPlaneTranslatorImpl.LINE_SEP;
-
 import com.osm2xp.generation.options.XPlaneOptionsProvider;
 import com.osm2xp.generation.xplane.resources.DsfObjectsProvider;
 import com.osm2xp.generation.xplane.resources.XPOutputFormat;
@@ -34,18 +32,17 @@ public class XPBarrierTranslator extends XPWritingTranslator {
 		if (barrierType != null && GeomUtils.computeEdgesLength(osmPolyline.getPolyline()) > MIN_BARRIER_PERIMETER && osmPolyline.isValid()) {
 			Integer facade = dsfObjectsProvider.computeSpecialFacadeDsfIndex(barrierType,osmPolyline);
 			if (facade != null && facade >= 0) {
-				StringBuffer sb = new StringBuffer();
 				if (XPlaneOptionsProvider.getOptions().isGenerateComments()) {
-					sb.append("#Barrier " + barrierType + " facade " + facade + " line " + osmPolyline.getId());
-					sb.append(LINE_SEP);
+					outputFormat.beginComment().append("Barrier ").append(barrierType.toString()).append(" facade ").append(facade)
+							.append(" line ").append(osmPolyline.getId());
+					outputFormat.writeComment(writer);
 				}
 				if (osmPolyline instanceof OsmPolygon) {
 					((OsmPolygon)osmPolyline).setPolygon(GeomUtils.setCCW((LinearRing2D) osmPolyline
 						.getPolyline()));
 				}
 				
-				sb.append(outputFormat.getPolygonString(osmPolyline.getPolyline(), facade + "", "2")); //TODO need actual wall height here, using "2" for now
-				writer.write(sb.toString());
+				outputFormat.writePolygon(writer, osmPolyline.getPolyline(), facade, 2); //TODO need actual wall height here, using "2" for now
 			}
 			return true;
 		}
@@ -2,14 +2,15 @@ package com.osm2xp.translators.xplane;
 
 import com.osm2xp.generation.osm.OsmConstants;
 import com.osm2xp.generation.xplane.resources.DsfObjectsProvider;
+import com.osm2xp.generation.xplane.resources.XPOutputFormat;
 import com.osm2xp.model.osm.polygon.OsmPolygon;
 import com.osm2xp.generation.options.XPlaneOptionsProvider;
 import com.osm2xp.writers.IWriter;
 
 public class XPChimneyTranslator extends XPSpecObjectTranslator {
 	
-	public XPChimneyTranslator(IWriter writer, DsfObjectsProvider objectsProvider) {
-		super(writer, objectsProvider);
+	public XPChimneyTranslator(IWriter writer, DsfObjectsProvider objectsProvider, XPOutputFormat outputFormat) {
+		super(writer, objectsProvider, outputFormat);
 	}
 
 	@Override
@@ -44,14 +45,13 @@ public class XPChimneyTranslator extends XPSpecObjectTranslator {
 	}
 	
 	protected String getComment(OsmPolygon osmPolygon) {
-		StringBuilder commentBuilder = new StringBuilder("#Chimney");
+		StringBuilder commentBuilder = new StringBuilder("Chimney");
 		if (osmPolygon.getHeight() > 0) {
 			commentBuilder.append(" ");
 			commentBuilder.append(osmPolygon.getHeight());
 			commentBuilder.append("m");
 		}
 		commentBuilder.append(",way " + osmPolygon.getId());
-		commentBuilder.append(System.getProperty("line.separator"));
 		return commentBuilder.toString();
 	}
 
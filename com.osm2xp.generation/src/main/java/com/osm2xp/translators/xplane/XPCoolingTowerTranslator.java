@@ -2,6 +2,7 @@ package com.osm2xp.translators.xplane;
 
 import com.osm2xp.generation.osm.OsmConstants;
 import com.osm2xp.generation.xplane.resources.DsfObjectsProvider;
+import com.osm2xp.generation.xplane.resources.XPOutputFormat;
 import com.osm2xp.model.osm.polygon.OsmPolygon;
 import com.osm2xp.utils.geometry.GeomUtils;
 import com.osm2xp.generation.options.XPlaneOptionsProvider;
@@ -11,8 +12,8 @@ public class XPCoolingTowerTranslator extends XPSpecObjectTranslator {
 	
 	private static final int MIN_TOWER_DIAMETER = 30;
 
-	public XPCoolingTowerTranslator(IWriter writer, DsfObjectsProvider objectsProvider) {
-		super(writer, objectsProvider);
+	public XPCoolingTowerTranslator(IWriter writer, DsfObjectsProvider objectsProvider, XPOutputFormat outputFormat) {
+		super(writer, objectsProvider, outputFormat);
 	}
 
 	@Override
@@ -49,9 +50,8 @@ public class XPCoolingTowerTranslator extends XPSpecObjectTranslator {
 	}
 	
 	protected String getComment(OsmPolygon osmPolygon) {
-		StringBuilder commentBuilder = new StringBuilder("#Cooling tower");	
+		StringBuilder commentBuilder = new StringBuilder("Cooling tower");	
 		commentBuilder.append(", way " + osmPolygon.getId());
-		commentBuilder.append(System.getProperty("line.separator"));
 		return commentBuilder.toString();
 	}
 
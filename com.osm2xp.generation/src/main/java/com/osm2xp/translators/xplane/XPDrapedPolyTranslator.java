@@ -2,16 +2,18 @@ package com.osm2xp.translators.xplane;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.Random;
 
 import com.osm2xp.model.osm.polygon.OsmPolygon;
 import com.osm2xp.model.osm.polygon.OsmPolyline;
+import com.osm2xp.utils.EntityRandom;
 import com.osm2xp.utils.geometry.GeomUtils;
 import com.osm2xp.generation.options.Polygon;
 import com.osm2xp.generation.options.XPlaneOptionsProvider;
 import com.osm2xp.generation.options.XplaneOptions;
-import com.osm2xp.generation.options.rules.PolygonRulesList;
 import com.osm2xp.generation.options.rules.PolygonTagsRule;
+import com.osm2xp.generation.options.rules.TagRulesIndex;
 import com.osm2xp.generation.xplane.resources.DsfObjectsProvider;
 import com.osm2xp.generation.xplane.resources.XPOutputFormat;
 import com.osm2xp.writers.IWriter;
@@ -22,32 +24,34 @@ public class XPDrapedPolyTranslator extends XPWritingTranslator {
 
 	private DsfObjectsProvider dsfObjectsProvider;
 	private XPOutputFormat outputFormat;
+	private TagRulesIndex<PolygonTagsRule> polygonRulesIndex;
 
 	public XPDrapedPolyTranslator(IWriter writer, DsfObjectsProvider dsfObjectsProvider, XPOutputFormat outputFormat) {
 		super(writer);
 		this.dsfObjectsProvider = dsfObjectsProvider;
 		this.outputFormat = outputFormat;
+		this.polygonRulesIndex = new TagRulesIndex<>(XPlaneOptionsProvider.getOptions().getPolygonRules().getRules(), PolygonTagsRule::getTag);
 	}
 
 	@Override
 	public boolean handlePoly(OsmPolyline osmPolyline) {
 		XplaneOptions options = XPlaneOptionsProvider.getOptions();
 		if (osmPolyline instanceof OsmPolygon && options.isGeneratePolys()) {
-			PolygonRulesList polygonRules = options.getPolygonRules();
-			List<PolygonTagsRule> matchingRules = getMatchingRules(osmPolyline, polygonRules);
+			List<PolygonTagsRule> matchingRules = getMatchingRules(osmPolyline);
 			for (PolygonTagsRule matchingRule : matchingRules) {
 				List<Polygon> polygons = matchingRule.getPolygons();
-				Random rnd = new Random();
+				// Each rule gets own randomizer, so polygon chosen for it doesn't depend on other matching rules
+				Random rnd = EntityRandom.get(osmPolyline.getId(), EntityRandom.POLYGON, getRuleSalt(matchingRule));
 				int i = rnd.nextInt(polygons.size());
 				Polygon polygon = polygons.get(i);				 
 				int idx = dsfObjectsProvider.getStringIndex(polygon.getPath());
 				if (!osmPolyline.isValid()) {
 					List<LinearRing2D> fixed = GeomUtils.fix((LinearRing2D)osmPolyline.getPolyline());
 					for (LinearRing2D linearRing2D : fixed) {
-						writer.write(outputFormat.getPolygonString(linearRing2D, idx + "", "0"));
+						outputFormat.writePolygon(writer, linearRing2D, idx, 0);
 					}
 				} else {
-					writer.write(outputFormat.getPolygonString(osmPolyline.getPolyline(), idx + "", "0"));
+					outputFormat.writePolygon(writer, osmPolyline.getPolyline(), idx, 0);
 				}
 			}
 			return matchingRules.size() > 0;
@@ -55,10 +59,20 @@ public class XPDrapedPolyTranslator extends XPWritingTranslator {
 		return false;
 	}
 
-	private List<PolygonTagsRule> getMatchingRules(OsmPolyline osmPolyline, PolygonRulesList polygonRules) {
+	/**
+	 * @return salt for rule randomizer, based on rule tag, so it stays the same when other rules are added or removed
+	 */
+	private static int getRuleSalt(PolygonTagsRule rule) {
+		return Objects.hash(rule.getTag().getKey(), rule.getTag().getValue());
+	}
+
+	private List<PolygonTagsRule> getMatchingRules(OsmPolyline osmPolyline) {
 		List<PolygonTagsRule> resList = new ArrayList<PolygonTagsRule>();
+		List<PolygonTagsRule> rules = polygonRulesIndex.getCandidates(osmPolyline.getTags());
+		if (rules.isEmpty()) {
+			return resList;
+		}
 		double edgesLength = GeomUtils.computeEdgesLength(osmPolyline.getPolyline());
-		List<PolygonTagsRule> rules = polygonRules.getRules();
 		for (PolygonTagsRule polygonTagsRule : rules) {
 			if (osmPolyline.hasTag(polygonTagsRule.getTag()) && edgesLength > polygonTagsRule.getMinPerimeter()) {
 				resList.add(polygonTagsRule);
@@ -27,12 +27,12 @@ public class XPForestTranslator extends XPWritingTranslator {
 	public boolean handlePoly(OsmPolyline osmPolyline) {
 		if (osmPolyline instanceof OsmPolygon && XPlaneOptionsProvider.getOptions().isGenerateFor()) {
 			Integer[] forestIndexAndDensity = dsfObjectsProvider
-					.getRandomForestIndexAndDensity(osmPolyline.getTags());
+					.getRandomForestIndexAndDensity(osmPolyline.getTags(), osmPolyline.getId());
 			if (forestIndexAndDensity != null) {
 				if (!osmPolyline.isValid()) {
 					List<LinearRing2D> fixed = GeomUtils.fix((LinearRing2D)osmPolyline.getPolyline());
 					for (LinearRing2D linearRing2D : fixed) {
-						writer.write(outputFormat.getPolygonString(linearRing2D, forestIndexAndDensity[0] + "", forestIndexAndDensity[1] + ""));
+						outputFormat.writePolygon(writer, linearRing2D, forestIndexAndDensity[0], forestIndexAndDensity[1]);
 					}
 				} else {
 					writeForestToDsf((OsmPolygon) osmPolyline, forestIndexAndDensity);
@@ -56,7 +56,7 @@ public class XPForestTranslator extends XPWritingTranslator {
 	 */
 	private void writeForestToDsf(OsmPolygon osmPolygon, Integer[] forestIndexAndDensity) {
 	
-		writer.write(outputFormat.getPolygonString(osmPolygon, forestIndexAndDensity[0] + "", forestIndexAndDensity[1] + ""));
+		outputFormat.writePolygon(writer, osmPolygon, forestIndexAndDensity[0], forestIndexAndDensity[1]);
 			
 	}
 	
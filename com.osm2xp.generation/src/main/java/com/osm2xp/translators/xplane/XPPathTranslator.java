@@ -70,7 +70,7 @@ public abstract class XPPathTranslator extends XPWritingTranslator {
 			}
 		}
 		for (XPPathSegment pathSegment : resultSegmentList) {
-			writer.write(outputFormat.getPathStr(pathSegment));
+			outputFormat.writePath(writer, pathSegment);
 		}
 		
 	}
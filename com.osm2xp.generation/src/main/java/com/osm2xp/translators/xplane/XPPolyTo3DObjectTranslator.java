@@ -23,6 +23,7 @@ import com.osm2xp.generation.xplane.resources.XPOutputFormat;
 import com.osm2xp.model.osm.polygon.OsmPolygon;
 import com.osm2xp.model.osm.polygon.OsmPolyline;
 import com.osm2xp.model.xplane.ModelWithSize;
+import com.osm2xp.utils.EntityRandom;
 import com.osm2xp.utils.geometry.GeomUtils;
 import com.osm2xp.utils.osm.OsmUtils;
 import com.osm2xp.writers.IWriter;
@@ -54,7 +55,6 @@ public class XPPolyTo3DObjectTranslator extends XPWritingTranslator {
 	private Multimap<OSMBuildingType, ModelWithSize> modelsByType = ArrayListMultimap.create();
 	private DsfObjectsProvider dsfObjectsProvider;
 	private XPOutputFormat outputFormat;
-	private Random rand = new Random();
 	
 	public XPPolyTo3DObjectTranslator(IWriter writer, DsfObjectsProvider dsfObjectsProvider, XPOutputFormat outputFormat) {
 		super(writer);
@@ -115,21 +115,21 @@ public class XPPolyTo3DObjectTranslator extends XPWritingTranslator {
 			double len2 = GeomUtils.computeAvgDistance(edge1,edge3);
 			
 			int height = OsmUtils.getHeightFromTags(osmPolyline.getTags());
+			Random random = EntityRandom.get(osmPolyline.getId(), EntityRandom.OBJECT);
 			ModelMatch match = null;
 			if (height > 0) {
 				Collection<ModelWithSize> modelsByHeight = chooseByHeight(height, xpOptions.getObjHeightTolerance(), xpOptions.getObjHeightAllowedDifference(), models);
-				match = selectMatchedModel(len1, len2, tolerance, modelsByHeight);
+				match = selectMatchedModel(len1, len2, tolerance, modelsByHeight, random);
 			} else {
-				match = selectMatchedModel(len1, len2, tolerance, models);
+				match = selectMatchedModel(len1, len2, tolerance, models, random);
 			}			
 			if (match != null) {
 				Point2D center = GeomUtils.getPolylineCenter(osmPolyline.getPolyline());
 				double angle = match.directAngle? GeomUtils.getTrueBearing(edge1.firstPoint(), edge1.lastPoint()) : 
 											GeomUtils.getTrueBearing(edge0.firstPoint(), edge0.lastPoint());
-				double d = Math.random();
+				double d = random.nextDouble();
 				angle = d < 0.5 ? angle : (angle + 180) % 360;
-				String objectString = outputFormat.getObjectString(dsfObjectsProvider.getObjectIndex(match.matchedModel.getPath()),center.x(), center.y(), angle);
-				writer.write(objectString);
+				outputFormat.writeObject(writer, dsfObjectsProvider.getObjectIndex(match.matchedModel.getPath()), center.x(), center.y(), angle);
 				return true;
 			}
 		}
@@ -152,7 +152,7 @@ public class XPPolyTo3DObjectTranslator extends XPWritingTranslator {
 		return matchedModels;
 	}
 
-	private ModelMatch selectMatchedModel(double len1, double len2, double tolerance, Collection<ModelWithSize> models) {
+	private ModelMatch selectMatchedModel(double len1, double len2, double tolerance, Collection<ModelWithSize> models, Random random) {
 		double dist = Double.MAX_VALUE;
 		List<ModelMatch> matchedList = new ArrayList<ModelMatch>();
 		for (ModelWithSize model : models) {
@@ -168,7 +168,7 @@ public class XPPolyTo3DObjectTranslator extends XPWritingTranslator {
 			}
 		}
 		if (!matchedList.isEmpty()) {
-			return matchedList.get(rand.nextInt(matchedList.size()));
+			return matchedList.get(random.nextInt(matchedList.size()));
 		}
 		return null;
 	}
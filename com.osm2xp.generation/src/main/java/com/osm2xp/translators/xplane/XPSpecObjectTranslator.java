@@ -3,11 +3,11 @@ package com.osm2xp.translators.xplane;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Locale;
 
 import com.osm2xp.generation.options.XPlaneOptionsProvider;
 import com.osm2xp.generation.paths.PathsService;
 import com.osm2xp.generation.xplane.resources.DsfObjectsProvider;
+import com.osm2xp.generation.xplane.resources.XPOutputFormat;
 import com.osm2xp.model.osm.polygon.OsmPolygon;
 import com.osm2xp.model.osm.polygon.OsmPolyline;
 import com.osm2xp.writers.IWriter;
@@ -35,10 +35,12 @@ public abstract class XPSpecObjectTranslator extends XPWritingTranslator {
 
 	protected DsfObjectsProvider objectsProvider;
 	protected List<ObjectDef> objectDefs = new ArrayList<>(); 
+	protected XPOutputFormat outputFormat;
 	
-	public XPSpecObjectTranslator(IWriter writer, DsfObjectsProvider objectsProvider) {
+	public XPSpecObjectTranslator(IWriter writer, DsfObjectsProvider objectsProvider, XPOutputFormat outputFormat) {
 		super(writer);
 		this.objectsProvider = objectsProvider;
+		this.outputFormat = outputFormat;
 		String preffix = getObjectFilePreffix();
 		if (generationEnabled()) {
 			File specObjectsFolder = PathsService.getPathsProvider().getSpecObjectsFolder(); 
@@ -72,17 +74,20 @@ public abstract class XPSpecObjectTranslator extends XPWritingTranslator {
 			}
 			Integer chimneyObjectIdx = objectsProvider.getSpecialObject(getSuitableModelFile(size));
 			Point2D center = osmPolygon.getCenter();
-			String objStr =  String.format(Locale.ROOT, "OBJECT %1d %2.9f %3.9f 0" + System.getProperty("line.separator"), chimneyObjectIdx, center.x(), center.y());
 			if (XPlaneOptionsProvider.getOptions().isGenerateComments()) {
-				String comment = getComment(osmPolygon);
-				writer.write(comment);
+				outputFormat.beginComment().append(getComment(osmPolygon));
+				outputFormat.writeComment(writer);
 			}
-			writer.write(objStr);
+			outputFormat.writeObject(writer, chimneyObjectIdx, center.x(), center.y(), 0);
 			return true;
 		}
 		return false;
 	}
 
+	/**
+	 * @param osmPolygon polygon object is generated for
+	 * @return comment text, without leading comment char and line separator
+	 */
 	protected abstract String getComment(OsmPolygon osmPolygon);
 
 	protected abstract boolean canProcess(OsmPolygon osmPolygon);
@@ -35,7 +35,7 @@ public class XPStringLightTranslator implements IXPLightTranslator{
 		if (length > interval + distance * 2) { //Ignore length, which is smaller than lights interval
 			List<LinearCurve2D> lightStrings = getLightStrings(baseLine, length, distance, doubleSided);
 			for (LinearCurve2D lightStr : lightStrings) {
-				writer.write(outputFormat.getPolygonString(lightStr, objectsProvider.getStringIndex(options.getLightObjectString()) + "", interval + ""));
+				outputFormat.writePolygon(writer, lightStr, objectsProvider.getStringIndex(options.getLightObjectString()), interval);
 			}
 		}
 	}
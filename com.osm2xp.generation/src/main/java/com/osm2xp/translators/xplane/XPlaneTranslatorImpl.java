@@ -9,7 +9,6 @@ import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.lang.StringUtils;
-import org.locationtech.jts.geom.Coordinate;
 
 import com.osm2xp.core.exceptions.Osm2xpBusinessException;
 import com.osm2xp.core.logging.Osm2xpLogger;
@@ -33,6 +32,7 @@ import com.osm2xp.translators.BuildingType;
 import com.osm2xp.translators.IPolyHandler;
 import com.osm2xp.translators.ITranslationListener;
 import com.osm2xp.translators.ITranslator;
+import com.osm2xp.utils.EntityRandom;
 import com.osm2xp.utils.FilesUtils;
 import com.osm2xp.utils.MiscUtils;
 import com.osm2xp.utils.geometry.GeomUtils;
@@ -117,8 +117,8 @@ public class XPlaneTranslatorImpl implements ITranslator{
 		polyHandlers.add(new XPRoadTranslator(writer, dsfObjectsProvider, idProvider, outputFormat));
 		polyHandlers.add(new XPRailTranslator(writer, idProvider, outputFormat));
 		polyHandlers.add(new XPPowerlineTranslator(writer, idProvider, outputFormat));
-		polyHandlers.add(new XPCoolingTowerTranslator(writer, dsfObjectsProvider));
-		polyHandlers.add(new XPChimneyTranslator(writer, dsfObjectsProvider));
+		polyHandlers.add(new XPCoolingTowerTranslator(writer, dsfObjectsProvider, outputFormat));
+		polyHandlers.add(new XPChimneyTranslator(writer, dsfObjectsProvider, outputFormat));
 		polyHandlers.add(new XPDrapedPolyTranslator(writer, dsfObjectsProvider, outputFormat));
 		
 		forestTranslator = new XPForestTranslator(writer, dsfObjectsProvider, outputFormat);
@@ -143,7 +143,7 @@ public class XPlaneTranslatorImpl implements ITranslator{
 	public void init() {
 		// writer initialization
 		writer.init(currentTile);
-		writer.setHeader(outputFormat.getHeaderString(currentTile, null, dsfObjectsProvider.getResourceLibraryDescriptor()));
+		writer.setHeader(outputFormat.getHeader(currentTile, null, dsfObjectsProvider.getResourceLibraryDescriptor()));
 	}
 	
 	@Override
@@ -182,7 +182,7 @@ public class XPlaneTranslatorImpl implements ITranslator{
 			if (area < 0) {
 				Osm2xpLogger.error("Building polygon winding is incorrect! Polygon:" + osmPolygon.getId());
 			}
-			writer.write(outputFormat.getPolygonString(osmPolygon, facade + "", osmPolygon.getHeight() + ""));
+			outputFormat.writePolygon(writer, osmPolygon, facade, osmPolygon.getHeight());
 		}
 	}
 
@@ -241,12 +241,12 @@ public class XPlaneTranslatorImpl implements ITranslator{
 				if (polygon.getArea() * 10000000 > ASSERTION_RESIDENTIAL_MAX_AREA)
 					result = MiscUtils.getRandomInt(XPlaneOptionsProvider
 							.getOptions().getBuildingMin(), XPlaneOptionsProvider
-							.getOptions().getBuildingMax());
+							.getOptions().getBuildingMax(), EntityRandom.get(polygon.getId(), EntityRandom.HEIGHT));
 				else if (polygon.getArea() * 10000000 < ASSERTION_RESIDENTIAL_MAX_AREA)
 					result = MiscUtils.getRandomInt(XPlaneOptionsProvider
 							.getOptions().getResidentialMin(),
 							XPlaneOptionsProvider.getOptions()
-									.getResidentialMax());
+									.getResidentialMax(), EntityRandom.get(polygon.getId(), EntityRandom.HEIGHT));
 			}
 		}
 		return result;
@@ -405,7 +405,7 @@ public class XPlaneTranslatorImpl implements ITranslator{
 	 * @throws Osm2xpBusinessException
 	 */
 	protected void writeObjectToDsf(XplaneDsf3DObject object) throws Osm2xpBusinessException {
-		writer.write(outputFormat.getObjectString(object));
+		outputFormat.writeObject(writer, object);
 	}
 
 	@Override
@@ -414,9 +414,9 @@ public class XPlaneTranslatorImpl implements ITranslator{
 //			Box2D bboxRect = new Box2D(bbox.getMinX() / COORD_DIV_FACTOR,bbox.getMaxX() / COORD_DIV_FACTOR, bbox.getMinY() / COORD_DIV_FACTOR, bbox.getMaxY() / COORD_DIV_FACTOR);
 			if (currentTile != null) {
 				Box2D tileRect = new Box2D(currentTile, 1,1);
-				writer.setHeader(outputFormat.getHeaderString(currentTile, tileRect.intersection(bbox), dsfObjectsProvider.getResourceLibraryDescriptor()));
+				writer.setHeader(outputFormat.getHeader(currentTile, tileRect.intersection(bbox), dsfObjectsProvider.getResourceLibraryDescriptor()));
 			} else {
-				writer.setHeader(outputFormat.getHeaderString(currentTile, bbox, dsfObjectsProvider.getResourceLibraryDescriptor()));
+				writer.setHeader(outputFormat.getHeader(currentTile, bbox, dsfObjectsProvider.getResourceLibraryDescriptor()));
 			}
 		}
 	}
@@ -524,12 +524,7 @@ public class XPlaneTranslatorImpl implements ITranslator{
 	}
 	
 	protected MapArea getContainingArea(double x, double y) {
-		List<MapArea> areas = AreaProvider.getInstance().queryContainingAreas(new Coordinate(x, y));
-		if (!areas.isEmpty()) {
-			Collections.sort(areas, (a1,a2) -> (int)Math.signum(a2.polygon.getArea() - a1.polygon.getArea()));
-			return areas.get(0);
-		}
-		return null;
+		return AreaProvider.getInstance().getContainingArea(x, y);
 	}
 
 	/**
@@ -636,6 +631,11 @@ public class XPlaneTranslatorImpl implements ITranslator{
 		return false;
 	}
 
+	@Override
+	public boolean mustStoreNode(long id, double lon, double lat) {
+		return true;
+	}
+
 	@Override
 	public boolean mustStoreNode(Node node) {
 		Boolean result = true;
@@ -6,16 +6,20 @@ import java.util.Collections;
 
 import com.osm2xp.core.parsers.IOSMDataVisitor;
 import com.osm2xp.datastore.IDataSink;
+import com.osm2xp.generation.areas.AreaCache;
+import com.osm2xp.generation.areas.AreaProvider;
 import com.osm2xp.generation.areas.LanduseAreasAnalyzer;
 import com.osm2xp.generation.options.GlobalOptionsProvider;
 import com.osm2xp.generation.options.XPlaneOptionsProvider;
 import com.osm2xp.generation.xplane.resources.DsfObjectsProvider;
+import com.osm2xp.generation.xplane.resources.DsfUtils;
 import com.osm2xp.model.facades.FacadeSetManager;
 import com.osm2xp.translators.AbstractTranslatorProvider;
 import com.osm2xp.translators.IPreprocessorProvider;
 import com.osm2xp.translators.ITranslator;
 import com.osm2xp.translators.impl.ImageDebugTranslationListener;
 import com.osm2xp.writers.IHeaderedWriter;
+import com.osm2xp.writers.impl.DsfBinaryWriterImpl;
 import com.osm2xp.writers.impl.DsfWriterImpl;
 
 import math.geom2d.Point2D;
@@ -46,7 +50,12 @@ public abstract class XPlaneTranslatorProvider extends AbstractTranslatorProvide
 //					new File(folderPath + File.separatorChar + "stats").mkdirs();
 //				}
 
-		IHeaderedWriter writer = new DsfWriterImpl(folderPath, currentTile, XPlaneOptionsProvider.getOptions().isDeleteSrc());
+		IHeaderedWriter writer;
+		if (XPlaneOptionsProvider.getOptions().isUseDsfTool()) {
+			writer = new DsfWriterImpl(folderPath, currentTile, XPlaneOptionsProvider.getOptions().isDeleteSrc());
+		} else {
+			writer = new DsfBinaryWriterImpl(folderPath, currentTile);
+		}
 		XPlaneTranslatorImpl translatorImpl = createTranslator(currentTile, writer);
 		if (XPlaneOptionsProvider.getOptions().isGenerateDebugImg()) {
 			translatorImpl.setTranslationListener(new ImageDebugTranslationListener());
@@ -54,12 +63,28 @@ public abstract class XPlaneTranslatorProvider extends AbstractTranslatorProvide
 		return translatorImpl;
 	}
 
+	@Override
+	public void discardTileOutput(Point2D tile) {
+		File textFile = DsfUtils.computeXPlaneDsfFilePath(folderPath, tile);
+		String path = textFile.getPath();
+		textFile.delete();
+		new File(path.substring(0, path.length() - ".txt".length())).delete();
+	}
+
 	protected abstract XPlaneTranslatorImpl createTranslator(Point2D currentTile, IHeaderedWriter writer);
 	
 	@Override
 	public Collection<IOSMDataVisitor> createPreprocessors(IDataSink dataSink) {
 		if (GlobalOptionsProvider.getOptions().isAnalyzeAreas()) {
-			return Collections.singletonList(new LanduseAreasAnalyzer(dataSink));
+			AreaCache areaCache = null;
+			String inputPath = GlobalOptionsProvider.getOptions().getCurrentFilePath();
+			if (GlobalOptionsProvider.getOptions().isAreaCache() && inputPath != null) {
+				areaCache = new AreaCache(new File(inputPath));
+				if (areaCache.load(AreaProvider.getInstance())) { // Areas are already known, no preprocessing needed
+					return Collections.emptyList();
+				}
+			}
+			return Collections.singletonList(new LanduseAreasAnalyzer(dataSink, areaCache));
 		} 
 		return Collections.emptyList();
 	}
@@ -8,6 +8,7 @@ import com.osm2xp.generation.options.XPlaneOptionsProvider;
 import com.osm2xp.generation.xplane.resources.DsfObjectsProvider;
 import com.osm2xp.model.osm.polygon.OsmPolyline;
 import com.osm2xp.model.stats.GenerationStats;
+import com.osm2xp.utils.EntityRandom;
 import com.osm2xp.utils.geometry.GeomUtils;
 import com.osm2xp.utils.osm.OsmUtils;
 import com.osm2xp.writers.IHeaderedWriter;
@@ -84,25 +85,21 @@ public class Xplane9TranslatorImpl extends XPlaneTranslatorImpl {
 					densityIndex = 3;
 			}
 		}
-		StringBuffer sb = new StringBuffer();
 		LinearCurve2D polygon = osmPolyline.getPolyline();
+		Random randomGenerator = EntityRandom.get(osmPolyline.getId(), EntityRandom.STREET_LIGHT);
 		for (int i = 0; i < polygon.vertices().size(); i++) {
 			if ((i % densityIndex) == 0) {
 				Point2D lightLoc = polygon.vertex(i);
 				polygon.setVertex(i, lightLoc.translate(0.0001, 0.0001));
 				if (GeomUtils.compareCoordinates(lightLoc, currentTile)) {
-					Random randomGenerator = new Random();
 					int orientation = randomGenerator.nextInt(360);
-					sb.append("OBJECT "
-							+ dsfObjectsProvider.getRandomStreetLightObject()
-							+ " " + (lightLoc.x()) + " " + (lightLoc.y()) + " "
-							+ orientation);
-					sb.append(System.getProperty("line.separator"));
+					Integer lightObject = dsfObjectsProvider.getRandomStreetLightObject();
+					if (lightObject != null) {
+						outputFormat.writeObject(writer, lightObject, lightLoc.x(), lightLoc.y(), orientation);
+					}
 				}
 			}
 		}
-
-		writer.write(sb.toString());
 	}
 
 	@Override
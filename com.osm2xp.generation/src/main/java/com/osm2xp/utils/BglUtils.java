@@ -31,7 +31,7 @@ public class BglUtils {
 						.getTag().getValue()
 						.equalsIgnoreCase(String.valueOf(id)))
 						|| (OsmUtils.compareTags(objectTagRule.getTag(), tag))) {
-					Random rnd = new Random();
+					Random rnd = EntityRandom.get(id, EntityRandom.OBJECT);
 					int i = rnd.nextInt(objectTagRule.getObjectsFiles().size());
 					String result = objectTagRule.getObjectsFiles().get(i)
 							.getPath();
@@ -0,0 +1,153 @@
+package com.osm2xp.utils;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+
+import com.osm2xp.generation.options.GlobalOptionsProvider;
+
+/**
+ * Deterministic random source for generation choices - facades, objects, angles, heights etc.
+ * Randomizer is seeded from OSM entity id, choice purpose and run-level seed ({@link com.osm2xp.generation.options.GlobalOptions#getRandomSeed()}),
+ * so the same input and seed always give the same output, no matter in which order or on which thread entities are processed.
+ *
+ * Generators are reused - there is one generator per thread and purpose, which is reseeded on each call, so nothing is allocated per entity.
+ * Returned generator is valid until the next call for the same purpose on the same thread, so it should be used right away
+ * and never stored or passed to other threads. Generator produces the same sequence as {@link SplittableRandom} with the same seed.
+ *
+ * @author 32kda
+ *
+ */
+public class EntityRandom {
+
+	public static final int FACADE = 1;
+	public static final int OBJECT = 2;
+	public static final int ANGLE = 3;
+	public static final int HEIGHT = 4;
+	public static final int FOREST = 5;
+	public static final int POLYGON = 6;
+	public static final int LIGHT = 7;
+	public static final int STREET_LIGHT = 8;
+
+	private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+	private static final ThreadLocal<Generator[]> GENERATORS = ThreadLocal.withInitial(() -> new Generator[STREET_LIGHT + 1]);
+
+	private EntityRandom() {
+		// Utility class
+	}
+
+	/**
+	 * @param id OSM entity id
+	 * @param purpose choice purpose, one of constants from this class. Different choices for the same entity use different purposes,
+	 * so they aren't correlated
+	 * @return thread's randomizer for given purpose, reseeded for given entity
+	 */
+	public static Random get(long id, int purpose) {
+		return getGenerator(purpose, getSeed(id, purpose));
+	}
+
+	/**
+	 * Get randomizer for one of several independent choices with the same purpose, e.g. for each of matching rules
+	 * @param id OSM entity id
+	 * @param purpose choice purpose, one of constants from this class
+	 * @param salt choice discriminator, e.g. rule hash
+	 * @return thread's randomizer for given purpose, reseeded for given entity and salt
+	 */
+	public static Random get(long id, int purpose, int salt) {
+		return getGenerator(purpose, mix(getSeed(id, purpose) + GOLDEN_GAMMA * salt));
+	}
+
+	private static Generator getGenerator(int purpose, long seed) {
+		Generator[] generators = GENERATORS.get();
+		Generator generator = generators[purpose];
+		if (generator == null) {
+			generator = new Generator();
+			generators[purpose] = generator;
+		}
+		generator.reseed(seed);
+		return generator;
+	}
+
+	private static long getSeed(long id, int purpose) {
+		long seed = mix(GlobalOptionsProvider.getOptions().getRandomSeed() + GOLDEN_GAMMA * purpose);
+		return mix(seed ^ id);
+	}
+
+	/**
+	 * SplitMix64 finalizer, spreads close ids and seeds over whole long range
+	 */
+	private static long mix(long value) {
+		value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+		value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+		return value ^ (value >>> 31);
+	}
+
+	/**
+	 * Reseedable SplitMix64 generator with {@link Random} API. Same algorithm as {@link SplittableRandom} uses, commonly used methods
+	 * are implemented directly, rest ones use {@link #next(int)}. Seed of {@link Random} superclass is never used.
+	 */
+	private static class Generator extends Random {
+
+		private static final long serialVersionUID = 1L;
+
+		private long state;
+
+		public void reseed(long seed) {
+			state = seed;
+		}
+
+		@Override
+		public void setSeed(long seed) {
+			state = seed; // Also called from super constructor
+		}
+
+		private long nextSeed() {
+			return state += GOLDEN_GAMMA;
+		}
+
+		@Override
+		protected int next(int bits) {
+			return nextInt() >>> (32 - bits);
+		}
+
+		@Override
+		public int nextInt() {
+			long value = nextSeed();
+			value = (value ^ (value >>> 33)) * 0x62A9D9ED799705F5L;
+			return (int) (((value ^ (value >>> 28)) * 0xCB24D0A5C88C35B3L) >>> 32);
+		}
+
+		@Override
+		public int nextInt(int bound) {
+			if (bound <= 0) {
+				throw new IllegalArgumentException("bound must be positive");
+			}
+			int result = nextInt();
+			int mask = bound - 1;
+			if ((bound & mask) == 0) {
+				return result & mask;
+			}
+			for (int u = result >>> 1; u + mask - (result = u % bound) < 0; u = nextInt() >>> 1) {
+				// Reject values from incomplete last range
+			}
+			return result;
+		}
+
+		@Override
+		public long nextLong() {
+			return mix(nextSeed());
+		}
+
+		@Override
+		public double nextDouble() {
+			return (nextLong() >>> 11) * 0x1.0p-53;
+		}
+
+		@Override
+		public boolean nextBoolean() {
+			return nextInt() < 0;
+		}
+
+	}
+
+}
@@ -12,6 +12,8 @@ import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
@@ -208,4 +210,28 @@ public class FilesUtils {
 		folder.delete();
 	}
 
+	/**
+	 * Compute SHA-1 hash of file contents, e.g. to check whether data cached for some input file is still valid
+	 * @param file file to compute hash for
+	 * @return hex string representation of hash
+	 * @throws IOException in case of read error
+	 */
+	public static String computeHash(File file) throws IOException {
+		try (InputStream input = new FileInputStream(file)) {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			byte[] buffer = new byte[1 << 16];
+			int read;
+			while ((read = input.read(buffer)) > 0) {
+				digest.update(buffer, 0, read);
+			}
+			StringBuilder builder = new StringBuilder();
+			for (byte b : digest.digest()) {
+				builder.append(String.format("%02x", b));
+			}
+			return builder.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e);
+		}
+	}
+
 }
@@ -3,6 +3,7 @@ package com.osm2xp.utils;
 import java.awt.Color;
 import java.util.Date;
 import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang.StringUtils;
@@ -69,11 +70,22 @@ public class MiscUtils {
 	 * @return Integer
 	 */
 	public static Integer getRandomInt(Integer min, Integer max) {
+		return getRandomInt(min, max, ThreadLocalRandom.current());
+	}
+
+	/**
+	 * return a random integer beetween given min/max values
+	 * 
+	 * @param min
+	 * @param max
+	 * @param random randomizer to use
+	 * @return Integer
+	 */
+	public static Integer getRandomInt(Integer min, Integer max, Random random) {
 		if (min.equals(max)) {
 			return max;
 		} else {
-			Random randomGenerator = new Random();
-			return randomGenerator.nextInt(max - min) + min;
+			return random.nextInt(max - min) + min;
 
 		}
 
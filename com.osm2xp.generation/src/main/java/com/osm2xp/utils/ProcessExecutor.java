@@ -1,38 +1,216 @@
 package com.osm2xp.utils;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.osm2xp.core.logging.Osm2xpLogger;
 
+/**
+ * Executor for external processes, like DSFTool conversion. Count of simultaneously running tasks is limited by available processors
+ * and physical memory, and count of waiting tasks is limited too - submitting thread is blocked until some task completes,
+ * so tile generation is throttled when conversions fall behind.
+ * Time and result of each task is logged, use {@link #awaitCompletion()} to wait for all submitted tasks and get summary.
+ * Statistics are reset after each {@link #awaitCompletion()} call, so each generation run gets its own summary.
+ *
+ * Callable tasks returning {@link Integer} are treated as external processes returning exit code, non-zero code is treated as failure.
+ *
+ * @author 32kda
+ */
 public class ProcessExecutor {
-	
+
+	/**
+	 * Expected memory consumption of single external process, e.g. DSFTool converting 1 tile
+	 */
+	private static final long MEMORY_PER_PROCESS = 512L * 1024 * 1024;
+	/**
+	 * Waiting tasks count per one running task
+	 */
+	private static final int QUEUED_PER_WORKER = 2;
+
 	private static ProcessExecutor instance;
-	
-	private ExecutorService service = Executors.newFixedThreadPool(10, new ThreadFactoryBuilder().build());
-	
+
+	private final int concurrency;
+	private final ExecutorService service;
+	private final Semaphore permits;
+
+	private int pending;
+	private int completed;
+	private int failed;
+	private long totalTime;
+	private long maxTime;
+	private String slowestTask;
+
 	public static synchronized ProcessExecutor getExecutor() {
 		if (instance == null) {
-			instance = new ProcessExecutor();
+			instance = new ProcessExecutor(computeConcurrency());
 		}
 		return instance;
-		
+
+	}
+
+	private ProcessExecutor(int concurrency) {
+		this.concurrency = concurrency;
+		service = Executors.newFixedThreadPool(concurrency, new ThreadFactoryBuilder().setNameFormat("process-executor-%d").build());
+		permits = new Semaphore(concurrency * (QUEUED_PER_WORKER + 1));
+	}
+
+	/**
+	 * @return max simultaneously running tasks count - available processors count, limited by physical memory. 
+	 * Half of physical memory is assumed to be available for external processes, since generator itself needs memory too
+	 */
+	protected static int computeConcurrency() {
+		int processors = Runtime.getRuntime().availableProcessors();
+		long memory = getPhysicalMemorySize() / 2;
+		if (memory > 0) {
+			return (int) Math.max(1, Math.min(processors, memory / MEMORY_PER_PROCESS));
+		}
+		return processors;
 	}
-	
-	private ProcessExecutor() {
+
+	/**
+	 * Physical memory size is read reflectively - method is JDK-specific and was renamed to <code>getTotalMemorySize</code> in Java 14,
+	 * old <code>getTotalPhysicalMemorySize</code> is deprecated
+	 * @return total physical memory size, bytes, or <code>-1</code> if it can't be determined
+	 */
+	private static long getPhysicalMemorySize() {
+		OperatingSystemMXBean osBean = ManagementFactory.getOperatingSystemMXBean();
+		for (String methodName : new String[] { "getTotalMemorySize", "getTotalPhysicalMemorySize" }) {
+			try {
+				Class<?> beanClass = Class.forName("com.sun.management.OperatingSystemMXBean");
+				if (beanClass.isInstance(osBean)) {
+					return ((Number) beanClass.getMethod(methodName).invoke(osBean)).longValue();
+				}
+			} catch (ReflectiveOperationException | RuntimeException e) {
+				// Try next method or fall back to processors count
+			}
+		}
+		return -1;
 	}
-	
+
 	public Future<?> execute(Runnable runnable) {
-		return service.submit(runnable);
+		return execute(() -> {
+			runnable.run();
+			return null;
+		}, runnable.toString());
 	}
-	
+
 	public Future<?> execute(Callable<?> callable) {
-		return service.submit(callable);
+		return execute(callable, callable.toString());
 	}
-	
+
+	/**
+	 * Submit task, blocking while too much tasks are waiting
+	 * @throws RejectedExecutionException if executor is shut down, or calling thread was interrupted while waiting.
+	 * Thread interrupted flag is preserved in the latter case
+	 */
+	protected <T> Future<T> execute(Callable<T> callable, String name) {
+		try {
+			permits.acquire(); // Blocks when too much tasks are waiting
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RejectedExecutionException("Interrupted while waiting to schedule " + name, e);
+		}
+		synchronized (this) {
+			pending++;
+		}
+		try {
+			return service.submit(() -> {
+				long start = System.currentTimeMillis();
+				boolean success = false;
+				try {
+					T result = callable.call();
+					success = !(result instanceof Integer) || (Integer) result == 0;
+					return result;
+				} catch (Exception e) {
+					Osm2xpLogger.error("Error running " + name, e);
+					throw e;
+				} finally {
+					taskFinished(name, System.currentTimeMillis() - start, success);
+				}
+			});
+		} catch (RuntimeException e) { // Executor was shut down
+			taskFinished(name, 0, false);
+			throw e;
+		}
+	}
+
+	private synchronized void taskFinished(String name, long time, boolean success) {
+		Osm2xpLogger.info(name + (success ? " finished" : " failed") + " in " + time + " ms");
+		pending--;
+		completed++;
+		if (!success) {
+			failed++;
+		}
+		totalTime += time;
+		if (time >= maxTime) {
+			maxTime = time;
+			slowestTask = name;
+		}
+		permits.release();
+		notifyAll();
+	}
+
+	/**
+	 * Wait until all submitted tasks are completed and log tasks summary. Executor can still be used after this call,
+	 * task statistics are reset
+	 * @return <code>true</code> if all tasks completed successfully, <code>false</code> otherwise
+	 */
+	public synchronized boolean awaitCompletion() {
+		while (pending > 0) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				Osm2xpLogger.warning("Interrupted while waiting for " + pending + " external tasks to complete");
+				return false;
+			}
+		}
+		if (completed > 0) {
+			Osm2xpLogger.info(getSummary());
+		}
+		boolean success = failed == 0;
+		resetStatistics();
+		return success;
+	}
+
+	private void resetStatistics() {
+		completed = 0;
+		failed = 0;
+		totalTime = 0;
+		maxTime = 0;
+		slowestTask = null;
+	}
+
+	/**
+	 * @return Summary for tasks completed so far
+	 */
+	public synchronized String getSummary() {
+		StringBuilder builder = new StringBuilder();
+		builder.append(completed).append(" external tasks completed, ").append(failed).append(" failed, max ").append(concurrency)
+		.append(" running simultaneously. Total time ").append(totalTime).append(" ms");
+		if (slowestTask != null) {
+			builder.append(", slowest: ").append(slowestTask).append(" - ").append(maxTime).append(" ms");
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Shut down this executor, already submitted tasks are still executed. Next {@link #getExecutor()} call creates new executor,
+	 * so several generation runs can be made in the same JVM
+	 */
 	public void shutdown() {
+		synchronized (ProcessExecutor.class) {
+			if (instance == this) {
+				instance = null;
+			}
+		}
 		service.shutdown();
 	}
 
@@ -0,0 +1,85 @@
+package com.osm2xp.utils.geometry;
+
+import java.util.Arrays;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequence;
+
+import com.osm2xp.core.exceptions.DataSinkException;
+import com.osm2xp.datastore.IDataSink;
+
+/**
+ * Coordinate sequence backed by packed x/y array, as filled by {@link IDataSink#resolveCoordinates(long[], double[])},
+ * with OSM node id kept for each vertex. No {@link Coordinate} objects are allocated until they're explicitly requested -
+ * in this case {@link NodeCoordinate}s are created, so node ids are preserved for further geometry processing.
+ *
+ * @author 32kda
+ */
+public class PackedNodeCoordinateSequence extends PackedCoordinateSequence.Double {
+
+	private static final long serialVersionUID = 4527734829457366810L;
+
+	private final long[] nodeIds;
+
+	/**
+	 * @param xy packed x/y pairs, not copied
+	 * @param nodeIds node id for each x/y pair, not copied
+	 */
+	public PackedNodeCoordinateSequence(double[] xy, long[] nodeIds) {
+		super(xy, 2, 0);
+		if (xy.length != nodeIds.length * 2) {
+			throw new IllegalArgumentException("Coordinates array length " + xy.length + " doesn't match node count " + nodeIds.length);
+		}
+		this.nodeIds = nodeIds;
+	}
+
+	/**
+	 * Resolve node coordinates in bulk using given data sink
+	 * @param ids node ids
+	 * @param dataSink data sink to resolve coordinates from
+	 * @return coordinate sequence for resolved nodes, missing nodes are skipped. <code>null</code> if no node was resolved
+	 * @throws DataSinkException
+	 */
+	public static PackedNodeCoordinateSequence fromResolved(long[] ids, IDataSink dataSink) throws DataSinkException {
+		double[] xy = new double[ids.length * 2];
+		int found = dataSink.resolveCoordinates(ids, xy);
+		if (found < 1) {
+			return null;
+		}
+		if (found == ids.length) {
+			return new PackedNodeCoordinateSequence(xy, ids);
+		}
+		double[] foundXY = new double[found * 2];
+		long[] foundIds = new long[found];
+		int j = 0;
+		for (int i = 0; i < ids.length; i++) {
+			if (!java.lang.Double.isNaN(xy[2 * i])) {
+				foundXY[2 * j] = xy[2 * i];
+				foundXY[2 * j + 1] = xy[2 * i + 1];
+				foundIds[j++] = ids[i];
+			}
+		}
+		return new PackedNodeCoordinateSequence(foundXY, foundIds);
+	}
+
+	public long getNodeId(int index) {
+		return nodeIds[index];
+	}
+
+	@Override
+	public Coordinate getCoordinateInternal(int index) {
+		return new NodeCoordinate(getX(index), getY(index), nodeIds[index]);
+	}
+
+	@Override
+	public PackedNodeCoordinateSequence copy() {
+		return new PackedNodeCoordinateSequence(Arrays.copyOf(getRawCoordinates(), getRawCoordinates().length), Arrays.copyOf(nodeIds, nodeIds.length));
+	}
+
+	@Override
+	@Deprecated
+	public Object clone() {
+		return copy();
+	}
+
+}
@@ -0,0 +1,120 @@
+package com.osm2xp.utils.geometry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+/**
+ * Assembles closed rings from multipolygon member ways, given as node id arrays.
+ * Segments are indexed by their endpoint node ids, so next segment for the ring being built is found with a hash lookup
+ * instead of scanning all the remaining segments, and whole assembly takes linear time.
+ *
+ * Semantics are the same as for sequential scan: already closed segments are returned first, in original order.
+ * Then each ring is started from first unused segment and extended from it's end with first unused segment (in original order)
+ * starting or ending with ring's last node, ending segment is reversed. Chains, which can't be closed, are dropped.
+ *
+ * @author 32kda
+ *
+ */
+public class RingBuilder {
+
+	/**
+	 * @param segments way segments, as node id arrays. Arrays are not modified
+	 * @return list of closed rings, first node of each ring equals to the last one
+	 */
+	public static List<long[]> buildRings(List<long[]> segments) {
+		List<long[]> result = new ArrayList<>();
+		int count = segments.size();
+		boolean[] used = new boolean[count];
+		TLongObjectMap<TIntArrayList> endpoints = new TLongObjectHashMap<>();
+		for (int i = 0; i < count; i++) {
+			long[] segment = segments.get(i);
+			if (segment.length == 0) {
+				used[i] = true;
+			} else if (isClosed(segment)) { // If some way forms closed contour - add it without further analysis
+				result.add(segment);
+				used[i] = true;
+			} else {
+				addEndpoint(endpoints, segment[0], i);
+				if (segment[segment.length - 1] != segment[0]) {
+					addEndpoint(endpoints, segment[segment.length - 1], i);
+				}
+			}
+		}
+		TLongArrayList current = new TLongArrayList();
+		int start = 0;
+		while (true) {
+			while (start < count && used[start]) {
+				start++;
+			}
+			if (start == count) {
+				break;
+			}
+			used[start] = true;
+			current.resetQuick();
+			current.add(segments.get(start));
+			while (true) {
+				long lastNodeId = current.get(current.size() - 1);
+				int next = pollFirstUnused(endpoints.get(lastNodeId), used);
+				if (next < 0) {
+					break;
+				}
+				used[next] = true;
+				long[] segment = segments.get(next);
+				if (segment[0] == lastNodeId) {
+					current.add(segment, 1, segment.length - 1);
+				} else {
+					for (int j = segment.length - 2; j >= 0; j--) {
+						current.add(segment[j]);
+					}
+				}
+			}
+			if (current.get(0) == current.get(current.size() - 1)) {
+				result.add(current.toArray());
+			}
+		}
+		return result;
+	}
+
+	public static boolean isClosed(long[] segment) {
+		return segment.length > 1 && segment[0] == segment[segment.length - 1];
+	}
+
+	private static void addEndpoint(TLongObjectMap<TIntArrayList> endpoints, long nodeId, int segmentIdx) {
+		TIntArrayList list = endpoints.get(nodeId);
+		if (list == null) {
+			list = new TIntArrayList(2);
+			endpoints.put(nodeId, list);
+		}
+		list.add(segmentIdx);
+	}
+
+	/**
+	 * Indexes in endpoint list are in ascending order, so first unused one is the first in original segments order.
+	 * Used indexes found before it are removed, so each index is skipped at most once per list.
+	 */
+	private static int pollFirstUnused(TIntArrayList list, boolean[] used) {
+		if (list == null) {
+			return -1;
+		}
+		int skipped = 0;
+		int result = -1;
+		for (int i = 0; i < list.size(); i++) {
+			int idx = list.getQuick(i);
+			if (!used[idx]) {
+				result = idx;
+				break;
+			}
+			skipped++;
+		}
+		if (skipped > 0) {
+			list.remove(0, skipped);
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,72 @@
+package com.osm2xp.writers;
+
+/**
+ * Writer accepting DSF scenery elements as structured calls instead of DSF2TEXT lines. Calls are made in the same order
+ * as corresponding DSF2TEXT commands would appear, e.g. polygon is written as <code>beginPolygon</code>, then
+ * <code>beginWinding, addPoint..., endWinding</code> for each winding and <code>endPolygon</code> at the end.
+ * <p>
+ * Header should be set using {@link #setHeader(Object)} with {@link com.osm2xp.generation.xplane.resources.DsfHeader} instance.
+ * Plain {@link #write(Object)} should accept DSF2Text element commands too, but structured calls are preferred.
+ *
+ * @author 32kda
+ *
+ */
+public interface IDsfWriter extends IHeaderedWriter {
+
+	/**
+	 * Add object
+	 * @param definition object definition index
+	 * @param lon object longitude
+	 * @param lat object latitude
+	 * @param heading object heading, degrees
+	 */
+	public void addObject(int definition, double lon, double lat, double heading);
+
+	/**
+	 * Start polygon
+	 * @param definition polygon definition index
+	 * @param param polygon parameter, meaning depends on polygon type, e.g. forest density or facade height
+	 */
+	public void beginPolygon(int definition, int param);
+
+	public void beginWinding();
+
+	/**
+	 * Add point to current polygon winding
+	 * @param lon point longitude
+	 * @param lat point latitude
+	 */
+	public void addPoint(double lon, double lat);
+
+	public void endWinding();
+
+	public void endPolygon();
+
+	/**
+	 * Start network segment
+	 * @param definition network definition index
+	 * @param subtype road subtype
+	 * @param startJunction start junction id
+	 * @param lon start point longitude
+	 * @param lat start point latitude
+	 * @param elevation start point elevation
+	 */
+	public void beginSegment(int definition, int subtype, long startJunction, double lon, double lat, double elevation);
+
+	/**
+	 * Add shape point to current network segment
+	 * @param lon point longitude
+	 * @param lat point latitude
+	 */
+	public void addShapePoint(double lon, double lat);
+
+	/**
+	 * Finish current network segment
+	 * @param endJunction end junction id
+	 * @param lon end point longitude
+	 * @param lat end point latitude
+	 * @param elevation end point elevation
+	 */
+	public void endSegment(long endJunction, double lon, double lat, double elevation);
+
+}
@@ -0,0 +1,232 @@
+package com.osm2xp.writers.impl;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.osm2xp.core.logging.Osm2xpLogger;
+import com.osm2xp.generation.xplane.resources.DsfHeader;
+import com.osm2xp.generation.xplane.resources.DsfUtils;
+import com.osm2xp.writers.IDsfWriter;
+
+import gnu.trove.list.array.TDoubleArrayList;
+import gnu.trove.list.array.TIntArrayList;
+import math.geom2d.Point2D;
+
+/**
+ * Native binary DSF writer. Receives scenery elements as structured {@link IDsfWriter} calls and encodes resulting
+ * DSF file directly using {@link DsfEncoder}, without writing intermediate text file and running external DSFTool for it.
+ * Points of current polygon or segment are collected into reusable buffers, so no garbage is created per element.
+ *
+ * @author 32kda
+ *
+ */
+public class DsfBinaryWriterImpl implements IDsfWriter {
+
+	/**
+	 * Polygon coordinate depth - we write lon/lat only
+	 */
+	private static final int POLYGON_DEPTH = 2;
+
+	private File dsfFile;
+	private DsfEncoder encoder;
+	private DsfHeader header;
+
+	private int polygonDef;
+	private int polygonParam;
+	private TDoubleArrayList polygonPoints = new TDoubleArrayList();
+	private TIntArrayList windingStarts = new TIntArrayList();
+
+	private int segmentDef;
+	private int segmentSubtype;
+	private TDoubleArrayList segmentPoints = new TDoubleArrayList();
+
+	/**
+	 * Create DSF writer
+	 * @param sceneFolder generated scene folder
+	 * @param tile Tile we write
+	 */
+	public DsfBinaryWriterImpl(String sceneFolder, Point2D tile) {
+		File textFile = DsfUtils.computeXPlaneDsfFilePath(sceneFolder, tile);
+		String path = textFile.getPath();
+		dsfFile = new File(path.substring(0, path.length() - ".txt".length()));
+		encoder = new DsfEncoder(Math.floor(tile.x()), Math.floor(tile.y()));
+	}
+
+	/**
+	 * Parse DSF2Text commands and add them same way as corresponding structured calls. Element commands are supported - objects, 
+	 * polygons and network segments, comments and empty lines are skipped. Polygon point coordinates besides lon/lat are ignored.
+	 * Header should be passed using {@link #setHeader(Object)}. Structured calls are preferred, since they need no formatting and parsing
+	 * @param data DSF2Text command lines
+	 * @throws IllegalArgumentException if unsupported or malformed command is found
+	 */
+	@Override
+	public void write(Object data) {
+		if (data == null) {
+			return;
+		}
+		String text = data.toString();
+		int start = 0;
+		while (start < text.length()) {
+			int end = text.indexOf('\n', start);
+			if (end < 0) {
+				end = text.length();
+			}
+			writeCommand(text.substring(start, end).trim());
+			start = end + 1;
+		}
+	}
+
+	protected void writeCommand(String line) {
+		if (line.isEmpty() || line.charAt(0) == '#') {
+			return;
+		}
+		String[] args = line.split("\\s+");
+		try {
+			switch (args[0]) {
+			case "OBJECT":
+				addObject(Integer.parseInt(args[1]), Double.parseDouble(args[2]), Double.parseDouble(args[3]), Double.parseDouble(args[4]));
+				break;
+			case "BEGIN_POLYGON":
+				beginPolygon(Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+				break;
+			case "BEGIN_WINDING":
+				beginWinding();
+				break;
+			case "POLYGON_POINT":
+				addPoint(Double.parseDouble(args[1]), Double.parseDouble(args[2]));
+				break;
+			case "END_WINDING":
+				endWinding();
+				break;
+			case "END_POLYGON":
+				endPolygon();
+				break;
+			case "BEGIN_SEGMENT":
+				beginSegment(Integer.parseInt(args[1]), Integer.parseInt(args[2]), Long.parseLong(args[3]), Double.parseDouble(args[4]),
+						Double.parseDouble(args[5]), Double.parseDouble(args[6]));
+				break;
+			case "SHAPE_POINT":
+				addShapePoint(Double.parseDouble(args[1]), Double.parseDouble(args[2]));
+				break;
+			case "END_SEGMENT":
+				endSegment(Long.parseLong(args[1]), Double.parseDouble(args[2]), Double.parseDouble(args[3]), Double.parseDouble(args[4]));
+				break;
+			default:
+				throw new IllegalArgumentException("Unsupported DSF command: " + line);
+			}
+		} catch (IndexOutOfBoundsException | NumberFormatException e) {
+			throw new IllegalArgumentException("Malformed DSF command: " + line, e);
+		}
+	}
+
+	@Override
+	public void addObject(int definition, double lon, double lat, double heading) {
+		encoder.addObject(definition, lon, lat, heading);
+	}
+
+	@Override
+	public void beginPolygon(int definition, int param) {
+		polygonDef = definition;
+		polygonParam = param;
+		polygonPoints.resetQuick();
+		windingStarts.resetQuick();
+	}
+
+	@Override
+	public void beginWinding() {
+		windingStarts.add(polygonPoints.size());
+	}
+
+	@Override
+	public void addPoint(double lon, double lat) {
+		polygonPoints.add(lon);
+		polygonPoints.add(lat);
+	}
+
+	@Override
+	public void endWinding() {
+		// Winding end is next winding start or end of points list
+	}
+
+	@Override
+	public void endPolygon() {
+		encoder.addPolygon(polygonDef, polygonParam, POLYGON_DEPTH, polygonPoints, windingStarts);
+		polygonPoints.resetQuick();
+		windingStarts.resetQuick();
+	}
+
+	@Override
+	public void beginSegment(int definition, int subtype, long startJunction, double lon, double lat, double elevation) {
+		segmentDef = definition;
+		segmentSubtype = subtype;
+		segmentPoints.resetQuick();
+		addSegmentPoint(lon, lat, elevation, startJunction);
+	}
+
+	@Override
+	public void addShapePoint(double lon, double lat) {
+		addSegmentPoint(lon, lat, 0, 0);
+	}
+
+	@Override
+	public void endSegment(long endJunction, double lon, double lat, double elevation) {
+		addSegmentPoint(lon, lat, elevation, endJunction);
+		encoder.addSegment(segmentDef, segmentSubtype, segmentPoints);
+	}
+
+	private void addSegmentPoint(double lon, double lat, double elevation, long junctionId) {
+		segmentPoints.add(lon);
+		segmentPoints.add(lat);
+		segmentPoints.add(elevation);
+		segmentPoints.add(junctionId);
+	}
+
+	/**
+	 * Process DSF header - properties and definitions
+	 * @param dsfHeader header to process
+	 */
+	protected void processHeader(DsfHeader dsfHeader) {
+		for (String[] property : dsfHeader.getProperties()) {
+			encoder.addProperty(property[0], property[1]);
+		}
+		for (String def : dsfHeader.getObjectDefs()) {
+			encoder.addObjectDef(def);
+		}
+		for (String def : dsfHeader.getPolygonDefs()) {
+			encoder.addPolygonDef(def);
+		}
+		for (String def : dsfHeader.getNetworkDefs()) {
+			encoder.addNetworkDef(def);
+		}
+	}
+
+	@Override
+	public void complete() {
+		if (encoder.isEmpty()) {
+			return; // Nothing was added - no need to write the file
+		}
+		if (header != null) {
+			processHeader(header);
+		}
+		dsfFile.getParentFile().mkdirs();
+		try {
+			encoder.write(dsfFile);
+		} catch (IOException e) {
+			Osm2xpLogger.error("Error writing " + dsfFile.getAbsolutePath(), e);
+		}
+		encoder = null;
+	}
+
+	@Override
+	public void init(Point2D coordinates) {
+
+	}
+
+	@Override
+	public void setHeader(Object header) {
+		if (!(header instanceof DsfHeader)) {
+			throw new IllegalArgumentException("DsfHeader instance expected, got " + header);
+		}
+		this.header = (DsfHeader) header;
+	}
+}
@@ -1,12 +1,25 @@
 package com.osm2xp.writers.impl;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
 
 import com.osm2xp.core.logging.Osm2xpLogger;
 import com.osm2xp.generation.xplane.resources.DsfUtils;
 
-public class DsfConversionRunnable implements Runnable{
+/**
+ * DSFTool text to binary DSF conversion task. Returns DSFTool exit code, or -1 if DSFTool can't be run
+ */
+public class DsfConversionRunnable implements Callable<Integer> {
+
+	/**
+	 * Number of last DSFTool output lines to report in case of error
+	 */
+	private static final int OUTPUT_LINES = 5;
 
 	private File textFile;
 	private File dsfFile;
@@ -20,26 +33,44 @@ public class DsfConversionRunnable implements Runnable{
 	}
 
 	@Override
-	public void run() {
+	public Integer call() {
 		if (!DsfUtils.getDsfTool().isFile()) {
 			Osm2xpLogger.error("Error on .dsf conversion - coverter not found at " + DsfUtils.getDsfTool().getAbsolutePath());
-			return;
+			return -1;
 		}
 		try {
-			Runtime runtime = Runtime.getRuntime();
-			Process process = runtime.exec(new String[] { DsfUtils.getDsfTool().getAbsolutePath(), "--text2dsf",
-					textFile.getPath(), dsfFile.getPath() });
+			Process process = new ProcessBuilder(DsfUtils.getDsfTool().getAbsolutePath(), "--text2dsf",
+					textFile.getPath(), dsfFile.getPath()).redirectErrorStream(true).start();
+			Deque<String> lastLines = new ArrayDeque<>();
+			// Output should be consumed, otherwise process can hang on full output buffer
+			try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					if (lastLines.size() == OUTPUT_LINES) {
+						lastLines.removeFirst();
+					}
+					lastLines.addLast(line);
+				}
+			}
 			int result = process.waitFor();
 			if (result != 0) {
-				Osm2xpLogger.error("Error on .dsf conversion - coverter returned invalid response code: " + result + ". Possibly source DSF file " + textFile + " is invalid.");
+				Osm2xpLogger.error("Error on .dsf conversion - coverter returned invalid response code: " + result + ". Possibly source DSF file " + textFile + " is invalid. Converter output:\n" + String.join("\n", lastLines));
 			} else if (deleteSourceFile) {
 				textFile.delete();
 			}
+			return result;
 		} catch (IOException e) {
 			Osm2xpLogger.error("Error on .dsf conversion for file " + textFile, e);
 		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
 			Osm2xpLogger.error("Error on .dsf conversion - thread interrupted.", e);
 		}
+		return -1;
+	}
+	
+	@Override
+	public String toString() {
+		return "DSF conversion of " + textFile.getName();
 	}
 
 }
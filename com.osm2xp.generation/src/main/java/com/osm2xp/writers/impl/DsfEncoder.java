@@ -0,0 +1,517 @@
+package com.osm2xp.writers.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.osm2xp.core.logging.Osm2xpLogger;
+
+import gnu.trove.list.array.TDoubleArrayList;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+/**
+ * Native binary DSF encoder. Collects properties, definitions and scenery elements for one tile and writes DSF file
+ * according to X-Plane DSF specification: header, HEAD/DEFN/GEOD/CMDS atoms and MD5 footer.
+ *
+ * Objects and polygons are stored in 16-bit point pools. Pool for each element is chosen by the smallest cell of
+ * tile quadtree containing the element, so pool range and precision loss are as small as possible. Network segments
+ * are stored in single 32-bit point pool.
+ *
+ * @author 32kda
+ *
+ */
+public class DsfEncoder {
+
+	private static final byte[] COOKIE = "XPLNEDSF".getBytes(StandardCharsets.US_ASCII);
+	private static final int DSF_VERSION = 1;
+
+	private static final int ATOM_HEAD = atomId("HEAD");
+	private static final int ATOM_PROP = atomId("PROP");
+	private static final int ATOM_DEFN = atomId("DEFN");
+	private static final int ATOM_TERT = atomId("TERT");
+	private static final int ATOM_OBJT = atomId("OBJT");
+	private static final int ATOM_POLY = atomId("POLY");
+	private static final int ATOM_NETW = atomId("NETW");
+	private static final int ATOM_DEMN = atomId("DEMN");
+	private static final int ATOM_GEOD = atomId("GEOD");
+	private static final int ATOM_POOL = atomId("POOL");
+	private static final int ATOM_SCAL = atomId("SCAL");
+	private static final int ATOM_PO32 = atomId("PO32");
+	private static final int ATOM_SC32 = atomId("SC32");
+	private static final int ATOM_CMDS = atomId("CMDS");
+
+	private static final int CMD_POOL_SELECT = 1;
+	private static final int CMD_JUNCTION_OFFSET_SELECT = 2;
+	private static final int CMD_SET_DEFINITION_8 = 3;
+	private static final int CMD_SET_DEFINITION_16 = 4;
+	private static final int CMD_SET_DEFINITION_32 = 5;
+	private static final int CMD_SET_ROAD_SUBTYPE_8 = 6;
+	private static final int CMD_OBJECT = 7;
+	private static final int CMD_NETWORK_CHAIN_RANGE = 10;
+	private static final int CMD_NETWORK_CHAIN_32 = 11;
+	private static final int CMD_POLYGON_RANGE = 13;
+	private static final int CMD_NESTED_POLYGON_RANGE = 15;
+
+	private static final int MAX_POOL_SIZE = 65535;
+	private static final int MAX_UINT8 = 255;
+	/**
+	 * Deepest quadtree level used for pool selection, level cell size is 1/64 of the tile
+	 */
+	private static final int MAX_POOL_LEVEL = 6;
+	/**
+	 * Network pool planes - lon, lat, elevation, junction id
+	 */
+	private static final int NETWORK_PLANES = 4;
+	/**
+	 * Network pool plane holding junction id
+	 */
+	private static final int JUNCTION_PLANE = NETWORK_PLANES - 1;
+	private static final long MAX_UINT32 = 0xFFFFFFFFL;
+
+	private final double west;
+	private final double south;
+
+	private List<String> properties = new ArrayList<>();
+	private List<String> objectDefs = new ArrayList<>();
+	private List<String> polygonDefs = new ArrayList<>();
+	private List<String> networkDefs = new ArrayList<>();
+
+	private List<PointPool> pools = new ArrayList<>();
+	private TLongObjectMap<PointPool> currentPools = new TLongObjectHashMap<>();
+	private PointPool networkPool = new PointPool(-1, NETWORK_PLANES, true);
+
+	private LittleEndianBuffer commands = new LittleEndianBuffer();
+	private int currentPool = -1;
+	private long currentDefinition = -1;
+	private int currentSubtype = -1;
+	private boolean empty = true;
+	/**
+	 * Junction id for the next split point of too long network segment. Such ids are allocated from the top of 32-bit range,
+	 * so they don't clash with junction ids given by translator
+	 */
+	private long nextSplitJunction = MAX_UINT32;
+
+	/**
+	 * @param west tile west longitude
+	 * @param south tile south latitude
+	 */
+	public DsfEncoder(double west, double south) {
+		this.west = west;
+		this.south = south;
+		networkPool.integerPlane = JUNCTION_PLANE;
+	}
+
+	public void addProperty(String name, String value) {
+		properties.add(name);
+		properties.add(value);
+	}
+
+	public void addObjectDef(String path) {
+		objectDefs.add(path);
+	}
+
+	public void addPolygonDef(String path) {
+		polygonDefs.add(path);
+	}
+
+	public void addNetworkDef(String path) {
+		networkDefs.add(path);
+	}
+
+	/**
+	 * Add object
+	 * @param definition object definition index
+	 * @param lon object longitude
+	 * @param lat object latitude
+	 * @param heading object heading, degrees
+	 */
+	public void addObject(int definition, double lon, double lat, double heading) {
+		PointPool pool = getPool(3, 1, lon, lat, lon, lat);
+		int idx = pool.add(lon, lat, heading);
+		selectPool(pool.index);
+		selectDefinition(definition);
+		commands.writeByte(CMD_OBJECT);
+		commands.writeShort(idx);
+		empty = false;
+	}
+
+	/**
+	 * Add polygon
+	 * @param definition polygon definition index
+	 * @param param polygon parameter, meaning depends on polygon type, e.g. forest density or facade height
+	 * @param depth coordinate depth - number of values per point
+	 * @param points point coordinates of all polygon windings, outer one first, <code>depth</code> values per point
+	 * @param windingStarts start index of each winding in <code>points</code>
+	 */
+	public void addPolygon(int definition, int param, int depth, TDoubleArrayList points, TIntArrayList windingStarts) {
+		int windingCount = windingStarts.size();
+		if (windingCount == 0) {
+			return;
+		}
+		int end = points.size() - points.size() % depth;
+		if (windingCount > MAX_UINT8) {
+			Osm2xpLogger.warning("Polygon has " + windingCount + " windings, only " + MAX_UINT8 + " are supported. Rest would be ignored");
+			windingCount = MAX_UINT8;
+			end = windingStarts.getQuick(MAX_UINT8);
+		}
+		int pointCount = end / depth;
+		if (pointCount > MAX_POOL_SIZE) {
+			Osm2xpLogger.warning("Polygon has " + pointCount + " points, which is more than max DSF point pool size. Skipping it.");
+			return;
+		}
+		double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+		for (int i = 0; i + 1 < end; i += depth) {
+			minX = Math.min(minX, points.getQuick(i));
+			maxX = Math.max(maxX, points.getQuick(i));
+			minY = Math.min(minY, points.getQuick(i + 1));
+			maxY = Math.max(maxY, points.getQuick(i + 1));
+		}
+		PointPool pool = getPool(depth, pointCount, minX, minY, maxX, maxY);
+		int first = pool.size();
+		pool.addAll(points, end);
+		selectPool(pool.index);
+		selectDefinition(definition);
+		if (windingCount == 1) {
+			commands.writeByte(CMD_POLYGON_RANGE);
+			commands.writeShort(param);
+			commands.writeShort(first);
+			commands.writeShort(first + pointCount);
+		} else {
+			commands.writeByte(CMD_NESTED_POLYGON_RANGE);
+			commands.writeShort(param);
+			commands.writeByte(windingCount);
+			for (int i = 0; i < windingCount; i++) {
+				commands.writeShort(first + windingStarts.getQuick(i) / depth);
+			}
+			commands.writeShort(first + pointCount);
+		}
+		empty = false;
+	}
+
+	/**
+	 * Add network segment. Segment having more than {@value #MAX_POOL_SIZE} points can't be written as single chain,
+	 * so it is split into several consecutive chains, sharing split points, which are made junctions
+	 * @param definition network definition index
+	 * @param subtype road subtype
+	 * @param points segment points, 4 values per point - lon, lat, elevation and junction id. Junction id should be 0 for shape points
+	 */
+	public void addSegment(int definition, int subtype, TDoubleArrayList points) {
+		if (subtype < 0 || subtype > MAX_UINT8) {
+			Osm2xpLogger.warning("Invalid road subtype " + subtype + ", segment would be skipped");
+			return;
+		}
+		int pointCount = points.size() / NETWORK_PLANES;
+		if (pointCount < 2) {
+			return;
+		}
+		int first = networkPool.size();
+		networkPool.addAll(points, pointCount * NETWORK_PLANES);
+		selectPool(0);
+		selectDefinition(definition);
+		if (currentSubtype != subtype) {
+			commands.writeByte(CMD_SET_ROAD_SUBTYPE_8);
+			commands.writeByte(subtype);
+			currentSubtype = subtype;
+		}
+		if (pointCount <= MAX_UINT8) {
+			commands.writeByte(CMD_NETWORK_CHAIN_32);
+			commands.writeByte(pointCount);
+			for (int i = 0; i < pointCount; i++) {
+				commands.writeInt(first + i);
+			}
+		} else { // Too long for explicit index list - use junction offset and index range. Offset is reset back afterwards
+			if (pointCount > MAX_POOL_SIZE) {
+				Osm2xpLogger.warning("Network segment has " + pointCount + " points, which is more than max DSF chain size. Splitting it.");
+			}
+			for (int start = 0; start < pointCount - 1; ) {
+				int end = Math.min(start + MAX_POOL_SIZE, pointCount);
+				if (end < pointCount && networkPool.get(first + end - 1, JUNCTION_PLANE) == 0) {
+					networkPool.set(first + end - 1, JUNCTION_PLANE, nextSplitJunction--);
+				}
+				commands.writeByte(CMD_JUNCTION_OFFSET_SELECT);
+				commands.writeInt(first + start);
+				commands.writeByte(CMD_NETWORK_CHAIN_RANGE);
+				commands.writeShort(0);
+				commands.writeShort(end - start);
+				start = end - 1;
+			}
+			commands.writeByte(CMD_JUNCTION_OFFSET_SELECT);
+			commands.writeInt(0);
+		}
+		empty = false;
+	}
+
+	/**
+	 * @return <code>true</code> if no scenery element was added yet
+	 */
+	public boolean isEmpty() {
+		return empty;
+	}
+
+	/**
+	 * Write DSF file
+	 * @param file target file
+	 * @throws IOException in case of write error
+	 */
+	public void write(File file) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException("MD5 digest is not available", e);
+		}
+		try (OutputStream fileStream = Files.newOutputStream(file.toPath());
+				DigestOutputStream output = new DigestOutputStream(new BufferedOutputStream(fileStream), digest)) {
+			LittleEndianBuffer header = new LittleEndianBuffer();
+			header.write(COOKIE);
+			header.writeInt(DSF_VERSION);
+			header.writeTo(output);
+
+			LittleEndianBuffer head = new LittleEndianBuffer();
+			head.writeAtom(ATOM_PROP, stringTable(properties));
+			atom(ATOM_HEAD, head).writeTo(output);
+
+			LittleEndianBuffer defn = new LittleEndianBuffer();
+			defn.writeAtom(ATOM_TERT, stringTable(new ArrayList<>()));
+			defn.writeAtom(ATOM_OBJT, stringTable(objectDefs));
+			defn.writeAtom(ATOM_POLY, stringTable(polygonDefs));
+			defn.writeAtom(ATOM_NETW, stringTable(networkDefs));
+			defn.writeAtom(ATOM_DEMN, stringTable(new ArrayList<>()));
+			atom(ATOM_DEFN, defn).writeTo(output);
+
+			LittleEndianBuffer geod = new LittleEndianBuffer();
+			for (PointPool pool : pools) {
+				pool.writeAtoms(geod);
+			}
+			if (networkPool.size() > 0) {
+				networkPool.writeAtoms(geod);
+			}
+			atom(ATOM_GEOD, geod).writeTo(output);
+			atom(ATOM_CMDS, commands).writeTo(output);
+			output.on(false);
+			output.write(digest.digest());
+		}
+	}
+
+	private void selectPool(int index) {
+		if (currentPool != index) {
+			commands.writeByte(CMD_POOL_SELECT);
+			commands.writeShort(index);
+			currentPool = index;
+		}
+	}
+
+	private void selectDefinition(long definition) {
+		if (currentDefinition != definition) {
+			if (definition <= MAX_UINT8) {
+				commands.writeByte(CMD_SET_DEFINITION_8);
+				commands.writeByte((int) definition);
+			} else if (definition <= MAX_POOL_SIZE) {
+				commands.writeByte(CMD_SET_DEFINITION_16);
+				commands.writeShort((int) definition);
+			} else {
+				commands.writeByte(CMD_SET_DEFINITION_32);
+				commands.writeInt((int) definition);
+			}
+			currentDefinition = definition;
+		}
+	}
+
+	/**
+	 * Get 16-bit pool for element with given bounds. Pool is chosen by smallest quadtree cell, containing the element,
+	 * new pool is created if there is no pool for this cell yet or existing one doesn't have enough room.
+	 */
+	private PointPool getPool(int planes, int pointCount, double minX, double minY, double maxX, double maxY) {
+		int level = MAX_POOL_LEVEL;
+		int cellX = 0;
+		int cellY = 0;
+		for (; level > 0; level--) {
+			int cells = 1 << level;
+			cellX = getCell(minX - west, cells);
+			cellY = getCell(minY - south, cells);
+			if (cellX == getCell(maxX - west, cells) && cellY == getCell(maxY - south, cells)) {
+				break;
+			}
+		}
+		if (level == 0) {
+			cellX = 0;
+			cellY = 0;
+		}
+		long key = ((long) planes << 32) | (level << 24) | (cellX << 12) | cellY;
+		PointPool pool = currentPools.get(key);
+		if (pool == null || pool.size() + pointCount > MAX_POOL_SIZE) {
+			pool = new PointPool(pools.size(), planes, false);
+			pools.add(pool);
+			currentPools.put(key, pool);
+		}
+		return pool;
+	}
+
+	private static int getCell(double offset, int cells) {
+		return Math.max(0, Math.min(cells - 1, (int) Math.floor(offset * cells)));
+	}
+
+	private static LittleEndianBuffer stringTable(List<String> strings) {
+		LittleEndianBuffer buffer = new LittleEndianBuffer();
+		for (String string : strings) {
+			buffer.write(string.getBytes(StandardCharsets.UTF_8));
+			buffer.writeByte(0);
+		}
+		return buffer;
+	}
+
+	private static LittleEndianBuffer atom(int id, LittleEndianBuffer content) {
+		LittleEndianBuffer buffer = new LittleEndianBuffer();
+		buffer.writeAtom(id, content);
+		return buffer;
+	}
+
+	private static int atomId(String name) {
+		return (name.charAt(0) << 24) | (name.charAt(1) << 16) | (name.charAt(2) << 8) | name.charAt(3);
+	}
+
+	/**
+	 * Point pool with fixed number of planes. Coordinates are kept as doubles until writing,
+	 * when scale and offset are computed for each plane from actual value range
+	 */
+	private static class PointPool {
+
+		private final int index;
+		private final int planes;
+		private final boolean wide;
+		/**
+		 * Plane, which holds integer values and is stored unscaled, -1 if none
+		 */
+		private int integerPlane = -1;
+		private TDoubleArrayList values = new TDoubleArrayList();
+
+		public PointPool(int index, int planes, boolean wide) {
+			this.index = index;
+			this.planes = planes;
+			this.wide = wide;
+		}
+
+		public int add(double x, double y, double z) {
+			int idx = size();
+			values.add(x);
+			values.add(y);
+			values.add(z);
+			return idx;
+		}
+
+		public void addAll(TDoubleArrayList points, int length) {
+			for (int i = 0; i < length; i++) {
+				values.add(points.getQuick(i));
+			}
+		}
+
+		public int size() {
+			return values.size() / planes;
+		}
+
+		public double get(int point, int plane) {
+			return values.getQuick(point * planes + plane);
+		}
+
+		public void set(int point, int plane, double value) {
+			values.setQuick(point * planes + plane, value);
+		}
+
+		public void writeAtoms(LittleEndianBuffer target) {
+			int count = size();
+			double maxRaw = wide ? 4294967295.0 : 65535.0;
+			float[] scales = new float[planes];
+			float[] offsets = new float[planes];
+			LittleEndianBuffer pool = new LittleEndianBuffer();
+			pool.writeInt(count);
+			pool.writeByte(planes);
+			for (int plane = 0; plane < planes; plane++) {
+				double min = Double.MAX_VALUE;
+				double max = -Double.MAX_VALUE;
+				for (int i = plane; i < values.size(); i += planes) {
+					min = Math.min(min, values.getQuick(i));
+					max = Math.max(max, values.getQuick(i));
+				}
+				if (plane == integerPlane) {
+					scales[plane] = 0; // Zero scale means raw values are used as is
+					offsets[plane] = 0;
+				} else {
+					offsets[plane] = (float) min;
+					if (offsets[plane] > min) { // Offset should not be greater than min value, otherwise min values can't be encoded
+						offsets[plane] = Math.nextDown(offsets[plane]);
+					}
+					scales[plane] = max > offsets[plane] ? (float) (max - offsets[plane]) : 1;
+					if (offsets[plane] + scales[plane] < max) { // Float rounding can make range a bit too short
+						scales[plane] = Math.nextUp(scales[plane]);
+					}
+				}
+				pool.writeByte(0); // Raw encoding
+				for (int i = plane; i < values.size(); i += planes) {
+					double value = values.getQuick(i);
+					long raw = plane == integerPlane ? Math.round(value) : Math.round((value - offsets[plane]) / scales[plane] * maxRaw);
+					raw = Math.max(0, Math.min((long) maxRaw, raw));
+					if (wide) {
+						pool.writeInt((int) raw);
+					} else {
+						pool.writeShort((int) raw);
+					}
+				}
+			}
+			LittleEndianBuffer scaling = new LittleEndianBuffer();
+			for (int plane = 0; plane < planes; plane++) {
+				scaling.writeFloat(scales[plane]);
+				scaling.writeFloat(offsets[plane]);
+			}
+			target.writeAtom(wide ? ATOM_PO32 : ATOM_POOL, pool);
+			target.writeAtom(wide ? ATOM_SC32 : ATOM_SCAL, scaling);
+		}
+	}
+
+	/**
+	 * Byte buffer writing numbers in little-endian order, as required by DSF
+	 */
+	private static class LittleEndianBuffer extends ByteArrayOutputStream {
+
+		public void writeByte(int value) {
+			write(value);
+		}
+
+		public void writeShort(int value) {
+			write(value);
+			write(value >>> 8);
+		}
+
+		public void writeInt(int value) {
+			write(value);
+			write(value >>> 8);
+			write(value >>> 16);
+			write(value >>> 24);
+		}
+
+		public void writeFloat(float value) {
+			writeInt(Float.floatToIntBits(value));
+		}
+
+		public void write(byte[] bytes) {
+			write(bytes, 0, bytes.length);
+		}
+
+		public void writeAtom(int id, LittleEndianBuffer content) {
+			writeInt(id);
+			writeInt(content.size() + 8);
+			write(content.buf, 0, content.size());
+		}
+	}
+
+}
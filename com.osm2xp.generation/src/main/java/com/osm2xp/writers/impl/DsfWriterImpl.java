@@ -7,6 +7,7 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 
 import com.osm2xp.core.logging.Osm2xpLogger;
+import com.osm2xp.generation.xplane.resources.DsfTextBuffer;
 import com.osm2xp.generation.xplane.resources.DsfUtils;
 import com.osm2xp.utils.ProcessExecutor;
 import com.osm2xp.writers.IHeaderedWriter;
@@ -54,9 +55,11 @@ public class DsfWriterImpl implements IHeaderedWriter {
 				writer.write(header);
 				headerWritten = true;
 			}
-			if (data != null) {
+			if (data instanceof DsfTextBuffer) {
+				((DsfTextBuffer) data).writeTo(writer);
+			} else if (data != null) {
 				// write into this dsf file
-				writer.write((String) data);
+				writer.write(data.toString());
 			}
 		} catch (IOException e) {
 			Osm2xpLogger.error(e.getMessage());
@@ -14,5 +14,10 @@ public class RunProcessRunnable implements Runnable {
 	public void run() {
 		MiscUtils.execProgram(command);
 	}
+	
+	@Override
+	public String toString() {
+		return "Running " + command;
+	}
 
 }